@@ -68,14 +68,7 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
         @Nullable
         @Override
         public TextRange formatAsync(@NonNull Content text, @NonNull TextRange cursorRange) {
-            String format = com.tyron.eclipse.formatter.Formatter.format(text.toString(),
-                    cursorRange.getStartIndex(),
-                    cursorRange.getEndIndex() - cursorRange.getStartIndex());
-            if (!text.toString().equals(format)) {
-                text.delete(0, text.getLineCount() - 1);
-                text.insert(0, 0, format);
-            }
-            return cursorRange;
+            return applyFormat(text, 0, text.length(), cursorRange);
         }
 
         @Nullable
@@ -83,11 +76,11 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
         public TextRange formatRegionAsync(@NonNull Content text,
                                            @NonNull TextRange rangeToFormat,
                                            @NonNull TextRange cursorRange) {
-            return null;
+            return applyFormat(text, rangeToFormat.getStartIndex(),
+                    rangeToFormat.getEndIndex(), cursorRange);
         }
     };
 
-
     public JavaLanguage(Editor editor) {
         this.editor = editor;
         delegate = LanguageManager.createTextMateLanguage(GRAMMAR_NAME, LANGUAGE_PATH, CONFIG_PATH, editor);
@@ -185,6 +178,48 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
         return 4;
     }
 
+    /**
+     * Formats the text between the given indices, only the parts the formatter changes are
+     * replaced so the rest of the text keeps its spans and the edit can be undone in one step.
+     *
+     * @return the cursor range moved along with the changes
+     */
+    private static TextRange applyFormat(Content text, int start, int end,
+                                         TextRange cursorRange) {
+        List<com.tyron.eclipse.formatter.Formatter.Edit> edits =
+                com.tyron.eclipse.formatter.Formatter.getEdits(text.toString(), 0, start,
+                        end - start);
+        if (edits.isEmpty()) {
+            return cursorRange;
+        }
+
+        text.beginBatchEdit();
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            com.tyron.eclipse.formatter.Formatter.Edit edit = edits.get(i);
+            CharPosition editStart = text.getIndexer().getCharPosition(edit.getOffset());
+            if (edit.getLength() == 0) {
+                text.insert(editStart.getLine(), editStart.getColumn(), edit.getText());
+                continue;
+            }
+            CharPosition editEnd = text.getIndexer().getCharPosition(edit.getEnd());
+            if (edit.getText().isEmpty()) {
+                text.delete(editStart.getLine(), editStart.getColumn(), editEnd.getLine(),
+                        editEnd.getColumn());
+            } else {
+                text.replace(editStart.getLine(), editStart.getColumn(), editEnd.getLine(),
+                        editEnd.getColumn(), edit.getText());
+            }
+        }
+        text.endBatchEdit();
+
+        int cursorStart = com.tyron.eclipse.formatter.Formatter.translateIndex(edits,
+                cursorRange.getStartIndex());
+        int cursorEnd = com.tyron.eclipse.formatter.Formatter.translateIndex(edits,
+                cursorRange.getEndIndex());
+        return new TextRange(text.getIndexer().getCharPosition(cursorStart),
+                text.getIndexer().getCharPosition(cursorEnd));
+    }
+
     public CharSequence format(CharSequence p1) {
         return format(p1, 0, p1.length());
     }
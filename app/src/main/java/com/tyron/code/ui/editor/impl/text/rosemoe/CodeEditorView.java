@@ -23,6 +23,8 @@ import com.tyron.editor.Caret;
 import com.tyron.editor.CharPosition;
 import com.tyron.editor.Content;
 import com.tyron.editor.Editor;
+import com.tyron.editor.util.diff.Diff;
+import com.tyron.editor.util.diff.FilesTooBigForDiffException;
 import com.tyron.xml.completion.util.DOMUtils;
 
 import org.eclipse.lemminx.dom.DOMDocument;
@@ -32,12 +34,14 @@ import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 
 import io.github.rosemoe.sora.lang.Language;
 import io.github.rosemoe.sora.text.Cursor;
+import io.github.rosemoe.sora.text.TextRange;
 import io.github.rosemoe.sora.text.TextUtils;
 import io.github.rosemoe.sora.widget.CodeEditor;
 import io.github.rosemoe.sora.widget.SymbolPairMatch;
@@ -347,7 +351,76 @@ public class CodeEditorView extends CodeEditor implements Editor {
 
     @Override
     public boolean formatCodeAsync(int startIndex, int endIndex) {
-        return false;
+        return CodeEditorView.super.formatCodeAsync(
+                getText().getIndexer().getCharPosition(startIndex),
+                getText().getIndexer().getCharPosition(endIndex));
+    }
+
+    /**
+     * The formatter works on a copy of the text, instead of replacing the whole text with the
+     * formatted copy only the lines that differ are replaced. The rest of the text keeps its
+     * spans and scroll position, and the format can be undone in one step.
+     */
+    @Override
+    public void onFormatSucceed(@NonNull CharSequence applyContent,
+                                @Nullable TextRange cursorRange) {
+        post(() -> {
+            String[] before = Diff.splitLines(getText());
+            String[] after = Diff.splitLines(applyContent);
+            Diff.Change change;
+            try {
+                change = Diff.buildChanges(before, after);
+            } catch (FilesTooBigForDiffException e) {
+                CodeEditorView.super.onFormatSucceed(applyContent, cursorRange);
+                return;
+            }
+            if (change != null) {
+                List<Diff.Change> changes = change.toList();
+                getText().beginBatchEdit();
+                for (int i = changes.size() - 1; i >= 0; i--) {
+                    replaceLines(changes.get(i), after);
+                }
+                getText().endBatchEdit();
+            }
+
+            if (cursorRange != null) {
+                try {
+                    io.github.rosemoe.sora.text.CharPosition start = cursorRange.getStart();
+                    io.github.rosemoe.sora.text.CharPosition end = cursorRange.getEnd();
+                    setSelectionRegion(start.getLine(), start.getColumn(), end.getLine(),
+                            end.getColumn());
+                } catch (IndexOutOfBoundsException ignored) {
+                    // the text was edited while formatting, keep the current selection
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the lines of the change with their formatted lines, the lines before the
+     * change must not have been replaced yet.
+     */
+    private void replaceLines(Diff.Change change, String[] after) {
+        String text = String.join("\n",
+                Arrays.asList(after).subList(change.line1, change.line1 + change.inserted));
+        int lastLine = getText().getLineCount() - 1;
+        int endLine = change.line0 + change.deleted;
+        if (change.deleted == 0) {
+            if (change.line0 <= lastLine) {
+                getText().insert(change.line0, 0, text + "\n");
+            } else {
+                getText().insert(lastLine, getText().getColumnCount(lastLine), "\n" + text);
+            }
+        } else if (change.inserted > 0) {
+            getText().replace(change.line0, 0, endLine - 1,
+                    getText().getColumnCount(endLine - 1), text);
+        } else if (endLine <= lastLine) {
+            getText().delete(change.line0, 0, endLine, 0);
+        } else {
+            int startLine = Math.max(0, change.line0 - 1);
+            int startColumn = change.line0 > 0 ? getText().getColumnCount(startLine) : 0;
+            getText().delete(startLine, startColumn, lastLine, getText().getColumnCount(lastLine));
+        }
     }
 
     @Override
@@ -22,6 +22,7 @@ import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.common.util.AndroidUtilities;
 import com.tyron.common.util.ShareUtils;
 import com.tyron.fileeditor.api.FileEditorManager;
+import com.tyron.terminal.TerminalEmulator;
 import com.tyron.terminal.TerminalSession;
 import com.tyron.terminal.TerminalSessionClientAdapter;
 import com.tyron.terminal.view.TerminalView;
@@ -35,6 +36,12 @@ import java.util.logging.Handler;
 public class AppLogFragment extends Fragment
         implements ProjectManager.OnProjectOpenListener {
 
+    /**
+     * The most memory the scrollback of the build logs may use, large builds print far more
+     * lines than are worth keeping
+     */
+    private static final long BUILD_LOG_TRANSCRIPT_MEMORY = 16 * 1024 * 1024;
+
     /** Only used in IDE Logs **/
     private Handler mHandler;
 
@@ -75,7 +82,14 @@ public class AppLogFragment extends Fragment
 
         if (id == LogViewModel.BUILD_LOG) {
             TerminalSession session = new TerminalSession("", "", new String[0], new String[0],
-                    0, new TerminalSessionClientAdapter() {
+                    TerminalEmulator.TERMINAL_TRANSCRIPT_ROWS_MAX, BUILD_LOG_TRANSCRIPT_MEMORY,
+                    new TerminalSessionClientAdapter() {
+                @Override
+                public void onTextChanged(TerminalSession changedSession) {
+                    // called once for each batch of output parsed on the main thread
+                    mTerminalView.onScreenUpdated();
+                }
+
                 @Override
                 public void onCopyTextToClipboard(TerminalSession session, String text) {
                     AndroidUtilities.copyToClipboard(text);
@@ -100,8 +114,8 @@ public class AppLogFragment extends Fragment
 
                 @Override
                 public void write(byte[] b, int off, int len) throws IOException {
-                    mTerminalView.mEmulator.append(b, off + len);
-                    mTerminalView.postInvalidate();
+                    // the build threads only queue their output, the main thread parses it
+                    session.appendOutput(b, off, len);
                 }
             };
 
@@ -56,6 +56,7 @@ import com.tyron.completion.java.provider.CompletionEngine;
 import com.tyron.layoutpreview.BoundaryDrawingFrameLayout;
 import com.tyron.layoutpreview.convert.LayoutToXmlConverter;
 import com.tyron.layoutpreview.inflate.PreviewLayoutInflater;
+import com.tyron.layoutpreview.resource.ResourceValueCache;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -319,6 +320,9 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         }
         setLoadingText("Parsing xml files");
 
+        // parsed resource values are shared between previews, drop them as resources change
+        ResourceValueCache.getInstance().subscribe(currentProject.getEventManager());
+
         // need to wrap the context to a default theme so
         // material widgets wont use CodeAssist's theme
         ContextThemeWrapper wrapper = new ContextThemeWrapper(requireContext(), R.style.Theme_MaterialComponents_DayNight);
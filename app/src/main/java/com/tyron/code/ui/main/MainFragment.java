@@ -114,7 +114,7 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
     private Project mProject;
 
     private final CompileCallback mCompileCallback = this::compile;
-    private final IndexCallback mIndexCallback = this::openProject;
+    private final IndexCallback mIndexCallback = project -> openProject(project, true);
 
 
     public MainFragment() {
@@ -339,6 +339,14 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
     }
 
     public void openProject(@NonNull Project project) {
+        openProject(project, false);
+    }
+
+    /**
+     * @param forceSync whether to run a Gradle sync even if the project has not changed since
+     *                  its last sync, as when the user refreshes the project
+     */
+    public void openProject(@NonNull Project project, boolean forceSync) {
         if (CompletionEngine.isIndexing()) {
             return;
         }
@@ -365,6 +373,7 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
                 .runNonCancelableAsync(() -> ProjectManager.getInstance()
                         .openProject(project,
                                 false,
+                                forceSync,
                                 new TaskListener(),
                                 ILogger.wrap(mLogViewModel)));
     }
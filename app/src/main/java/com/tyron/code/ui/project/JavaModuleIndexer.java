@@ -0,0 +1,141 @@
+package com.tyron.code.ui.project;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.completion.java.compiler.CompilePriority;
+import com.tyron.completion.java.compiler.Parser;
+import com.tyron.completion.java.parse.CompilationInfo;
+import com.tyron.completion.java.provider.PruneMethodBodies;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Indexes the java files of a module so completion works as soon as the project is opened.
+ *
+ * Indexing runs as a pipeline of two stages. The files are parsed and their method bodies are
+ * pruned in parallel, each on its own javac task. As they complete, the pruned files are entered
+ * and analyzed in batches on the javac context of the module, which is not thread safe, while
+ * the remaining files are still being parsed.
+ */
+public class JavaModuleIndexer {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(JavaModuleIndexer.class);
+
+    /**
+     * How many files are entered at once, large enough that entering a batch is much cheaper
+     * than entering its files one at a time, small enough that the editor is not blocked for
+     * long while a batch holds the javac context.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private final JavaModule mModule;
+    private final ProjectManager.TaskListener mListener;
+
+    public JavaModuleIndexer(@NonNull JavaModule module,
+                             @NonNull ProjectManager.TaskListener listener) {
+        mModule = module;
+        mListener = listener;
+    }
+
+    public void index() throws InterruptedException {
+        CompilationInfo info = CompilationInfo.get(mModule);
+        if (info == null) {
+            return;
+        }
+        List<File> files = new ArrayList<>(mModule.getJavaFiles().values());
+        if (files.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "JavaModuleIndexer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<JavaFileObject> parsed = new ExecutorCompletionService<>(executor);
+            for (File file : files) {
+                parsed.submit(() -> parseAndPrune(file));
+            }
+
+            int total = files.size();
+            int parsedCount = 0;
+            int analyzedCount = 0;
+            List<JavaFileObject> batch = new ArrayList<>(BATCH_SIZE);
+            while (parsedCount < total) {
+                JavaFileObject fileObject = take(parsed);
+                parsedCount++;
+                if (fileObject != null) {
+                    batch.add(fileObject);
+                }
+                if (batch.size() < BATCH_SIZE && parsedCount < total) {
+                    continue;
+                }
+
+                mListener.onTaskStarted("Parsing java files (" + parsedCount + "/" + total + ")");
+                if (!batch.isEmpty()) {
+                    if (info.updateAllImmediately(batch, CompilePriority.BACKGROUND) == null) {
+                        sLogger.warning("Failed to analyze " + batch.size() + " files of " +
+                                        mModule.getName());
+                    }
+                    analyzedCount += batch.size();
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+                mListener.onTaskStarted("Analyzing java files (" + analyzedCount + "/" + total + ")");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        sLogger.info("Indexed " + files.size() + " java files of " + mModule.getName() + " in " +
+                     (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Parses the file and strips the statements inside its methods, they are not needed for
+     * indexing. When the file is opened in the editor, its contents are parsed again with the
+     * method bodies included.
+     */
+    @Nullable
+    private JavaFileObject parseAndPrune(File file) {
+        Parser parser = Parser.parseFileUncached(mModule.getProject(), file.toPath());
+        String pruned = new PruneMethodBodies(parser.task).scan(parser.root, 0L).toString();
+        return new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return pruned;
+            }
+        };
+    }
+
+    /**
+     * @return the next parsed file, or null if it could not be parsed
+     */
+    @Nullable
+    private static JavaFileObject take(CompletionService<JavaFileObject> parsed)
+            throws InterruptedException {
+        try {
+            return parsed.take().get();
+        } catch (ExecutionException e) {
+            sLogger.warning("Failed to parse file: " + e.getCause());
+            return null;
+        }
+    }
+}
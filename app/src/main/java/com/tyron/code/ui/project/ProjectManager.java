@@ -36,10 +36,7 @@ import com.tyron.code.ui.editor.log.AppLogFragment;
 import com.tyron.code.util.ProjectUtils;
 import com.tyron.common.logging.IdeLog;
 import com.tyron.common.util.DebouncerStore;
-import com.tyron.completion.java.compiler.Parser;
-import com.tyron.completion.java.parse.CompilationInfo;
 import com.tyron.completion.java.provider.CompletionEngine;
-import com.tyron.completion.java.provider.PruneMethodBodies;
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.completion.xml.task.InjectResourcesTask;
 import com.tyron.completion.xml.v2.events.XmlReparsedEvent;
@@ -67,9 +64,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 
-import javax.tools.JavaFileObject;
-import javax.tools.SimpleJavaFileObject;
-
 public class ProjectManager {
 
     public interface TaskListener {
@@ -113,15 +107,30 @@ public class ProjectManager {
                             boolean downloadLibs,
                             TaskListener listener,
                             ILogger logger) {
+        openProject(project, downloadLibs, false, listener, logger);
+    }
+
+    /**
+     * @param forceSync whether to run a Gradle sync even if the model saved with the project
+     *                  is still up to date
+     * @see ProjectModelSnapshot
+     */
+    public void openProject(Project project,
+                            boolean downloadLibs,
+                            boolean forceSync,
+                            TaskListener listener,
+                            ILogger logger) {
         ProgressManager.getInstance()
                 .runNonCancelableAsync(() -> doOpenProject(project,
                         downloadLibs,
+                        forceSync,
                         listener,
                         logger));
     }
 
     private void doOpenProject(Project project,
                                boolean downloadLibs,
+                               boolean forceSync,
                                TaskListener mListener,
                                ILogger logger) {
         mCurrentProject = project;
@@ -188,37 +197,34 @@ public class ProjectManager {
         BuildModule.getAndroidJar();
         BuildModule.getLambdaStubs();
 
-        GradleConnector gradleConnector = GradleConnector.newConnector();
-        gradleConnector.forProjectDirectory(mCurrentProject.getRootFile());
-        gradleConnector.useDistribution(URI.create("codeAssist"));
-
-        try (ProjectConnection projectConnection = gradleConnector.connect()) {
-            mListener.onTaskStarted("Build model");
-
-            // clears the logs
-            AppLogFragment.outputStream.write("\033[H\033[2J".getBytes());
-
-            ProgressListener progressListener =
-                    event -> mListener.onTaskStarted(event.getDisplayName());
-
-            BuildActionExecuter<ModelContainerV2> executer =
-                    projectConnection.action(new GetAndroidModelV2Action("debug"));
-            executer.addProgressListener(progressListener);
-            executer.setColorOutput(false);
-            executer.setStandardError(AppLogFragment.outputStream);
-            executer.setStandardOutput(AppLogFragment.outputStream);
-
-            GradleLaunchUtil.configureLauncher(executer);
-            GradleLaunchUtil.addCodeAssistInitScript(executer);
+        File projectRoot = mCurrentProject.getRootFile();
+        ProjectModelSnapshot snapshot = null;
+        if (forceSync) {
+            // a refresh that fails to sync must not leave the old model to be restored
+            ProjectModelSnapshot.delete(projectRoot);
+        } else {
+            snapshot = ProjectModelSnapshot.read(projectRoot);
+        }
 
-            ModelContainerV2 modelContainer = executer.run();
-            ModelContainerV2.ModelInfo appProject = modelContainer.getProject(":app", ":");
+        try {
+            AndroidModuleImpl module;
+            if (snapshot != null && snapshot.isUpToDate(projectRoot)) {
+                mListener.onTaskStarted("Restoring model");
+                module = snapshot.restore();
+            } else {
+                module = syncModel(mListener);
+                try {
+                    ProjectModelSnapshot.capture(projectRoot, module).write(projectRoot);
+                } catch (IOException e) {
+                    logger.warning("Failed to save the project model: " + e.getMessage());
+                }
+            }
 
             // remove the previous models
             mCurrentProject.clear();
-            buildModel(appProject, project);
+            mCurrentProject.addModule(module);
+            indexModule(module, mListener);
 
-            project.getModuleByName("app");
             mListener.onTaskStarted("Indexing resources");
             ResourceRepositoryManager.getProjectResources(project.getModuleByName(":app"));
 
@@ -245,7 +251,40 @@ public class ProjectManager {
         mListener.onComplete(project, true, "Index successful");
     }
 
-    private void buildModel(ModelContainerV2.ModelInfo modelInfo, Project currentProject) throws IOException {
+    /**
+     * Runs a Gradle sync and builds the app module from the resolved model
+     */
+    private AndroidModuleImpl syncModel(TaskListener listener) throws IOException {
+        GradleConnector gradleConnector = GradleConnector.newConnector();
+        gradleConnector.forProjectDirectory(mCurrentProject.getRootFile());
+        gradleConnector.useDistribution(URI.create("codeAssist"));
+
+        try (ProjectConnection projectConnection = gradleConnector.connect()) {
+            listener.onTaskStarted("Build model");
+
+            // clears the logs
+            AppLogFragment.outputStream.write("\033[H\033[2J".getBytes());
+
+            ProgressListener progressListener =
+                    event -> listener.onTaskStarted(event.getDisplayName());
+
+            BuildActionExecuter<ModelContainerV2> executer =
+                    projectConnection.action(new GetAndroidModelV2Action("debug"));
+            executer.addProgressListener(progressListener);
+            executer.setColorOutput(false);
+            executer.setStandardError(AppLogFragment.outputStream);
+            executer.setStandardOutput(AppLogFragment.outputStream);
+
+            GradleLaunchUtil.configureLauncher(executer);
+            GradleLaunchUtil.addCodeAssistInitScript(executer);
+
+            ModelContainerV2 modelContainer = executer.run();
+            ModelContainerV2.ModelInfo appProject = modelContainer.getProject(":app", ":");
+            return buildModel(appProject);
+        }
+    }
+
+    private AndroidModuleImpl buildModel(ModelContainerV2.ModelInfo modelInfo) {
         AndroidModuleImpl impl = new AndroidModuleImpl(modelInfo.getProjectDir());
 
         // de-structure model info fields
@@ -291,6 +330,8 @@ public class ProjectManager {
 
         Deque<GraphItem> queue = new LinkedList<>(compileDependencies);
         Set<GraphItem> visitedDependencies = new HashSet<>();
+        // added at once so their jars are indexed in parallel
+        List<CodeAssistLibrary> moduleLibraries = new ArrayList<>();
 
         while (!queue.isEmpty()) {
             GraphItem compileDependency = queue.removeFirst();
@@ -309,7 +350,7 @@ public class ProjectManager {
                     break;
                 case JAVA_LIBRARY:
                     if (artifact != null && artifact.exists()) {
-                        impl.addLibrary(CodeAssistLibrary.forJar(artifact));
+                        moduleLibraries.add(CodeAssistLibrary.forJar(artifact));
                     }
                     break;
                 case ANDROID_LIBRARY:
@@ -324,7 +365,7 @@ public class ProjectManager {
                     codeAssistAndroidLibrary.setSymbolFile(androidLibraryData.getSymbolFile());
                     codeAssistAndroidLibrary.setResStaticLibrary(androidLibraryData.getResStaticLibrary());
                     codeAssistAndroidLibrary.setResFolder(androidLibraryData.getResFolder());
-                    impl.addLibrary(codeAssistAndroidLibrary);
+                    moduleLibraries.add(codeAssistAndroidLibrary);
 
                     // TODO: add res index support
                     break;
@@ -341,38 +382,21 @@ public class ProjectManager {
             }
         }
 
-        currentProject.addModule(impl);
-        indexModule(impl);
+        impl.addLibraries(moduleLibraries);
+        return impl;
     }
 
     /**
      * Indexes each module so completion would work immediately
-     * <p>
-     * In-order to keep indexing as fast as possible, method bodies of each classes are removed.
-     * When the file is opened in the editor, its contents will be re-parsed with method bodies
-     * included.
+     *
+     * @see JavaModuleIndexer
      */
-    private void indexModule(Module module) throws IOException {
+    private void indexModule(Module module, TaskListener listener)
+            throws IOException, InterruptedException {
         module.open();
         module.index();
 
-        JavaModule javaModule = (JavaModule) module;
-        for (File value : javaModule.getJavaFiles().values()) {
-            CompilationInfo info = CompilationInfo.get(module.getProject(), value);
-            if (info == null) {
-                continue;
-            }
-            info.updateImmediately(new SimpleJavaFileObject(value.toURI(),
-                    JavaFileObject.Kind.SOURCE) {
-                @Override
-                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
-                    Parser parser = Parser.parseFile(module.getProject(), value.toPath());
-                    // During indexing, statements inside methods are not needed so
-                    // it is stripped to speed up the index process
-                    return new PruneMethodBodies(info.impl.getJavacTask()).scan(parser.root, 0L);
-                }
-            });
-        }
+        new JavaModuleIndexer((JavaModule) module, listener).index();
 
         KotlinEnvironment kotlinEnvironment = KotlinEnvironment.Companion.get(module);
     }
@@ -0,0 +1,358 @@
+package com.tyron.code.ui.project;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import com.tyron.builder.model.CodeAssistAndroidLibrary;
+import com.tyron.builder.model.CodeAssistLibrary;
+import com.tyron.builder.project.api.AndroidContentRoot;
+import com.tyron.builder.project.api.ContentRoot;
+import com.tyron.builder.project.impl.AndroidModuleImpl;
+import com.tyron.common.logging.IdeLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * The part of the Gradle model of a module that {@link ProjectManager} builds the module from,
+ * saved in the project so that opening it again does not need a Gradle sync.
+ *
+ * The snapshot is only used while its fingerprint matches, the fingerprint covers the build
+ * scripts and properties of the project and of the module, and the files of the resolved
+ * dependencies. Editing a build script or deleting a dependency from the Gradle caches
+ * therefore causes a sync.
+ */
+public class ProjectModelSnapshot {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(ProjectModelSnapshot.class);
+
+    /**
+     * Incremented when the content of the snapshot or how it is fingerprinted changes
+     */
+    private static final int VERSION = 1;
+
+    private static final String SNAPSHOT_PATH = ".gradle/codeassist/model.json";
+
+    private static final String[] PROJECT_BUILD_FILES = {
+            "settings.gradle",
+            "settings.gradle.kts",
+            "build.gradle",
+            "build.gradle.kts",
+            "gradle.properties",
+            "local.properties",
+            "gradle/libs.versions.toml",
+            "gradle/wrapper/gradle-wrapper.properties"
+    };
+
+    private static final String[] MODULE_BUILD_FILES = {
+            "build.gradle",
+            "build.gradle.kts",
+            "gradle.properties"
+    };
+
+    private static class ContentRootSnapshot {
+        @SerializedName("rootDirectory")
+        String rootDirectory;
+        @SerializedName("javaDirectories")
+        List<String> javaDirectories;
+        @SerializedName("resourceDirectories")
+        List<String> resourceDirectories;
+    }
+
+    private static class AndroidLibrarySnapshot {
+        @SerializedName("declaration")
+        String declaration;
+        @SerializedName("compileJarFiles")
+        List<String> compileJarFiles;
+        @SerializedName("publicResources")
+        String publicResources;
+        @SerializedName("symbolFile")
+        String symbolFile;
+        @SerializedName("resStaticLibrary")
+        String resStaticLibrary;
+        @SerializedName("resFolder")
+        String resFolder;
+    }
+
+    @SerializedName("version")
+    private int mVersion;
+    @SerializedName("fingerprint")
+    private String mFingerprint;
+    @SerializedName("moduleRoot")
+    private String mModuleRoot;
+    @SerializedName("name")
+    private String mName;
+    @SerializedName("namespace")
+    private String mNamespace;
+    @SerializedName("packageName")
+    private String mPackageName;
+    @SerializedName("contentRoots")
+    private List<ContentRootSnapshot> mContentRoots = new ArrayList<>();
+    @SerializedName("jarLibraries")
+    private List<String> mJarLibraries = new ArrayList<>();
+    @SerializedName("androidLibraries")
+    private List<AndroidLibrarySnapshot> mAndroidLibraries = new ArrayList<>();
+
+    /**
+     * Captures the model of a module that has just been built from a Gradle sync.
+     */
+    @NonNull
+    public static ProjectModelSnapshot capture(@NonNull File projectRoot,
+                                               @NonNull AndroidModuleImpl module) {
+        ProjectModelSnapshot snapshot = new ProjectModelSnapshot();
+        snapshot.mVersion = VERSION;
+        snapshot.mModuleRoot = module.getRootFile().getAbsolutePath();
+        snapshot.mName = module.getName();
+        snapshot.mNamespace = module.getNamespace();
+        snapshot.mPackageName = module.getPackageName();
+
+        for (ContentRoot contentRoot : module.getContentRoots()) {
+            if (!(contentRoot instanceof AndroidContentRoot)) {
+                continue;
+            }
+            AndroidContentRoot androidContentRoot = (AndroidContentRoot) contentRoot;
+            ContentRootSnapshot contentRootSnapshot = new ContentRootSnapshot();
+            contentRootSnapshot.rootDirectory = contentRoot.getRootDirectory().getAbsolutePath();
+            contentRootSnapshot.javaDirectories = toPaths(androidContentRoot.getJavaDirectories());
+            contentRootSnapshot.resourceDirectories =
+                    toPaths(androidContentRoot.getResourceDirectories());
+            snapshot.mContentRoots.add(contentRootSnapshot);
+        }
+
+        for (CodeAssistLibrary library : module.getCodeAssistLibraries()) {
+            if (library instanceof CodeAssistAndroidLibrary) {
+                CodeAssistAndroidLibrary androidLibrary = (CodeAssistAndroidLibrary) library;
+                AndroidLibrarySnapshot librarySnapshot = new AndroidLibrarySnapshot();
+                librarySnapshot.declaration = androidLibrary.getDeclaration();
+                librarySnapshot.compileJarFiles = toPaths(androidLibrary.getCompileJarFiles());
+                librarySnapshot.publicResources = toPath(androidLibrary.getPublicResources());
+                librarySnapshot.symbolFile = toPath(androidLibrary.getSymbolFile());
+                librarySnapshot.resStaticLibrary = toPath(androidLibrary.getResStaticLibrary());
+                librarySnapshot.resFolder = toPath(androidLibrary.getResFolder());
+                snapshot.mAndroidLibraries.add(librarySnapshot);
+            } else {
+                snapshot.mJarLibraries.add(library.getSourceFile().getAbsolutePath());
+            }
+        }
+
+        snapshot.mFingerprint = snapshot.computeFingerprint(projectRoot);
+        return snapshot;
+    }
+
+    /**
+     * @return the snapshot saved in the project, or null if there is none or it is unreadable
+     */
+    @Nullable
+    public static ProjectModelSnapshot read(@NonNull File projectRoot) {
+        File file = new File(projectRoot, SNAPSHOT_PATH);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            ProjectModelSnapshot snapshot = new Gson().fromJson(reader, ProjectModelSnapshot.class);
+            if (snapshot == null || snapshot.mVersion != VERSION) {
+                return null;
+            }
+            if (!snapshot.isComplete()) {
+                sLogger.warning("Ignoring the incomplete model snapshot " + file);
+                return null;
+            }
+            return snapshot;
+        } catch (IOException | JsonParseException e) {
+            sLogger.warning("Failed to read the model snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gson leaves the fields that are missing from the file null, a snapshot that was edited by
+     * hand or partially written must cause a sync rather than fail while restoring the module.
+     */
+    private boolean isComplete() {
+        if (mFingerprint == null || mModuleRoot == null || mContentRoots == null ||
+            mJarLibraries == null || mAndroidLibraries == null ||
+            mJarLibraries.contains(null)) {
+            return false;
+        }
+        for (ContentRootSnapshot contentRoot : mContentRoots) {
+            if (contentRoot == null || contentRoot.rootDirectory == null) {
+                return false;
+            }
+        }
+        for (AndroidLibrarySnapshot library : mAndroidLibraries) {
+            if (library == null || library.compileJarFiles == null ||
+                library.compileJarFiles.contains(null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void write(@NonNull File projectRoot) throws IOException {
+        File file = new File(projectRoot, SNAPSHOT_PATH);
+        Files.createDirectories(file.getParentFile().toPath());
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            new Gson().toJson(this, writer);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deletes the snapshot of the project so its next opening runs a Gradle sync
+     */
+    public static void delete(@NonNull File projectRoot) {
+        File file = new File(projectRoot, SNAPSHOT_PATH);
+        if (file.exists() && !file.delete()) {
+            sLogger.warning("Failed to delete the model snapshot " + file);
+        }
+    }
+
+    /**
+     * @return whether no build file and no dependency changed since the snapshot was captured
+     */
+    public boolean isUpToDate(@NonNull File projectRoot) {
+        return mFingerprint != null && mFingerprint.equals(computeFingerprint(projectRoot));
+    }
+
+    /**
+     * Creates the module as it was when the snapshot was captured.
+     */
+    @NonNull
+    public AndroidModuleImpl restore() {
+        AndroidModuleImpl impl = new AndroidModuleImpl(new File(mModuleRoot));
+        impl.setName(mName);
+        if (mNamespace != null) {
+            impl.setNamespace(mNamespace);
+        }
+        impl.setPackageName(mPackageName);
+
+        for (ContentRootSnapshot contentRootSnapshot : mContentRoots) {
+            AndroidContentRoot contentRoot =
+                    new AndroidContentRoot(new File(contentRootSnapshot.rootDirectory));
+            contentRoot.setJavaDirectories(toFiles(contentRootSnapshot.javaDirectories));
+            contentRoot.setResourceDirectories(toFiles(contentRootSnapshot.resourceDirectories));
+            impl.addContentRoot(contentRoot);
+        }
+
+        List<CodeAssistLibrary> libraries = new ArrayList<>();
+        for (String jar : mJarLibraries) {
+            libraries.add(CodeAssistLibrary.forJar(new File(jar)));
+        }
+        for (AndroidLibrarySnapshot librarySnapshot : mAndroidLibraries) {
+            CodeAssistAndroidLibrary library = new CodeAssistAndroidLibrary();
+            library.setDeclaration(librarySnapshot.declaration);
+            library.setSourceFile(null);
+            library.setCompileJarFiles(toFiles(librarySnapshot.compileJarFiles));
+            library.setPublicResources(toFile(librarySnapshot.publicResources));
+            library.setSymbolFile(toFile(librarySnapshot.symbolFile));
+            library.setResStaticLibrary(toFile(librarySnapshot.resStaticLibrary));
+            library.setResFolder(toFile(librarySnapshot.resFolder));
+            libraries.add(library);
+        }
+        impl.addLibraries(libraries);
+        return impl;
+    }
+
+    @NonNull
+    private String computeFingerprint(@NonNull File projectRoot) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(VERSION);
+        File moduleRoot = new File(mModuleRoot);
+        putBuildFiles(hasher, projectRoot, PROJECT_BUILD_FILES);
+        putBuildFiles(hasher, moduleRoot, MODULE_BUILD_FILES);
+
+        // the files of the dependencies are immutable once resolved, their size and
+        // modification time are enough to notice one has been deleted or resolved again
+        for (String jar : mJarLibraries) {
+            putDependencyFile(hasher, jar);
+        }
+        for (AndroidLibrarySnapshot library : mAndroidLibraries) {
+            for (String jar : library.compileJarFiles) {
+                putDependencyFile(hasher, jar);
+            }
+            putDependencyFile(hasher, library.publicResources);
+            putDependencyFile(hasher, library.symbolFile);
+            putDependencyFile(hasher, library.resStaticLibrary);
+            putDependencyFile(hasher, library.resFolder);
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putBuildFiles(Hasher hasher, File root, String[] paths) {
+        hasher.putString(root.getAbsolutePath(), StandardCharsets.UTF_8);
+        for (String path : paths) {
+            File file = new File(root, path);
+            hasher.putString(path, StandardCharsets.UTF_8);
+            if (!file.isFile()) {
+                hasher.putBoolean(false);
+                continue;
+            }
+            hasher.putBoolean(true);
+            try {
+                hasher.putBytes(Files.readAllBytes(file.toPath()));
+            } catch (IOException e) {
+                // an unreadable build file never matches the snapshot
+                hasher.putLong(System.nanoTime());
+            }
+        }
+    }
+
+    private static void putDependencyFile(Hasher hasher, @Nullable String path) {
+        if (path == null) {
+            hasher.putBoolean(false);
+            return;
+        }
+        File file = new File(path);
+        hasher.putString(path, StandardCharsets.UTF_8);
+        hasher.putBoolean(file.exists());
+        hasher.putLong(file.length());
+        hasher.putLong(file.lastModified());
+    }
+
+    @Nullable
+    private static String toPath(@Nullable File file) {
+        return file == null ? null : file.getAbsolutePath();
+    }
+
+    @NonNull
+    private static List<String> toPaths(@Nullable Collection<File> files) {
+        List<String> paths = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                paths.add(file.getAbsolutePath());
+            }
+        }
+        return paths;
+    }
+
+    @Nullable
+    private static File toFile(@Nullable String path) {
+        return path == null ? null : new File(path);
+    }
+
+    @NonNull
+    private static List<File> toFiles(@Nullable List<String> paths) {
+        List<File> files = new ArrayList<>();
+        if (paths != null) {
+            for (String path : paths) {
+                files.add(new File(path));
+            }
+        }
+        return files;
+    }
+}
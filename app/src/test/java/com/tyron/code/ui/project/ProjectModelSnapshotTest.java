@@ -0,0 +1,176 @@
+package com.tyron.code.ui.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tyron.builder.model.CodeAssistAndroidLibrary;
+import com.tyron.builder.model.CodeAssistLibrary;
+import com.tyron.builder.project.api.AndroidContentRoot;
+import com.tyron.builder.project.api.ContentRoot;
+import com.tyron.builder.project.impl.AndroidModuleImpl;
+import com.tyron.builder.project.util.LibraryIndexCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ProjectModelSnapshotTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mProjectRoot;
+    private File mModuleRoot;
+    private File mJar;
+    private File mLibraryJar;
+
+    @Before
+    public void setup() throws IOException {
+        // only index the jars in memory, the default cache lives in the application directory
+        LibraryIndexCache.setInstance(new LibraryIndexCache(null, ForkJoinPool.commonPool()));
+
+        mProjectRoot = mFolder.newFolder("project");
+        mModuleRoot = new File(mProjectRoot, "app");
+        write(new File(mProjectRoot, "settings.gradle"), "include ':app'");
+        write(new File(mProjectRoot, "build.gradle"), "");
+        write(new File(mModuleRoot, "build.gradle"), "plugins { id 'com.android.application' }");
+
+        mJar = createJar("library.jar");
+        mLibraryJar = createJar("classes.jar");
+    }
+
+    @After
+    public void tearDown() {
+        LibraryIndexCache.setInstance(null);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        createModule().write(mProjectRoot);
+
+        ProjectModelSnapshot snapshot = ProjectModelSnapshot.read(mProjectRoot);
+        assertNotNull(snapshot);
+        assertTrue(snapshot.isUpToDate(mProjectRoot));
+
+        AndroidModuleImpl module = snapshot.restore();
+        assertEquals(mModuleRoot.getAbsolutePath(), module.getRootFile().getAbsolutePath());
+        assertEquals("app", module.getName());
+        assertEquals("com.tyron.test", module.getPackageName());
+
+        Set<ContentRoot> contentRoots = module.getContentRoots();
+        assertEquals(1, contentRoots.size());
+        AndroidContentRoot contentRoot = (AndroidContentRoot) contentRoots.iterator().next();
+        assertEquals(Collections.singletonList(new File(mModuleRoot, "src/main/java")),
+                     contentRoot.getJavaDirectories());
+
+        List<CodeAssistLibrary> libraries = module.getCodeAssistLibraries();
+        assertEquals(2, libraries.size());
+        assertEquals(mJar.getAbsolutePath(), libraries.get(0).getSourceFile().getAbsolutePath());
+        CodeAssistAndroidLibrary library = (CodeAssistAndroidLibrary) libraries.get(1);
+        assertEquals("androidx.test:library:1.0", library.getDeclaration());
+        assertEquals(Collections.singletonList(mLibraryJar), library.getCompileJarFiles());
+    }
+
+    @Test
+    public void testChangedBuildScriptIsNotUpToDate() throws IOException {
+        createModule().write(mProjectRoot);
+
+        write(new File(mModuleRoot, "build.gradle"), "plugins { id 'com.android.library' }");
+
+        ProjectModelSnapshot snapshot = ProjectModelSnapshot.read(mProjectRoot);
+        assertNotNull(snapshot);
+        assertFalse(snapshot.isUpToDate(mProjectRoot));
+    }
+
+    @Test
+    public void testDeletedDependencyIsNotUpToDate() throws IOException {
+        createModule().write(mProjectRoot);
+
+        assertTrue(mLibraryJar.delete());
+
+        ProjectModelSnapshot snapshot = ProjectModelSnapshot.read(mProjectRoot);
+        assertNotNull(snapshot);
+        assertFalse(snapshot.isUpToDate(mProjectRoot));
+    }
+
+    @Test
+    public void testIncompleteSnapshotIsIgnored() throws IOException {
+        createModule().write(mProjectRoot);
+
+        File file = new File(mProjectRoot, ".gradle/codeassist/model.json");
+        JsonObject json = JsonParser.parseString(read(file)).getAsJsonObject();
+        json.getAsJsonArray("androidLibraries").get(0).getAsJsonObject()
+                .remove("compileJarFiles");
+        json.remove("moduleRoot");
+        write(file, json.toString());
+
+        assertNull(ProjectModelSnapshot.read(mProjectRoot));
+    }
+
+    @Test
+    public void testDeletedSnapshotIsNotRead() throws IOException {
+        createModule().write(mProjectRoot);
+
+        ProjectModelSnapshot.delete(mProjectRoot);
+
+        assertNull(ProjectModelSnapshot.read(mProjectRoot));
+    }
+
+    private ProjectModelSnapshot createModule() {
+        AndroidModuleImpl module = new AndroidModuleImpl(mModuleRoot);
+        module.setName("app");
+        module.setPackageName("com.tyron.test");
+
+        AndroidContentRoot contentRoot = new AndroidContentRoot(mModuleRoot);
+        contentRoot.setJavaDirectories(
+                Collections.singletonList(new File(mModuleRoot, "src/main/java")));
+        contentRoot.setResourceDirectories(
+                Collections.singletonList(new File(mModuleRoot, "src/main/res")));
+        module.addContentRoot(contentRoot);
+
+        CodeAssistAndroidLibrary library = new CodeAssistAndroidLibrary();
+        library.setDeclaration("androidx.test:library:1.0");
+        library.setCompileJarFiles(Collections.singletonList(mLibraryJar));
+        module.addLibraries(Arrays.asList(CodeAssistLibrary.forJar(mJar), library));
+
+        return ProjectModelSnapshot.capture(mProjectRoot, module);
+    }
+
+    private File createJar(String name) throws IOException {
+        File jar = mFolder.newFile(name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("com/tyron/test/Test.class"));
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
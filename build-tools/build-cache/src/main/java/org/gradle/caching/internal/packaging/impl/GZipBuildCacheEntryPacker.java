@@ -6,31 +6,93 @@ import org.gradle.caching.internal.origin.OriginReader;
 import org.gradle.caching.internal.origin.OriginWriter;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+/**
+ * Compresses the entries of the delegate packer with GZip, at a configurable level.
+ *
+ * With {@link #NO_COMPRESSION} entries are stored as they are. Unpacking detects whether an
+ * entry is compressed, so entries stored with any level can be loaded whatever the current one is.
+ */
 public class GZipBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    public static final int NO_COMPRESSION = Deflater.NO_COMPRESSION;
+    public static final int DEFAULT_COMPRESSION = Deflater.DEFAULT_COMPRESSION;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final BuildCacheEntryPacker delegate;
+    private final IntSupplier compressionLevel;
 
     public GZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate) {
+        this(delegate, () -> DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compressionLevel the level entries are packed with, {@link #NO_COMPRESSION},
+     * {@link #DEFAULT_COMPRESSION} or from 1 (fastest) to 9 (smallest)
+     */
+    public GZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate, IntSupplier compressionLevel) {
         this.delegate = delegate;
+        this.compressionLevel = compressionLevel;
     }
 
     @Override
     public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
-        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+        int level = compressionLevel.getAsInt();
+        if (level == NO_COMPRESSION) {
+            try (OutputStream bufferedOutput = new BufferedOutputStream(output, BUFFER_SIZE)) {
+                return delegate.pack(entity, snapshots, bufferedOutput, writeOrigin);
+            }
+        }
+        // The tar packer writes many small chunks, buffering them saves a call to the deflater for each
+        try (OutputStream gzipOutput = new BufferedOutputStream(new LevelGZIPOutputStream(output, level), BUFFER_SIZE)) {
             return delegate.pack(entity, snapshots, gzipOutput, writeOrigin);
         }
     }
 
     @Override
     public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
-        try (GZIPInputStream gzipInput = new GZIPInputStream(input)) {
-            return delegate.unpack(entity, gzipInput, readOrigin);
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, 2);
+        if (isGZipped(pushbackInput)) {
+            try (GZIPInputStream gzipInput = new GZIPInputStream(pushbackInput, BUFFER_SIZE)) {
+                return delegate.unpack(entity, gzipInput, readOrigin);
+            }
+        }
+        try (InputStream bufferedInput = new BufferedInputStream(pushbackInput, BUFFER_SIZE)) {
+            return delegate.unpack(entity, bufferedInput, readOrigin);
+        }
+    }
+
+    private static boolean isGZipped(PushbackInputStream input) throws IOException {
+        byte[] magic = new byte[2];
+        int read = 0;
+        while (read < magic.length) {
+            int count = input.read(magic, read, magic.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        input.unread(magic, 0, read);
+        return read == magic.length
+            && (magic[0] & 0xff) == (GZIPInputStream.GZIP_MAGIC & 0xff)
+            && (magic[1] & 0xff) == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+        LevelGZIPOutputStream(OutputStream output, int level) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(level);
         }
     }
-}
\ No newline at end of file
+}
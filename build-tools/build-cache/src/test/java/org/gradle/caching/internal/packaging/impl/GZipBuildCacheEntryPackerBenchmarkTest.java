@@ -0,0 +1,81 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import static org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPackerTest.LEVELS;
+import static org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPackerTest.createContent;
+import static org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPackerTest.load;
+import static org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPackerTest.store;
+import static org.junit.Assert.assertArrayEquals;
+
+import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPackerTest.ByteArrayPacker;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the store and load throughput of {@link GZipBuildCacheEntryPacker} for each
+ * compression level, on an entry resembling class and dex outputs.
+ *
+ * The benchmark is not part of the unit tests, it is run by the {@code benchmark} task and
+ * configured with system properties, e.g.
+ * <pre>
+ *     ./gradlew :build-tools:build-cache:benchmark \
+ *         -Dbuildcache.benchmark.size=67108864 -Dbuildcache.benchmark.iterations=10
+ * </pre>
+ * The results are written to the file given by {@code buildcache.benchmark.report}.
+ */
+public class GZipBuildCacheEntryPackerBenchmarkTest {
+
+    private static final int SIZE = Integer.getInteger("buildcache.benchmark.size", 4 * 1024 * 1024);
+    private static final int WARMUP = Integer.getInteger("buildcache.benchmark.warmup", 2);
+    private static final int ITERATIONS = Integer.getInteger("buildcache.benchmark.iterations", 3);
+    private static final File REPORT = new File(System.getProperty(
+        "buildcache.benchmark.report", "build/reports/benchmarks/gzip-packer.txt"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void benchmark() throws IOException {
+        byte[] content = createContent(SIZE);
+        File entry = folder.newFile("entry");
+        List<String> report = new ArrayList<>();
+        report.add(String.format(Locale.ROOT, "%-8s %12s %14s %14s", "level", "size", "store MB/s", "load MB/s"));
+        for (int level : LEVELS) {
+            ByteArrayPacker delegate = new ByteArrayPacker(content);
+            GZipBuildCacheEntryPacker packer = new GZipBuildCacheEntryPacker(delegate, () -> level);
+            for (int i = 0; i < WARMUP; i++) {
+                store(packer, entry);
+                load(packer, entry);
+            }
+            long storeNanos = 0;
+            long loadNanos = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                store(packer, entry);
+                storeNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                load(packer, entry);
+                loadNanos += System.nanoTime() - start;
+            }
+            assertArrayEquals(content, delegate.unpacked);
+            report.add(String.format(Locale.ROOT, "%-8d %12d %14.1f %14.1f",
+                level, entry.length(), throughput(storeNanos), throughput(loadNanos)));
+        }
+
+        Files.createDirectories(REPORT.getAbsoluteFile().getParentFile().toPath());
+        Files.write(REPORT.toPath(), report, StandardCharsets.UTF_8);
+    }
+
+    private static double throughput(long nanos) {
+        return (double) SIZE * ITERATIONS / (1024 * 1024) / (nanos / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,163 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks the entries {@link GZipBuildCacheEntryPacker} stores for each compression level, on an
+ * entry resembling class and dex outputs.
+ */
+public class GZipBuildCacheEntryPackerTest {
+
+    private static final int SIZE = 256 * 1024;
+
+    static final int[] LEVELS = {
+        GZipBuildCacheEntryPacker.NO_COMPRESSION,
+        1,
+        GZipBuildCacheEntryPacker.DEFAULT_COMPRESSION,
+        9
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storesUncompressedEntriesWithoutCompression() throws IOException {
+        byte[] content = createContent(SIZE);
+        File entry = folder.newFile("entry");
+        store(new GZipBuildCacheEntryPacker(new ByteArrayPacker(content), () -> GZipBuildCacheEntryPacker.NO_COMPRESSION), entry);
+
+        assertArrayEquals(content, Files.readAllBytes(entry.toPath()));
+    }
+
+    @Test
+    public void compressesEntriesWithOtherLevels() throws IOException {
+        byte[] content = createContent(SIZE);
+        File entry = folder.newFile("entry");
+        long fastestSize = 0;
+        for (int level : new int[] {1, GZipBuildCacheEntryPacker.DEFAULT_COMPRESSION, 9}) {
+            store(new GZipBuildCacheEntryPacker(new ByteArrayPacker(content), () -> level), entry);
+
+            byte[] stored = Files.readAllBytes(entry.toPath());
+            assertEquals(0x1f, stored[0] & 0xff);
+            assertEquals(0x8b, stored[1] & 0xff);
+            assertTrue("level " + level + " stored " + stored.length + " bytes", stored.length < SIZE / 2);
+            if (level == 1) {
+                fastestSize = stored.length;
+            } else {
+                assertTrue("level " + level + " stored " + stored.length + " bytes", stored.length <= fastestSize);
+            }
+        }
+    }
+
+    @Test
+    public void loadsEntriesStoredWithAnyLevel() throws IOException {
+        byte[] content = createContent(SIZE);
+        File entry = folder.newFile("entry");
+        for (int storeLevel : LEVELS) {
+            store(new GZipBuildCacheEntryPacker(new ByteArrayPacker(content), () -> storeLevel), entry);
+            for (int loadLevel : LEVELS) {
+                ByteArrayPacker delegate = new ByteArrayPacker(content);
+                load(new GZipBuildCacheEntryPacker(delegate, () -> loadLevel), entry);
+                assertArrayEquals(content, delegate.unpacked);
+            }
+        }
+    }
+
+    static void store(BuildCacheEntryPacker packer, File entry) throws IOException {
+        try (OutputStream output = new FileOutputStream(entry)) {
+            packer.pack(null, Collections.emptyMap(), output, null);
+        }
+    }
+
+    static void load(BuildCacheEntryPacker packer, File entry) throws IOException {
+        try (InputStream input = new FileInputStream(entry)) {
+            packer.unpack(null, input, null);
+        }
+    }
+
+    /**
+     * Creates content that compresses about as well as class files, names and signatures
+     * that repeat mixed with constants that do not.
+     */
+    static byte[] createContent(int size) {
+        String[] names = {
+            "Ljava/lang/Object;", "Ljava/lang/String;", "<init>", "()V", "Landroid/view/View;",
+            "getContext", "Landroidx/appcompat/app/AppCompatActivity;", "onCreate", "(Landroid/os/Bundle;)V"
+        };
+        Random random = new Random(0);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(size);
+        byte[] constants = new byte[16];
+        while (output.size() < size) {
+            byte[] name = names[random.nextInt(names.length)].getBytes(StandardCharsets.UTF_8);
+            output.write(name, 0, name.length);
+            random.nextBytes(constants);
+            output.write(constants, 0, random.nextInt(constants.length));
+        }
+        byte[] content = output.toByteArray();
+        return content.length == size ? content : Arrays.copyOf(content, size);
+    }
+
+    /**
+     * Stands in for the tar packer, writing the content in records of the size of a tar block.
+     */
+    static class ByteArrayPacker implements BuildCacheEntryPacker {
+        private static final int RECORD_SIZE = 512;
+
+        private final byte[] content;
+        byte[] unpacked;
+
+        ByteArrayPacker(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+            for (int offset = 0; offset < content.length; offset += RECORD_SIZE) {
+                output.write(content, offset, Math.min(RECORD_SIZE, content.length - offset));
+            }
+            return new PackResult(1);
+        }
+
+        @Override
+        public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+            byte[] unpacked = new byte[content.length];
+            int read = 0;
+            while (read < unpacked.length) {
+                int count = input.read(unpacked, read, Math.min(RECORD_SIZE, unpacked.length - read));
+                if (count < 0) {
+                    throw new IOException("Unexpected end of entry");
+                }
+                read += count;
+            }
+            this.unpacked = unpacked;
+            return new UnpackResult(new OriginMetadata("test", Duration.ZERO), 1, Collections.emptyMap());
+        }
+    }
+}
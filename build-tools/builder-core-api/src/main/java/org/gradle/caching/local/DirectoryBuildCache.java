@@ -5,6 +5,8 @@ import org.gradle.caching.configuration.AbstractBuildCache;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.zip.Deflater;
+
 /**
  * Configuration object for the local directory build cache.
  *
@@ -13,6 +15,7 @@ import org.jetbrains.annotations.Nullable;
 public class DirectoryBuildCache extends AbstractBuildCache {
     private Object directory;
     private int removeUnusedEntriesAfterDays = 7;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
 
     /**
      * Returns the directory to use to store the build cache.
@@ -53,4 +56,27 @@ public class DirectoryBuildCache extends AbstractBuildCache {
         }
         this.removeUnusedEntriesAfterDays = removeUnusedEntriesAfterDays;
     }
+
+    /**
+     * Returns the level entries are compressed with. Defaults to {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the level entries are compressed with, from 1 (fastest) to 9 (smallest), or
+     * {@link Deflater#DEFAULT_COMPRESSION}. Entries are stored uncompressed with
+     * {@link Deflater#NO_COMPRESSION}, which is the fastest when the CPU is slower than the disk.
+     *
+     * Entries stored with another level can still be loaded. Entries are packed once for the local
+     * and the remote cache, so while a remote cache is pushed to they are compressed with the
+     * default level and this level is ignored.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Directory build cache compression level must be between 0 and 9, or -1 for the default level.");
+        }
+        this.compressionLevel = compressionLevel;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.HashCode;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A {@link FileHasher} that remembers the hash of each file along with its length and
+ * modification time, so that a file that did not change is not read again, even by a later
+ * daemon.
+ */
+public class CachingFileHasher implements FileHasher {
+    /**
+     * Files modified this recently are hashed but not cached, as a write within the resolution
+     * of the file system timestamps would not change the modification time of the file.
+     */
+    private static final long RACY_TIMESTAMP_MILLIS = 2000;
+
+    private final FileHasher delegate;
+    private final PersistentIndexedCache<String, FileInfo> cache;
+    private final StringInterner stringInterner;
+    private final FileHasherStatistics.Collector statisticsCollector;
+
+    public CachingFileHasher(
+        FileHasher delegate,
+        CrossBuildFileHashCache store,
+        StringInterner stringInterner,
+        String cacheName,
+        int inMemorySize,
+        FileHasherStatistics.Collector statisticsCollector
+    ) {
+        this.delegate = delegate;
+        this.cache = store.createCache(PersistentIndexedCacheParameters.of(cacheName, String.class, new FileInfoSerializer()), inMemorySize, true);
+        this.stringInterner = stringInterner;
+        this.statisticsCollector = statisticsCollector;
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        return hash(file, file.length(), file.lastModified());
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        String absolutePath = file.getAbsolutePath();
+        FileInfo info = cache.getIfPresent(absolutePath);
+        if (info != null && info.length == length && info.lastModified == lastModified) {
+            return info.hash;
+        }
+
+        HashCode hash = delegate.hash(file, length, lastModified);
+        statisticsCollector.reportFileHashed(length);
+        if (System.currentTimeMillis() - lastModified >= RACY_TIMESTAMP_MILLIS) {
+            cache.put(stringInterner.intern(absolutePath), new FileInfo(hash, length, lastModified));
+        }
+        return hash;
+    }
+
+    static class FileInfo {
+        private final HashCode hash;
+        private final long length;
+        private final long lastModified;
+
+        FileInfo(HashCode hash, long length, long lastModified) {
+            this.hash = hash;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static class FileInfoSerializer extends AbstractSerializer<FileInfo> {
+        private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
+
+        @Override
+        public FileInfo read(Decoder decoder) throws IOException {
+            HashCode hash = hashCodeSerializer.read(decoder);
+            long length = decoder.readLong();
+            long lastModified = decoder.readLong();
+            return new FileInfo(hash, length, lastModified);
+        }
+
+        @Override
+        public void write(Encoder encoder, FileInfo value) throws IOException {
+            hashCodeSerializer.write(encoder, value.hash);
+            encoder.writeLong(value.length);
+            encoder.writeLong(value.lastModified);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.api.logging.configuration.ShowStacktrace;
+import org.gradle.caching.configuration.BuildCache;
 import org.gradle.caching.configuration.internal.BuildCacheServiceRegistration;
 import org.gradle.caching.configuration.internal.DefaultBuildCacheConfiguration;
 import org.gradle.caching.configuration.internal.DefaultBuildCacheServiceRegistration;
@@ -100,10 +101,23 @@ public final class BuildCacheServices extends AbstractPluginServiceRegistry {
                     TarPackerFileSystemSupport fileSystemSupport,
                     FileSystem fileSystem,
                     StreamHasher fileHasher,
-                    StringInterner stringInterner
+                    StringInterner stringInterner,
+                    BuildCacheConfigurationInternal buildCacheConfiguration
             ) {
+                // the level is read when packing as the configuration is set by the settings script
                 return new GZipBuildCacheEntryPacker(
-                        new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                        new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner),
+                        () -> getCompressionLevel(buildCacheConfiguration));
+            }
+
+            private int getCompressionLevel(BuildCacheConfigurationInternal buildCacheConfiguration) {
+                // an entry is packed once and stored in both caches, the compression level of the
+                // local cache must not change the entries other builds load from the remote cache
+                BuildCache remote = buildCacheConfiguration.getRemote();
+                if (remote != null && remote.isEnabled() && remote.isPush()) {
+                    return GZipBuildCacheEntryPacker.DEFAULT_COMPRESSION;
+                }
+                return buildCacheConfiguration.getLocal().getCompressionLevel();
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -2,8 +2,10 @@ package org.gradle.internal.service.scopes;
 
 import com.google.common.hash.HashCode;
 import org.gradle.StartParameter;
+import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
 import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
@@ -38,7 +40,9 @@ import org.gradle.internal.fingerprint.impl.DefaultFileCollectionSnapshotter;
 import org.gradle.internal.fingerprint.impl.DefaultGenericFileTreeSnapshotter;
 import org.gradle.internal.fingerprint.impl.DefaultInputFingerprinter;
 import org.gradle.internal.fingerprint.impl.FileCollectionFingerprinterRegistrations;
+import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.service.ServiceRegistration;
@@ -124,9 +128,9 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     }
 
     private static class GlobalScopeServices {
-//        FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
-//            return new FileHasherStatistics.Collector();
-//        }
+        FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
+            return new FileHasherStatistics.Collector();
+        }
 
         DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCollector() {
             return new DirectorySnapshotterStatistics.Collector();
@@ -138,18 +142,14 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
             return new CrossBuildFileHashCache(scopedCache, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
         }
 
-//        FileHasher createCachingFileHasher(
-//                FileHasherStatistics.Collector statisticsCollector,
-//                CrossBuildFileHashCache fileStore,
-//                FileSystem fileSystem,
-//                GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
-//                StreamHasher streamHasher,
-//                StringInterner stringInterner
-//        ) {
-//            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
-//            fileTimeStampInspector.attach(fileHasher);
-//            return fileHasher;
-//        }
+        FileHasher createCachingFileHasher(
+                FileHasherStatistics.Collector statisticsCollector,
+                CrossBuildFileHashCache fileStore,
+                StreamHasher streamHasher,
+                StringInterner stringInterner
+        ) {
+            return new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, "fileHashes", FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+        }
 
         LocationsWrittenByCurrentBuild createLocationsUpdatedByCurrentBuild(ListenerManager listenerManager) {
             LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild = new LocationsWrittenByCurrentBuild();
@@ -1,5 +1,6 @@
 package org.gradle.internal.hash;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.hash.HashCode;
 
 import java.io.File;
@@ -8,16 +9,48 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class DefaultFileHasher implements FileHasher {
+    /**
+     * Files at least this large are memory-mapped instead of being read through a buffer.
+     * Mapping has a fixed cost that only pays off once the file no longer fits in a few reads.
+     */
+    private static final long MAPPED_HASHING_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Largest region mapped at once, so that hashing a large jar does not reserve its
+     * whole size in the address space of the process.
+     */
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
     private final StreamHasher streamHasher;
+    private final long mappedHashingThreshold;
+    private final long mappedRegionSize;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, MAPPED_HASHING_THRESHOLD, MAPPED_REGION_SIZE);
+    }
+
+    @VisibleForTesting
+    DefaultFileHasher(StreamHasher streamHasher, long mappedHashingThreshold, long mappedRegionSize) {
         this.streamHasher = streamHasher;
+        this.mappedHashingThreshold = mappedHashingThreshold;
+        this.mappedRegionSize = mappedRegionSize;
     }
 
     @Override
     public HashCode hash(File file) {
+        return hash(file, file.length());
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        return hash(file, length);
+    }
+
+    private HashCode hash(File file, long length) {
         InputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
@@ -25,7 +58,14 @@ public class DefaultFileHasher implements FileHasher {
             throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
         }
         try {
+            // Mapped hashing produces the same hash as the stream hasher, which is still what
+            // hashes the outputs unpacked from the build cache
+            if (length >= mappedHashingThreshold && streamHasher instanceof DefaultStreamHasher) {
+                return hashMapped(((FileInputStream) inputStream).getChannel());
+            }
             return streamHasher.hash(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s'.", file), e);
         } finally {
             try {
                 inputStream.close();
@@ -35,8 +75,16 @@ public class DefaultFileHasher implements FileHasher {
         }
     }
 
-    @Override
-    public HashCode hash(File file, long length, long lastModified) {
-        return hash(file);
+    private HashCode hashMapped(FileChannel channel) throws IOException {
+        PrimitiveHasher hasher = Hashes.newPrimitiveHasher();
+        hasher.putHash(DefaultStreamHasher.SIGNATURE);
+        // The size is read again as the file may have changed since it was stat'ed
+        long size = channel.size();
+        for (long position = 0; position < size; position += mappedRegionSize) {
+            long regionSize = Math.min(mappedRegionSize, size - position);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+            hasher.putBytes(region);
+        }
+        return hasher.hash();
     }
-}
\ No newline at end of file
+}
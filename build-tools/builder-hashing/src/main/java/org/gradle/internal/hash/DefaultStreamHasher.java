@@ -12,7 +12,7 @@ import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
-    private static final HashCode SIGNATURE = Hashes.signature(DefaultStreamHasher.class);
+    static final HashCode SIGNATURE = Hashes.signature(DefaultStreamHasher.class);
 
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
 
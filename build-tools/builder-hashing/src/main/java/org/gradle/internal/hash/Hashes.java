@@ -8,6 +8,7 @@ import com.google.common.hash.Hashing;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 public class Hashes {
@@ -62,6 +63,11 @@ public class Hashes {
                 hasher.putBytes(bytes, off, len);
             }
 
+            @Override
+            public void putBytes(ByteBuffer buffer) {
+                hasher.putBytes(buffer);
+            }
+
             @Override
             public void putByte(byte value) {
                 hasher.putByte(value);
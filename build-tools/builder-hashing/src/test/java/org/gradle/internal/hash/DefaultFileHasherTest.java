@@ -0,0 +1,82 @@
+package org.gradle.internal.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.common.hash.HashCode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class DefaultFileHasherTest {
+
+    private static final int REGION_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DefaultStreamHasher streamHasher = new DefaultStreamHasher();
+
+    // maps every file, in regions small enough for a test file to span several of them
+    private final DefaultFileHasher mappedHasher = new DefaultFileHasher(streamHasher, 0, REGION_SIZE);
+
+    @Test
+    public void hashesEmptyFileLikeStreamHasher() throws IOException {
+        assertSameHash(createFile(0));
+    }
+
+    @Test
+    public void hashesSmallFileLikeStreamHasher() throws IOException {
+        assertSameHash(createFile(100));
+    }
+
+    @Test
+    public void hashesFileOfSeveralRegionsLikeStreamHasher() throws IOException {
+        assertSameHash(createFile(REGION_SIZE * 3 + 17));
+        assertSameHash(createFile(REGION_SIZE * 2));
+    }
+
+    @Test
+    public void hashesLargeFileLikeStreamHasherWithDefaultThreshold() throws IOException {
+        File file = createFile(2 * 1024 * 1024 + 1);
+        assertEquals(streamHash(file), new DefaultFileHasher(streamHasher).hash(file));
+    }
+
+    @Test
+    public void differentContentHashesDifferently() throws IOException {
+        File file = createFile(REGION_SIZE + 1);
+        HashCode before = mappedHasher.hash(file);
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        content[REGION_SIZE]++;
+        Files.write(file.toPath(), content);
+
+        assertNotEquals(before, mappedHasher.hash(file));
+        assertSameHash(file);
+    }
+
+    private void assertSameHash(File file) throws IOException {
+        assertEquals(streamHash(file), mappedHasher.hash(file));
+    }
+
+    private HashCode streamHash(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            return streamHasher.hash(input);
+        }
+    }
+
+    private File createFile(int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = folder.newFile("file-" + size);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
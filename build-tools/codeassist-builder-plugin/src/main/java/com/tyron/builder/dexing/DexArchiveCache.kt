@@ -0,0 +1,198 @@
+package com.tyron.builder.dexing
+
+import com.google.common.hash.Hashing
+import org.gradle.api.logging.Logging
+import java.io.File
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A cache of the dex archives of library jars, shared by every project built on the device.
+ *
+ * Entries are keyed by the content hash of the jar and by everything else that affects its dex
+ * output, see [computeKey], so a jar used by several projects is only dexed once. An entry holds
+ * the dex archive of each bucket of the jar and a manifest of those archives. The least recently
+ * used entries are evicted once the cache grows over [maxSizeBytes].
+ *
+ * The cache is used by the dex archive builder task for the external libraries it dexes itself,
+ * which happens when dexing external libraries in artifact transforms is disabled or when their
+ * classes are altered through the variant API. It is not used by
+ * [com.tyron.builder.gradle.internal.dependency.BaseDexingTransform]: the libraries it dexes are
+ * immutable artifacts of external modules, whose transform outputs Gradle already keeps in its
+ * own cache under the Gradle user home and shares between projects.
+ */
+class DexArchiveCache(private val cacheDir: File, private val maxSizeBytes: Long) {
+
+    /**
+     * Copies the dex archives of the entry to the outputs of the buckets, in bucket order.
+     *
+     * Synchronized with [evictIfNeeded] so an entry is not deleted while it is copied. An entry
+     * whose manifest lists an archive that is missing, e.g. because another process is evicting
+     * it, is not restored.
+     *
+     * @return false if there is no complete entry for the key, in which case the outputs are left
+     * untouched
+     */
+    @Synchronized
+    fun restore(key: String, outputs: List<File>): Boolean {
+        val entry = cacheDir.resolve(key)
+        val manifest = entry.resolve(MANIFEST)
+        val archives = readManifest(manifest, outputs.size) ?: return false
+        if (archives.any { !entry.resolve("$it.jar").isFile }) {
+            logger.info("Ignoring incomplete dex archive $key in the cache")
+            return false
+        }
+        try {
+            // buckets without classes have no dex archive
+            archives.forEach { bucketId ->
+                val output = outputs[bucketId]
+                output.parentFile.mkdirs()
+                Files.copy(
+                    entry.resolve("$bucketId.jar").toPath(),
+                    output.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING
+                )
+            }
+        } catch (e: IOException) {
+            logger.warn("Unable to restore dex archive $key from the cache: ${e.message}")
+            outputs.forEach { it.delete() }
+            return false
+        }
+        manifest.setLastModified(System.currentTimeMillis())
+        return true
+    }
+
+    /**
+     * Reads the ids of the buckets that have a dex archive from the manifest of an entry.
+     *
+     * @return null if the manifest is missing, unreadable or written for another number of buckets
+     */
+    private fun readManifest(manifest: File, numberOfBuckets: Int): List<Int>? {
+        val lines = try {
+            manifest.readLines(StandardCharsets.UTF_8)
+        } catch (e: IOException) {
+            return null
+        }
+        if (lines.firstOrNull()?.toIntOrNull() != numberOfBuckets) {
+            return null
+        }
+        val archives = lines.drop(1).map { it.toIntOrNull() ?: return null }
+        return archives.takeIf { ids -> ids.all { it in 0 until numberOfBuckets } }
+    }
+
+    /**
+     * Stores the dex archives of the buckets of a jar, in bucket order. Does nothing if the key is
+     * already cached.
+     */
+    fun store(key: String, outputs: List<File>) {
+        val entry = cacheDir.resolve(key)
+        if (entry.resolve(MANIFEST).isFile) {
+            return
+        }
+        try {
+            Files.createDirectories(cacheDir.toPath())
+            // written to a temporary directory first so a concurrent build never restores a
+            // partial entry
+            val temp = Files.createTempDirectory(cacheDir.toPath(), TEMP_PREFIX).toFile()
+            try {
+                val archives = outputs.indices.filter { outputs[it].isFile }
+                archives.forEach { bucketId ->
+                    Files.copy(outputs[bucketId].toPath(), temp.resolve("$bucketId.jar").toPath())
+                }
+                // the number of buckets first, then the buckets that have a dex archive
+                temp.resolve(MANIFEST).writeText(
+                    (listOf(outputs.size) + archives).joinToString("\n"),
+                    StandardCharsets.UTF_8
+                )
+                publish(temp, entry)
+            } finally {
+                if (temp.exists()) {
+                    temp.deleteRecursively()
+                }
+            }
+        } catch (e: IOException) {
+            logger.warn("Unable to store dex archive $key in the cache: ${e.message}")
+            return
+        }
+        evictIfNeeded()
+    }
+
+    @Synchronized
+    private fun publish(temp: File, entry: File) {
+        if (entry.exists() && !entry.resolve(MANIFEST).isFile) {
+            // left over by an eviction that did not complete
+            entry.deleteRecursively()
+        }
+        try {
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: IOException) {
+            // fine if another build stored the same entry in the meantime
+            if (!entry.resolve(MANIFEST).isFile) {
+                throw e
+            }
+        }
+    }
+
+    /** Deletes the least recently used entries until the cache fits in [maxSizeBytes]. */
+    @Synchronized
+    fun evictIfNeeded() {
+        val entries = cacheDir.listFiles { file ->
+            file.isDirectory && !file.name.startsWith(TEMP_PREFIX)
+        } ?: return
+        val sizes = entries.associateWith { entry ->
+            entry.listFiles()?.sumOf { it.length() } ?: 0L
+        }
+        var totalSize = sizes.values.sum()
+        if (totalSize <= maxSizeBytes) {
+            return
+        }
+        for (entry in entries.sortedBy { it.resolve(MANIFEST).lastModified() }) {
+            if (totalSize <= maxSizeBytes) {
+                break
+            }
+            if (entry.deleteRecursively()) {
+                totalSize -= sizes.getValue(entry)
+                logger.debug("Evicted dex archive ${entry.name} from the cache")
+            }
+        }
+    }
+
+    companion object {
+
+        /** Incremented when the layout of the cache or the way dex archives are built changes. */
+        private const val VERSION = 2
+
+        const val DEFAULT_MAX_SIZE_BYTES = 512L * 1024 * 1024
+
+        /** Written last, lists the buckets of the entry and marks the entry as complete. */
+        internal const val MANIFEST = "manifest"
+        private const val TEMP_PREFIX = "tmp-"
+
+        private val logger = Logging.getLogger(DexArchiveCache::class.java)
+
+        private val instances = ConcurrentHashMap<File, DexArchiveCache>()
+
+        /** Returns the cache stored in the given directory, shared by every build of the process. */
+        @JvmStatic
+        fun getInstance(cacheDir: File): DexArchiveCache =
+            instances.computeIfAbsent(cacheDir.absoluteFile) {
+                DexArchiveCache(it, DEFAULT_MAX_SIZE_BYTES)
+            }
+
+        /**
+         * Computes the key of the dex archives of a jar.
+         *
+         * @param jarHash the hash of the content of the jar
+         * @param dexingFingerprint identifies the dexing options and, when desugaring, the
+         * classpath the jar is desugared against
+         */
+        @JvmStatic
+        fun computeKey(jarHash: String, dexingFingerprint: String): String =
+            Hashing.sha256()
+                .hashString("$VERSION:$jarHash:$dexingFingerprint", StandardCharsets.UTF_8)
+                .toString()
+    }
+}
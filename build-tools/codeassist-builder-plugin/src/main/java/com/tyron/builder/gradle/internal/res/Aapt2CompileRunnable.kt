@@ -3,8 +3,8 @@ package com.tyron.builder.gradle.internal.res
 import com.android.ide.common.resources.CompileResourceRequest
 import com.tyron.builder.gradle.internal.LoggerWrapper
 import com.tyron.builder.gradle.internal.services.Aapt2Input
-import com.tyron.builder.gradle.internal.services.getLeasingAapt2
-import com.tyron.builder.internal.aapt.v2.Aapt2Exception
+import com.tyron.builder.gradle.internal.services.PartialInProcessResourceProcessor
+import com.tyron.builder.gradle.internal.services.getAapt2DaemonManager
 import org.gradle.api.logging.Logging
 import org.gradle.api.provider.ListProperty
 import org.gradle.api.provider.Property
@@ -35,19 +35,19 @@ fun runAapt2Compile(
 ) {
     val logger = Logging.getLogger(Aapt2CompileRunnable::class.java)
     val loggerWrapper = LoggerWrapper(logger)
-    val daemon = aapt2Input.getLeasingAapt2()
     val errorFormatMode = aapt2Input.buildService.get().parameters.errorFormatMode.get()
-    requests.forEach { request ->
-        try {
-            daemon.compile(request, loggerWrapper)
-        } catch (exception: Aapt2Exception) {
-            throw rewriteCompileException(
-                exception,
-                request,
-                errorFormatMode,
-                enableBlame,
-                logger
-            )
-        }
+    // the whole bucket is compiled on one daemon, leased once
+    aapt2Input.getAapt2DaemonManager().compileBatch(
+        requests,
+        loggerWrapper,
+        wrap = ::PartialInProcessResourceProcessor
+    ) { request, exception ->
+        rewriteCompileException(
+            exception,
+            request,
+            errorFormatMode,
+            enableBlame,
+            logger
+        )
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.android.SdkConstants
 import com.android.annotations.concurrency.GuardedBy
 import com.android.utils.ILogger
 import com.google.common.io.Closer
+import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.tyron.builder.gradle.internal.LoggerWrapper
 import com.tyron.builder.gradle.internal.workeractions.WorkerActionServiceRegistry
 import com.tyron.builder.gradle.options.ProjectOptions
@@ -21,10 +22,11 @@ import org.gradle.api.services.BuildService
 import org.gradle.api.services.BuildServiceParameters
 import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.Internal
-import java.io.Closeable
 import java.io.IOException
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.ScheduledFuture
@@ -65,16 +67,17 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
     AutoCloseable {
 
     private val registeredServices = mutableSetOf<Aapt2DaemonServiceKey>()
-    private val services = mutableMapOf<Aapt2DaemonServiceKey, Aapt2DaemonManager>()
     private val closer = Closer.create()
     private val logger: ILogger = LoggerWrapper.getLogger(this.javaClass)
 
     fun getLeasingAapt2(aapt2Input: Aapt2Input) : Aapt2 {
-        val manager = getManager(Aapt2DaemonServiceKey(aapt2Input.version.get()), getAapt2ExecutablePath(aapt2Input))
-        val leasingAapt2 = manager.leasingAapt2Daemon
+        val leasingAapt2 = getAapt2DaemonManager(aapt2Input).leasingAapt2Daemon
         return PartialInProcessResourceProcessor(leasingAapt2)
     }
 
+    fun getAapt2DaemonManager(aapt2Input: Aapt2Input): Aapt2DaemonManager =
+        getManager(Aapt2DaemonServiceKey(aapt2Input.version.get()), getAapt2ExecutablePath(aapt2Input))
+
     @Synchronized
     fun registerAaptService(
         aapt2Version: String,
@@ -89,9 +92,14 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
         return key
     }
 
-    @Synchronized
+    /**
+     * The managers are shared by every build of the process and are not shut down when this
+     * service is closed, so the next build reuses the daemons that are already running. Idle
+     * daemons are still shut down by [Aapt2DaemonManagerMaintainer].
+     */
     private fun getManager(key: Aapt2DaemonServiceKey, aaptExecutablePath: Path) : Aapt2DaemonManager {
-        return services.getOrPut(key) {
+        return sharedManagers.computeIfAbsent(SharedManagerKey(key, aaptExecutablePath)) {
+            val maxDaemons = parameters.maxAapt2Daemons.get()
             Aapt2DaemonManager(
                 logger = logger,
                 daemonFactory = { displayId ->
@@ -104,9 +112,10 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
                 },
                 expiryTime = daemonExpiryTimeSeconds,
                 expiryTimeUnit = TimeUnit.SECONDS,
-                listener = Aapt2DaemonManagerMaintainer()
-            )
-        }.also { closer.register(Closeable { it.shutdown() }) }
+                listener = Aapt2DaemonManagerMaintainer(),
+                maxDaemons = maxDaemons
+            ).also { it.warmUp(maxDaemons, warmUpExecutor) }
+        }
     }
 
     fun getAapt2ExecutablePath(aapt2: Aapt2Input): Path {
@@ -126,6 +135,7 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
 
     abstract class Parameters: BuildServiceParameters {
         abstract val errorFormatMode: Property<SyncOptions.ErrorFormatMode>
+        abstract val maxAapt2Daemons: Property<Int>
     }
 
     class RegistrationAction(project: Project, val projectOptions: ProjectOptions) :
@@ -136,6 +146,7 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
         ) {
         override fun configure(parameters: Parameters) {
             parameters.errorFormatMode.set(SyncOptions.getErrorFormatMode(projectOptions))
+            parameters.maxAapt2Daemons.set(computeMaxAapt2Daemons(projectOptions))
         }
     }
 }
@@ -186,11 +197,15 @@ fun Aapt2Input.getLeasingAapt2(): Aapt2 {
     return buildService.get().getLeasingAapt2(this)
 }
 
+fun Aapt2Input.getAapt2DaemonManager(): Aapt2DaemonManager {
+    return buildService.get().getAapt2DaemonManager(this)
+}
+
 /**
  * Responsible for scheduling maintenance on the Aapt2Service.
  *
  * There are three ways the daemons can all be shut down.
- * 1. An explicit call of [Aapt2DaemonManager.shutdown]. (e.g. at the end of each build invocation.)
+ * 1. An explicit call of [Aapt2DaemonManager.shutdown].
  * 2. All the daemons being timed out by the logic in [Aapt2DaemonManager.maintain].
  *    Calls to maintain are scheduled below, and only while there are daemons running to avoid
  *    leaking a thread.
@@ -239,6 +254,14 @@ private class Aapt2DaemonManagerMaintainer : Aapt2DaemonManager.Listener {
     }
 }
 
+private data class SharedManagerKey(val serviceKey: Aapt2DaemonServiceKey, val aaptExecutable: Path)
+
+private val sharedManagers = ConcurrentHashMap<SharedManagerKey, Aapt2DaemonManager>()
+
+private val warmUpExecutor: ExecutorService = Executors.newCachedThreadPool(
+    ThreadFactoryBuilder().setDaemon(true).setNameFormat("aapt2-warm-up-%d").build()
+)
+
 private val daemonTimeouts = Aapt2DaemonTimeouts()
 private val daemonExpiryTimeSeconds = TimeUnit.MINUTES.toSeconds(3)
 private val maintenanceIntervalSeconds = TimeUnit.MINUTES.toSeconds(1)
@@ -3,6 +3,7 @@ package com.tyron.builder.gradle.internal.tasks
 import com.android.SdkConstants
 import com.android.sdklib.AndroidVersion
 import com.tyron.builder.api.variant.impl.getFeatureLevel
+import com.tyron.builder.dexing.DexArchiveCache
 import com.tyron.builder.gradle.internal.component.ApkCreationConfig
 import com.tyron.builder.gradle.internal.dependency.BaseDexingTransform
 import com.tyron.builder.gradle.internal.scope.InternalArtifactType
@@ -184,6 +185,9 @@ abstract class DexArchiveBuilderTask : IncrementalTask() {
             workerExecutor = workerExecutor,
             projectPath = project.provider { project.projectPath.toString() },
             taskPath = path,
+            dexArchiveCache = DexArchiveCache.getInstance(
+                project.gradle.gradleUserHomeDir.resolve(DEX_ARCHIVE_CACHE_DIR)
+            ),
         ).doProcess()
     }
 
@@ -504,4 +508,6 @@ abstract class CopyDexOutput : WorkAction<CopyDexOutput.Params> {
             }
         }
     }
-}
\ No newline at end of file
+}
+/** Directory of the [DexArchiveCache] shared by every project, relative to the Gradle user home. */
+private const val DEX_ARCHIVE_CACHE_DIR = "caches/dex-archives"
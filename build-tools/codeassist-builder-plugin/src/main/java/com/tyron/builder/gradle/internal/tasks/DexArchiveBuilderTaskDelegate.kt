@@ -69,6 +69,9 @@ class DexArchiveBuilderTaskDelegate(
     private val workerExecutor: WorkerExecutor,
     private val projectPath: Provider<String>,
     private val taskPath: String,
+
+    /** Cache of the dex archives of external library jars shared between projects, if any. */
+    private val dexArchiveCache: DexArchiveCache? = null,
 ) {
     private val outputMapping = OutputMapping(isIncremental)
 
@@ -97,6 +100,45 @@ class DexArchiveBuilderTaskDelegate(
             this
         }
 
+    /** The jars dexed in this build that are stored in [dexArchiveCache] once dexing is done. */
+    private val pendingCacheEntries = mutableListOf<Pair<String, List<File>>>()
+
+    /**
+     * Identifies everything besides the jar itself that the dex archives of an external library
+     * jar depend on. When desugaring, this is the classpath of the library: the other external
+     * library jars and the bootclasspath. The classes of the projects and the desugaring classpath
+     * of the task, which holds provided and tested code, are left out since libraries are not
+     * compiled against them, so they do not change how a library is desugared. This also keeps
+     * changes to the projects, e.g. to their R.jar, from invalidating every entry.
+     */
+    private val dexingFingerprint: String by lazy {
+        val hasher = Hashing.sha256().newHasher()
+        hasher.putInt(dexParams.minSdkVersion)
+        hasher.putBoolean(dexParams.debuggable)
+        hasher.putBoolean(dexParams.withDesugaring)
+        hasher.putInt(numberOfBuckets)
+        hasher.putUnencodedChars(dexParams.coreLibDesugarConfig ?: "")
+        if (dexParams.withDesugaring) {
+            val libraryJars = externalLibClasses.asSequence()
+                .filter { it.extension == SdkConstants.EXT_JAR && it.exists() }
+                .map { outputMapping.getCurrentHash(it) }
+            val bootclasspathJars = dexParams.desugarBootclasspath.asSequence()
+                .filter { it.isFile }
+                .map { "${it.absolutePath}:${it.length()}:${it.lastModified()}" }
+            (libraryJars + bootclasspathJars).sorted().forEach { hasher.putUnencodedChars(it) }
+        }
+        hasher.hash().toString()
+    }
+
+    /**
+     * Whether a jar of the classpath of the external libraries changed, which may change how the
+     * other libraries are desugared. See [dexingFingerprint] for why project inputs are left out.
+     */
+    private val libraryClasspathJarChanged: Boolean by lazy {
+        dexParams.withDesugaring &&
+                externalLibChangedClasses.any { it.file.extension == SdkConstants.EXT_JAR }
+    }
+
     init {
         check(dexParams.withDesugaring xor (desugarGraphDir == null))
     }
@@ -146,7 +188,8 @@ class DexArchiveBuilderTaskDelegate(
                                          outputDir: File,
                                          outputKeepRules: File?,
                     // Not null iff desugaring is enabled
-                                         desugarGraphDir: File? ->
+                                         desugarGraphDir: File?,
+                                         useDexArchiveCache: Boolean ->
                     processClassFromInput(
                         inputFiles = classes,
                         inputFileChanges = changedClasses,
@@ -154,7 +197,8 @@ class DexArchiveBuilderTaskDelegate(
                         outputKeepRules = outputKeepRules,
                         desugarGraphDir = desugarGraphDir,
                         bootClasspathKey = bootclasspathServiceKey,
-                        classpathKey = classpathServiceKey
+                        classpathKey = classpathServiceKey,
+                        useDexArchiveCache = useDexArchiveCache
                     )
                 }
 
@@ -163,7 +207,8 @@ class DexArchiveBuilderTaskDelegate(
                     projectChangedClasses,
                     projectOutputs.dex,
                     projectOutputs.keepRules,
-                    desugarGraphDir?.resolve("currentProject")
+                    desugarGraphDir?.resolve("currentProject"),
+                    false
                 )
                 subProjectOutputs?.let {
                     processInputType(
@@ -171,7 +216,8 @@ class DexArchiveBuilderTaskDelegate(
                         subProjectChangedClasses,
                         subProjectOutputs.dex,
                         subProjectOutputs.keepRules,
-                        desugarGraphDir?.resolve("otherProjects")
+                        desugarGraphDir?.resolve("otherProjects"),
+                        false
                     )
                 }
                 mixedScopeOutputs?.let {
@@ -180,7 +226,8 @@ class DexArchiveBuilderTaskDelegate(
                         mixedScopeChangedClasses,
                         mixedScopeOutputs.dex,
                         mixedScopeOutputs.keepRules,
-                        desugarGraphDir?.resolve("mixedScopes")
+                        desugarGraphDir?.resolve("mixedScopes"),
+                        false
                     )
                 }
                 externalLibsOutputs?.let {
@@ -189,7 +236,8 @@ class DexArchiveBuilderTaskDelegate(
                         externalLibChangedClasses,
                         externalLibsOutputs.dex,
                         externalLibsOutputs.keepRules,
-                        desugarGraphDir?.resolve("externalLibs")
+                        desugarGraphDir?.resolve("externalLibs"),
+                        dexArchiveCache != null && externalLibsOutputs.keepRules == null
                     )
                 }
 
@@ -197,6 +245,10 @@ class DexArchiveBuilderTaskDelegate(
                 // TODO (gavra): use build services in worker actions so ClassFileProviderFactory are not closed too early
                 workerExecutor.await()
 
+                dexArchiveCache?.let { cache ->
+                    pendingCacheEntries.forEach { (key, outputs) -> cache.store(key, outputs) }
+                }
+
                 loggerWrapper.debug("Done with all dex archive conversions")
             }
         } catch (e: Exception) {
@@ -212,7 +264,8 @@ class DexArchiveBuilderTaskDelegate(
         outputKeepRules: File?,
         desugarGraphDir: File?, // Not null iff desugaring is enabled
         bootClasspathKey: ClasspathServiceKey,
-        classpathKey: ClasspathServiceKey
+        classpathKey: ClasspathServiceKey,
+        useDexArchiveCache: Boolean
     ) {
         if (!isIncremental) {
             GFileUtils.cleanOutputDir(outputDir)
@@ -246,6 +299,17 @@ class DexArchiveBuilderTaskDelegate(
             loggerWrapper.debug("Processing input %s", input.toString())
             check(input.extension == SdkConstants.EXT_JAR) { "Expected jar, received $input" }
 
+            if (useDexArchiveCache) {
+                convertJarUsingCache(
+                    jarInput = input,
+                    outputDir = outputDir,
+                    bootclasspath = bootClasspathKey,
+                    classpath = classpathKey,
+                    desugarGraphDir = desugarGraphDir
+                )
+                continue
+            }
+
             convertJarToDexArchive(
                 isIncremental = isIncremental,
                 jarInput = input,
@@ -298,6 +362,49 @@ class DexArchiveBuilderTaskDelegate(
         }
     }
 
+    /**
+     * Restores the dex archives of the jar from [dexArchiveCache], or dexes the whole jar and
+     * stores its dex archives in the cache once dexing is done.
+     *
+     * The jar is always dexed non incrementally since its outputs may come from the cache, whose
+     * entries do not come with a desugaring graph. It only needs to be processed again when the
+     * jar itself or a jar it may be desugared against changed.
+     */
+    private fun convertJarUsingCache(
+        jarInput: File,
+        outputDir: File,
+        bootclasspath: ClasspathServiceKey,
+        classpath: ClasspathServiceKey,
+        desugarGraphDir: File? // Not null iff desugaring is enabled
+    ) {
+        if (isIncremental && jarInput !in changedFiles && !libraryClasspathJarChanged) {
+            return
+        }
+
+        val outputs = (0 until numberOfBuckets).map { bucketId ->
+            outputMapping.getDexOutputForJar(jarInput, outputDir, bucketId)
+        }
+        outputs.forEach { GFileUtils.deleteIfExists(it) }
+
+        val key = DexArchiveCache.computeKey(outputMapping.getCurrentHash(jarInput), dexingFingerprint)
+        if (dexArchiveCache!!.restore(key, outputs)) {
+            loggerWrapper.debug("Restored the dex archives of %s from the cache", jarInput)
+            return
+        }
+
+        convertToDexArchive(
+            inputs = JarBucketGroup(jarInput, numberOfBuckets),
+            outputDir = outputDir,
+            isIncremental = false,
+            bootClasspath = bootclasspath,
+            classpath = classpath,
+            changedFiles = setOf(),
+            desugarGraphDir = desugarGraphDir,
+            outputKeepRulesDir = null
+        )
+        pendingCacheEntries.add(key to outputs)
+    }
+
     @Suppress("UnstableApiUsage")
     private fun deletePreviousOutputsFromDirs(inputFileChanges: Set<FileChange>, output: File) {
         // Handle dir/file deletions only. We rewrite modified files, so no need to delete those.
@@ -69,6 +69,12 @@ abstract class Aapt2Daemon(
         }
     }
 
+    /**
+     * Starts the underlying daemon process if it is not running yet, so that it can be started
+     * ahead of the first request. Blocks until the daemon is ready to receive commands.
+     */
+    fun start() = checkStarted()
+
     /**
      * Implementors must start the underlying AAPT2 daemon process.
      *
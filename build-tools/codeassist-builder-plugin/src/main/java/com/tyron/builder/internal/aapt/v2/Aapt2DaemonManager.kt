@@ -7,6 +7,8 @@ import com.android.ide.common.resources.CompileResourceRequest
 import com.tyron.builder.internal.aapt.AaptConvertConfig
 import com.tyron.builder.internal.aapt.AaptPackageConfig
 import java.io.Closeable
+import java.io.File
+import java.util.concurrent.Executor
 import java.util.concurrent.TimeUnit
 import javax.annotation.concurrent.GuardedBy
 import javax.annotation.concurrent.NotThreadSafe
@@ -15,8 +17,8 @@ import javax.annotation.concurrent.ThreadSafe
 /**
  * Maintains a pool of AAPT2 daemon processes.
  *
- * The pool is expanded if all processes are busy when a request is received.
- * No attempt is made to limit the size of the pool.
+ * The pool is expanded if all processes are busy when a request is received, up to [maxDaemons]
+ * processes. Once the pool is full, requests wait until a daemon is returned to the pool.
  * Users of this class are expected to manage the desired concurrency level through the use of
  * gradle workers, a thread pool or similar.
  *
@@ -31,10 +33,24 @@ class Aapt2DaemonManager(
     expiryTime: Long,
     expiryTimeUnit: TimeUnit,
     private val listener: Listener = NoOpListener(),
-    private val timeSource: Ticker = Ticker.systemTicker()) {
+    private val timeSource: Ticker = Ticker.systemTicker(),
+    val maxDaemons: Int = Int.MAX_VALUE) {
+
+    init {
+        Preconditions.checkArgument(maxDaemons > 0, "maxDaemons must be positive")
+    }
 
     private val expiryTimeNanoSeconds = expiryTimeUnit.toNanos(expiryTime)
 
+    @GuardedBy("this")
+    private var compiledFiles: Int = 0
+
+    @GuardedBy("this")
+    private var totalQueueWaitNanoSeconds: Long = 0
+
+    @GuardedBy("this")
+    private var totalCompileNanoSeconds: Long = 0
+
     @GuardedBy("this")
     private var latestDisplayId: Int = 0
 
@@ -52,14 +68,100 @@ class Aapt2DaemonManager(
      * Returns a [LeasedAaptDaemon], either from a pool of started daemons,
      * Or starting a new process if all the existing daemons in the pool are in use
      *
-     * Blocks until the daemon is ready to receive commands.
+     * If the pool already holds [maxDaemons] busy daemons, blocks until one of them is returned.
      */
     @Synchronized
     fun leaseDaemon(): LeasedAaptDaemon {
-        val daemon =
-                pool.find { !it.busy } ?: newAaptDaemon()
-        daemon.busy = true
-        return LeasedAaptDaemon(daemon, this::returnProcess)
+        while (true) {
+            val daemon = pool.find { !it.busy }
+                ?: if (pool.size < maxDaemons) newAaptDaemon() else null
+            if (daemon != null) {
+                daemon.busy = true
+                return LeasedAaptDaemon(daemon, this::returnProcess)
+            }
+            @Suppress("PLATFORM_CLASS_MAPPED_TO_KOTLIN")
+            (this as Object).wait()
+        }
+    }
+
+    /**
+     * Starts new daemons on the given executor until the pool holds [count] daemons, bounded by
+     * [maxDaemons], so that the first requests of a build don't wait for the processes to start.
+     */
+    fun warmUp(count: Int, executor: Executor) {
+        val leases = synchronized(this) {
+            List(maxOf(minOf(count, maxDaemons) - pool.size, 0)) {
+                val daemon = newAaptDaemon()
+                daemon.busy = true
+                LeasedAaptDaemon(daemon, this::returnProcess)
+            }
+        }
+        for (lease in leases) {
+            executor.execute {
+                lease.use {
+                    try {
+                        it.start()
+                    } catch (e: Aapt2InternalException) {
+                        logger.warning("Unable to warm up AAPT2 daemon: %s", e.message)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles the requests one after the other on a single leased daemon, instead of leasing a
+     * daemon for every file.
+     *
+     * The queue wait of a file is measured from the call to this method until its compilation
+     * starts, so it includes waiting for a daemon and for the files before it in the batch.
+     *
+     * @param wrap wraps the leased daemon, e.g. to compile some of the requests in process
+     * @param onError maps a compile error of a request to the exception to throw
+     * @return the timings of the compiled files, in the order of the requests
+     */
+    @Throws(Aapt2Exception::class)
+    fun compileBatch(
+        requests: List<CompileResourceRequest>,
+        logger: ILogger,
+        wrap: (Aapt2) -> Aapt2 = { it },
+        onError: (CompileResourceRequest, Aapt2Exception) -> Exception = { _, e -> e }
+    ): List<CompileTiming> {
+        if (requests.isEmpty()) {
+            return emptyList()
+        }
+        val submitted = timeSource.read()
+        val timings = ArrayList<CompileTiming>(requests.size)
+        leaseDaemon().use { daemon ->
+            val aapt2 = wrap(daemon)
+            for (request in requests) {
+                val start = timeSource.read()
+                try {
+                    aapt2.compile(request, logger)
+                } catch (e: Aapt2Exception) {
+                    throw onError(request, e)
+                }
+                val timing =
+                    CompileTiming(request.inputFile, start - submitted, timeSource.read() - start)
+                logger.verbose(
+                    "Compiled %1\$s in %2\$d ms after waiting %3\$d ms",
+                    request.inputFile.name,
+                    TimeUnit.NANOSECONDS.toMillis(timing.compileNanoSeconds),
+                    TimeUnit.NANOSECONDS.toMillis(timing.queueWaitNanoSeconds)
+                )
+                recordTiming(timing)
+                timings.add(timing)
+            }
+        }
+        return timings
+    }
+
+    @Synchronized
+    private fun recordTiming(timing: CompileTiming) {
+        compiledFiles++
+        totalQueueWaitNanoSeconds += timing.queueWaitNanoSeconds
+        totalCompileNanoSeconds += timing.compileNanoSeconds
+        listener.fileCompiled(timing)
     }
 
     /**
@@ -106,10 +208,18 @@ class Aapt2DaemonManager(
             if (pool.isEmpty()) {
                 listener.lastDaemonStopped()
             }
+            notifyDaemonAvailable()
             return
         }
         key.lastUsedNanoSeconds = timeSource.read()
         key.busy = false
+        notifyDaemonAvailable()
+    }
+
+    @GuardedBy("this")
+    private fun notifyDaemonAvailable() {
+        @Suppress("PLATFORM_CLASS_MAPPED_TO_KOTLIN")
+        (this as Object).notifyAll()
     }
 
     @Synchronized
@@ -164,6 +274,12 @@ class Aapt2DaemonManager(
             leasableDaemon.daemon.convert(request, logger)
         }
 
+        /** Starts the daemon process if it is not running yet, see [Aapt2Daemon.start]. */
+        fun start() {
+            Preconditions.checkState(leaseValid, "Leased process is already closed")
+            leasableDaemon.daemon.start()
+        }
+
         override fun close() {
             Preconditions.checkState(leaseValid, "Leased process is already closed")
             closeAction(leasableDaemon)
@@ -196,6 +312,10 @@ class Aapt2DaemonManager(
     interface Listener {
         fun firstDaemonStarted(manager: Aapt2DaemonManager)
         fun lastDaemonStopped()
+
+        /** Called after each file compiled through [compileBatch]. */
+        fun fileCompiled(timing: CompileTiming) {
+        }
     }
 
     class NoOpListener : Listener {
@@ -207,8 +327,27 @@ class Aapt2DaemonManager(
     }
 
     @Synchronized
-    fun stats(): Stats = Stats(poolSize = pool.size, busyCount = pool.count { it.busy })
+    fun stats(): Stats = Stats(
+        poolSize = pool.size,
+        busyCount = pool.count { it.busy },
+        compiledFiles = compiledFiles,
+        totalQueueWaitNanoSeconds = totalQueueWaitNanoSeconds,
+        totalCompileNanoSeconds = totalCompileNanoSeconds
+    )
+
+    data class Stats(
+        val poolSize: Int,
+        val busyCount: Int,
+        val compiledFiles: Int = 0,
+        val totalQueueWaitNanoSeconds: Long = 0,
+        val totalCompileNanoSeconds: Long = 0
+    )
 
-    data class Stats(val poolSize: Int, val busyCount: Int)
+    /** How long a file waited for a daemon and how long the daemon took to compile it. */
+    data class CompileTiming(
+        val inputFile: File,
+        val queueWaitNanoSeconds: Long,
+        val compileNanoSeconds: Long
+    )
 
 }
\ No newline at end of file
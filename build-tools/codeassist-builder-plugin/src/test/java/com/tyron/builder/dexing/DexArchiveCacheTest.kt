@@ -0,0 +1,88 @@
+package com.tyron.builder.dexing
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class DexArchiveCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun testRestoreCopiesStoredArchives() {
+        val cache = DexArchiveCache(folder.newFolder("cache"), 1024)
+        // the second bucket has no classes
+        val outputs = createOutputs("first", 100, 0, 50)
+        cache.store("key", outputs)
+
+        val restored = outputs("restored", 3)
+        assertTrue(cache.restore("key", restored))
+        assertArrayEquals(outputs[0].readBytes(), restored[0].readBytes())
+        assertFalse(restored[1].exists())
+        assertArrayEquals(outputs[2].readBytes(), restored[2].readBytes())
+    }
+
+    @Test
+    fun testEntryWithMissingArchiveIsNotRestored() {
+        val cacheDir = folder.newFolder("cache")
+        val cache = DexArchiveCache(cacheDir, 1024)
+        cache.store("key", createOutputs("first", 100, 100))
+
+        // e.g. deleted by an eviction in another process
+        assertTrue(cacheDir.resolve("key/1.jar").delete())
+
+        val restored = outputs("restored", 2)
+        assertFalse(cache.restore("key", restored))
+        assertFalse(restored[0].exists())
+    }
+
+    @Test
+    fun testEntryWithOtherNumberOfBucketsIsNotRestored() {
+        val cache = DexArchiveCache(folder.newFolder("cache"), 1024)
+        cache.store("key", createOutputs("first", 100, 100))
+
+        assertFalse(cache.restore("key", outputs("restored", 3)))
+    }
+
+    @Test
+    fun testLeastRecentlyUsedEntryIsEvicted() {
+        val cacheDir = folder.newFolder("cache")
+        // fits two entries of 100 bytes and their manifests
+        val cache = DexArchiveCache(cacheDir, 250)
+        cache.store("a", createOutputs("a", 100))
+        cache.store("b", createOutputs("b", 100))
+        val now = System.currentTimeMillis()
+        cacheDir.resolve("a/${DexArchiveCache.MANIFEST}").setLastModified(now - 20_000)
+        cacheDir.resolve("b/${DexArchiveCache.MANIFEST}").setLastModified(now - 10_000)
+
+        // restoring marks the entry as used
+        assertTrue(cache.restore("a", outputs("restored", 1)))
+        cache.store("c", createOutputs("c", 100))
+
+        assertTrue(cache.restore("a", outputs("a-restored", 1)))
+        assertFalse(cache.restore("b", outputs("b-restored", 1)))
+        assertTrue(cache.restore("c", outputs("c-restored", 1)))
+    }
+
+    private fun outputs(name: String, numberOfBuckets: Int): List<File> {
+        val dir = folder.root.resolve(name)
+        return (0 until numberOfBuckets).map { dir.resolve("$it.jar") }
+    }
+
+    /** Creates the dex archive of each bucket, a size of 0 meaning the bucket has none. */
+    private fun createOutputs(name: String, vararg sizes: Int): List<File> {
+        val outputs = outputs(name, sizes.size)
+        outputs.forEachIndexed { bucketId, output ->
+            if (sizes[bucketId] > 0) {
+                output.parentFile.mkdirs()
+                output.writeBytes(ByteArray(sizes[bucketId]) { (it + bucketId).toByte() })
+            }
+        }
+        return outputs
+    }
+}
@@ -0,0 +1,115 @@
+package com.tyron.builder.internal.aapt.v2
+
+import com.android.ide.common.resources.CompileResourceRequest
+import com.android.utils.StdLogger
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+class Aapt2DaemonManagerTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val logger = StdLogger(StdLogger.Level.ERROR)
+    private val daemons: MutableList<FakeAapt2Daemon> =
+        Collections.synchronizedList(mutableListOf())
+    private val managers = mutableListOf<Aapt2DaemonManager>()
+
+    @After
+    fun tearDown() {
+        managers.forEach { it.shutdown() }
+    }
+
+    @Test
+    fun testLeaseBlocksWhileAllDaemonsAreBusy() {
+        val manager = createManager(maxDaemons = 1)
+        val first = manager.leaseDaemon()
+        first.start()
+
+        val leased = CountDownLatch(1)
+        val waiting = thread { manager.leaseDaemon().use { leased.countDown() } }
+        assertFalse(leased.await(100, TimeUnit.MILLISECONDS))
+        assertEquals(1, manager.stats().poolSize)
+
+        first.close()
+        assertTrue(leased.await(5, TimeUnit.SECONDS))
+        waiting.join()
+        // the second lease reused the daemon instead of starting another one
+        assertEquals(1, daemons.size)
+    }
+
+    @Test
+    fun testWarmUpStartsDaemons() {
+        val manager = createManager(maxDaemons = 2)
+        manager.warmUp(3, Executor { it.run() })
+
+        assertEquals(Aapt2DaemonManager.Stats(poolSize = 2, busyCount = 0), manager.stats())
+        assertEquals(listOf(1, 1), daemons.map { it.startCount })
+
+        manager.compileBatch(listOf(request("icon")), logger)
+        assertEquals(2, daemons.size)
+        assertEquals(listOf(1, 1), daemons.map { it.startCount })
+    }
+
+    @Test
+    fun testCompileBatchesRunOnSeparateDaemons() {
+        val manager = createManager(maxDaemons = 4)
+        val batches = List(4) { batch -> List(3) { request("batch${batch}_$it") } }
+        // every batch waits until all of them leased a daemon
+        val allLeased = CyclicBarrier(batches.size)
+        val executor = Executors.newFixedThreadPool(batches.size)
+        val timings = try {
+            batches.map { batch ->
+                executor.submit(Callable {
+                    manager.compileBatch(batch, logger, wrap = {
+                        allLeased.await(10, TimeUnit.SECONDS)
+                        it
+                    })
+                })
+            }.map { it.get(30, TimeUnit.SECONDS) }
+        } finally {
+            executor.shutdown()
+        }
+
+        assertEquals(batches.map { batch -> batch.map { it.inputFile } },
+            timings.map { batch -> batch.map { it.inputFile } })
+        assertEquals(batches.size, daemons.size)
+        // a batch is compiled in order on the single daemon it leased
+        assertEquals(batches.map { batch -> batch.map { it.inputFile } }.toSet(),
+            daemons.map { daemon -> daemon.compiled.map { it.inputFile } }.toSet())
+        assertEquals(12, manager.stats().compiledFiles)
+    }
+
+    private fun createManager(maxDaemons: Int): Aapt2DaemonManager {
+        val manager = Aapt2DaemonManager(
+            logger = logger,
+            daemonFactory = { id -> FakeAapt2Daemon(id.toString(), logger).also { daemons.add(it) } },
+            expiryTime = 1,
+            expiryTimeUnit = TimeUnit.MINUTES,
+            maxDaemons = maxDaemons
+        )
+        managers.add(manager)
+        return manager
+    }
+
+    private fun request(name: String): CompileResourceRequest {
+        val file = File(folder.root, "res/drawable/$name.png")
+        file.parentFile.mkdirs()
+        file.writeBytes(ByteArray(0))
+        return CompileResourceRequest(file, File(folder.root, "out"))
+    }
+}
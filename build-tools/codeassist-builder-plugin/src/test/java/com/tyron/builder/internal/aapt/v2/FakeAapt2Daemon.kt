@@ -0,0 +1,61 @@
+package com.tyron.builder.internal.aapt.v2
+
+import com.android.ide.common.resources.CompileResourceRequest
+import com.android.utils.ILogger
+import com.tyron.builder.internal.aapt.AaptConvertConfig
+import com.tyron.builder.internal.aapt.AaptPackageConfig
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A stand-in for the AAPT2 process that runs in the current process, for testing
+ * [Aapt2DaemonManager] and its users without an AAPT2 executable.
+ *
+ * Starting and compiling only sleep for the given durations, the requests received are recorded
+ * so tests can check how they were dispatched. Compiling writes an empty output file so the
+ * tasks consuming it find it.
+ */
+class FakeAapt2Daemon(
+    displayId: String,
+    logger: ILogger,
+    private val startupMillis: Long = 0,
+    private val compileMillis: Long = 0
+) : Aapt2Daemon(displayName = "Fake AAPT2 Daemon $displayId", logger = logger) {
+
+    val compiled: MutableList<CompileResourceRequest> =
+        Collections.synchronizedList(mutableListOf())
+    val linked: MutableList<AaptPackageConfig> = Collections.synchronizedList(mutableListOf())
+    val converted: MutableList<AaptConvertConfig> = Collections.synchronizedList(mutableListOf())
+
+    private val starts = AtomicInteger()
+
+    /** How many times the process was started, daemons may be started from any thread */
+    val startCount: Int
+        get() = starts.get()
+
+    override fun startProcess() {
+        starts.incrementAndGet()
+        TimeUnit.MILLISECONDS.sleep(startupMillis)
+    }
+
+    override fun doCompile(request: CompileResourceRequest, logger: ILogger) {
+        TimeUnit.MILLISECONDS.sleep(compileMillis)
+        request.outputDirectory.mkdirs()
+        request.outputDirectory
+            .resolve(Aapt2RenamingConventions.compilationRename(request.inputFile))
+            .writeBytes(ByteArray(0))
+        compiled.add(request)
+    }
+
+    override fun doLink(request: AaptPackageConfig, logger: ILogger) {
+        linked.add(request)
+    }
+
+    override fun doConvert(request: AaptConvertConfig, logger: ILogger) {
+        converted.add(request)
+    }
+
+    override fun stopProcess() {
+    }
+}
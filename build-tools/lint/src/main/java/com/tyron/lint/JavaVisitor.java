@@ -3,6 +3,7 @@ package com.tyron.lint;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.CompilerProvider;
@@ -11,6 +12,7 @@ import com.tyron.lint.api.Detector;
 import com.tyron.lint.api.Detector.JavaScanner;
 import com.tyron.lint.api.JavaContext;
 import com.tyron.lint.api.JavaVoidVisitor;
+import com.tyron.lint.client.DetectorTimings;
 
 import com.sun.source.tree.AnnotationTree;
 import com.sun.source.tree.IdentifierTree;
@@ -24,63 +26,81 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.function.Consumer;
+
+/**
+ * Runs the java detectors over compilation units.
+ *
+ * The visitors of the detectors are created for each file, so several files may be visited
+ * at once from different threads. The javac context is shared by these threads, so the
+ * detectors that {@link Detector#usesCompiler() use the compiler} run one at a time.
+ */
 public class JavaVisitor {
 
     private static final int SAME_TYPE_COUNT = 8;
 
     private final CompilerProvider mCompiler;
-    private final List<VisitingDetector> mAllDetectors;
-    private final Map<Class<? extends Tree>, List<VisitingDetector>> mTreeTypeDetectors =
+    private final DetectorTimings mTimings;
+    private final List<Detector> mDetectors;
+    /**
+     * The indices in {@link #mDetectors} of the detectors of each tree type and method name
+     */
+    private final Map<Class<? extends Tree>, List<Integer>> mTreeTypeDetectors =
             new HashMap<>(16);
-    private final Map<String, List<VisitingDetector>> mMethodDetectors = new HashMap<>(16);
+    private final Map<String, List<Integer>> mMethodDetectors = new HashMap<>(16);
+    /**
+     * Held while a detector that uses the compiler is called
+     */
+    private final Object mCompilerLock = new Object();
 
     public JavaVisitor(JavaCompilerService compiler, @NonNull List<Detector> detectors) {
+        this(compiler, detectors, new DetectorTimings());
+    }
+
+    /**
+     * @param compiler the compiler used by {@link #visitFile(JavaContext)}, may be null if
+     *                 only {@link #visitCompilationUnit(JavaContext)} is used
+     */
+    public JavaVisitor(@Nullable JavaCompilerService compiler,
+                       @NonNull List<Detector> detectors,
+                       @NonNull DetectorTimings timings) {
         mCompiler = compiler;
-        mAllDetectors = new ArrayList<>(detectors.size());
+        mTimings = timings;
+        mDetectors = new ArrayList<>(detectors);
 
-        for (Detector detector : detectors) {
-            VisitingDetector v = new VisitingDetector(detector, (JavaScanner) detector);
-            mAllDetectors.add(v);
+        for (int i = 0; i < mDetectors.size(); i++) {
+            Detector detector = mDetectors.get(i);
 
             List<Class<? extends Tree>> treeTypes = detector.getApplicableTypes();
             if (treeTypes != null) {
                 for (Class<? extends Tree> tree : treeTypes) {
-                    List<VisitingDetector> list = mTreeTypeDetectors.computeIfAbsent(tree,
+                    List<Integer> list = mTreeTypeDetectors.computeIfAbsent(tree,
                             k -> new ArrayList<>(SAME_TYPE_COUNT));
-                    list.add(v);
+                    list.add(i);
                 }
             }
 
             List<String> names = detector.getApplicableMethodNames();
             if (names != null) {
                 for (String name : names) {
-                    List<VisitingDetector> list = mMethodDetectors.computeIfAbsent(name,
+                    List<Integer> list = mMethodDetectors.computeIfAbsent(name,
                             k -> new ArrayList<>(SAME_TYPE_COUNT));
-                    list.add(v);
+                    list.add(i);
                 }
             }
         }
     }
 
+    public DetectorTimings getTimings() {
+        return mTimings;
+    }
+
     public void visitFile(JavaContext context) {
         try {
             CompilerContainer container = mCompiler.compile(context.file.toPath());
             container.run(task -> {
-                Tree compilationUnit = task.root();
                 context.setCompileTask(task);
-
-                for (VisitingDetector v : mAllDetectors) {
-                    v.setContext(context);
-                }
-
-                if (!mMethodDetectors.isEmpty()) {
-                    JavaVoidVisitor visitor = new DelegatingJavaVisitor(context);
-                    compilationUnit.accept(visitor, null);
-                } else if (!mTreeTypeDetectors.isEmpty()) {
-                    JavaVoidVisitor visitor = new DispatchVisitor();
-                    compilationUnit.accept(visitor, null);
-                }
+                visitCompilationUnit(context);
             });
         } catch (Throwable e) {
             Log.e("Lint", "Failed to analyze file", e);
@@ -88,11 +108,44 @@ public class JavaVisitor {
         }
     }
 
+    /**
+     * Visits the compilation unit that was set on the context. The context must not be
+     * visited from another thread at the same time.
+     */
+    public void visitCompilationUnit(JavaContext context) {
+        if (mMethodDetectors.isEmpty() && mTreeTypeDetectors.isEmpty()) {
+            return;
+        }
+        List<VisitingDetector> detectors = new ArrayList<>(mDetectors.size());
+        for (Detector detector : mDetectors) {
+            VisitingDetector v = new VisitingDetector(detector, (JavaScanner) detector);
+            v.setContext(context);
+            detectors.add(v);
+        }
+
+        Tree compilationUnit = context.getCompilationUnit();
+        if (!mMethodDetectors.isEmpty()) {
+            JavaVoidVisitor visitor = new DelegatingJavaVisitor(context, detectors);
+            compilationUnit.accept(visitor, null);
+        } else {
+            JavaVoidVisitor visitor = new DispatchVisitor(detectors);
+            compilationUnit.accept(visitor, null);
+        }
+
+        for (VisitingDetector v : detectors) {
+            if (v.mNanos > 0) {
+                mTimings.record(v.getDetector().getClass(), v.mNanos);
+            }
+        }
+    }
+
     private static class VisitingDetector {
         private JavaVoidVisitor mVisitor;
         private JavaContext mContext;
         public final Detector mDetector;
         public final JavaScanner mScanner;
+        /** The time spent in this detector while visiting the current file */
+        private long mNanos;
 
         public VisitingDetector(@NonNull Detector detector, JavaScanner scanner) {
             mDetector = detector;
@@ -115,6 +168,7 @@ public class JavaVisitor {
             // The visitors are one-per-context, so clear them out here and construct
             // lazily only if needed
             mVisitor = null;
+            mNanos = 0;
         }
 
         @NonNull
@@ -124,16 +178,44 @@ public class JavaVisitor {
             }
             return mVisitor;
         }
+
+        void addTime(long start) {
+            mNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Calls the visitor of the detector, holding the compiler lock if the detector uses the
+     * compiler. The time waiting for the lock is not counted as time spent in the detector.
+     */
+    private void dispatch(VisitingDetector v, Consumer<JavaVoidVisitor> call) {
+        if (v.getDetector().usesCompiler()) {
+            synchronized (mCompilerLock) {
+                long start = System.nanoTime();
+                call.accept(v.getVisitor());
+                v.addTime(start);
+            }
+        } else {
+            long start = System.nanoTime();
+            call.accept(v.getVisitor());
+            v.addTime(start);
+        }
     }
 
     private class DispatchVisitor extends JavaVoidVisitor {
+        protected final List<VisitingDetector> mVisitingDetectors;
+
+        DispatchVisitor(List<VisitingDetector> visitingDetectors) {
+            mVisitingDetectors = visitingDetectors;
+        }
 
         @Override
         public Void visitAnnotation(AnnotationTree annotationTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(AnnotationTree.class);
+            List<Integer> list = mTreeTypeDetectors.get(AnnotationTree.class);
             if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitAnnotation(annotationTree, unused);
+                for (int i : list) {
+                    VisitingDetector v = mVisitingDetectors.get(i);
+                    dispatch(v, visitor -> visitor.visitAnnotation(annotationTree, unused));
                 }
             }
             return null;
@@ -141,10 +223,11 @@ public class JavaVisitor {
 
         @Override
         public Void visitVariable(VariableTree variableTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(VariableTree.class);
+            List<Integer> list = mTreeTypeDetectors.get(VariableTree.class);
             if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitVariable(variableTree, unused);
+                for (int i : list) {
+                    VisitingDetector v = mVisitingDetectors.get(i);
+                    dispatch(v, visitor -> visitor.visitVariable(variableTree, unused));
                 }
             }
             return null;
@@ -152,10 +235,12 @@ public class JavaVisitor {
 
         @Override
         public Void visitMethodInvocation(MethodInvocationTree methodInvocationTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodInvocationTree.class);
+            List<Integer> list = mTreeTypeDetectors.get(MethodInvocationTree.class);
             if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitMethodInvocation(methodInvocationTree, unused);
+                for (int i : list) {
+                    VisitingDetector v = mVisitingDetectors.get(i);
+                    dispatch(v, visitor ->
+                            visitor.visitMethodInvocation(methodInvocationTree, unused));
                 }
             }
             return super.visitMethodInvocation(methodInvocationTree, unused);
@@ -163,10 +248,11 @@ public class JavaVisitor {
 
         @Override
         public Void visitMethod(MethodTree methodTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodTree.class);
+            List<Integer> list = mTreeTypeDetectors.get(MethodTree.class);
             if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitMethod(methodTree, unused);
+                for (int i : list) {
+                    VisitingDetector v = mVisitingDetectors.get(i);
+                    dispatch(v, visitor -> visitor.visitMethod(methodTree, unused));
                 }
             }
             return super.visitMethod(methodTree, unused);
@@ -174,10 +260,11 @@ public class JavaVisitor {
 
         @Override
         public Void visitIdentifier(IdentifierTree identifierTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(IdentifierTree.class);
+            List<Integer> list = mTreeTypeDetectors.get(IdentifierTree.class);
             if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitIdentifier(identifierTree, unused);
+                for (int i : list) {
+                    VisitingDetector v = mVisitingDetectors.get(i);
+                    dispatch(v, visitor -> visitor.visitIdentifier(identifierTree, unused));
                 }
             }
             return super.visitIdentifier(identifierTree, unused);
@@ -194,7 +281,9 @@ public class JavaVisitor {
         private final boolean mVisitMethods;
         private final boolean mVisitConstructors;
 
-        public DelegatingJavaVisitor(JavaContext context) {
+        public DelegatingJavaVisitor(JavaContext context,
+                                     List<VisitingDetector> visitingDetectors) {
+            super(visitingDetectors);
             mContext = context;
 
             mVisitMethods = !mMethodDetectors.isEmpty();
@@ -219,10 +308,12 @@ public class JavaVisitor {
         public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
             if (mVisitMethods) {
                 String methodName = JavaContext.getMethodName(node);
-                List<VisitingDetector> list = mMethodDetectors.get(methodName);
+                List<Integer> list = mMethodDetectors.get(methodName);
                 if (list != null) {
-                    for (VisitingDetector v : list) {
-                        v.getJavaScanner().visitMethod(mContext, v.getVisitor(), node);
+                    for (int i : list) {
+                        VisitingDetector v = mVisitingDetectors.get(i);
+                        dispatch(v, visitor ->
+                                v.getJavaScanner().visitMethod(mContext, visitor, node));
                     }
                 }
             }
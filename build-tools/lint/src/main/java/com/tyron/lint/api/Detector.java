@@ -37,4 +37,15 @@ public abstract class Detector {
     public void visitMethod(@NonNull JavaContext context, @Nullable JavaVoidVisitor visitor, @NonNull MethodInvocationTree node) {
 
     }
+
+    /**
+     * Whether the detector looks up symbols or types through the javac task of the context,
+     * e.g. through {@link com.sun.source.util.Trees#getScope} or
+     * {@link javax.lang.model.util.Elements}. These may attribute or complete symbols, which
+     * is not thread safe, so such detectors are run one at a time when files are visited in
+     * parallel. Detectors that only read the trees can return false.
+     */
+    public boolean usesCompiler() {
+        return true;
+    }
 }
@@ -24,14 +24,28 @@ import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
 import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
 import com.sun.source.util.Trees;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 public class JavaContext extends Context {
     static final String SUPPRESS_COMMENT_PREFIX = "//noinspection ";
     private CompileTask mCompileTask;
+    private JavacTask mJavacTask;
+    private CompilationUnitTree mCompilationUnit;
+
+    /**
+     * Maps each tree of the compilation unit to its parent, built on first use
+     */
+    private Map<Tree, Tree> mParents;
 
     public JavaContext(LintDriver driver, JavaModule project, File file, Configuration config) {
         super(driver, project, file, config);
@@ -39,14 +53,95 @@ public class JavaContext extends Context {
 
     public void setCompileTask(CompileTask root) {
         mCompileTask = root;
+        setCompilationUnit(root.task, root.root());
+    }
+
+    /**
+     * Sets the compilation unit to analyze, it must have been attributed by the given task.
+     * Used to lint the compilation units the editor already analyzed without compiling the
+     * file again.
+     */
+    public void setCompilationUnit(@NonNull JavacTask task, @NonNull CompilationUnitTree root) {
+        mJavacTask = task;
+        mCompilationUnit = root;
+        mParents = null;
     }
 
+    /**
+     * @return the compile task of the file, or null if the compilation unit was set through
+     * {@link #setCompilationUnit(JavacTask, CompilationUnitTree)}
+     */
+    @Nullable
     public CompileTask getCompileTask() {
         return mCompileTask;
     }
 
+    public JavacTask getJavacTask() {
+        return mJavacTask;
+    }
+
+    public Trees getTrees() {
+        return Trees.instance(mJavacTask);
+    }
+
     public CompilationUnitTree getCompilationUnit() {
-        return mCompileTask.root();
+        return mCompilationUnit;
+    }
+
+    /**
+     * @return the parent of the tree, or null if it is the compilation unit or is not part of it
+     */
+    @Nullable
+    public Tree getParent(@NonNull Tree tree) {
+        return getParents().get(tree);
+    }
+
+    /**
+     * Equivalent to {@link TreePath#getPath(CompilationUnitTree, Tree)} but walks up the
+     * parents of the tree instead of searching the whole compilation unit for it.
+     *
+     * @return the path to the tree, or null if it is not part of the compilation unit
+     */
+    @Nullable
+    public TreePath getPath(@NonNull Tree tree) {
+        if (tree == mCompilationUnit) {
+            return new TreePath(mCompilationUnit);
+        }
+        Map<Tree, Tree> parents = getParents();
+        if (!parents.containsKey(tree)) {
+            return null;
+        }
+        Deque<Tree> ancestors = new ArrayDeque<>();
+        for (Tree current = tree; current != mCompilationUnit; current = parents.get(current)) {
+            ancestors.push(current);
+        }
+        TreePath path = new TreePath(mCompilationUnit);
+        while (!ancestors.isEmpty()) {
+            path = new TreePath(path, ancestors.pop());
+        }
+        return path;
+    }
+
+    private Map<Tree, Tree> getParents() {
+        if (mParents == null) {
+            Map<Tree, Tree> parents = new IdentityHashMap<>();
+            new TreeScanner<Void, Tree>() {
+                @Override
+                public Void scan(Tree tree, Tree parent) {
+                    if (tree == null) {
+                        return null;
+                    }
+                    // attribution shares some trees, e.g. the type of an anonymous class is
+                    // also its extends clause, keep the first parent like TreePath#getPath
+                    if (parent != null) {
+                        parents.putIfAbsent(tree, parent);
+                    }
+                    return super.scan(tree, tree);
+                }
+            }.scan(mCompilationUnit, null);
+            mParents = parents;
+        }
+        return mParents;
     }
 
     public void report(
@@ -61,7 +156,7 @@ public class JavaContext extends Context {
     }
 
     public Location getLocation(@NonNull Tree node) {
-        SourcePositions pos = Trees.instance(mCompileTask.task).getSourcePositions();
+        SourcePositions pos = getTrees().getSourcePositions();
         return Location.create(file,
                 getContents(),
                 (int) pos.getStartPosition(getCompilationUnit(), node),
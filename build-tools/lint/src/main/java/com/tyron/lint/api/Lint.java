@@ -7,6 +7,7 @@ import androidx.annotation.Nullable;
 
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.java.parse.CompilationInfo;
 import com.tyron.lint.JavaVisitor;
 import com.tyron.lint.checks.CallSuperDetector;
 import com.tyron.lint.checks.JavaPerformanceDetector;
@@ -22,6 +23,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class Lint {
@@ -42,6 +44,14 @@ public class Lint {
     }
 
     public void scanFile(File file) {
+        scanFiles(Collections.singletonList(file));
+    }
+
+    /**
+     * Lints the files. Files the module has already analyzed are visited in parallel through
+     * {@link LintDriver#analyze}, the others are compiled first.
+     */
+    public void scanFiles(List<File> files) {
         Instant start = Instant.now();
         LintDriver driver = new LintDriver(new IssueRegistry() {
             @NonNull
@@ -55,7 +65,7 @@ public class Lint {
                 );
             }
         }, mClient);
-        JavaContext context = new JavaContext(driver, mProject, file, new Configuration() {
+        Configuration configuration = new Configuration() {
             @Override
             public void ignore(@NonNull Context context, @NonNull Issue issue, @Nullable Location location, @NonNull String message) {
 
@@ -65,11 +75,34 @@ public class Lint {
             public void setSeverity(@NonNull Issue issue, @Nullable Severity severity) {
 
             }
-        });
-        JavaVisitor visitor = new JavaVisitor(mCompiler, mDetectors);
-        visitor.visitFile(context);
+        };
+
+        CompilationInfo info = CompilationInfo.get(mProject);
+        List<JavaContext> analyzed = new ArrayList<>();
+        List<JavaContext> notAnalyzed = new ArrayList<>();
+        for (File file : files) {
+            JavaContext context = new JavaContext(driver, mProject, file, configuration);
+            if (info != null && info.getCompilationUnit(file.toURI()) != null) {
+                analyzed.add(context);
+            } else {
+                notAnalyzed.add(context);
+            }
+        }
+
+        if (!analyzed.isEmpty()) {
+            driver.analyze(info, analyzed, mDetectors);
+        }
+        if (!notAnalyzed.isEmpty()) {
+            JavaVisitor visitor =
+                    new JavaVisitor(mCompiler, mDetectors, driver.getDetectorTimings());
+            for (JavaContext context : notAnalyzed) {
+                visitor.visitFile(context);
+            }
+        }
 
-        Log.d("Lint", "Scanning took " + Duration.between(start, Instant.now()).toMillis() + " ms");
+        Log.d("Lint", "Scanning " + files.size() + " files took " +
+                      Duration.between(start, Instant.now()).toMillis() + " ms\n" +
+                      driver.getDetectorTimings());
     }
 
     public void registerDetector(Detector detector) {
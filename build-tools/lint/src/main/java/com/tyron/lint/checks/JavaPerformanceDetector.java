@@ -31,7 +31,6 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
-import com.sun.source.util.Trees;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -85,6 +84,12 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
         return new Visitor(context);
     }
 
+    @Override
+    public boolean usesCompiler() {
+        // only reads the trees
+        return false;
+    }
+
     @Override
     public List<Class<? extends Tree>> getApplicableTypes() {
         return Arrays.asList(
@@ -112,15 +117,14 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
 
         @Override
         public Void visitNewClass(NewClassTree node, Void unused) {
-            Trees trees = Trees.instance(mContext.getCompileTask().task);
-            TreePath parent = trees.getPath(mContext.getCompilationUnit(), node).getParentPath();
-            if (mFlagAllocations && !(parent.getLeaf() instanceof  ThrowTree)) {
+            Tree parent = mContext.getParent(node);
+            if (mFlagAllocations && !(parent instanceof  ThrowTree)) {
                 Tree method = node;
                 while (method != null) {
                     if (method instanceof MethodTree) {
                         break;
                     }
-                    method = trees.getPath(mContext.getCompilationUnit(), method).getParentPath().getLeaf();
+                    method = mContext.getParent(method);
                 }
 
                 if (method != null && isBlockedAllocationMethod((MethodTree) method)
@@ -179,7 +183,7 @@ public class JavaPerformanceDetector extends Detector implements Detector.JavaSc
         }
 
         private boolean isLazilyInitialized(Tree node) {
-            TreePath curr = TreePath.getPath(mContext.getCompilationUnit(), node).getParentPath();
+            TreePath curr = mContext.getPath(node).getParentPath();
             while (curr != null) {
                 if (curr.getLeaf() instanceof MethodTree) {
                     return false;
@@ -42,6 +42,12 @@ public class ToastDetector extends Detector implements Detector.JavaScanner {
             Severity.WARNING,
             IMPLEMENTATION);
 
+    @Override
+    public boolean usesCompiler() {
+        // only reads the trees
+        return false;
+    }
+
     @Override
     public List<String> getApplicableMethodNames() {
         return Arrays.asList("makeText", "make");
@@ -0,0 +1,80 @@
+package com.tyron.lint.client;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.lint.api.Detector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the time each detector spends visiting files, so slow detectors can be found
+ * and left out when lint runs continuously in the editor.
+ *
+ * Files are visited in parallel, each visit records its time once it completes.
+ */
+public class DetectorTimings {
+
+    private static class Timing {
+        final LongAdder nanos = new LongAdder();
+        final LongAdder files = new LongAdder();
+    }
+
+    private final Map<Class<? extends Detector>, Timing> mTimings = new ConcurrentHashMap<>();
+
+    public void record(@NonNull Class<? extends Detector> detector, long nanos) {
+        Timing timing = mTimings.computeIfAbsent(detector, k -> new Timing());
+        timing.nanos.add(nanos);
+        timing.files.increment();
+    }
+
+    /**
+     * @return the total time in milliseconds the detector spent visiting files
+     */
+    public long getTime(@NonNull Class<? extends Detector> detector) {
+        Timing timing = mTimings.get(detector);
+        return timing == null ? 0 : TimeUnit.NANOSECONDS.toMillis(timing.nanos.sum());
+    }
+
+    /**
+     * @return the number of files the detector visited
+     */
+    public long getFileCount(@NonNull Class<? extends Detector> detector) {
+        Timing timing = mTimings.get(detector);
+        return timing == null ? 0 : timing.files.sum();
+    }
+
+    /**
+     * @return the detectors that visited a file, the slowest first
+     */
+    @NonNull
+    public List<Class<? extends Detector>> getDetectors() {
+        List<Class<? extends Detector>> detectors = new ArrayList<>(mTimings.keySet());
+        detectors.sort((a, b) -> Long.compare(mTimings.get(b).nanos.sum(),
+                mTimings.get(a).nanos.sum()));
+        return detectors;
+    }
+
+    public void reset() {
+        mTimings.clear();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Class<? extends Detector> detector : getDetectors()) {
+            builder.append(detector.getSimpleName())
+                    .append(": ")
+                    .append(getTime(detector))
+                    .append("ms in ")
+                    .append(getFileCount(detector))
+                    .append(" files\n");
+        }
+        return builder.toString();
+    }
+}
@@ -4,6 +4,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.tyron.builder.model.Project;
+import com.tyron.completion.java.parse.CompilationInfo;
+import com.tyron.lint.JavaVisitor;
 import com.tyron.lint.api.Context;
 import com.tyron.lint.api.Detector;
 import com.tyron.lint.api.Issue;
@@ -14,21 +16,35 @@ import com.tyron.lint.api.Severity;
 import com.tyron.lint.api.TextFormat;
 
 import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.AssignmentTree;
 import com.sun.source.tree.ExpressionTree;
-import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.NewArrayTree;
 import com.sun.source.tree.Tree;
-import com.sun.source.util.TreePath;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LintDriver {
 
     private static final String STUDIO_ID_PREFIX = "AndroidLint";
+
+    /**
+     * Visits the files of {@link #analyze(CompilationInfo, List, List)}, shared by every driver
+     * since lint runs again each time the editor analyzes a file
+     */
+    private static ExecutorService sExecutor;
     private final LintClient mClient;
     //private LintRequest mRequest;
     private IssueRegistry mRegistry;
@@ -45,6 +61,7 @@ public class LintDriver {
     private boolean mAbbreviating = true;
     private boolean mParserErrors;
     private Map<Object,Object> mProperties;
+    private final DetectorTimings mTimings = new DetectorTimings();
 
 
     /**
@@ -62,6 +79,72 @@ public class LintDriver {
         return mClient;
     }
 
+    /**
+     * @return the time each detector has spent across the runs of this driver
+     */
+    public DetectorTimings getDetectorTimings() {
+        return mTimings;
+    }
+
+    /**
+     * Stops the current run, the files that are being visited are completed
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    /**
+     * Runs the detectors over java files of a module. The compilation units the module has
+     * already analyzed are reused instead of compiling the files again, files that have not been
+     * analyzed yet are skipped.
+     *
+     * The files are visited in parallel. The compilation unit of a file is not updated while it
+     * is being visited, updates run between the files. Reports reach the client one at a time.
+     */
+    public void analyze(@NonNull CompilationInfo info,
+                        @NonNull List<JavaContext> contexts,
+                        @NonNull List<Detector> detectors) {
+        mCanceled = false;
+        JavaVisitor visitor = new JavaVisitor(null, detectors, mTimings);
+        JavacTask task = info.impl.getJavacTask();
+        List<Future<?>> futures = new ArrayList<>(contexts.size());
+        for (JavaContext context : contexts) {
+            futures.add(getExecutor().submit(() -> info.runWithoutUpdates(() -> {
+                JCCompilationUnit unit = info.getCompilationUnit(context.file.toURI());
+                if (unit == null || mCanceled) {
+                    return;
+                }
+                context.setCompilationUnit(task, unit);
+                visitor.visitCompilationUnit(context);
+            })));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                mClient.log(e.getCause(), "Failed to analyze file", null);
+            } catch (InterruptedException e) {
+                mCanceled = true;
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            AtomicInteger threadCount = new AtomicInteger();
+            sExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "Lint-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sExecutor;
+    }
+
     public boolean isSuppressed(@Nullable JavaContext context, @NonNull Issue issue,
                                 @Nullable Tree scope) {
         boolean checkComments = mClient.checkForSuppressComments() &&
@@ -76,12 +159,7 @@ public class LintDriver {
                 }
             }
 
-            TreePath parentPath = TreePath.getPath(context.getCompilationUnit(), scope).getParentPath();
-            if (parentPath == null) {
-                break;
-            } else {
-                scope = parentPath.getLeaf();
-            }
+            scope = context.getParent(scope);
         }
 
         return false;
@@ -98,21 +176,15 @@ public class LintDriver {
         }
 
         for (AnnotationTree annotation : annotations) {
-            IdentifierTree type = (IdentifierTree) annotation.getAnnotationType();
-            String typeName = type.getName().toString();
+            // either a simple or a qualified name
+            String typeName = annotation.getAnnotationType().toString();
             if (typeName.endsWith("SuppressLint")
                 || typeName.endsWith("SuppressWarnings")) {
                 List<? extends ExpressionTree> values = annotation.getArguments();
                 if (values != null) {
                     for (ExpressionTree arg : values) {
-                        if (arg == null) {
-                            continue;
-                        }
-                        if (arg instanceof LiteralTree) {
-                            String value = String.valueOf(((LiteralTree) arg).getValue());
-                            if (matches(issue, value)) {
-                                return true;
-                            }
+                        if (matches(issue, arg)) {
+                            return true;
                         }
                     }
                 }
@@ -122,6 +194,31 @@ public class LintDriver {
         return false;
     }
 
+    /**
+     * Attribution turns the arguments of annotations into assignments to {@code value}, and
+     * the ids may be given as an array.
+     */
+    private static boolean matches(@Nullable Issue issue, @Nullable ExpressionTree arg) {
+        if (arg instanceof AssignmentTree) {
+            return matches(issue, ((AssignmentTree) arg).getExpression());
+        }
+        if (arg instanceof NewArrayTree) {
+            List<? extends ExpressionTree> initializers = ((NewArrayTree) arg).getInitializers();
+            if (initializers != null) {
+                for (ExpressionTree initializer : initializers) {
+                    if (matches(issue, initializer)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        if (arg instanceof LiteralTree) {
+            return matches(issue, String.valueOf(((LiteralTree) arg).getValue()));
+        }
+        return false;
+    }
+
     private static boolean matches(@Nullable Issue issue, @NonNull String id) {
         if (id.equalsIgnoreCase("all")) {
             return true;
@@ -161,7 +258,7 @@ public class LintDriver {
         }
 
         @Override
-        public void report(@NonNull Context context, @NonNull Issue issue, @NonNull Severity severity, @Nullable Location location, @NonNull String message, @NonNull TextFormat format) {
+        public synchronized void report(@NonNull Context context, @NonNull Issue issue, @NonNull Severity severity, @Nullable Location location, @NonNull String message, @NonNull TextFormat format) {
             mDelegate.report(context, issue, severity, location, message, format);
         }
 
@@ -0,0 +1,153 @@
+package com.tyron.lint;
+
+import static org.junit.Assert.assertEquals;
+
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.tyron.lint.api.Detector;
+import com.tyron.lint.api.JavaContext;
+import com.tyron.lint.api.JavaVoidVisitor;
+import com.tyron.lint.client.DetectorTimings;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JavaVisitorTest {
+
+    private static final int FILE_COUNT = 8;
+    private static final int METHOD_COUNT = 5;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * Counts the methods it visits, detectors that use the compiler also look up the scope of
+     * each method and record how many of them ran at the same time
+     */
+    private static class CountingDetector extends Detector implements Detector.JavaScanner {
+        private final boolean mUsesCompiler;
+        private final AtomicInteger mActive;
+        private final AtomicInteger mMaxActive;
+        final AtomicInteger mMethods = new AtomicInteger();
+
+        CountingDetector(boolean usesCompiler, AtomicInteger active, AtomicInteger maxActive) {
+            mUsesCompiler = usesCompiler;
+            mActive = active;
+            mMaxActive = maxActive;
+        }
+
+        @Override
+        public boolean usesCompiler() {
+            return mUsesCompiler;
+        }
+
+        @Override
+        public List<Class<? extends Tree>> getApplicableTypes() {
+            return Collections.singletonList(MethodTree.class);
+        }
+
+        @Override
+        public JavaVoidVisitor getVisitor(JavaContext context) {
+            return new JavaVoidVisitor() {
+                @Override
+                public Void visitMethod(MethodTree node, Void unused) {
+                    int active = mActive.incrementAndGet();
+                    mMaxActive.accumulateAndGet(active, Math::max);
+                    try {
+                        if (mUsesCompiler) {
+                            TreePath path = context.getPath(node);
+                            context.getTrees().getScope(path);
+                        }
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        mActive.decrementAndGet();
+                    }
+                    mMethods.incrementAndGet();
+                    return null;
+                }
+            };
+        }
+    }
+
+    private static class FirstCompilerDetector extends CountingDetector {
+        FirstCompilerDetector(AtomicInteger active, AtomicInteger maxActive) {
+            super(true, active, maxActive);
+        }
+    }
+
+    private static class SecondCompilerDetector extends CountingDetector {
+        SecondCompilerDetector(AtomicInteger active, AtomicInteger maxActive) {
+            super(true, active, maxActive);
+        }
+    }
+
+    private static class TreeDetector extends CountingDetector {
+        TreeDetector() {
+            super(false, new AtomicInteger(), new AtomicInteger());
+        }
+    }
+
+    @Test
+    public void testParallelVisits() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            StringBuilder source = new StringBuilder("package test;\n")
+                    .append("public class Test").append(i).append(" {\n");
+            for (int j = 0; j < METHOD_COUNT; j++) {
+                source.append("    int method").append(j).append("(int a) {\n")
+                        .append("        return a + ").append(j).append(";\n")
+                        .append("    }\n");
+            }
+            source.append("}\n");
+            File file = mFolder.newFile("Test" + i + ".java");
+            Files.write(file.toPath(), source.toString().getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        List<JavaContext> contexts = LintTestUtils.createContexts(null, files);
+
+        // the compiler detectors share the counters so any overlap between them is recorded
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        CountingDetector first = new FirstCompilerDetector(active, maxActive);
+        CountingDetector second = new SecondCompilerDetector(active, maxActive);
+        CountingDetector tree = new TreeDetector();
+        DetectorTimings timings = new DetectorTimings();
+        JavaVisitor visitor = new JavaVisitor(null, Arrays.asList(first, second, tree), timings);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (JavaContext context : contexts) {
+                futures.add(executor.submit(() -> visitor.visitCompilationUnit(context)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, maxActive.get());
+        for (CountingDetector detector : Arrays.asList(first, second, tree)) {
+            // javac adds the default constructor to each class
+            assertEquals(FILE_COUNT * (METHOD_COUNT + 1), detector.mMethods.get());
+            assertEquals(FILE_COUNT, timings.getFileCount(detector.getClass()));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.tyron.lint;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.JavacTool;
+import com.tyron.lint.api.JavaContext;
+import com.tyron.lint.client.LintDriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.tools.StandardJavaFileManager;
+
+public class LintTestUtils {
+
+    /**
+     * Writes the source to the file, then parses and attributes it and returns a context with
+     * the resulting compilation unit, as the editor would provide it.
+     */
+    public static JavaContext createContext(LintDriver driver, File file, String source)
+            throws IOException {
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return createContexts(driver, Collections.singletonList(file)).get(0);
+    }
+
+    /**
+     * Parses and attributes the files with a single javac task, so the contexts share its
+     * symbols like the files of a project opened in the editor do.
+     */
+    public static List<JavaContext> createContexts(LintDriver driver, List<File> files) {
+        JavacTool tool = JavacTool.create();
+        StandardJavaFileManager fileManager =
+                tool.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        JavacTask task = tool.getTask(null, fileManager, null,
+                Collections.singletonList("-proc:none"), null,
+                fileManager.getJavaFileObjectsFromFiles(files));
+        List<JavaContext> contexts = new ArrayList<>();
+        try {
+            Iterator<File> fileIterator = files.iterator();
+            for (CompilationUnitTree unit : task.parse()) {
+                JavaContext context = new JavaContext(driver, null, fileIterator.next(), null);
+                context.setCompilationUnit(task, unit);
+                contexts.add(context);
+            }
+            task.analyze();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return contexts;
+    }
+}
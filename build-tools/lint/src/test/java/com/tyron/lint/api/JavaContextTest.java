@@ -0,0 +1,111 @@
+package com.tyron.lint.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.tyron.lint.LintTestUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JavaContextTest {
+
+    private static final String SOURCE = "package test;\n" +
+            "public class Test {\n" +
+            "    private int mField = 1;\n" +
+            "    public int method(int a) {\n" +
+            "        if (a > mField) {\n" +
+            "            return a + mField;\n" +
+            "        }\n" +
+            "        Runnable r = () -> System.out.println(a);\n" +
+            "        return 0;\n" +
+            "    }\n" +
+            "    class Inner {\n" +
+            "        void run() { new Object() { }; }\n" +
+            "    }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private JavaContext mContext;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = LintTestUtils.createContext(null, mFolder.newFile("Test.java"), SOURCE);
+    }
+
+    @Test
+    public void testParentsMatchTreePaths() {
+        CompilationUnitTree unit = mContext.getCompilationUnit();
+        List<TreePath> paths = new ArrayList<>();
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree tree, Void unused) {
+                if (tree != null && getCurrentPath() != null) {
+                    paths.add(new TreePath(getCurrentPath(), tree));
+                }
+                return super.scan(tree, unused);
+            }
+        }.scan(new TreePath(unit), null);
+
+        assertNull(mContext.getParent(unit));
+        for (TreePath expected : paths) {
+            Tree tree = expected.getLeaf();
+            assertSame(expected.getParentPath().getLeaf(), mContext.getParent(tree));
+
+            TreePath path = mContext.getPath(tree);
+            assertNotNull(path);
+            for (TreePath e = expected; e != null; e = e.getParentPath()) {
+                assertNotNull(path);
+                assertSame(e.getLeaf(), path.getLeaf());
+                path = path.getParentPath();
+            }
+            assertNull(path);
+        }
+    }
+
+    @Test
+    public void testPathOfCompilationUnit() {
+        CompilationUnitTree unit = mContext.getCompilationUnit();
+        TreePath path = mContext.getPath(unit);
+        assertNotNull(path);
+        assertSame(unit, path.getLeaf());
+        assertNull(path.getParentPath());
+    }
+
+    @Test
+    public void testTreesOfOtherFilesHaveNoPath() throws Exception {
+        JavaContext other = LintTestUtils.createContext(null,
+                mFolder.newFile("Other.java"), SOURCE.replace("Test", "Other"));
+        Tree foreign = other.getCompilationUnit().getTypeDecls().get(0);
+
+        assertNull(mContext.getParent(foreign));
+        assertNull(mContext.getPath(foreign));
+    }
+
+    @Test
+    public void testParentsAreRebuiltForNewCompilationUnit() throws Exception {
+        Tree oldClass = mContext.getCompilationUnit().getTypeDecls().get(0);
+        assertNotNull(mContext.getPath(oldClass));
+
+        JavaContext other = LintTestUtils.createContext(null,
+                mFolder.newFile("Other.java"), SOURCE.replace("Test", "Other"));
+        mContext.setCompilationUnit(other.getJavacTask(), other.getCompilationUnit());
+
+        Tree newClass = other.getCompilationUnit().getTypeDecls().get(0);
+        assertNull(mContext.getPath(oldClass));
+        assertEquals(other.getCompilationUnit(), mContext.getParent(newClass));
+    }
+}
@@ -0,0 +1,146 @@
+package com.tyron.lint.client;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreeScanner;
+import com.tyron.lint.LintTestUtils;
+import com.tyron.lint.api.Category;
+import com.tyron.lint.api.Context;
+import com.tyron.lint.api.Detector;
+import com.tyron.lint.api.Implementation;
+import com.tyron.lint.api.Issue;
+import com.tyron.lint.api.JavaContext;
+import com.tyron.lint.api.Location;
+import com.tyron.lint.api.Scope;
+import com.tyron.lint.api.Severity;
+import com.tyron.lint.api.TextFormat;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LintDriverTest {
+
+    private static final Issue ISSUE = Issue.create(
+            "TestIssue",
+            "Test issue",
+            "An issue used by the tests.",
+            Category.CORRECTNESS,
+            5,
+            Severity.WARNING,
+            new Implementation(Detector.class, Scope.JAVA_FILE_SCOPE));
+
+    private static final Issue OTHER_ISSUE = Issue.create(
+            "OtherIssue",
+            "Other issue",
+            "Another issue used by the tests.",
+            Category.CORRECTNESS,
+            5,
+            Severity.WARNING,
+            new Implementation(Detector.class, Scope.JAVA_FILE_SCOPE));
+
+    private static final String SOURCE = "package test;\n" +
+            "public class Test {\n" +
+            "    @SuppressLint({\"Unrelated\", \"TestIssue\"})\n" +
+            "    int suppressed() {\n" +
+            "        return 1;\n" +
+            "    }\n" +
+            "    @java.lang.SuppressWarnings(\"all\")\n" +
+            "    int suppressedAll() {\n" +
+            "        return 2;\n" +
+            "    }\n" +
+            "    @Deprecated\n" +
+            "    int notSuppressed() {\n" +
+            "        return 3;\n" +
+            "    }\n" +
+            "    class Inner {\n" +
+            "        @SuppressWarnings(\"TestIssue\")\n" +
+            "        void outer() {\n" +
+            "            new Object() {\n" +
+            "                int nested() { return 4; }\n" +
+            "            };\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n" +
+            "@interface SuppressLint { String[] value(); }\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private LintDriver mDriver;
+    private JavaContext mContext;
+    private final Map<String, Tree> mReturns = new HashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        IssueRegistry registry = new IssueRegistry() {
+            @Override
+            public List<Issue> getIssues() {
+                return Collections.singletonList(ISSUE);
+            }
+        };
+        LintClient client = new LintClient() {
+            @Override
+            public void report(@NonNull Context context, @NonNull Issue issue,
+                               @NonNull Severity severity, @Nullable Location location,
+                               @NonNull String message, @NonNull TextFormat format) {
+            }
+        };
+        mDriver = new LintDriver(registry, client);
+        mContext = LintTestUtils.createContext(mDriver, mFolder.newFile("Test.java"), SOURCE);
+
+        // the return statement of each method, by the name of the method
+        new TreeScanner<Void, String>() {
+            @Override
+            public Void visitMethod(MethodTree node, String method) {
+                return super.visitMethod(node, node.getName().toString());
+            }
+
+            @Override
+            public Void visitReturn(ReturnTree node, String method) {
+                mReturns.put(method, node.getExpression());
+                return super.visitReturn(node, method);
+            }
+        }.scan(mContext.getCompilationUnit(), null);
+    }
+
+    @Test
+    public void testSuppressedById() {
+        assertTrue(mDriver.isSuppressed(mContext, ISSUE, mReturns.get("suppressed")));
+        assertFalse(mDriver.isSuppressed(mContext, OTHER_ISSUE, mReturns.get("suppressed")));
+    }
+
+    @Test
+    public void testSuppressedByQualifiedAnnotation() {
+        assertTrue(mDriver.isSuppressed(mContext, ISSUE, mReturns.get("suppressedAll")));
+        assertTrue(mDriver.isSuppressed(mContext, OTHER_ISSUE, mReturns.get("suppressedAll")));
+    }
+
+    @Test
+    public void testNotSuppressed() {
+        assertFalse(mDriver.isSuppressed(mContext, ISSUE, mReturns.get("notSuppressed")));
+        ClassTree type = (ClassTree) mContext.getCompilationUnit().getTypeDecls().get(0);
+        assertFalse(mDriver.isSuppressed(mContext, ISSUE, type));
+        assertFalse(mDriver.isSuppressed(null, ISSUE, mReturns.get("suppressed")));
+    }
+
+    @Test
+    public void testSuppressedByEnclosingMethod() {
+        assertTrue(mDriver.isSuppressed(mContext, ISSUE, mReturns.get("nested")));
+        assertFalse(mDriver.isSuppressed(mContext, OTHER_ISSUE, mReturns.get("nested")));
+    }
+}
@@ -7,6 +7,7 @@ import com.tyron.builder.model.CodeAssistLibrary;
 import com.tyron.builder.project.util.PackageTrie;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,15 @@ public interface JavaModule extends Module {
 
     void addLibrary(@NonNull CodeAssistLibrary jar);
 
+    /**
+     * Adds every library, implementations may index the libraries in parallel.
+     */
+    default void addLibraries(@NonNull Collection<? extends CodeAssistLibrary> libraries) {
+        for (CodeAssistLibrary library : libraries) {
+            addLibrary(library);
+        }
+    }
+
     /**
      * Sets the map of md5 hash to its library source
      */
@@ -106,6 +106,15 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
         }
     }
 
+    @NonNull
+    @Override
+    protected List<File> getLibraryJars(@NonNull CodeAssistLibrary library) {
+        if (library instanceof CodeAssistAndroidLibrary) {
+            return ((CodeAssistAndroidLibrary) library).getCompileJarFiles();
+        }
+        return super.getLibraryJars(library);
+    }
+
     @Override
     public File getAndroidResourcesDirectory() {
         File custom = getPathSetting("android_resources_directory");
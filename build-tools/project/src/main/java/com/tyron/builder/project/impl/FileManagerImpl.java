@@ -15,13 +15,13 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -60,7 +60,7 @@ public class FileManagerImpl implements FileManager {
     private final File mRoot;
     private final Map<File, FileState> mSnapshots;
 
-    private final List<FileListener> mListeners = new ArrayList<>();
+    private final List<FileListener> mListeners = new CopyOnWriteArrayList<>();
 
     public FileManagerImpl(File root) {
         mRoot = root;
@@ -165,12 +165,12 @@ public class FileManagerImpl implements FileManager {
     }
 
     @Override
-    public synchronized void addSnapshotListener(FileListener listener) {
+    public void addSnapshotListener(FileListener listener) {
         mListeners.add(listener);
     }
 
     @Override
-    public synchronized void removeSnapshotListener(FileListener listener) {
+    public void removeSnapshotListener(FileListener listener) {
         mListeners.remove(listener);
     }
 
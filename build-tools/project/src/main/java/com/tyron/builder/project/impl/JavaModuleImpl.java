@@ -7,6 +7,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.model.CodeAssistLibrary;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.util.CompactPackageTrie;
+import com.tyron.builder.project.util.LibraryIndexCache;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 
@@ -18,19 +20,20 @@ import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
-    // Map of fully qualified names and the jar they are contained in
-    private final Map<String, File> mClassFiles;
+    // the class index of each jar, shared with the other modules using the same jar
+    private final Map<File, CompactPackageTrie> mJarIndexes;
     private final Map<String, File> mJavaFiles;
     private final Map<String, CodeAssistLibrary> mLibraryHashMap;
     private final Map<String, File> mInjectedClassesMap;
@@ -42,7 +45,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public JavaModuleImpl(File root) {
         super(root);
         mJavaFiles = new HashMap<>();
-        mClassFiles = new HashMap<>();
+        mJarIndexes = new ConcurrentHashMap<>();
         mLibraries = new HashSet<>();
         mInjectedClassesMap = new HashMap<>();
         mLibraryHashMap = new HashMap<>();
@@ -97,7 +100,9 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public Set<String> getAllClasses() {
         Set<String> classes = new HashSet<>();
         classes.addAll(mJavaFiles.keySet());
-        classes.addAll(mClassFiles.keySet());
+        for (CompactPackageTrie jarIndex : mJarIndexes.values()) {
+            jarIndex.getLeafNodes(classes);
+        }
         classes.addAll(mInjectedClassesMap.keySet());
         return classes;
     }
@@ -117,8 +122,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             return;
         }
         try {
-            // noinspection unused, used to check if jar is valid.
-            JarFile jarFile = new JarFile(jar);
+            // fails if the jar is not valid
             putJar(jar);
             mLibraries.add(jar);
         } catch (IOException e) {
@@ -126,32 +130,44 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         }
     }
 
+    /**
+     * Scans the jars of every library in parallel before adding them one by one, so the jars
+     * are not scanned serially on the calling thread.
+     */
+    @Override
+    public void addLibraries(@NonNull Collection<? extends CodeAssistLibrary> libraries) {
+        List<File> jars = new ArrayList<>();
+        for (CodeAssistLibrary library : libraries) {
+            jars.addAll(getLibraryJars(library));
+        }
+        LibraryIndexCache.getInstance().getAll(jars);
+        for (CodeAssistLibrary library : libraries) {
+            addLibrary(library);
+        }
+    }
+
+    /**
+     * @return the jars that {@link #addLibrary(CodeAssistLibrary)} indexes for the library
+     */
+    @NonNull
+    protected List<File> getLibraryJars(@NonNull CodeAssistLibrary library) {
+        File jar = library.getSourceFile();
+        if (jar == null || !jar.getName().endsWith(".jar")) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(jar);
+    }
+
     protected void putJar(File file) throws IOException {
         if (file == null) {
             return;
         }
-        try (JarFile jar = new JarFile(file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-
-                if (!entry.getName().endsWith(".class")) {
-                    continue;
-                }
-
-                // We only want top level classes, if it contains $ then
-                // its an inner class, we ignore it
-                if (entry.getName().contains("$")) {
-                    continue;
-                }
-
-                String packageName = entry.getName().replace("/", ".")
-                        .substring(0, entry.getName().length() - ".class".length());
-
-                mClassFiles.put(packageName, file);
-                mClassIndex.add(packageName);
-            }
+        CompactPackageTrie jarIndex = LibraryIndexCache.getInstance().get(file);
+        CompactPackageTrie previous = mJarIndexes.put(file, jarIndex);
+        if (previous != null && previous != jarIndex) {
+            mClassIndex.removeLibrary(previous);
         }
+        mClassIndex.addLibrary(jarIndex);
     }
 
     @NonNull
@@ -254,6 +270,8 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public void clear() {
         mJavaFiles.clear();
         mLibraries.clear();
+        mJarIndexes.clear();
+        mClassIndex.clearLibraries();
         mLibraryHashMap.clear();
     }
 }
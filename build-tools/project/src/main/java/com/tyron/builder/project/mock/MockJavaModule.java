@@ -144,7 +144,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
 
     @Override
     public Map<String, File> getInjectedClasses() {
-        return null;
+        return Collections.emptyMap();
     }
 
     @Override
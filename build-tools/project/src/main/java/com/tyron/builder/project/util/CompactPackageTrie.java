@@ -0,0 +1,224 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable {@link PackageTrie} stored in a few primitive arrays instead of a node object
+ * and a map per package segment.
+ *
+ * Nodes are laid out breadth first, the children of a node are contiguous and sorted by name
+ * so they can be binary searched. Segment names are stored once in a shared char array.
+ *
+ * Tries of jars are built by {@link LibraryIndexCache} and shared between every module depending
+ * on the same jar.
+ */
+public final class CompactPackageTrie {
+
+    @NonNull
+    public static CompactPackageTrie build(@NonNull Collection<String> fqns) {
+        BuilderNode root = new BuilderNode();
+        for (String fqn : fqns) {
+            BuilderNode current = root;
+            for (String part : fqn.split("\\.")) {
+                current = current.children.computeIfAbsent(part, it -> new BuilderNode());
+            }
+            current.leaf = true;
+        }
+        return new CompactPackageTrie(root);
+    }
+
+    private static class BuilderNode {
+        final TreeMap<String, BuilderNode> children = new TreeMap<>();
+        boolean leaf;
+    }
+
+    private final char[] mNames;
+    private final int[] mNameStart;
+    private final int[] mNameLength;
+    private final int[] mFirstChild;
+    private final int[] mChildCount;
+    private final BitSet mLeaves;
+
+    private CompactPackageTrie(BuilderNode root) {
+        List<BuilderNode> nodes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        nodes.add(root);
+        names.add("");
+        // breadth first, so the children of every node end up next to each other
+        for (int i = 0; i < nodes.size(); i++) {
+            for (Map.Entry<String, BuilderNode> child : nodes.get(i).children.entrySet()) {
+                nodes.add(child.getValue());
+                names.add(child.getKey());
+            }
+        }
+
+        int count = nodes.size();
+        mNameStart = new int[count];
+        mNameLength = new int[count];
+        mFirstChild = new int[count];
+        mChildCount = new int[count];
+        mLeaves = new BitSet(count);
+
+        Map<String, Integer> nameOffsets = new HashMap<>();
+        StringBuilder pool = new StringBuilder();
+        int nextChild = 1;
+        for (int i = 0; i < count; i++) {
+            String name = names.get(i);
+            Integer offset = nameOffsets.get(name);
+            if (offset == null) {
+                offset = pool.length();
+                pool.append(name);
+                nameOffsets.put(name, offset);
+            }
+            mNameStart[i] = offset;
+            mNameLength[i] = name.length();
+
+            BuilderNode node = nodes.get(i);
+            mFirstChild[i] = nextChild;
+            mChildCount[i] = node.children.size();
+            nextChild += node.children.size();
+            if (node.leaf) {
+                mLeaves.set(i);
+            }
+        }
+        mNames = new char[pool.length()];
+        pool.getChars(0, pool.length(), mNames, 0);
+    }
+
+    /**
+     * @return the number of nodes of this trie, including the root
+     */
+    public int getNodeCount() {
+        return mNameStart.length;
+    }
+
+    public boolean contains(@NonNull String fqn) {
+        int node = find(fqn);
+        return node != -1 && mLeaves.get(node);
+    }
+
+    /**
+     * Adds the fully qualified names of the leaves under the given package to the result, the
+     * package itself is not included.
+     */
+    public void getMatchingPackages(@NonNull String packageQuery,
+                                    @NonNull Collection<String> result) {
+        int node = find(packageQuery);
+        if (node == -1) {
+            return;
+        }
+        StringBuilder prefix = new StringBuilder(packageQuery);
+        int first = mFirstChild[node];
+        for (int child = first; child < first + mChildCount[node]; child++) {
+            collectLeaves(child, prefix, result);
+        }
+    }
+
+    /**
+     * Adds the names of the first package segments to the result.
+     */
+    public void getTopLevelNonLeafNodes(@NonNull Collection<String> result) {
+        int first = mFirstChild[0];
+        for (int child = first; child < first + mChildCount[0]; child++) {
+            result.add(getName(child));
+        }
+    }
+
+    /**
+     * Adds the fully qualified name of every leaf to the result.
+     */
+    public void getLeafNodes(@NonNull Collection<String> result) {
+        int first = mFirstChild[0];
+        for (int child = first; child < first + mChildCount[0]; child++) {
+            collectLeaves(child, new StringBuilder(), result);
+        }
+    }
+
+    private void collectLeaves(int node, StringBuilder prefix, Collection<String> result) {
+        int length = prefix.length();
+        if (length > 0) {
+            prefix.append('.');
+        }
+        prefix.append(mNames, mNameStart[node], mNameLength[node]);
+        if (mLeaves.get(node)) {
+            result.add(prefix.toString());
+        }
+        int first = mFirstChild[node];
+        for (int child = first; child < first + mChildCount[node]; child++) {
+            collectLeaves(child, prefix, result);
+        }
+        prefix.setLength(length);
+    }
+
+    /**
+     * @return the node of the given dotted name, the root for an empty name, -1 if there is none
+     */
+    private int find(String name) {
+        int node = 0;
+        if (name.isEmpty()) {
+            return node;
+        }
+        int start = 0;
+        while (start <= name.length()) {
+            int end = name.indexOf('.', start);
+            if (end == -1) {
+                end = name.length();
+            }
+            node = findChild(node, name, start, end);
+            if (node == -1) {
+                return -1;
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private int findChild(int node, String name, int start, int end) {
+        int low = mFirstChild[node];
+        int high = low + mChildCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareName(mid, name, start, end);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the name of the node to the region of the string the same way
+     * {@link String#compareTo(String)} does, which is the order the children were sorted in.
+     */
+    private int compareName(int node, String name, int start, int end) {
+        int offset = mNameStart[node];
+        int length = mNameLength[node];
+        int otherLength = end - start;
+        int min = Math.min(length, otherLength);
+        for (int i = 0; i < min; i++) {
+            char c1 = mNames[offset + i];
+            char c2 = name.charAt(start + i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length - otherLength;
+    }
+
+    @NonNull
+    private String getName(int node) {
+        return new String(mNames, mNameStart[node], mNameLength[node]);
+    }
+}
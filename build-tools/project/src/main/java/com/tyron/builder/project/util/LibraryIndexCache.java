@@ -0,0 +1,238 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.tyron.common.ApplicationPaths;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.common.util.JarCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+
+/**
+ * Scans library jars for their top level classes and holds the resulting
+ * {@link CompactPackageTrie} of each jar.
+ *
+ * The class list of a jar is written to disk by a {@link JarCache} so the jar does not need to
+ * be scanned again when a project is reopened, a changed jar is scanned again. Tries are kept
+ * in memory until memory runs low and are shared with every other module depending on the
+ * same jar.
+ */
+public class LibraryIndexCache {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(LibraryIndexCache.class);
+    private static final String CACHE_DIRECTORY = "library-class-lists";
+    private static final String CACHE_EXTENSION = ".classes";
+
+    private static final int MAGIC = 0x4C434C53;
+    private static final int VERSION = 1;
+
+    /**
+     * Class lists are small, this holds those of a few thousand libraries
+     */
+    private static final long MAX_CACHE_SIZE = 32 * 1024 * 1024;
+
+    private static volatile LibraryIndexCache sInstance;
+
+    public static LibraryIndexCache getInstance() {
+        if (sInstance == null) {
+            synchronized (LibraryIndexCache.class) {
+                if (sInstance == null) {
+                    sInstance = new LibraryIndexCache(
+                            new File(ApplicationPaths.getCacheDir(), CACHE_DIRECTORY),
+                            ForkJoinPool.commonPool());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public static void setInstance(@Nullable LibraryIndexCache cache) {
+        sInstance = cache;
+    }
+
+    private final JarCache<CompactPackageTrie> mCache;
+    private final ForkJoinPool mPool;
+    private final Map<File, Long> mTimings = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheDirectory the directory of the class lists, null to only cache in memory
+     * @param pool           the pool jars are scanned on
+     */
+    public LibraryIndexCache(@Nullable File cacheDirectory, @NonNull ForkJoinPool pool) {
+        mCache = new JarCache<>(cacheDirectory, CACHE_EXTENSION, VERSION,
+                new JarCache.Format<CompactPackageTrie>() {
+                    @NonNull
+                    @Override
+                    public CompactPackageTrie read(@NonNull File cacheFile) throws IOException {
+                        return CompactPackageTrie.build(LibraryIndexCache.read(cacheFile));
+                    }
+
+                    @NonNull
+                    @Override
+                    public CompactPackageTrie create(@NonNull File jar,
+                                                     @Nullable File cacheFile) throws IOException {
+                        return CompactPackageTrie.build(scanAndWrite(jar, cacheFile));
+                    }
+                }, true, MAX_CACHE_SIZE);
+        mPool = pool;
+    }
+
+    /**
+     * Returns the trie of the top level classes of the jar.
+     *
+     * @throws IOException if the jar is not a valid jar file
+     */
+    @NonNull
+    public CompactPackageTrie get(@NonNull File jar) throws IOException {
+        CompactPackageTrie trie = mCache.getIfLoaded(jar);
+        if (trie != null) {
+            return trie;
+        }
+
+        long start = System.currentTimeMillis();
+        trie = mCache.get(jar);
+        long time = System.currentTimeMillis() - start;
+        mTimings.put(jar, time);
+        sLogger.fine("Indexed " + jar.getName() + " in " + time + "ms");
+        return trie;
+    }
+
+    /**
+     * Indexes the jars in parallel. Jars that cannot be read are left out of the result.
+     *
+     * @return the trie of each valid jar, in the iteration order of the given jars
+     */
+    @NonNull
+    public Map<File, CompactPackageTrie> getAll(@NonNull Collection<File> jars) {
+        List<File> unique = new ArrayList<>(new LinkedHashSet<>(jars));
+        List<Callable<CompactPackageTrie>> tasks = new ArrayList<>(unique.size());
+        for (File jar : unique) {
+            tasks.add(() -> get(jar));
+        }
+
+        long start = System.currentTimeMillis();
+        List<Future<CompactPackageTrie>> futures = mPool.invokeAll(tasks);
+        Map<File, CompactPackageTrie> result = new LinkedHashMap<>();
+        for (int i = 0; i < unique.size(); i++) {
+            File jar = unique.get(i);
+            try {
+                result.put(jar, futures.get(i).get());
+            } catch (ExecutionException e) {
+                sLogger.warning("Unable to index " + jar + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        sLogger.info("Indexed " + result.size() + " libraries in " +
+                     (System.currentTimeMillis() - start) + "ms");
+        return result;
+    }
+
+    /**
+     * @return the time in milliseconds it took to index each jar the last time it was not
+     * already in memory
+     */
+    @NonNull
+    public Map<File, Long> getTimings() {
+        return Collections.unmodifiableMap(mTimings);
+    }
+
+    private static List<String> scanAndWrite(File jar, @Nullable File cacheFile)
+            throws IOException {
+        List<String> classes = scan(jar);
+        if (cacheFile != null) {
+            try {
+                write(classes, cacheFile);
+            } catch (IOException e) {
+                sLogger.warning("Unable to cache the classes of " + jar + ": " + e);
+            }
+        }
+        return classes;
+    }
+
+    @VisibleForTesting
+    static List<String> scan(File jar) throws IOException {
+        List<String> classes = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                // We only want top level classes, if it contains $ then
+                // its an inner class, we ignore it
+                if (!name.endsWith(".class") || name.contains("$")) {
+                    continue;
+                }
+                classes.add(name.substring(0, name.length() - ".class".length())
+                                    .replace('/', '.'));
+            }
+        }
+        return classes;
+    }
+
+    private static List<String> read(File cacheFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown class list format");
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid class count " + count);
+            }
+            List<String> classes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                classes.add(in.readUTF());
+            }
+            return classes;
+        }
+    }
+
+    private static void write(List<String> classes, File cacheFile) throws IOException {
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        // written to a temporary file first so a concurrent reader never sees a partial list
+        File temp = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(classes.size());
+            for (String name : classes) {
+                out.writeUTF(name);
+            }
+        }
+        if (!temp.renameTo(cacheFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+}
@@ -6,10 +6,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A trie that stores package segments to a node.
@@ -22,15 +23,63 @@ import java.util.function.Function;
  *     /  \
  * String Object
  * </p>
+ *
+ * Classes of libraries are not added one by one, their {@link CompactPackageTrie} is attached
+ * with {@link #addLibrary(CompactPackageTrie)} and queried along with this trie.
  */
 public class PackageTrie {
 
     private final Node mRoot;
+    private final Set<CompactPackageTrie> mLibraries =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     public PackageTrie() {
         mRoot = new Node();
     }
 
+    /**
+     * Includes the classes of the library trie in the results of this trie. The library trie
+     * is not copied, so it may be shared with other tries.
+     */
+    public void addLibrary(@NonNull CompactPackageTrie library) {
+        mLibraries.add(library);
+    }
+
+    public void removeLibrary(@NonNull CompactPackageTrie library) {
+        mLibraries.remove(library);
+    }
+
+    public void clearLibraries() {
+        mLibraries.clear();
+    }
+
+    /**
+     * @return whether the fully qualified name of the class has been added to this trie or
+     * to one of its libraries
+     */
+    public boolean contains(@NonNull String fqn) {
+        Node current = mRoot;
+        for (String part : getParts(fqn)) {
+            if (current.getChildren() == null) {
+                current = null;
+                break;
+            }
+            current = current.getChildren().get(part);
+            if (current == null) {
+                break;
+            }
+        }
+        if (current != null && current.isLeaf) {
+            return true;
+        }
+        for (CompactPackageTrie library : mLibraries) {
+            if (library.contains(fqn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Add the fully qualified name to the index.
      *
@@ -85,6 +134,18 @@ public class PackageTrie {
     }
 
     public List<String> getMatchingPackages(String packageQuery) {
+        List<String> result = getSourceMatchingPackages(packageQuery);
+        if (mLibraries.isEmpty()) {
+            return result;
+        }
+        Set<String> merged = new LinkedHashSet<>(result);
+        for (CompactPackageTrie library : mLibraries) {
+            library.getMatchingPackages(packageQuery, merged);
+        }
+        return new ArrayList<>(merged);
+    }
+
+    private List<String> getSourceMatchingPackages(String packageQuery) {
         List<String> result = new ArrayList<>();
         StringBuilder currentPackage = new StringBuilder();
         String[] parts = getParts(packageQuery);
@@ -120,15 +181,22 @@ public class PackageTrie {
     }
 
     public Set<String> getTopLevelNonLeafNodes() {
-        if (mRoot.getChildren() == null) {
-            return Collections.emptySet();
+        Set<String> nodes = new HashSet<>();
+        if (mRoot.getChildren() != null) {
+            nodes.addAll(mRoot.getChildren().keySet());
         }
-
-        return mRoot.getChildren().keySet();
+        for (CompactPackageTrie library : mLibraries) {
+            library.getTopLevelNonLeafNodes(nodes);
+        }
+        return nodes;
     }
 
     public Set<String> getLeafNodes() {
-        return new HashSet<>(getLeafNodes("", mRoot));
+        Set<String> leafNodes = new HashSet<>(getLeafNodes("", mRoot));
+        for (CompactPackageTrie library : mLibraries) {
+            library.getLeafNodes(leafNodes);
+        }
+        return leafNodes;
     }
 
     private Set<String> getLeafNodes(String currentPackage, Node current) {
@@ -0,0 +1,59 @@
+package com.tyron.builder.project.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class CompactPackageTrieTest {
+
+    private static final List<String> CLASSES = Arrays.asList(
+            "java.lang.String",
+            "java.lang.Object",
+            "something.Class",
+            "something.another.Class",
+            "a.bc.D"
+    );
+
+    @Test
+    public void testMatchingPackages() {
+        CompactPackageTrie trie = CompactPackageTrie.build(CLASSES);
+
+        List<String> names = new ArrayList<>();
+        trie.getMatchingPackages("something", names);
+        assert names.size() == 2;
+        assert names.contains("something.Class");
+        assert names.contains("something.another.Class");
+
+        names.clear();
+        trie.getMatchingPackages("java.lan", names);
+        assert names.isEmpty();
+    }
+
+    @Test
+    public void testContains() {
+        CompactPackageTrie trie = CompactPackageTrie.build(CLASSES);
+        assert trie.contains("a.bc.D");
+        assert !trie.contains("a.bc");
+        assert !trie.contains("a.b");
+    }
+
+    @Test
+    public void testLibraryInPackageTrie() {
+        PackageTrie trie = new PackageTrie();
+        trie.add("java.util.List");
+        trie.addLibrary(CompactPackageTrie.build(CLASSES));
+
+        List<String> packages = trie.getMatchingPackages("java");
+        assert packages.size() == 3;
+        assert packages.contains("java.util.List");
+        assert packages.contains("java.lang.String");
+
+        Set<String> topLevel = trie.getTopLevelNonLeafNodes();
+        assert topLevel.equals(new HashSet<>(Arrays.asList("java", "something", "a")));
+        assert trie.getLeafNodes().size() == CLASSES.size() + 1;
+    }
+}
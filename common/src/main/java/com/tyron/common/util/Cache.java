@@ -5,13 +5,32 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
-/** Cache maps a file + an arbitrary key to a value. When the file is modified, the mapping expires. */
+/**
+ * Cache maps a file + an arbitrary key to a value. When the file is modified, every mapping of
+ * that file expires.
+ *
+ * By default the cache is unbounded. A cache created with {@link #Cache(long, Weigher)} evicts
+ * the least recently used entries once the total weight of its values exceeds the maximum.
+ */
 public class Cache<K, V> {
+
+    /**
+     * Computes the weight of a value, used to bound the cache by something else than the
+     * number of entries.
+     */
+    public interface Weigher<V> {
+        int weigh(V value);
+    }
+
     public static class Key<K> {
         public final Path file;
         public final K key;
@@ -23,7 +42,7 @@ public class Cache<K, V> {
 
         @Override
         public boolean equals(Object other) {
-            if (other.getClass() != Cache.Key.class) return false;
+            if (other == null || other.getClass() != Cache.Key.class) return false;
             Cache.Key that = (Cache.Key) other;
             return Objects.equals(this.key, that.key) && Objects.equals(this.file, that.file);
         }
@@ -34,67 +53,229 @@ public class Cache<K, V> {
         }
     }
 
+    /**
+     * A snapshot of the statistics of a cache.
+     */
+    public static class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final long evictionCount;
+        public final long size;
+        public final long weight;
+
+        Stats(long hitCount, long missCount, long evictionCount, long size, long weight) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                   "hitCount=" + hitCount +
+                   ", missCount=" + missCount +
+                   ", evictionCount=" + evictionCount +
+                   ", size=" + size +
+                   ", weight=" + weight +
+                   '}';
+        }
+    }
+
     private class Value {
         final V value;
+        final int weight;
         final Instant created = Instant.now();
 
-        Value(V value) {
+        Value(V value, int weight) {
             this.value = value;
+            this.weight = weight;
         }
     }
 
-    private final Map<Key<K>, Value> map = new HashMap<>();
+    private final long maxWeight;
+    private final Weigher<? super V> weigher;
 
-    public boolean has(Path file, K k) {
+    // access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<Key<K>, Value> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Set<Key<K>>> fileKeys = new HashMap<>();
+
+    private long totalWeight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates an unbounded cache.
+     */
+    public Cache() {
+        this(Long.MAX_VALUE, value -> 1);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of entries.
+     */
+    public Cache(int maxEntries) {
+        this(maxEntries, value -> 1);
+    }
+
+    /**
+     * Creates a cache whose total weight of values does not exceed the given maximum.
+     */
+    public Cache(long maxWeight, Weigher<? super V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized boolean has(Path file, K k) {
         return !needs(file, k);
     }
 
-    public void clear() {
+    public synchronized void clear() {
         map.clear();
+        fileKeys.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized boolean needs(Path file, K k) {
+        return getValue(file, k) == null;
+    }
+
+    /**
+     * Returns the cached value, or null if it is not in the cache or the file has been
+     * modified after it was loaded. A stale value stays in the cache until it is loaded again
+     * or the file is invalidated.
+     */
+    public synchronized V getIfPresent(Path file, K k) {
+        Value value = getValue(file, k);
+        return value == null ? null : value.value;
     }
 
-    public boolean needs(Path file, K k) {
+    private Value getValue(Path file, K k) {
         // If key is not in map, it needs to be loaded
         Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) return true;
+        Value value = map.get(key);
+        if (value == null) {
+            missCount++;
+            return null;
+        }
 
         // If key was loaded before file was last modified, it needs to be reloaded
-        Value value = map.get(key);
-        FileTime modified = null;
+        FileTime modified;
         try {
             modified = Files.getLastModifiedTime(file);
         } catch (IOException e) {
             modified = FileTime.from(Instant.now());
         }
-        // TODO remove all keys associated with file when file changes
-        boolean before = value.created.isBefore(modified.toInstant());
-        return before;
+        if (value.created.isBefore(modified.toInstant())) {
+            // the key is kept, callers use getKeys() to find the outputs of files that were
+            // deleted, it is replaced when the value is loaded again
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return value;
     }
 
     @SafeVarargs
-    public final void remove(Path file, K... keys) {
+    public final synchronized void remove(Path file, K... keys) {
         for (K k : keys) {
-            Key<K> key = new Key<>(file, k);
-            map.remove(key);
+            removeKey(new Key<>(file, k));
+        }
+    }
+
+    /**
+     * Removes every key associated with the given file.
+     */
+    public synchronized void invalidate(Path file) {
+        Set<Key<K>> keys = fileKeys.remove(file);
+        if (keys == null) {
+            return;
+        }
+        for (Key<K> key : keys) {
+            Value removed = map.remove(key);
+            if (removed != null) {
+                totalWeight -= removed.weight;
+            }
         }
     }
 
-    public Set<Key<K>> getKeys() {
-        return map.keySet();
+    /**
+     * Returns every key in the cache, including the keys of files that were modified after
+     * their value was loaded. Only keys that were removed, invalidated or evicted are missing.
+     */
+    public synchronized Set<Key<K>> getKeys() {
+        return Collections.unmodifiableSet(new HashSet<>(map.keySet()));
     }
 
-    public void load(Path file, K k, V v) {
-        // TODO limit total size of cache
+    public synchronized void load(Path file, K k, V v) {
         Key<K> key = new Key<>(file, k);
-        Value value = new Value(v);
-        map.put(key, value);
+        Value value = new Value(v, weigher.weigh(v));
+        Value previous = map.put(key, value);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        totalWeight += value.weight;
+        fileKeys.computeIfAbsent(file, it -> new HashSet<>()).add(key);
+        evictIfNeeded(key);
     }
 
-    public V get(Path file, K k) {
+    public synchronized V get(Path file, K k) {
         Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) {
+        Value value = map.get(key);
+        if (value == null) {
             throw new IllegalArgumentException(k + " is not in map " + map);
         }
-        return (V) map.get(key).value;
+        return value.value;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hitCount, missCount, evictionCount, map.size(), totalWeight);
+    }
+
+    private void evictIfNeeded(Key<K> justLoaded) {
+        Iterator<Map.Entry<Key<K>, Value>> iterator = map.entrySet().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            Map.Entry<Key<K>, Value> eldest = iterator.next();
+            if (eldest.getKey().equals(justLoaded) && map.size() > 1) {
+                // keep the entry that was just loaded unless it is the only one
+                continue;
+            }
+            iterator.remove();
+            totalWeight -= eldest.getValue().weight;
+            removeFileKey(eldest.getKey());
+            evictionCount++;
+        }
+    }
+
+    private void removeKey(Key<K> key) {
+        Value removed = map.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+        removeFileKey(key);
+    }
+
+    private void removeFileKey(Key<K> key) {
+        Set<Key<K>> keys = fileKeys.get(key.file);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                fileKeys.remove(key.file);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,253 @@
+package com.tyron.common.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+import com.tyron.common.logging.IdeLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Holds values derived from library jars, such as indexes of their classes, in memory and in
+ * the files of a cache directory so they survive application restarts.
+ *
+ * A file is named after a hash of the jar path followed by a hash of the jar size, modification
+ * time and the format version, so a changed jar or a new format never reads a stale file. When
+ * the value of a changed jar is created, the files of its older versions are deleted. Once per
+ * session, files that have not been used for {@link #MAX_UNUSED_AGE} milliseconds are deleted,
+ * as are the least recently used files when the directory grows past its maximum size.
+ *
+ * @param <T> the type of the values
+ */
+public class JarCache<T> {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(JarCache.class);
+
+    /**
+     * How long a cache file is kept after it was last used, files of jars that were deleted or
+     * belong to projects that are not opened anymore are removed after this long.
+     */
+    public static final long MAX_UNUSED_AGE = TimeUnit.DAYS.toMillis(30);
+
+    /**
+     * Creates the values of jars and reads them back from the cache files.
+     */
+    public interface Format<T> {
+
+        /**
+         * Reads a value written by {@link #create(File, File)}.
+         *
+         * @throws IOException if the file is corrupt or was written by an older version
+         */
+        @NonNull
+        T read(@NonNull File cacheFile) throws IOException;
+
+        /**
+         * Creates the value of the jar and writes it to the cache file.
+         *
+         * @param cacheFile the file to write the value to, null if the value is only kept in
+         *                  memory
+         * @throws IOException if the jar cannot be read
+         */
+        @NonNull
+        T create(@NonNull File jar, @Nullable File cacheFile) throws IOException;
+    }
+
+    private final File mDirectory;
+    private final String mExtension;
+    private final int mVersion;
+    private final Format<T> mFormat;
+    private final boolean mSoftValues;
+    private final long mMaxSize;
+
+    private final Map<String, Supplier<T>> mLoaded = new ConcurrentHashMap<>();
+    private final Map<String, Object> mLocks = new ConcurrentHashMap<>();
+    private final AtomicBoolean mPruned = new AtomicBoolean();
+
+    /**
+     * @param directory  the directory of the cache files, null to only cache in memory
+     * @param extension  the extension of the cache files, files without it are never deleted
+     * @param version    the version of the format, part of the key of every file
+     * @param softValues whether values are released when memory runs low, values that are
+     *                   expensive to recreate, or mapped from their file, should be kept
+     * @param maxSize    the maximum size in bytes of the cache files, 0 for no maximum
+     */
+    public JarCache(@Nullable File directory,
+                    @NonNull String extension,
+                    int version,
+                    @NonNull Format<T> format,
+                    boolean softValues,
+                    long maxSize) {
+        mDirectory = directory;
+        mExtension = extension;
+        mVersion = version;
+        mFormat = format;
+        mSoftValues = softValues;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the value of the jar, reading it from its cache file or creating it if there is no
+     * up to date file. Values of different jars are created concurrently.
+     *
+     * @throws IOException if the jar cannot be read
+     */
+    @NonNull
+    public T get(@NonNull File jar) throws IOException {
+        String key = getKey(jar);
+        T value = getLoaded(key);
+        if (value != null) {
+            return value;
+        }
+        synchronized (mLocks.computeIfAbsent(key, k -> new Object())) {
+            value = getLoaded(key);
+            if (value == null) {
+                value = loadOrCreate(jar, key);
+                T loaded = value;
+                mLoaded.put(key, mSoftValues ? new SoftReference<>(value)::get : () -> loaded);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * @return the value of the jar if it is already in memory, the jar is never read
+     */
+    @Nullable
+    public T getIfLoaded(@NonNull File jar) {
+        return getLoaded(getKey(jar));
+    }
+
+    /**
+     * @return the file the value of the current version of the jar is stored in, null if the
+     * cache is only kept in memory
+     */
+    @Nullable
+    public File getFile(@NonNull File jar) {
+        return mDirectory == null ? null : new File(mDirectory, getKey(jar) + mExtension);
+    }
+
+    /**
+     * The key of a jar, made of a hash of its path followed by a hash of its current version,
+     * so the files of older versions of the same jar can be found.
+     */
+    @NonNull
+    public String getKey(@NonNull File jar) {
+        String path = jar.getAbsolutePath();
+        String version = jar.length() + ":" + jar.lastModified() + ':' + mVersion;
+        return Hashing.sha256().hashString(path, StandardCharsets.UTF_8).toString() + '-' +
+               Hashing.sha256().hashString(version, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Deletes the cache files that have not been used for {@link #MAX_UNUSED_AGE}, then the
+     * least recently used files until the directory is below its maximum size. Files of values
+     * that are in memory are kept.
+     */
+    public void prune() {
+        File[] files = mDirectory == null
+                ? null
+                : mDirectory.listFiles((dir, name) -> name.endsWith(mExtension));
+        if (files == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long size = 0;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        boolean[] deleted = new boolean[files.length];
+        for (int i = 0; i < files.length; i++) {
+            File file = files[i];
+            if (now - file.lastModified() > MAX_UNUSED_AGE && !isLoaded(file)) {
+                deleted[i] = file.delete();
+            }
+            if (!deleted[i]) {
+                size += file.length();
+            }
+        }
+        for (int i = 0; i < files.length && mMaxSize > 0 && size > mMaxSize; i++) {
+            File file = files[i];
+            if (!deleted[i] && !isLoaded(file)) {
+                long length = file.length();
+                if (file.delete()) {
+                    size -= length;
+                }
+            }
+        }
+    }
+
+    private boolean isLoaded(File cacheFile) {
+        String name = cacheFile.getName();
+        return getLoaded(name.substring(0, name.length() - mExtension.length())) != null;
+    }
+
+    @Nullable
+    private T getLoaded(String key) {
+        Supplier<T> reference = mLoaded.get(key);
+        return reference == null ? null : reference.get();
+    }
+
+    private T loadOrCreate(File jar, String key) throws IOException {
+        if (mPruned.compareAndSet(false, true)) {
+            prune();
+        }
+
+        File cacheFile = mDirectory == null ? null : new File(mDirectory, key + mExtension);
+        if (cacheFile != null && cacheFile.exists()) {
+            try {
+                T value = mFormat.read(cacheFile);
+                // the modification time records when the file was last used
+                //noinspection ResultOfMethodCallIgnored
+                cacheFile.setLastModified(System.currentTimeMillis());
+                return value;
+            } catch (IOException | RuntimeException e) {
+                // corrupted or written by an older version, create it again below
+                //noinspection ResultOfMethodCallIgnored
+                cacheFile.delete();
+            }
+        }
+
+        if (!jar.isFile()) {
+            throw new IOException(jar + " is not a file");
+        }
+        String prefix = key.substring(0, key.indexOf('-') + 1);
+        mLoaded.keySet().removeIf(it -> it.startsWith(prefix));
+        if (cacheFile != null) {
+            deleteOtherVersions(prefix);
+            File parent = cacheFile.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                sLogger.warning("Unable to create " + parent);
+                cacheFile = null;
+            }
+        }
+        return mFormat.create(jar, cacheFile);
+    }
+
+    /**
+     * Values of a jar can be large, remove the files of the older versions of the jar so they
+     * don't accumulate every time the jar changes.
+     */
+    private void deleteOtherVersions(String prefix) {
+        File[] files = mDirectory.listFiles(
+                (dir, name) -> name.startsWith(prefix) && name.endsWith(mExtension));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.tyron.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class CacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        Path a = folder.newFile("A.java").toPath();
+        Path b = folder.newFile("B.java").toPath();
+        Path c = folder.newFile("C.java").toPath();
+
+        Cache<String, String> cache = new Cache<>(2);
+        cache.load(a, "key", "a");
+        cache.load(b, "key", "b");
+
+        // access a so b becomes the least recently used entry
+        assertEquals("a", cache.getIfPresent(a, "key"));
+        cache.load(c, "key", "c");
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.has(a, "key"));
+        assertFalse(cache.has(b, "key"));
+        assertTrue(cache.has(c, "key"));
+        assertEquals(1, cache.getStats().evictionCount);
+    }
+
+    @Test
+    public void testWeightBound() throws IOException {
+        Path a = folder.newFile("A.java").toPath();
+
+        Cache<String, String> cache = new Cache<>(10, String::length);
+        cache.load(a, "first", "12345");
+        cache.load(a, "second", "12345");
+        cache.load(a, "third", "123");
+
+        assertEquals(8, cache.getStats().weight);
+        assertNull(cache.getIfPresent(a, "first"));
+    }
+
+    @Test
+    public void testInvalidateRemovesAllKeysOfFile() throws IOException {
+        Path a = folder.newFile("A.java").toPath();
+        Path b = folder.newFile("B.java").toPath();
+
+        Cache<String, Boolean> cache = new Cache<>();
+        cache.load(a, "foo", true);
+        cache.load(a, "bar", false);
+        cache.load(b, "foo", true);
+
+        cache.invalidate(a);
+
+        assertFalse(cache.has(a, "foo"));
+        assertFalse(cache.has(a, "bar"));
+        assertTrue(cache.has(b, "foo"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testStaleValueKeepsKey() throws IOException {
+        Path a = folder.newFile("A.java").toPath();
+        Path b = folder.newFile("B.java").toPath();
+
+        Cache<String, String> cache = new Cache<>();
+        cache.load(a, "class", "A.class");
+        cache.load(b, "class", "B.class");
+        assertTrue(a.toFile().setLastModified(System.currentTimeMillis() + 10_000));
+
+        assertTrue(cache.needs(a, "class"));
+        assertNull(cache.getIfPresent(a, "class"));
+
+        // the outputs of the modified file can still be found
+        assertEquals(2, cache.getKeys().size());
+        assertEquals("A.class", cache.get(a, "class"));
+
+        cache.load(a, "class", "A2.class");
+        assertEquals("A2.class", cache.get(a, "class"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        Path a = folder.newFile("A.java").toPath();
+
+        Cache<String, Boolean> cache = new Cache<>();
+        assertNull(cache.getIfPresent(a, "foo"));
+        cache.load(a, "foo", true);
+        assertEquals(Boolean.TRUE, cache.getIfPresent(a, "foo"));
+
+        Cache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hitCount);
+        assertEquals(1, stats.missCount);
+    }
+}
@@ -0,0 +1,169 @@
+package com.tyron.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JarCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Stores the size of the jar as its value
+     */
+    private static class SizeFormat implements JarCache.Format<String> {
+
+        final AtomicInteger created = new AtomicInteger();
+
+        @NonNull
+        @Override
+        public String read(@NonNull File cacheFile) throws IOException {
+            return new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+        }
+
+        @NonNull
+        @Override
+        public String create(@NonNull File jar, @Nullable File cacheFile) throws IOException {
+            created.incrementAndGet();
+            String value = String.valueOf(jar.length());
+            if (cacheFile != null) {
+                Files.write(cacheFile.toPath(), value.getBytes(StandardCharsets.UTF_8));
+            }
+            return value;
+        }
+    }
+
+    @Test
+    public void testReadsValueAfterRestart() throws IOException {
+        File jar = newJar("a.jar", 3);
+        File directory = new File(folder.getRoot(), "cache");
+        SizeFormat format = new SizeFormat();
+
+        JarCache<String> cache = new JarCache<>(directory, ".test", 1, format, false, 0);
+        String value = cache.get(jar);
+        assertEquals("3", value);
+        assertSame(value, cache.get(jar));
+
+        // a new instance, as after a restart, reads the file instead of creating the value
+        JarCache<String> restarted = new JarCache<>(directory, ".test", 1, format, false, 0);
+        assertEquals("3", restarted.get(jar));
+        assertEquals(1, format.created.get());
+    }
+
+    @Test
+    public void testDeletesOlderVersionsOfChangedJar() throws IOException {
+        File jar = newJar("a.jar", 3);
+        File directory = new File(folder.getRoot(), "cache");
+        JarCache<String> cache = new JarCache<>(directory, ".test", 1, new SizeFormat(), false, 0);
+
+        cache.get(jar);
+        File oldFile = cache.getFile(jar);
+        assertNotNull(oldFile);
+        assertTrue(oldFile.exists());
+
+        newJar("a.jar", 5);
+        assertEquals("5", cache.get(jar));
+        assertFalse(oldFile.exists());
+        assertEquals(1, countFiles(directory));
+    }
+
+    @Test
+    public void testRecreatesCorruptFile() throws IOException {
+        File jar = newJar("a.jar", 3);
+        File directory = new File(folder.getRoot(), "cache");
+        SizeFormat format = new SizeFormat() {
+            @NonNull
+            @Override
+            public String read(@NonNull File cacheFile) throws IOException {
+                throw new IOException("corrupt");
+            }
+        };
+
+        new JarCache<>(directory, ".test", 1, format, false, 0).get(jar);
+        assertEquals("3", new JarCache<>(directory, ".test", 1, format, false, 0).get(jar));
+        assertEquals(2, format.created.get());
+    }
+
+    @Test
+    public void testPrunesUnusedFiles() throws IOException {
+        File directory = folder.newFolder("cache");
+        File unused = new File(directory, "unused.test");
+        Files.write(unused.toPath(), new byte[1]);
+        assertTrue(unused.setLastModified(
+                System.currentTimeMillis() - JarCache.MAX_UNUSED_AGE - 1000));
+        File recent = new File(directory, "recent.test");
+        Files.write(recent.toPath(), new byte[1]);
+        File other = new File(directory, "other.txt");
+        Files.write(other.toPath(), new byte[1]);
+        assertTrue(other.setLastModified(0));
+
+        new JarCache<>(directory, ".test", 1, new SizeFormat(), false, 0).prune();
+
+        assertFalse(unused.exists());
+        assertTrue(recent.exists());
+        assertTrue(other.exists());
+    }
+
+    @Test
+    public void testPrunesLeastRecentlyUsedFilesPastMaxSize() throws IOException {
+        File directory = new File(folder.getRoot(), "cache");
+        JarCache<String> cache = new JarCache<>(directory, ".test", 1, new SizeFormat(), false, 0);
+        File a = newJar("a.jar", 100);
+        File b = newJar("b.jar", 1000);
+        cache.get(a);
+        cache.get(b);
+        File aFile = cache.getFile(a);
+        File bFile = cache.getFile(b);
+        assertNotNull(aFile);
+        assertNotNull(bFile);
+        long now = System.currentTimeMillis();
+        assertTrue(aFile.setLastModified(now - 2000));
+        assertTrue(bFile.setLastModified(now - 1000));
+
+        // both files are 3 and 4 bytes, only the most recently used one fits
+        new JarCache<>(directory, ".test", 1, new SizeFormat(), false, 5).prune();
+
+        assertFalse(aFile.exists());
+        assertTrue(bFile.exists());
+    }
+
+    @Test
+    public void testKeepsValuesInMemoryWithoutDirectory() throws IOException {
+        File jar = newJar("a.jar", 3);
+        SizeFormat format = new SizeFormat();
+        JarCache<String> cache = new JarCache<>(null, ".test", 1, format, false, 0);
+
+        assertEquals("3", cache.get(jar));
+        assertEquals("3", cache.get(jar));
+        assertEquals(1, format.created.get());
+    }
+
+    private File newJar(String name, int size) throws IOException {
+        File jar = new File(folder.getRoot(), name);
+        Files.write(jar.toPath(), new byte[size]);
+        // make sure the modification time changes even on file systems with a coarse resolution
+        assertTrue(jar.setLastModified(jar.lastModified() + size * 1000L));
+        return jar;
+    }
+
+    private static int countFiles(File directory) {
+        File[] files = directory.listFiles();
+        return files == null ? 0 : files.length;
+    }
+}
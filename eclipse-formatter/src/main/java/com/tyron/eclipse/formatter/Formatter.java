@@ -8,17 +8,70 @@ import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
 import org.eclipse.jdt.core.dom.rewrite.ListRewrite;
 import org.eclipse.jdt.internal.formatter.DefaultCodeFormatter;
 import org.eclipse.jdt.internal.formatter.DefaultCodeFormatterOptions;
-import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.Document;
-import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 import org.eclipse.text.edits.TextEditVisitor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * Formats java source files using the eclipse formatter.
  */
 public class Formatter {
 
+    /**
+     * The formatter copies the options it is created with, so the defaults are only
+     * computed once and shared between calls.
+     */
+    private static final DefaultCodeFormatterOptions DEFAULT_OPTIONS =
+            DefaultCodeFormatterOptions.getEclipseDefaultSettings();
+
+    /**
+     * A change to the source made by the formatter, replacing the characters from the offset
+     * up to the end with the text.
+     */
+    public static final class Edit {
+
+        private final int offset;
+        private final int length;
+        private final String text;
+
+        public Edit(int offset, int length, String text) {
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the exclusive end index of the replaced characters
+         */
+        public int getEnd() {
+            return offset + length;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "Edit{offset=" + offset + ", length=" + length + ", text='" + text + "'}";
+        }
+    }
+
     /**
      * Formats the given source using the default java convention options
      * Returns the original string if the source cannot be formatted.
@@ -44,9 +97,7 @@ public class Formatter {
      * @return Formatted java source
      */
     public static String format(String source, int indentLevel, int start, int length) {
-        DefaultCodeFormatterOptions options =
-                DefaultCodeFormatterOptions.getEclipseDefaultSettings();
-        return format(source, indentLevel, start, length, options);
+        return format(source, indentLevel, start, length, DEFAULT_OPTIONS);
     }
 
     /**
@@ -64,16 +115,98 @@ public class Formatter {
                                 int start,
                                 int length,
                                 DefaultCodeFormatterOptions options) {
+        return apply(source, getEdits(source, indentLevel, start, length, options));
+    }
+
+    /**
+     * Computes the changes that format the given range of the source without applying them,
+     * so callers holding the source in an editor only need to touch the parts that changed.
+     *
+     * @param source      The java source
+     * @param indentLevel The number of indents at the start of each line
+     * @param start       The start index
+     * @param length      The length of the source to format
+     * @return The changes sorted by offset, empty if the source is already formatted or
+     * cannot be formatted
+     */
+    public static List<Edit> getEdits(String source, int indentLevel, int start, int length) {
+        return getEdits(source, indentLevel, start, length, DEFAULT_OPTIONS);
+    }
+
+    public static List<Edit> getEdits(String source,
+                                      int indentLevel,
+                                      int start,
+                                      int length,
+                                      DefaultCodeFormatterOptions options) {
         DefaultCodeFormatter formatter = new DefaultCodeFormatter(options);
         TextEdit format = formatter
                 .format(DefaultCodeFormatter.K_COMPILATION_UNIT, source, start, length, indentLevel, "\n");
+        if (format == null) {
+            return Collections.emptyList();
+        }
+
+        List<Edit> edits = new ArrayList<>();
+        format.accept(new TextEditVisitor() {
+            @Override
+            public boolean visit(ReplaceEdit edit) {
+                add(edit.getOffset(), edit.getLength(), edit.getText());
+                return false;
+            }
+
+            @Override
+            public boolean visit(InsertEdit edit) {
+                add(edit.getOffset(), 0, edit.getText());
+                return false;
+            }
 
-        IDocument document = new Document(source);
-        try {
-            format.apply(document);
-        } catch (BadLocationException e) {
+            @Override
+            public boolean visit(DeleteEdit edit) {
+                add(edit.getOffset(), edit.getLength(), "");
+                return false;
+            }
+
+            private void add(int offset, int length, String text) {
+                // the formatter also reports the whitespace it left as it was
+                if (length != text.length() || !source.regionMatches(offset, text, 0, length)) {
+                    edits.add(new Edit(offset, length, text));
+                }
+            }
+        });
+        edits.sort(Comparator.comparingInt(Edit::getOffset));
+        return edits;
+    }
+
+    /**
+     * Applies the changes returned by {@link #getEdits(String, int, int, int)} to the source.
+     */
+    public static String apply(String source, List<Edit> edits) {
+        if (edits.isEmpty()) {
             return source;
         }
-        return document.get();
+        StringBuilder builder = new StringBuilder(source);
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            Edit edit = edits.get(i);
+            builder.replace(edit.getOffset(), edit.getEnd(), edit.getText());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Moves an index of the source to where the same character is after the changes are
+     * applied, an index inside a replaced region is kept at the same distance from its start.
+     */
+    public static int translateIndex(List<Edit> edits, int index) {
+        int delta = 0;
+        for (Edit edit : edits) {
+            if (edit.getOffset() > index || (edit.getOffset() == index && edit.getLength() > 0)) {
+                break;
+            }
+            if (edit.getEnd() > index) {
+                return edit.getOffset() + delta +
+                       Math.min(index - edit.getOffset(), edit.getText().length());
+            }
+            delta += edit.getText().length() - edit.getLength();
+        }
+        return index + delta;
     }
-}
\ No newline at end of file
+}
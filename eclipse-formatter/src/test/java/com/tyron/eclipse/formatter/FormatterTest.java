@@ -1,8 +1,14 @@
 package com.tyron.eclipse.formatter;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+
 public class FormatterTest {
 
     @Test
@@ -11,4 +17,56 @@ public class FormatterTest {
         String formatted = Formatter.format(source, 0, source.length());
         System.out.println(formatted);
     }
+
+    @Test
+    public void testEditsOnlyTouchChangedRegions() {
+        String source = "class Main {\n" +
+                        "    void a() {\n" +
+                        "        int i=0;\n" +
+                        "    }\n" +
+                        "}\n";
+        List<Formatter.Edit> edits = Formatter.getEdits(source, 0, 0, source.length());
+        assertFalse(edits.isEmpty());
+        for (Formatter.Edit edit : edits) {
+            assertTrue(edit.getOffset() >= source.indexOf("i=0"));
+            assertTrue(edit.getEnd() <= source.indexOf("0;"));
+        }
+        assertEquals(source.replace("i=0", "i = 0"), Formatter.apply(source, edits));
+        assertEquals(Formatter.format(source, 0, source.length()), Formatter.apply(source, edits));
+    }
+
+    @Test
+    public void testFormattedSourceHasNoEdits() {
+        String source = "class Main {\n" +
+                        "    void a() {\n" +
+                        "        int i = 0;\n" +
+                        "    }\n" +
+                        "}\n";
+        assertTrue(Formatter.getEdits(source, 0, 0, source.length()).isEmpty());
+    }
+
+    @Test
+    public void testFormatRegion() {
+        String source = "class Main {\n" +
+                        "    void a() {\n" +
+                        "        int i=0;\n" +
+                        "        int j=0;\n" +
+                        "    }\n" +
+                        "}\n";
+        int start = source.indexOf("int j");
+        String formatted = Formatter.format(source, start, source.indexOf('\n', start) - start);
+        assertEquals(source.replace("j=0", "j = 0"), formatted);
+    }
+
+    @Test
+    public void testTranslateIndex() {
+        String source = "a=b;c";
+        List<Formatter.Edit> edits = List.of(new Formatter.Edit(1, 0, " "),
+                                             new Formatter.Edit(2, 0, " "));
+        String formatted = Formatter.apply(source, edits);
+        assertEquals("a = b;c", formatted);
+        assertEquals(0, Formatter.translateIndex(edits, 0));
+        assertEquals(formatted.indexOf('c'), Formatter.translateIndex(edits, source.indexOf('c')));
+        assertEquals(formatted.indexOf('b'), Formatter.translateIndex(edits, source.indexOf('b')));
+    }
 }
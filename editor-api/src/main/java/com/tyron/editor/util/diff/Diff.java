@@ -18,9 +18,12 @@ public final class Diff {
     return buildChanges(splitLines(before), splitLines(after));
   }
 
+  /**
+   * Splits the text on '\n' the same way the editor does, so line i of the result is line i of the editor
+   * and a text ending with a line separator ends with an empty line.
+   */
   public static String @NotNull [] splitLines(@NotNull CharSequence s) {
-//    return s.length() == 0 ? new String[]{""} : LineTokenizer.tokenize(s, false, false);
-    throw new UnsupportedOperationException();
+    return s.toString().split("\n", -1);
   }
 
   @Nullable
@@ -9,6 +9,7 @@ import com.tyron.builder.project.api.Module;
 import com.tyron.completion.index.CompilerProvider;
 import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.java.index.ClassFileStoreCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -71,6 +72,11 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
         }
 
         if (mProvider == null || changed(mCachedPaths, paths)) {
+            // libraries may have been replaced, check the jars of the stored classes again
+            ClassFileStoreCache storeCache = ClassFileStoreCache.getInstance();
+            if (storeCache != null) {
+                storeCache.revalidate();
+            }
             mProvider = new JavaCompilerService(project, paths, Collections.emptySet(),
                                                 Collections.emptySet());
 
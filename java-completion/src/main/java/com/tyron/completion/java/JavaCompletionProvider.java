@@ -29,6 +29,7 @@ import com.tyron.completion.CompletionParameters;
 import com.tyron.completion.CompletionProvider;
 import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.java.action.FindCurrentPath;
+import com.tyron.completion.java.compiler.CompilePriority;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.compiler.services.NBEnter;
 import com.tyron.completion.java.compiler.services.NBJavaCompiler;
@@ -140,7 +141,7 @@ public class JavaCompletionProvider extends CompletionProvider {
                     }
                 };
 
-        JCTree.JCCompilationUnit unit = compilationInfo.updateImmediately(fileObject);
+        JCTree.JCCompilationUnit unit = compilationInfo.updateImmediately(fileObject, CompilePriority.COMPLETION);
         if (unit == null) {
             return null;
         }
@@ -1,20 +1,33 @@
 package com.tyron.completion.java;
 
-import com.tyron.builder.model.CodeAssistLibrary;
+import androidx.annotation.NonNull;
+
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
-import com.tyron.builder.project.impl.JavaModuleImpl;
+import com.tyron.common.util.StringSearch;
+import com.tyron.completion.java.index.ClassNameIndex;
+import com.tyron.completion.java.index.ClassNameIndexCache;
+import com.tyron.completion.java.parse.CompilationInfo;
+import com.tyron.completion.java.util.ActionUtil;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.function.Consumer;
 
 /**
  * Allows to retrieve java classes in a project by non-qualified names
+ *
+ * Library classes are read from the on-disk {@link ClassNameIndex} of each jar on the
+ * classpath, so only the names matching the query are materialized. Jars that have not been
+ * indexed yet are indexed in the background and left out until their index is ready.
  */
 public class ShortNamesCache {
 
@@ -28,15 +41,6 @@ public class ShortNamesCache {
         return cache;
     }
 
-    /**
-     * module used to store JDK indexes
-     */
-    private static final JavaModule JDK_MODULE = new JavaModuleImpl(null);
-
-    static {
-        JDK_MODULE.addLibrary(CodeAssistLibrary.forJar(Objects.requireNonNull(CompletionModule.getAndroidJar())));
-    }
-
     private final Module module;
 
     public ShortNamesCache(Module module) {
@@ -48,25 +52,70 @@ public class ShortNamesCache {
      * libraries.
      */
     public String[] getAllClassNames() {
+        Set<String> classNames = new HashSet<>();
+        processClassNames("", false, classNames::add);
+        return classNames.toArray(new String[0]);
+    }
+
+    /**
+     * Passes the fully qualified name of every class visible from this module whose simple
+     * name starts with the given prefix to the consumer. The same name may be passed more
+     * than once if it is declared in more than one library.
+     *
+     * @param prefix        The prefix of the simple name, empty to match every class
+     * @param caseSensitive Whether the prefix is matched case sensitively
+     */
+    public void processClassNames(@NonNull String prefix,
+                                  boolean caseSensitive,
+                                  @NonNull Consumer<String> consumer) {
         if (!(module instanceof JavaModule)) {
-            return new String[0];
+            return;
         }
 
-        Set<String> classNames = new HashSet<>();
+        Set<File> libraries = new LinkedHashSet<>();
+        for (JavaModule javaModule : getJavaModules()) {
+            for (String className : javaModule.getJavaFiles().keySet()) {
+                String simpleName = ActionUtil.getSimpleName(className);
+                boolean matches = caseSensitive
+                        ? StringSearch.matchesPartialName(simpleName, prefix)
+                        : StringSearch.matchesPartialNameLowercase(simpleName, prefix);
+                if (matches) {
+                    consumer.accept(className);
+                }
+            }
+            libraries.addAll(CompilationInfo.getLibraryJars(javaModule));
+        }
+
+        File androidJar = CompletionModule.getAndroidJar();
+        if (androidJar != null) {
+            libraries.add(androidJar);
+        }
+
+        ClassNameIndexCache indexCache = ClassNameIndexCache.getInstance();
+        for (File library : libraries) {
+            ClassNameIndex index = indexCache.getIfIndexed(library);
+            if (index != null) {
+                index.processPrefix(prefix, caseSensitive, consumer);
+            }
+        }
+    }
 
+    private List<JavaModule> getJavaModules() {
+        List<JavaModule> modules = new ArrayList<>();
         Deque<Module> queue = new LinkedList<>();
         Set<Module> visitedModules = new HashSet<>();
         queue.addLast(module);
 
         while (!queue.isEmpty()) {
             Module current = queue.removeFirst();
+            if (!visitedModules.add(current)) {
+                continue;
+            }
 
             if (current instanceof JavaModule) {
-                JavaModule javaModule = (JavaModule) current;
-                classNames.addAll(javaModule.getClassIndex().getLeafNodes());
+                modules.add((JavaModule) current);
             }
 
-            visitedModules.add(current);
             for (String path : current.getModuleDependencies()) {
                 Module dependingModule = current.getProject().getModuleByName(path);
                 if (dependingModule != null && !visitedModules.contains(dependingModule)) {
@@ -74,8 +123,6 @@ public class ShortNamesCache {
                 }
             }
         }
-
-        classNames.addAll(JDK_MODULE.getClassIndex().getLeafNodes());
-        return classNames.toArray(new String[0]);
+        return modules;
     }
 }
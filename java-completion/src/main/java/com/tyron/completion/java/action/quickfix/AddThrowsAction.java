@@ -79,7 +79,7 @@ public class AddThrowsAction extends ExceptionsQuickFix {
         String exceptionName = DiagnosticUtil.extractExceptionName(diagnostic.getMessage(Locale.ENGLISH));
 
         ThreadUtil.runOnBackgroundThread(() -> {
-            CompilerContainer container = compiler.getCachedContainer();
+            CompilerContainer container = compiler.compile(file.toPath());
             AtomicReference<JavaRewrite> rewrite = new AtomicReference<>();
             container.run(task ->
                     rewrite.set(performInternal(task, exceptionName, diagnostic)));
@@ -2,6 +2,7 @@ package com.tyron.completion.java.compiler;
 
 import android.util.Log;
 
+import com.google.common.collect.ImmutableList;
 import com.sun.source.tree.CompilationUnitTree;
 
 import com.tyron.builder.project.api.JavaModule;
@@ -12,6 +13,7 @@ import org.apache.commons.io.FileUtils;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.Trees;
@@ -51,9 +53,18 @@ public class CompileBatch implements AutoCloseable {
     public final Types types;
     public final List<CompilationUnitTree> roots;
 
-    public CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files) {
+    /**
+     * The diagnostics of this compilation, kept here rather than on the parent as each pooled
+     * compiler runs its own compilations
+     */
+    private final List<Diagnostic<? extends JavaFileObject>> diagnostics =
+            Collections.synchronizedList(new ArrayList<>());
+
+    public CompileBatch(JavaCompilerService parent,
+                        ReusableCompiler compiler,
+                        Collection<? extends JavaFileObject> files) {
         this.parent = parent;
-        this.borrow = batchTask(parent, files);
+        this.borrow = batchTask(parent, compiler, files, this::addDiagnostic);
         this.task = borrow.task;
         this.trees = Trees.instance(borrow.task);
         this.elements = borrow.task.getElements();
@@ -85,7 +96,7 @@ public class CompileBatch implements AutoCloseable {
         JavaModule module = parent.getCurrentModule();
         // Check for "class not found errors" that refer to package private classes
         Set<Path> addFiles = new HashSet<>();
-        for (Diagnostic<? extends JavaFileObject> err : parent.getDiagnostics()) {
+        for (Diagnostic<? extends JavaFileObject> err : getDiagnostics()) {
             if (!err.getCode().equals("compiler.err.cant.resolve.location")) {
                 continue;
             }
@@ -151,16 +162,29 @@ public class CompileBatch implements AutoCloseable {
 
     private static final Path FILE_NOT_FOUND = Paths.get("");
 
+    public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+        synchronized (diagnostics) {
+            return ImmutableList.copyOf(diagnostics);
+        }
+    }
+
+    private void addDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
+        diagnostics.add(diagnostic);
+        parent.reportDiagnostic(diagnostic);
+    }
+
     @Override
     public void close() {
         closed = true;
     }
 
-    private static ReusableCompiler.Borrow batchTask(JavaCompilerService parent, Collection<?
-            extends JavaFileObject> sources) {
-        parent.clearDiagnostics();
+    private static ReusableCompiler.Borrow batchTask(JavaCompilerService parent,
+                                                     ReusableCompiler compiler,
+                                                     Collection<? extends JavaFileObject> sources,
+                                                     DiagnosticListener<? super JavaFileObject> listener) {
+        parent.reportDiagnostic(null);
         List<String> options = options(parent.classPath, parent.addExports);
-        return parent.compiler.getTask(parent.mSourceFileManager, parent::addDiagnostic, options,
+        return compiler.getTask(parent.mSourceFileManager, listener, options,
                 Collections.emptyList(), sources);
     }
 
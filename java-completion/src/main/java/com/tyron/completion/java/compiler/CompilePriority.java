@@ -0,0 +1,27 @@
+package com.tyron.completion.java.compiler;
+
+/**
+ * The priority of a compilation requested from {@link JavaCompilerService}. Requests with a
+ * lower ordinal are served first when all the compilers are in use.
+ */
+public enum CompilePriority {
+
+    /**
+     * Compilations for a completion popup, these may cancel a running {@link #BACKGROUND}
+     * analysis, see {@link com.tyron.completion.java.parse.AnalysisScheduler}.
+     */
+    COMPLETION,
+
+    /**
+     * Compilations started by the user such as hover and code actions.
+     */
+    INTERACTIVE,
+
+    /**
+     * Analysis whose result is not awaited by the user, such as the indexing of a module's
+     * files by {@link com.tyron.completion.java.parse.CompilationInfo#updateAllImmediately}.
+     * {@link JavaCompilerService} compilations are always awaited, so they are not given this
+     * priority.
+     */
+    BACKGROUND
+}
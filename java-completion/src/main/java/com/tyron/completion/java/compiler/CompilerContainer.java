@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import kotlin.jvm.functions.Function1;
@@ -39,10 +40,16 @@ public class CompilerContainer {
 
     private volatile boolean mIsWriting;
 
-    private static final Semaphore semaphore = new Semaphore(1);
+    private final Semaphore semaphore = new Semaphore(1);
 
     private volatile CompileTask mCompileTask;
 
+    /**
+     * Returns the compiler of this container to its pool, set by a compilation and run once the
+     * compile task has been used and closed
+     */
+    private final AtomicReference<Runnable> mReleaseAction = new AtomicReference<>();
+
     public CompilerContainer() {
         System.out.println("New instance created - CompilerContainer");
     }
@@ -73,46 +80,48 @@ public class CompilerContainer {
      * are synchronized
      */
     public void run(Consumer<CompileTask> consumer) {
-        cancel();
-        semaphore.acquireUninterruptibly();
         try {
-            consumer.accept(mCompileTask);
+            cancel();
+            semaphore.acquireUninterruptibly();
+            try {
+                consumer.accept(mCompileTask);
+            } finally {
+                mCompileTask.close();
+                semaphore.release();
+            }
         } finally {
-            mCompileTask.close();
-            semaphore.release();
+            release();
         }
     }
 
     public <T> T get(Function1<CompileTask, T> fun) {
-        cancel();
         try {
-            semaphore.acquire();
-        } catch (InterruptedException e) {
-            throw new ProcessCanceledException();
-        }
-
-        try {
-            return fun.invoke(mCompileTask);
+            cancel();
+            return getWithLock(fun);
         } finally {
-            mCompileTask.close();
-            semaphore.release();
+            release();
         }
     }
 
     public <T> T getWithLock(Function1<CompileTask, T> fun) {
+        // the compiler is released even if the task is never run, e.g. when interrupted while
+        // waiting for it, so it is not kept reserved by a caller that gave up
         try {
-            semaphore.acquire();
-        } catch (InterruptedException e) {
-            throw new ProcessCanceledException();
-        }
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+                throw new ProcessCanceledException();
+            }
 
-        try {
-            return fun.invoke(mCompileTask);
+            try {
+                return fun.invoke(mCompileTask);
+            } finally {
+                mCompileTask.close();
+                semaphore.release();
+            }
         } finally {
-            mCompileTask.close();
-            semaphore.release();
+            release();
         }
-
     }
 
     public synchronized boolean isWriting() {
@@ -145,6 +154,24 @@ public class CompilerContainer {
         mCompileTask = task;
     }
 
+    /**
+     * Sets the action that returns the compiler to its pool once the result of the current
+     * compilation has been used through {@link #run}, {@link #get} or {@link #getWithLock}.
+     */
+    void setReleaseAction(Runnable action) {
+        mReleaseAction.set(action);
+    }
+
+    /**
+     * Runs the release action if it has not run yet.
+     */
+    void release() {
+        Runnable action = mReleaseAction.getAndSet(null);
+        if (action != null) {
+            action.run();
+        }
+    }
+
     private static void assertNotClosed(CompileTask task) {
         if (task.isClosed()) {
             throw new RuntimeException("Compile task is already closed.");
@@ -0,0 +1,204 @@
+package com.tyron.completion.java.compiler;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * A bounded pool of compilers. Each {@link Slot} owns a {@link ReusableCompiler} along with the
+ * last compilation done with it, so a request for the same sources can be served by the slot
+ * that already compiled them.
+ *
+ * When every slot is in use, waiting requests are served in the order of their
+ * {@link CompilePriority}.
+ */
+public class CompilerPool {
+
+    /**
+     * Each javac context holds its own symbol tables, so the pool is kept small even on devices
+     * with many cores.
+     */
+    private static final int MAX_DEFAULT_SIZE = 3;
+
+    public static int getDefaultSize() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(MAX_DEFAULT_SIZE, processors / 2));
+    }
+
+    public static class Slot {
+        ReusableCompiler compiler = new ReusableCompiler();
+        final CompilerContainer container = new CompilerContainer();
+        CompileBatch cachedCompile;
+        final Map<JavaFileObject, Long> cachedModified = new ConcurrentHashMap<>();
+
+        /**
+         * The priority of the request currently using this slot, null if the slot is free
+         */
+        @GuardedBy("CompilerPool.mLock")
+        CompilePriority runningPriority;
+
+        public CompilerContainer getContainer() {
+            return container;
+        }
+
+        @Nullable
+        public CompileBatch getCompileBatch() {
+            return cachedCompile;
+        }
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        final CompilePriority priority;
+        final long sequence;
+
+        Waiter(CompilePriority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter o) {
+            int cmp = priority.compareTo(o.priority);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    private final List<Slot> mSlots;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mAvailable = mLock.newCondition();
+    @GuardedBy("mLock")
+    private final PriorityQueue<Waiter> mWaiters = new PriorityQueue<>();
+    @GuardedBy("mLock")
+    private long mSequence;
+
+    @GuardedBy("mLock")
+    private final Map<CompilePriority, long[]> mWaitStats = new EnumMap<>(CompilePriority.class);
+
+    public CompilerPool(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        List<Slot> slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new Slot());
+        }
+        mSlots = Collections.unmodifiableList(slots);
+        for (CompilePriority priority : CompilePriority.values()) {
+            mWaitStats.put(priority, new long[2]);
+        }
+    }
+
+    @NonNull
+    public List<Slot> getSlots() {
+        return mSlots;
+    }
+
+    /**
+     * Waits until a slot is free and marks it as used by a request of the given priority.
+     *
+     * @param preferred slots matching this predicate are chosen over other free slots, used to
+     *                  reuse a slot that already compiled the requested sources
+     */
+    @NonNull
+    public Slot acquire(@NonNull CompilePriority priority,
+                        @NonNull Predicate<Slot> preferred) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        mLock.lockInterruptibly();
+        try {
+            Waiter waiter = new Waiter(priority, mSequence++);
+            mWaiters.add(waiter);
+            try {
+                while (true) {
+                    if (mWaiters.peek() == waiter) {
+                        Slot slot = findFreeSlot(preferred);
+                        if (slot != null) {
+                            slot.runningPriority = priority;
+                            long[] stats = mWaitStats.get(priority);
+                            stats[0]++;
+                            stats[1] += System.currentTimeMillis() - start;
+                            return slot;
+                        }
+                    }
+                    mAvailable.await();
+                }
+            } finally {
+                mWaiters.remove(waiter);
+                // the next waiter may be able to proceed now
+                mAvailable.signalAll();
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public void release(@NonNull Slot slot) {
+        mLock.lock();
+        try {
+            slot.runningPriority = null;
+            mAvailable.signalAll();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a compiler
+     */
+    public int getQueueDepth() {
+        mLock.lock();
+        try {
+            return mWaiters.size();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return the average time in milliseconds that requests of the given priority waited for
+     * a compiler
+     */
+    public long getAverageWaitTime(@NonNull CompilePriority priority) {
+        mLock.lock();
+        try {
+            long[] stats = mWaitStats.get(priority);
+            return stats[0] == 0 ? 0 : stats[1] / stats[0];
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @GuardedBy("mLock")
+    @Nullable
+    private Slot findFreeSlot(Predicate<Slot> preferred) {
+        Slot free = null;
+        for (Slot slot : mSlots) {
+            if (slot.runningPriority != null) {
+                continue;
+            }
+            if (preferred.test(slot)) {
+                return slot;
+            }
+            if (free == null || slot.cachedCompile == null) {
+                free = slot;
+            }
+        }
+        return free;
+    }
+}
@@ -4,10 +4,9 @@ import android.annotation.SuppressLint;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableList;
-import com.sun.tools.javac.api.JavacTaskImpl;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.JavaModule;
@@ -18,6 +17,7 @@ import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.Docs;
 import com.tyron.completion.java.FindTypeDeclarations;
+import com.tyron.completion.java.index.IdentifierIndex;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticListener;
@@ -38,8 +38,8 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -56,18 +56,13 @@ public class JavaCompilerService implements CompilerProvider {
     private DiagnosticListener<? super JavaFileObject> mDiagnosticListener;
     public final SourceFileManager mSourceFileManager;
 
-    private final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
-
     private final Project mProject;
     private JavaModule mCurrentModule;
     public final Set<File> classPath, docPath;
     public final Set<String> addExports;
-    public ReusableCompiler compiler = new ReusableCompiler();
     private final Docs docs;
 
-    private final CompilerContainer mContainer = new CompilerContainer();
-    private CompileBatch cachedCompile;
-    private final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
+    private final CompilerPool mPool = new CompilerPool(CompilerPool.getDefaultSize());
 
     public final ReentrantLock mLock = new ReentrantLock();
 
@@ -98,8 +93,10 @@ public class JavaCompilerService implements CompilerProvider {
      * @param sources list of java files to compile
      * @return true if there's a valid cache for it, false otherwise
      */
-    private boolean needsCompile(Collection<? extends JavaFileObject> sources) {
-        if (cachedModified.size() != sources.size()) {
+    private static boolean needsCompile(CompilerPool.Slot slot,
+                                        Collection<? extends JavaFileObject> sources) {
+        Map<JavaFileObject, Long> cachedModified = slot.cachedModified;
+        if (slot.cachedCompile == null || cachedModified.size() != sources.size()) {
             return true;
         }
         for (JavaFileObject f : sources) {
@@ -117,35 +114,43 @@ public class JavaCompilerService implements CompilerProvider {
         return false;
     }
 
-    private synchronized void loadCompile(Collection<? extends JavaFileObject> sources) {
-        if (cachedCompile != null) {
-            if (!cachedCompile.closed) {
+    private void loadCompile(CompilerPool.Slot slot,
+                             Collection<? extends JavaFileObject> sources) {
+        if (slot.cachedCompile != null) {
+            if (!slot.cachedCompile.closed) {
                 throw new RuntimeException("Compiler is still in-use!");
             }
-            cachedCompile.borrow.close();
+            slot.cachedCompile.borrow.close();
         }
-        cachedCompile = doCompile(sources);
-        cachedModified.clear();
+        slot.cachedCompile = null;
+        slot.cachedModified.clear();
+        slot.cachedCompile = doCompile(slot.compiler, sources);
         for (JavaFileObject f : sources) {
-            cachedModified.put(f, f.getLastModified());
+            slot.cachedModified.put(f, f.getLastModified());
         }
     }
 
     public void invalidate(Path source) {
+        cacheContainsWord.invalidate(source);
+        cacheContainsType.invalidate(source);
+        parseCache.invalidate(source);
         invalidate(Collections.singletonList(new SourceFileObject(source)));
     }
 
     public void invalidate(Collection<? extends JavaFileObject> sources) {
-        for (JavaFileObject source : sources) {
-            cachedModified.remove(source);
+        for (CompilerPool.Slot slot : mPool.getSlots()) {
+            for (JavaFileObject source : sources) {
+                slot.cachedModified.remove(source);
+            }
         }
     }
 
-    private CompileBatch doCompile(Collection<? extends JavaFileObject> sources) {
+    private CompileBatch doCompile(ReusableCompiler compiler,
+                                   Collection<? extends JavaFileObject> sources) {
         if (sources.isEmpty()) {
             throw new RuntimeException("empty sources");
         }
-        CompileBatch firstAttempt = new CompileBatch(this, sources);
+        CompileBatch firstAttempt = new CompileBatch(this, compiler, sources);
         Set<Path> addFiles = firstAttempt.needsAdditionalSources();
         if (addFiles.isEmpty()) {
             return firstAttempt;
@@ -159,7 +164,7 @@ public class JavaCompilerService implements CompilerProvider {
         for (Path add : addFiles) {
             moreSources.add(new SourceFileObject(add, mCurrentModule));
         }
-        return new CompileBatch(this, moreSources);
+        return new CompileBatch(this, compiler, moreSources);
     }
 
     /**
@@ -168,41 +173,55 @@ public class JavaCompilerService implements CompilerProvider {
      * @param sources Files to compile
      * @return CompileBatch for this compilation
      */
-    private CompilerContainer compileBatch(Collection<? extends JavaFileObject> sources) {
+    private CompilerContainer compileBatch(CompilePriority priority,
+                                           Collection<? extends JavaFileObject> sources) {
+        CompilerPool.Slot slot;
         try {
-            mContainer.initialize(() -> {
-                if (needsCompile(sources)) {
-                    loadCompile(sources);
-                }
-                if (cachedCompile.task == null || ((JavacTaskImpl) cachedCompile.task).getContext() == null) {
-                    System.out.println();
+            slot = mPool.acquire(priority, it -> !needsCompile(it, sources));
+        } catch (InterruptedException e) {
+            throw new ProcessCanceledException();
+        }
+        boolean handedOut = false;
+        try {
+            slot.container.initialize(() -> {
+                if (needsCompile(slot, sources)) {
+                    loadCompile(slot, sources);
                 }
-                CompileTask task = new CompileTask(cachedCompile);
-                mContainer.setCompileTask(task);
+                CompileTask task = new CompileTask(slot.cachedCompile);
+                slot.container.setCompileTask(task);
             });
-            return mContainer;
+            // the slot stays in use until the caller is done with the compile task, so another
+            // request cannot replace it in the meantime
+            slot.container.setReleaseAction(() -> mPool.release(slot));
+            handedOut = true;
+            return slot.container;
         } catch (Throwable t) {
             if (t instanceof CancelAbort || t.getCause() instanceof CancelAbort) {
-                if (cachedCompile != null) {
-                    cachedCompile.borrow.close();
+                if (slot.cachedCompile != null) {
+                    slot.cachedCompile.borrow.close();
                 }
+                slot.cachedCompile = null;
+                slot.cachedModified.clear();
                 throw new ProcessCanceledException();
             }
             throw t;
+        } finally {
+            if (!handedOut) {
+                mPool.release(slot);
+            }
         }
     }
 
-    public void clearDiagnostics() {
-        diagnostics.clear();
-        if (mDiagnosticListener != null) {
-            mDiagnosticListener.report(null);
-        }
-    }
-
-    public void addDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
-        diagnostics.add(diagnostic);
-        if (mDiagnosticListener != null) {
-            mDiagnosticListener.report(diagnostic);
+    /**
+     * Forwards a diagnostic of one of the pooled compilations to the listener, the diagnostics
+     * of a compilation are kept by its {@link CompileBatch}.
+     *
+     * @param diagnostic the diagnostic, or null when a compilation starts
+     */
+    void reportDiagnostic(@Nullable Diagnostic<? extends JavaFileObject> diagnostic) {
+        DiagnosticListener<? super JavaFileObject> listener = mDiagnosticListener;
+        if (listener != null) {
+            listener.report(diagnostic);
         }
     }
 
@@ -210,10 +229,6 @@ public class JavaCompilerService implements CompilerProvider {
         mDiagnosticListener = listener;
     }
 
-    public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
-        return ImmutableList.copyOf(diagnostics);
-    }
-
     @Override
     public Set<String> imports() {
         return null;
@@ -267,7 +282,13 @@ public class JavaCompilerService implements CompilerProvider {
 
     @Override
     public Iterable<Path> search(String query) {
-        return null;
+        Set<Path> result = new LinkedHashSet<>();
+        for (IdentifierIndex index : getIdentifierIndexes()) {
+            for (File file : index.search(query)) {
+                result.add(file.toPath());
+            }
+        }
+        return result;
     }
 
     /**
@@ -330,25 +351,45 @@ public class JavaCompilerService implements CompilerProvider {
         return "";
     }
 
-    private static final Cache<String, Boolean> cacheContainsWord = new Cache<>();
+    /**
+     * Maximum number of (file, word) pairs remembered by {@link #containsWord(Path, String)}
+     */
+    private static final int MAX_CONTAINS_WORD_ENTRIES = 20_000;
+
+    /**
+     * Maximum number of files whose declared types are remembered
+     */
+    private static final int MAX_CONTAINS_TYPE_ENTRIES = 2_000;
+
+    /**
+     * Maximum number of parsed trees kept alive, each entry holds a whole compilation unit
+     */
+    private static final int MAX_PARSE_ENTRIES = 32;
+
+    private static final Cache<String, Boolean> cacheContainsWord =
+            new Cache<>(MAX_CONTAINS_WORD_ENTRIES);
 
     private boolean containsWord(Path file, String word) {
-        if (cacheContainsWord.needs(file, word)) {
-            cacheContainsWord.load(file, word, StringSearch.containsWord(file, word));
+        Boolean contains = cacheContainsWord.getIfPresent(file, word);
+        if (contains == null) {
+            contains = StringSearch.containsWord(file, word);
+            cacheContainsWord.load(file, word, contains);
         }
-        return cacheContainsWord.get(file, word);
+        return contains;
     }
 
-    private static final Cache<Void, List<String>> cacheContainsType = new Cache<>();
+    private static final Cache<Void, List<String>> cacheContainsType =
+            new Cache<>(MAX_CONTAINS_TYPE_ENTRIES);
 
     private boolean containsType(Path file, String className) {
-        if (cacheContainsType.needs(file, null)) {
+        List<String> types = cacheContainsType.getIfPresent(file, null);
+        if (types == null) {
             CompilationUnitTree root = parse(file).root;
-            List<String> types = new ArrayList<>();
+            types = new ArrayList<>();
             new FindTypeDeclarations().scan(root, types);
             cacheContainsType.load(file, null, types);
         }
-        return cacheContainsType.get(file, null).contains(className);
+        return types.contains(className);
     }
 
 
@@ -378,11 +419,17 @@ public class JavaCompilerService implements CompilerProvider {
                                                    String packageName,
                                                    String simpleName,
                                                    String className) {
-        for (File file : SourceFileManager.list(module, packageName)) {
-            if (containsWord(file.toPath(), simpleName) && containsType(file.toPath(), className)) {
-                if (file.getName().endsWith(".java")) {
-                    return file.toPath();
-                }
+        List<File> files = SourceFileManager.list(module, packageName);
+        IdentifierIndex index = IdentifierIndex.get(module);
+        if (index != null) {
+            files = index.filterContaining(files, simpleName);
+        }
+        for (File file : files) {
+            if (index == null && !containsWord(file.toPath(), simpleName)) {
+                continue;
+            }
+            if (containsType(file.toPath(), className) && file.getName().endsWith(".java")) {
+                return file.toPath();
             }
         }
         return NOT_FOUND;
@@ -421,24 +468,59 @@ public class JavaCompilerService implements CompilerProvider {
         return Optional.ofNullable(source);
     }
 
+    /**
+     * Finds the source files that may reference the given class, the result is a superset of
+     * the actual references and needs to be compiled to be confirmed.
+     */
     @Override
     public Path[] findTypeReferences(String className) {
-        return null;
+        Set<Path> result = new LinkedHashSet<>();
+        for (IdentifierIndex index : getIdentifierIndexes()) {
+            for (File file : index.findTypeReferences(className)) {
+                result.add(file.toPath());
+            }
+        }
+        return result.toArray(new Path[0]);
     }
 
+    /**
+     * Finds the source files that may reference the given member, the result is a superset of
+     * the actual references and needs to be compiled to be confirmed. Members can be accessed
+     * without naming their class, e.g. through an inherited method or the result of a call, so
+     * every file using the member name is a candidate whatever the class is.
+     */
     @Override
     public Path[] findMemberReferences(String className, String memberName) {
-        return null;
+        Set<Path> result = new LinkedHashSet<>();
+        for (IdentifierIndex index : getIdentifierIndexes()) {
+            for (File file : index.getFilesContaining(memberName)) {
+                result.add(file.toPath());
+            }
+        }
+        return result.toArray(new Path[0]);
+    }
+
+    private List<IdentifierIndex> getIdentifierIndexes() {
+        List<IdentifierIndex> indexes = new ArrayList<>();
+        for (Module module : mProject.getDependencies(mCurrentModule)) {
+            IdentifierIndex index = IdentifierIndex.get(module);
+            if (index != null) {
+                indexes.add(index);
+            }
+        }
+        return indexes;
     }
 
-    private final Cache<String, ParseTask> parseCache = new Cache<>();
+    private final Cache<String, ParseTask> parseCache = new Cache<>(MAX_PARSE_ENTRIES);
 
     private ParseTask cachedParse(Path file) {
-        if (parseCache.needs(file, file.toFile().getName())) {
+        ParseTask task = parseCache.getIfPresent(file, file.toFile().getName());
+        if (task == null) {
             Parser parser = Parser.parseFile(mProject, file);
-            parseCache.load(file, file.toFile().getName(), new ParseTask(parser.task, parser.root));
+            task = new ParseTask(parser.task, parser.root);
+            parseCache.load(file, file.toFile().getName(), task);
         }
-        return parseCache.get(file, file.toFile().getName());
+        return task;
     }
 
     private ParseTask cachedParse(JavaFileObject file) {
@@ -448,14 +530,15 @@ public class JavaCompilerService implements CompilerProvider {
                     file.toUri().toString().substring(4, file.toUri().toString().lastIndexOf("!"));
 
             Path parsedPath = new File(URI.create(path)).toPath();
-            if (parseCache.needs(parsedPath, file.getName())) {
+            ParseTask task = parseCache.getIfPresent(parsedPath, file.getName());
+            if (task == null) {
                 Parser parser = Parser.parseJavaFileObject(mProject, file);
-                parseCache
-                        .load(parsedPath, file.getName(), new ParseTask(parser.task, parser.root));
+                task = new ParseTask(parser.task, parser.root);
+                parseCache.load(parsedPath, file.getName(), task);
             } else {
                 Log.d("JavaCompilerService", "Using cached parse for " + file.getName());
             }
-            return parseCache.get(parsedPath, file.getName());
+            return task;
         } else if (file instanceof SourceFileObject) {
             return cachedParse(((SourceFileObject) file).mFile);
         }
@@ -464,6 +547,13 @@ public class JavaCompilerService implements CompilerProvider {
         return new ParseTask(parser.task, parser.root);
     }
 
+    /**
+     * @return the statistics of the parse cache, for diagnosing memory usage
+     */
+    public Cache.Stats getParseCacheStats() {
+        return parseCache.getStats();
+    }
+
     /**
      * Convenience method for parsing a path
      *
@@ -517,14 +607,25 @@ public class JavaCompilerService implements CompilerProvider {
      * @return a CompileTask for this compilation
      */
     @Override
-    public synchronized CompilerContainer compile(Collection<? extends JavaFileObject> sources) {
-        return compileBatch(sources);
+    public CompilerContainer compile(Collection<? extends JavaFileObject> sources) {
+        return compile(CompilePriority.INTERACTIVE, sources);
     }
 
-    public synchronized void close() {
-        if (cachedCompile != null && !cachedCompile.closed) {
-            cachedCompile.close();
-        }
+    /**
+     * Compiles the sources using one of the pooled compilers. Requests with a higher priority
+     * are served first when every compiler is in use. The compiler is returned to the pool once
+     * the container has been used through {@link CompilerContainer#run},
+     * {@link CompilerContainer#get} or {@link CompilerContainer#getWithLock}, so the returned
+     * container must be used.
+     *
+     * @see CompilerPool
+     */
+    public CompilerContainer compile(@NonNull CompilePriority priority,
+                                     Collection<? extends JavaFileObject> sources) {
+        return compileBatch(priority, sources);
+    }
+
+    public void close() {
         if (mLock.isHeldByCurrentThread() && mLock.isLocked()) {
             mLock.unlock();
         }
@@ -535,26 +636,28 @@ public class JavaCompilerService implements CompilerProvider {
     }
 
     public void destroy() {
-        mContainer.initialize(() -> {
-            close();
-            if (cachedCompile != null) {
-                final ReusableCompiler.Borrow borrow = cachedCompile.borrow;
-                if (borrow != null) {
-                    borrow.close();
+        for (CompilerPool.Slot slot : mPool.getSlots()) {
+            slot.container.initialize(() -> {
+                CompileBatch cachedCompile = slot.cachedCompile;
+                if (cachedCompile != null) {
+                    cachedCompile.close();
+                    final ReusableCompiler.Borrow borrow = cachedCompile.borrow;
+                    if (borrow != null) {
+                        borrow.close();
+                    }
                 }
-            }
-            cachedCompile = null;
-            cachedModified.clear();
-            compiler = new ReusableCompiler();
-        });
-    }
-
-    public CompileBatch getCompileBatch() {
-        return cachedCompile;
+                slot.cachedCompile = null;
+                slot.cachedModified.clear();
+                slot.compiler = new ReusableCompiler();
+            });
+        }
+        if (mLock.isHeldByCurrentThread() && mLock.isLocked()) {
+            mLock.unlock();
+        }
     }
 
     @NonNull
-    public CompilerContainer getCachedContainer() {
-        return mContainer;
+    public CompilerPool getCompilerPool() {
+        return mPool;
     }
 }
@@ -78,6 +78,14 @@ public class Parser {
         return parseJavaFileObject(project, new SourceFileObject(file));
     }
 
+    /**
+     * Parses the file without going through the cache of the last parsed file, unlike
+     * {@link #parseFile(Project, Path)} this may be called from several threads at once.
+     */
+    public static Parser parseFileUncached(Project project, Path file) {
+        return new Parser(project, new SourceFileObject(file));
+    }
+
     private static Parser cachedParse;
     private static long cachedModified = -1;
 
@@ -105,7 +105,11 @@ public class ReusableCompiler {
 
         @Override
         public boolean isCanceled() {
-            return false;
+            return canceled.get();
+        }
+
+        public void reset() {
+            canceled.set(false);
         }
 
         @Override
@@ -163,6 +167,7 @@ public class ReusableCompiler {
 			null, fileManager, diagnosticListener, opts, classes, compilationUnits, currentContext);
         task.addTaskListener(currentContext);
 
+        cancelService.reset();
         cancelService.setRunning(true);
 
         return new Borrow(task, currentContext);
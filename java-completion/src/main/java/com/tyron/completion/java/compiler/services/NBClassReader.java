@@ -14,6 +14,7 @@ import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Name;
 import com.sun.tools.javac.util.Names;
+import com.tyron.completion.java.index.ClassFileStoreCache;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -61,6 +62,31 @@ public class NBClassReader extends ClassReader {
 
     @Override
     public void readClassFile(ClassSymbol c) {
+        ClassFileStoreCache cache = ClassFileStoreCache.getInstance();
+        byte[] stored = cache == null || c.classfile == null
+                ? null
+                : cache.getClassFile(c.classfile);
+        if (stored == null) {
+            readClassFileChecked(c);
+            return;
+        }
+
+        // read the class from the stored copy instead of inflating it from the jar again
+        JavaFileObject origFile = c.classfile;
+        c.classfile = new ForwardingJavaFileObject<JavaFileObject>(origFile) {
+            @Override
+            public InputStream openInputStream() {
+                return new ByteArrayInputStream(stored);
+            }
+        };
+        try {
+            readClassFileChecked(c);
+        } finally {
+            c.classfile = origFile;
+        }
+    }
+
+    private void readClassFileChecked(ClassSymbol c) {
         try {
             super.readClassFile(c);
         } catch (BadClassFile cf) {
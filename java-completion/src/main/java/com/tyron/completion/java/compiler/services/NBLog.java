@@ -2,6 +2,8 @@ package com.tyron.completion.java.compiler.services;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.DiagnosticSource;
 import com.sun.tools.javac.util.JCDiagnostic;
@@ -12,6 +14,7 @@ import java.io.PrintWriter;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +36,8 @@ public class NBLog extends Log {
 
     private JavaFileObject partialReparseFile;
     private final Set<Integer> seenPartialReparsePositions = new HashSet<>();
+    private long partialReparseStart = -1;
+    private long partialReparseEnd = -1;
 
     protected NBLog(
             final Context context,
@@ -78,6 +83,10 @@ public class NBLog extends Log {
 
     @Override
     public void report(JCDiagnostic diagnostic) {
+        if (isOutsidePartialReparse(diagnostic)) {
+            // already reported when the rest of the file was analyzed
+            return;
+        }
         diagnosticMap.put(diagnostic.getSource().toUri(), diagnostic);
 
         //XXX: needs testing!
@@ -129,8 +138,32 @@ public class NBLog extends Log {
         partialReparseFile = inFile;
     }
     
+    /**
+     * Only keeps the diagnostics of the reparsed file that are inside the given range until the
+     * partial reparse ends, used when an analysis of the whole class re-reports the diagnostics
+     * of the parts that were not reparsed.
+     */
+    public void setPartialReparseRange(long start, long end) {
+        partialReparseStart = start;
+        partialReparseEnd = end;
+    }
+
+    private boolean isOutsidePartialReparse(JCDiagnostic diagnostic) {
+        if (partialReparseFile == null || partialReparseStart < 0) {
+            return false;
+        }
+        JavaFileObject source = diagnostic.getSource();
+        if (source == null || !source.toUri().equals(partialReparseFile.toUri())) {
+            return false;
+        }
+        long position = diagnostic.getPosition();
+        return position < partialReparseStart || position > partialReparseEnd;
+    }
+
     public void endPartialReparse(JavaFileObject inFile) {
         partialReparseFile = null;
+        partialReparseStart = -1;
+        partialReparseEnd = -1;
         seenPartialReparsePositions.clear(); //TODO: not tested
     }
 
@@ -141,4 +174,89 @@ public class NBLog extends Log {
     public void removeDiagnostics(URI toUri) {
         diagnosticMap.removeAll(toUri);
     }
+
+    /**
+     * Removes the diagnostics of the file whose position is inside the given range, used
+     * when only a part of the file has been reparsed.
+     */
+    public void removeDiagnostics(URI toUri, long start, long end) {
+        diagnosticMap.get(toUri).removeIf(it -> {
+            long position = it.getPosition();
+            return start <= position && position <= end;
+        });
+    }
+
+    /**
+     * Moves the diagnostics of the file that are after the given position by the given delta,
+     * used when the text before them has been replaced by a partial reparse. The positions are
+     * copied so the diagnostics do not follow trees that are translated afterwards.
+     */
+    public void shiftDiagnostics(JavaFileObject file, long after, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        DiagnosticSource source = getSource(file);
+        List<JCDiagnostic> diagnostics = diagnosticMap.get(file.toUri());
+        for (int i = 0; i < diagnostics.size(); i++) {
+            JCDiagnostic diagnostic = diagnostics.get(i);
+            if (diagnostic.getPosition() > after) {
+                diagnostics.set(i, shift(diagnostic, source, delta));
+            }
+        }
+    }
+
+    private JCDiagnostic shift(JCDiagnostic diagnostic, DiagnosticSource source, int delta) {
+        // the code is <prefix>.<type>.<key>, e.g. compiler.err.cant.resolve
+        String code = diagnostic.getCode();
+        int prefixEnd = code.indexOf('.');
+        int typeEnd = code.indexOf('.', prefixEnd + 1);
+        JCDiagnostic.DiagnosticInfo info = JCDiagnostic.DiagnosticInfo.of(diagnostic.getType(),
+                code.substring(0, prefixEnd), code.substring(typeEnd + 1), diagnostic.getArgs());
+
+        Set<JCDiagnostic.DiagnosticFlag> flags = EnumSet.noneOf(JCDiagnostic.DiagnosticFlag.class);
+        for (JCDiagnostic.DiagnosticFlag flag : JCDiagnostic.DiagnosticFlag.values()) {
+            if (diagnostic.isFlagSet(flag)) {
+                flags.add(flag);
+            }
+        }
+        return diags.create(diagnostic.getLintCategory(), flags, source,
+                new ShiftedPosition(diagnostic, delta), info);
+    }
+
+    private static class ShiftedPosition implements JCDiagnostic.DiagnosticPosition {
+
+        private final int start;
+        private final int preferred;
+        private final int end;
+
+        ShiftedPosition(JCDiagnostic diagnostic, int delta) {
+            start = shift((int) diagnostic.getStartPosition(), delta);
+            preferred = shift((int) diagnostic.getPosition(), delta);
+            end = shift((int) diagnostic.getEndPosition(), delta);
+        }
+
+        private static int shift(int position, int delta) {
+            return position < 0 ? position : position + delta;
+        }
+
+        @Override
+        public JCTree getTree() {
+            return null;
+        }
+
+        @Override
+        public int getStartPosition() {
+            return start;
+        }
+
+        @Override
+        public int getPreferredPosition() {
+            return preferred;
+        }
+
+        @Override
+        public int getEndPosition(EndPosTable endPosTable) {
+            return end;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+package com.tyron.completion.java.index;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * An immutable, memory mapped copy of the uncompressed class files of a jar, so the compiler
+ * can read a class without inflating it from the jar again. A store is shared by every javac
+ * context of the process and survives restarts. Only the class file bytes are shared, each
+ * context still completes its own symbols from them.
+ *
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ *     int     MAGIC
+ *     int     VERSION
+ *     int     entry count
+ *     int[3]  for each entry: offset of its name in the name section, offset of its class file
+ *             in the data section, length of its class file
+ *     int     length of the name section
+ *     byte[]  name section, each name is stored as:
+ *               u2  length of the entry name in bytes
+ *               u1[] UTF-8 bytes of the jar entry name, e.g. java/lang/Object.class
+ *     byte[]  data section, the class files
+ * </pre>
+ * Entries are sorted by the bytes of their names so a class file is found with a binary search.
+ * </p>
+ */
+public class ClassFileStore {
+
+    static final int MAGIC = 0x43465354;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 12;
+
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    private final int mNamesStart;
+    private final int mDataStart;
+
+    private ClassFileStore(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a class file store");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported class file store version " + buffer.getInt(4));
+        }
+        mSize = buffer.getInt(8);
+        int namesLengthPosition = HEADER_SIZE + mSize * ENTRY_SIZE;
+        mNamesStart = namesLengthPosition + 4;
+        mDataStart = mNamesStart + buffer.getInt(namesLengthPosition);
+    }
+
+    /**
+     * Maps an existing store into memory.
+     *
+     * @throws IOException if the file cannot be read or is not a valid store of the current
+     *                     version
+     */
+    @NonNull
+    public static ClassFileStore load(@NonNull File storeFile) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(storeFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ClassFileStore(buffer);
+        }
+    }
+
+    /**
+     * Copies every class file of the jar to the output file. The file is written to a temporary
+     * location first so a partially written store is never observed by another reader.
+     */
+    public static void write(@NonNull File jar, @NonNull File out) throws IOException {
+        write(jar, out, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #write(File, File)}, but fails without writing anything if the uncompressed
+     * class files of the jar take more than the given number of bytes.
+     */
+    public static void write(@NonNull File jar,
+                             @NonNull File out,
+                             long maxDataLength) throws IOException {
+        File parent = out.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File temp = new File(parent, out.getName() + ".tmp");
+
+        try (JarFile jarFile = new JarFile(jar)) {
+            List<Entry> entries = new ArrayList<>();
+            long expectedLength = 0;
+            Enumeration<JarEntry> enumeration = jarFile.entries();
+            while (enumeration.hasMoreElements()) {
+                JarEntry jarEntry = enumeration.nextElement();
+                if (!jarEntry.isDirectory() && jarEntry.getName().endsWith(".class")) {
+                    entries.add(new Entry(jarEntry));
+                    // the size is read from the central directory, an entry of unknown size
+                    // is checked while it is copied
+                    expectedLength += Math.max(0, jarEntry.getSize());
+                }
+            }
+            if (expectedLength > maxDataLength) {
+                throw new IOException(jar + " is too large to be stored");
+            }
+            entries.sort(Entry::compareTo);
+
+            int namesLength = 0;
+            for (Entry entry : entries) {
+                namesLength += 2 + entry.name.length;
+            }
+
+            long dataLength = 0;
+            try (DataOutputStream os = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                os.writeInt(MAGIC);
+                os.writeInt(VERSION);
+                os.writeInt(entries.size());
+                // the data offsets are only known once the class files have been read,
+                // they are filled in below
+                os.write(new byte[entries.size() * ENTRY_SIZE]);
+                os.writeInt(namesLength);
+                for (Entry entry : entries) {
+                    os.writeShort(entry.name.length);
+                    os.write(entry.name);
+                }
+
+                byte[] buffer = new byte[8192];
+                for (Entry entry : entries) {
+                    entry.dataOffset = dataLength;
+                    try (InputStream is = jarFile.getInputStream(entry.jarEntry)) {
+                        int read;
+                        while ((read = is.read(buffer)) != -1) {
+                            os.write(buffer, 0, read);
+                            entry.dataLength += read;
+                        }
+                    }
+                    dataLength += entry.dataLength;
+                    if (dataLength > maxDataLength) {
+                        throw new IOException(jar + " is too large to be stored");
+                    }
+                }
+            }
+
+            if (HEADER_SIZE + (long) entries.size() * ENTRY_SIZE + 4 + namesLength + dataLength >
+                Integer.MAX_VALUE) {
+                throw new IOException(jar + " is too large to be stored");
+            }
+
+            try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+                ByteBuffer table = ByteBuffer.allocate(entries.size() * ENTRY_SIZE);
+                int nameOffset = 0;
+                for (Entry entry : entries) {
+                    table.putInt(nameOffset);
+                    table.putInt((int) entry.dataOffset);
+                    table.putInt(entry.dataLength);
+                    nameOffset += 2 + entry.name.length;
+                }
+                raf.seek(HEADER_SIZE);
+                raf.write(table.array());
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw e;
+        }
+
+        if (!temp.renameTo(out)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to write class file store " + out);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param entryName the name of the class file inside the jar, e.g. java/lang/Object.class
+     * @return the contents of the class file, or null if the jar does not contain it
+     */
+    @Nullable
+    public byte[] getClassFile(@NonNull String entryName) {
+        byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = mSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareName(mid, name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                int entry = HEADER_SIZE + mid * ENTRY_SIZE;
+                int offset = mDataStart + mBuffer.getInt(entry + 4);
+                byte[] data = new byte[mBuffer.getInt(entry + 8)];
+                ByteBuffer duplicate = mBuffer.duplicate();
+                duplicate.position(offset);
+                duplicate.get(data);
+                return data;
+            }
+        }
+        return null;
+    }
+
+    private int compareName(int index, byte[] name) {
+        int position = mNamesStart + mBuffer.getInt(HEADER_SIZE + index * ENTRY_SIZE);
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        position += 2;
+        int n = Math.min(length, name.length);
+        for (int i = 0; i < n; i++) {
+            int a = mBuffer.get(position + i) & 0xFF;
+            int b = name[i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - name.length;
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final JarEntry jarEntry;
+        private final byte[] name;
+        private long dataOffset;
+        private int dataLength;
+
+        Entry(JarEntry jarEntry) {
+            this.jarEntry = jarEntry;
+            this.name = jarEntry.getName().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int compareTo(@Nullable Entry o) {
+            if (o == null) {
+                return 1;
+            }
+            int n = Math.min(name.length, o.name.length);
+            for (int i = 0; i < n; i++) {
+                int a = name[i] & 0xFF;
+                int b = o.name[i] & 0xFF;
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return name.length - o.name.length;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.tyron.completion.java.index;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.tyron.common.ApplicationPaths;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.common.util.JarCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * Holds the {@link ClassFileStore} of every jar the compiler has read a class from, so javac
+ * reads library and platform classes from a memory mapped file instead of inflating them from
+ * the jar in every compiler context. This only saves the inflating, the symbols completed from
+ * the class files are still built by each context.
+ *
+ * Stores are built in the background the first time a class of a jar is requested, until the
+ * store is ready the class is read from the jar as usual. Like {@link ClassNameIndexCache},
+ * stores are kept on disk by a {@link JarCache} so a changed jar is copied again.
+ *
+ * A jar is checked for changes the first time a class is read from it, later reads use the
+ * same store until {@link #revalidate()} is called, which is done when the classpath changes.
+ */
+public class ClassFileStoreCache {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(ClassFileStoreCache.class);
+    private static final String STORE_DIRECTORY = "class-file-store";
+    private static final String STORE_EXTENSION = ".cfs";
+
+    /**
+     * Stores hold uncompressed class files, the least recently used stores are deleted once
+     * they take more than this. The stores are mapped rather than read so they do not count
+     * against the heap, but they still take storage and page cache on the device.
+     */
+    private static final long MAX_CACHE_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Jars whose uncompressed classes take more than this part of the cache are read directly
+     */
+    private static final int MAX_STORE_FRACTION = 4;
+
+    private static volatile ClassFileStoreCache sInstance;
+
+    /**
+     * @return the shared cache, or null if the application cache directory is not available yet
+     */
+    @Nullable
+    public static ClassFileStoreCache getInstance() {
+        if (sInstance == null) {
+            synchronized (ClassFileStoreCache.class) {
+                if (sInstance == null) {
+                    File cacheDir;
+                    try {
+                        cacheDir = ApplicationPaths.getCacheDir();
+                    } catch (IllegalStateException e) {
+                        return null;
+                    }
+                    sInstance = new ClassFileStoreCache(new File(cacheDir, STORE_DIRECTORY),
+                                                        Executors.newSingleThreadExecutor());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public static void setInstance(@Nullable ClassFileStoreCache cache) {
+        sInstance = cache;
+    }
+
+    private final JarCache<ClassFileStore> mCache;
+    private final Executor mExecutor;
+    private final long mMaxStoreSize;
+    private final Map<File, Entry> mStores = new ConcurrentHashMap<>();
+    private final Set<String> mBuilding = ConcurrentHashMap.newKeySet();
+
+    private static class Entry {
+        /**
+         * Null if the store could not be built, the jar is read directly in that case
+         */
+        final ClassFileStore store;
+
+        Entry(ClassFileStore store) {
+            this.store = store;
+        }
+    }
+
+    /**
+     * @param executor the executor stores are built on, a direct executor builds them before
+     *                 returning from {@link #get(File)}
+     */
+    public ClassFileStoreCache(@NonNull File storeDirectory, @NonNull Executor executor) {
+        this(storeDirectory, executor, MAX_CACHE_SIZE);
+    }
+
+    @VisibleForTesting
+    ClassFileStoreCache(@NonNull File storeDirectory,
+                        @NonNull Executor executor,
+                        long maxCacheSize) {
+        mMaxStoreSize = maxCacheSize / MAX_STORE_FRACTION;
+        // stores are memory mapped, they are kept until the jar changes
+        mCache = new JarCache<>(storeDirectory, STORE_EXTENSION, ClassFileStore.VERSION,
+                new JarCache.Format<ClassFileStore>() {
+                    @NonNull
+                    @Override
+                    public ClassFileStore read(@NonNull File cacheFile) throws IOException {
+                        return ClassFileStore.load(cacheFile);
+                    }
+
+                    @NonNull
+                    @Override
+                    public ClassFileStore create(@NonNull File jar,
+                                                 @Nullable File cacheFile) throws IOException {
+                        if (cacheFile == null) {
+                            throw new IOException("No directory to store " + jar + " in");
+                        }
+                        long start = System.currentTimeMillis();
+                        ClassFileStore.write(jar, cacheFile, mMaxStoreSize);
+                        ClassFileStore store = ClassFileStore.load(cacheFile);
+                        sLogger.info("Stored " + store.size() + " classes of " + jar.getName() +
+                                     " in " + (System.currentTimeMillis() - start) + "ms");
+                        return store;
+                    }
+                }, false, maxCacheSize);
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns the contents of a class file if it is read from a jar with a store.
+     *
+     * @return the class file, or null if the caller should read the file object itself
+     */
+    @Nullable
+    public byte[] getClassFile(@NonNull JavaFileObject fileObject) {
+        if (fileObject.getKind() != JavaFileObject.Kind.CLASS) {
+            return null;
+        }
+        URI uri = fileObject.toUri();
+        if (!"jar".equals(uri.getScheme())) {
+            return null;
+        }
+        String raw = uri.getRawSchemeSpecificPart();
+        int separator = raw.indexOf("!/");
+        if (separator == -1) {
+            return null;
+        }
+
+        File jar;
+        String entryName;
+        try {
+            jar = new File(URI.create(raw.substring(0, separator)));
+            entryName = URI.create(raw.substring(separator + 1)).getPath().substring(1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        ClassFileStore store = get(jar);
+        return store == null ? null : store.getClassFile(entryName);
+    }
+
+    /**
+     * @return the store of the jar, or null if it is not available yet or cannot be built
+     */
+    @Nullable
+    public ClassFileStore get(@NonNull File jar) {
+        // this is called for every class javac reads, the jar was validated when its entry
+        // was added so it is not checked again in this session
+        Entry entry = mStores.get(jar);
+        if (entry != null) {
+            return entry.store;
+        }
+        if (!jar.isFile()) {
+            return null;
+        }
+        // the classes take at least the size of the jar once uncompressed
+        if (jar.length() > mMaxStoreSize) {
+            mStores.put(jar, new Entry(null));
+            return null;
+        }
+        String key = mCache.getKey(jar);
+        if (mBuilding.add(key)) {
+            mExecutor.execute(() -> {
+                try {
+                    mStores.put(jar, new Entry(loadOrBuild(jar)));
+                } finally {
+                    mBuilding.remove(key);
+                }
+            });
+            // the executor may have built it already
+            entry = mStores.get(jar);
+            if (entry != null) {
+                return entry.store;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks every jar for changes again the next time a class is read from it.
+     */
+    public void revalidate() {
+        mStores.clear();
+    }
+
+    @Nullable
+    private ClassFileStore loadOrBuild(File jar) {
+        try {
+            return mCache.get(jar);
+        } catch (IOException e) {
+            sLogger.warning("Unable to store the classes of " + jar + ": " + e);
+            return null;
+        }
+    }
+}
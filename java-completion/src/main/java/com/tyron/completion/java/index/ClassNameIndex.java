@@ -0,0 +1,318 @@
+package com.tyron.completion.java.index;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * An immutable, memory mapped table of the top level classes inside a jar file, sorted by their
+ * simple names so that prefix queries can be answered with a binary search.
+ *
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ *     int     MAGIC
+ *     int     VERSION
+ *     int     entry count
+ *     int[]   offset of each entry, relative to the start of the data section
+ *     byte[]  data section, each entry is stored as:
+ *               u2  length of the fully qualified name in bytes
+ *               u2  offset of the simple name inside the fully qualified name
+ *               u1[] UTF-8 bytes of the fully qualified name
+ * </pre>
+ * Entries are sorted by the ASCII lowercase form of their simple names, which allows both
+ * case sensitive and case insensitive prefix lookups on the same table.
+ * </p>
+ */
+public class ClassNameIndex {
+
+    static final int MAGIC = 0x434E4958;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    private final int mDataStart;
+
+    private ClassNameIndex(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a class name index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported class name index version " + buffer.getInt(4));
+        }
+        mSize = buffer.getInt(8);
+        mDataStart = HEADER_SIZE + mSize * 4;
+    }
+
+    /**
+     * Maps an existing index file into memory.
+     *
+     * @throws IOException if the file cannot be read or is not a valid index of the current
+     *                     version
+     */
+    @NonNull
+    public static ClassNameIndex load(@NonNull File indexFile) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ClassNameIndex(buffer);
+        }
+    }
+
+    /**
+     * Scans the top level classes of the given jar and writes the index to the output file.
+     * The file is written to a temporary location first so a partially written index is never
+     * observed by another reader.
+     */
+    public static void write(@NonNull File jar, @NonNull File out) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> enumeration = jarFile.entries();
+            while (enumeration.hasMoreElements()) {
+                String name = enumeration.nextElement().getName();
+                if (!name.endsWith(".class") || name.contains("$")) {
+                    continue;
+                }
+                String fqn = name.substring(0, name.length() - ".class".length())
+                        .replace('/', '.');
+                if (fqn.endsWith("package-info") || fqn.endsWith("module-info")) {
+                    continue;
+                }
+                entries.add(new Entry(fqn));
+            }
+        }
+        entries.sort(Entry::compareTo);
+
+        File parent = out.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File temp = new File(parent, out.getName() + ".tmp");
+        try (DataOutputStream os = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeInt(entries.size());
+
+            int offset = 0;
+            for (Entry entry : entries) {
+                os.writeInt(offset);
+                offset += 4 + entry.bytes.length;
+            }
+            for (Entry entry : entries) {
+                os.writeShort(entry.bytes.length);
+                os.writeShort(entry.simpleNameStart);
+                os.write(entry.bytes);
+            }
+        }
+        if (!temp.renameTo(out)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to write index " + out);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    @NonNull
+    public String getQualifiedName(int index) {
+        int position = entryPosition(index);
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        return decode(position + 4, length);
+    }
+
+    @NonNull
+    public String getSimpleName(int index) {
+        int position = entryPosition(index);
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        int simpleStart = mBuffer.getShort(position + 2) & 0xFFFF;
+        return decode(position + 4 + simpleStart, length - simpleStart);
+    }
+
+    /**
+     * Passes every fully qualified name whose simple name starts with the given prefix to the
+     * consumer. Only the matching entries are decoded.
+     *
+     * @param prefix        The prefix of the simple name, an empty prefix matches every entry
+     * @param caseSensitive Whether the prefix should be matched case sensitively
+     */
+    public void processPrefix(@NonNull String prefix,
+                              boolean caseSensitive,
+                              @NonNull Consumer<String> consumer) {
+        if (!caseSensitive && !isAscii(prefix)) {
+            // the table is only sorted by the ASCII lowercase form of the names, other letters
+            // are folded with the rules of Character on every name
+            for (int i = 0; i < mSize; i++) {
+                if (getSimpleName(i).regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    consumer.accept(getQualifiedName(i));
+                }
+            }
+            return;
+        }
+
+        byte[] lowerPrefix = toLowerAscii(prefix.getBytes(StandardCharsets.UTF_8));
+        byte[] exactPrefix = caseSensitive ? prefix.getBytes(StandardCharsets.UTF_8) : null;
+
+        for (int i = lowerBound(lowerPrefix); i < mSize; i++) {
+            int position = entryPosition(i);
+            int length = mBuffer.getShort(position) & 0xFFFF;
+            int simpleStart = mBuffer.getShort(position + 2) & 0xFFFF;
+            int simplePosition = position + 4 + simpleStart;
+            int simpleLength = length - simpleStart;
+
+            if (compareLowerPrefix(simplePosition, simpleLength, lowerPrefix) != 0) {
+                break;
+            }
+            if (exactPrefix != null && !startsWith(simplePosition, simpleLength, exactPrefix)) {
+                continue;
+            }
+            consumer.accept(decode(position + 4, length));
+        }
+    }
+
+    public void processAll(@NonNull Consumer<String> consumer) {
+        for (int i = 0; i < mSize; i++) {
+            consumer.accept(getQualifiedName(i));
+        }
+    }
+
+    private int lowerBound(byte[] lowerPrefix) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int position = entryPosition(mid);
+            int length = mBuffer.getShort(position) & 0xFFFF;
+            int simpleStart = mBuffer.getShort(position + 2) & 0xFFFF;
+            int cmp = compareLowerPrefix(position + 4 + simpleStart, length - simpleStart,
+                                         lowerPrefix);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the first {@code prefix.length} lowercased bytes of the simple name at the given
+     * position with the prefix. Returns 0 if the simple name starts with the prefix.
+     */
+    private int compareLowerPrefix(int position, int length, byte[] prefix) {
+        int n = Math.min(length, prefix.length);
+        for (int i = 0; i < n; i++) {
+            int a = toLowerAscii(mBuffer.get(position + i)) & 0xFF;
+            int b = prefix[i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length >= prefix.length ? 0 : -1;
+    }
+
+    private boolean startsWith(int position, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (mBuffer.get(position + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int entryPosition(int index) {
+        return mDataStart + mBuffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isAscii(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lowercases an ASCII letter, the bytes of multi-byte UTF-8 characters are left unchanged
+     */
+    private static byte toLowerAscii(byte b) {
+        if (b >= 'A' && b <= 'Z') {
+            return (byte) (b + ('a' - 'A'));
+        }
+        return b;
+    }
+
+    private static byte[] toLowerAscii(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = toLowerAscii(bytes[i]);
+        }
+        return bytes;
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final byte[] bytes;
+        private final int simpleNameStart;
+        private final byte[] sortKey;
+
+        Entry(String fqn) {
+            bytes = fqn.getBytes(StandardCharsets.UTF_8);
+            int dot = fqn.lastIndexOf('.');
+            simpleNameStart = dot == -1
+                    ? 0
+                    : fqn.substring(0, dot + 1).getBytes(StandardCharsets.UTF_8).length;
+            byte[] simple = new byte[bytes.length - simpleNameStart];
+            System.arraycopy(bytes, simpleNameStart, simple, 0, simple.length);
+            sortKey = toLowerAscii(simple);
+        }
+
+        @Override
+        public int compareTo(@Nullable Entry o) {
+            if (o == null) {
+                return 1;
+            }
+            int n = Math.min(sortKey.length, o.sortKey.length);
+            for (int i = 0; i < n; i++) {
+                int a = sortKey[i] & 0xFF;
+                int b = o.sortKey[i] & 0xFF;
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return sortKey.length - o.sortKey.length;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.tyron.completion.java.index;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.tyron.common.ApplicationPaths;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.common.util.JarCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Holds the {@link ClassNameIndex} of every library jar that has been requested so far.
+ *
+ * The index files are stored on disk by a {@link JarCache} so they survive application restarts,
+ * a changed jar is re-indexed while an unchanged jar is only memory mapped. Loaded indexes are
+ * shared between all modules.
+ *
+ * Completion uses {@link #getIfIndexed(File)}, which indexes new jars in the background instead
+ * of making the completion request wait for them.
+ */
+public class ClassNameIndexCache {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(ClassNameIndexCache.class);
+    private static final String INDEX_DIRECTORY = "class-name-index";
+    private static final String INDEX_EXTENSION = ".idx";
+
+    /**
+     * Indexes only hold class names, this holds those of a few hundred libraries
+     */
+    private static final long MAX_CACHE_SIZE = 128 * 1024 * 1024;
+
+    private static volatile ClassNameIndexCache sInstance;
+
+    public static ClassNameIndexCache getInstance() {
+        if (sInstance == null) {
+            synchronized (ClassNameIndexCache.class) {
+                if (sInstance == null) {
+                    sInstance = new ClassNameIndexCache(
+                            new File(ApplicationPaths.getCacheDir(), INDEX_DIRECTORY),
+                            Executors.newSingleThreadExecutor());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public static void setInstance(@Nullable ClassNameIndexCache cache) {
+        sInstance = cache;
+    }
+
+    private final JarCache<ClassNameIndex> mCache;
+    private final Executor mExecutor;
+    private final Set<File> mIndexing = ConcurrentHashMap.newKeySet();
+
+    public ClassNameIndexCache(@NonNull File indexDirectory) {
+        this(indexDirectory, Runnable::run);
+    }
+
+    /**
+     * @param executor the executor {@link #getIfIndexed(File)} indexes jars on
+     */
+    public ClassNameIndexCache(@NonNull File indexDirectory, @NonNull Executor executor) {
+        mExecutor = executor;
+        // indexes are memory mapped, they cost little memory so they are never released
+        mCache = new JarCache<>(indexDirectory, INDEX_EXTENSION, ClassNameIndex.VERSION,
+                new JarCache.Format<ClassNameIndex>() {
+                    @NonNull
+                    @Override
+                    public ClassNameIndex read(@NonNull File cacheFile) throws IOException {
+                        return ClassNameIndex.load(cacheFile);
+                    }
+
+                    @NonNull
+                    @Override
+                    public ClassNameIndex create(@NonNull File jar,
+                                                 @Nullable File cacheFile) throws IOException {
+                        if (cacheFile == null) {
+                            throw new IOException("No directory to index " + jar + " in");
+                        }
+                        ClassNameIndex.write(jar, cacheFile);
+                        return ClassNameIndex.load(cacheFile);
+                    }
+                }, false, MAX_CACHE_SIZE);
+    }
+
+    /**
+     * Returns the index of the given jar, reading it from disk or building it if there is no
+     * up to date index yet.
+     *
+     * @return the index, or null if the jar could not be read
+     */
+    @Nullable
+    public ClassNameIndex get(@NonNull File jar) {
+        if (!jar.isFile()) {
+            return null;
+        }
+        try {
+            return mCache.get(jar);
+        } catch (IOException e) {
+            sLogger.warning("Unable to index " + jar + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index of the jar if it is loaded or its index file is up to date, only
+     * memory mapping the file. Otherwise the jar is indexed in the background.
+     *
+     * @return the index, or null if the jar is being indexed or could not be read
+     */
+    @Nullable
+    public ClassNameIndex getIfIndexed(@NonNull File jar) {
+        ClassNameIndex index = mCache.getIfLoaded(jar);
+        if (index != null) {
+            return index;
+        }
+        File indexFile = mCache.getFile(jar);
+        if (indexFile != null && indexFile.exists()) {
+            return get(jar);
+        }
+        if (mIndexing.add(jar)) {
+            mExecutor.execute(() -> {
+                try {
+                    get(jar);
+                } finally {
+                    mIndexing.remove(jar);
+                }
+            });
+        }
+        return mCache.getIfLoaded(jar);
+    }
+}
@@ -0,0 +1,483 @@
+package com.tyron.completion.java.index;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.tyron.builder.project.api.FileManager;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.listener.FileListener;
+import com.tyron.common.util.StringSearch;
+
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index from the identifiers used in the java source files of a module to the files
+ * that use them. Comments and string literals are not indexed.
+ *
+ * Files are indexed lazily the first time they are queried and re-indexed when their
+ * modification time changes on disk. Files opened in the editor are kept up to date through
+ * the snapshot listener of the module's {@link FileManager}, which is called on the UI thread,
+ * so changed snapshots are indexed on a background thread, or by the next query if it comes
+ * first.
+ *
+ * Files are tokenized without holding a lock. Queries of a single file read its immutable
+ * entry without locking, queries of every file share a read lock.
+ */
+public class IdentifierIndex implements FileListener {
+
+    private static final String TAG = "IdentifierIndex";
+
+    private static final Key<IdentifierIndex> INDEX_KEY = Key.create("identifierIndex");
+
+    private static final Executor SNAPSHOT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * @return the index of the module, or null if the module does not contain java sources
+     */
+    @Nullable
+    public static IdentifierIndex get(@Nullable Module module) {
+        if (!(module instanceof JavaModule)) {
+            return null;
+        }
+        IdentifierIndex index = module.getUserData(INDEX_KEY);
+        if (index == null) {
+            IdentifierIndex created = new IdentifierIndex((JavaModule) module);
+            index = module.putUserDataIfAbsent(INDEX_KEY, created);
+            FileManager fileManager = module.getFileManager();
+            if (index == created && fileManager != null) {
+                fileManager.addSnapshotListener(index);
+            }
+        }
+        return index;
+    }
+
+    private static class Entry {
+        final Set<String> words;
+        /** The package declared by the file, empty for the default package */
+        final String packageName;
+        final long lastModified;
+        final boolean fromSnapshot;
+        /** The value of {@link #mSnapshotCount} when the contents were read */
+        final long stamp;
+
+        Entry(CharSequence contents, long lastModified, boolean fromSnapshot, long stamp) {
+            Set<String> words = new HashSet<>();
+            this.packageName = tokenize(contents, words);
+            this.words = Collections.unmodifiableSet(words);
+            this.lastModified = lastModified;
+            this.fromSnapshot = fromSnapshot;
+            this.stamp = stamp;
+        }
+    }
+
+    private static class PendingSnapshot {
+        final CharSequence contents;
+        final long stamp;
+
+        PendingSnapshot(CharSequence contents, long stamp) {
+            this.contents = contents;
+            this.stamp = stamp;
+        }
+    }
+
+    private final JavaModule mModule;
+    private final Executor mExecutor;
+    /** Written while holding the write lock of {@link #mLock}, so it matches {@link #mWords} */
+    private final Map<File, Entry> mFiles = new ConcurrentHashMap<>();
+    /** Guarded by {@link #mLock} */
+    private final Map<String, Set<File>> mWords = new HashMap<>();
+    private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+
+    /** Snapshots changed since they were last indexed, only the latest one of a file is kept */
+    private final Map<File, PendingSnapshot> mPendingSnapshots = new ConcurrentHashMap<>();
+    /** Incremented on every snapshot change, orders the contents an entry was created from */
+    private final AtomicLong mSnapshotCount = new AtomicLong();
+    private final AtomicBoolean mSnapshotsScheduled = new AtomicBoolean();
+
+    public IdentifierIndex(@NonNull JavaModule module) {
+        this(module, SNAPSHOT_EXECUTOR);
+    }
+
+    /**
+     * @param executor the executor changed snapshots are indexed on
+     */
+    @VisibleForTesting
+    public IdentifierIndex(@NonNull JavaModule module, @NonNull Executor executor) {
+        mModule = module;
+        mExecutor = executor;
+    }
+
+    @Override
+    public void onSnapshotChanged(File file, CharSequence contents) {
+        if (!file.getName().endsWith(".java") || !isInModule(file)) {
+            return;
+        }
+        mPendingSnapshots.put(file,
+                new PendingSnapshot(contents, mSnapshotCount.incrementAndGet()));
+        if (mSnapshotsScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(() -> {
+                mSnapshotsScheduled.set(false);
+                indexPendingSnapshots();
+            });
+        }
+    }
+
+    /**
+     * Returns the files in the given collection that contain the identifier.
+     */
+    @NonNull
+    public List<File> filterContaining(@NonNull Collection<File> files,
+                                       @NonNull String word) {
+        indexPendingSnapshots();
+        List<File> result = new ArrayList<>();
+        for (File file : files) {
+            Entry entry = ensureIndexed(file);
+            if (entry != null && entry.words.contains(word)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    public boolean containsWord(@NonNull File file, @NonNull String word) {
+        indexPendingSnapshots();
+        Entry entry = ensureIndexed(file);
+        return entry != null && entry.words.contains(word);
+    }
+
+    /**
+     * Returns every source file of the module that contains the identifier.
+     */
+    @NonNull
+    public Set<File> getFilesContaining(@NonNull String word) {
+        ensureAllIndexed();
+        mLock.readLock().lock();
+        try {
+            Set<File> files = mWords.get(word);
+            if (files == null) {
+                return Collections.emptySet();
+            }
+            return new LinkedHashSet<>(files);
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns every source file of the module that contains an identifier starting with the
+     * query, ignoring case.
+     */
+    @NonNull
+    public Set<File> search(@NonNull String query) {
+        ensureAllIndexed();
+        Set<File> result = new LinkedHashSet<>();
+        mLock.readLock().lock();
+        try {
+            for (Map.Entry<String, Set<File>> entry : mWords.entrySet()) {
+                if (StringSearch.matchesPartialNameLowercase(entry.getKey(), query)) {
+                    result.addAll(entry.getValue());
+                }
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the source files that may reference the given class: files that contain its
+     * simple name and are either in the same package or mention every segment of its package,
+     * as an import or a fully qualified reference does.
+     */
+    @NonNull
+    public Set<File> findTypeReferences(@NonNull String className) {
+        int lastDot = className.lastIndexOf('.');
+        String simpleName = className.substring(lastDot + 1);
+        String packageName = lastDot == -1 ? "" : className.substring(0, lastDot);
+        String[] segments = packageName.isEmpty() ? new String[0] : packageName.split("\\.");
+
+        Set<File> result = new LinkedHashSet<>();
+        for (File file : getFilesContaining(simpleName)) {
+            if (isInPackage(file, packageName) || containsAll(file, segments)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    public void remove(@NonNull File file) {
+        mLock.writeLock().lock();
+        try {
+            removeLocked(file);
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        mLock.writeLock().lock();
+        try {
+            mFiles.clear();
+            mWords.clear();
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(File file) {
+        Entry removed = mFiles.remove(file);
+        if (removed == null) {
+            return;
+        }
+        for (String word : removed.words) {
+            Set<File> files = mWords.get(word);
+            if (files != null) {
+                files.remove(file);
+                if (files.isEmpty()) {
+                    mWords.remove(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tokenizes the contents before taking the write lock, so queries are only blocked while
+     * the words are swapped. Contents older than those already indexed are dropped, which
+     * happens when two threads index successive snapshots of a file.
+     */
+    private Entry update(File file,
+                         CharSequence contents,
+                         long lastModified,
+                         boolean fromSnapshot,
+                         long stamp) {
+        Entry entry = new Entry(contents, lastModified, fromSnapshot, stamp);
+        mLock.writeLock().lock();
+        try {
+            Entry existing = mFiles.get(file);
+            if (existing != null && existing.stamp > stamp) {
+                return existing;
+            }
+            removeLocked(file);
+            mFiles.put(file, entry);
+            for (String word : entry.words) {
+                mWords.computeIfAbsent(word, it -> new HashSet<>()).add(file);
+            }
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        return entry;
+    }
+
+    private void indexPendingSnapshots() {
+        for (File file : mPendingSnapshots.keySet()) {
+            PendingSnapshot snapshot = mPendingSnapshots.get(file);
+            if (snapshot == null) {
+                continue;
+            }
+            update(file, snapshot.contents, file.lastModified(), true, snapshot.stamp);
+            // only removed once indexed, so a concurrent query indexes it too instead of
+            // reading the previous entry. A snapshot that changed again meanwhile is kept
+            mPendingSnapshots.remove(file, snapshot);
+        }
+    }
+
+    private void ensureAllIndexed() {
+        indexPendingSnapshots();
+        Set<File> files = new HashSet<>(mModule.getJavaFiles().values());
+        files.addAll(mModule.getInjectedClasses().values());
+        for (File file : files) {
+            ensureIndexed(file);
+        }
+        // drop the files that are no longer part of the module
+        for (File indexed : new ArrayList<>(mFiles.keySet())) {
+            if (!files.contains(indexed)) {
+                remove(indexed);
+            }
+        }
+    }
+
+    @Nullable
+    private Entry ensureIndexed(File file) {
+        Entry entry = mFiles.get(file);
+        FileManager fileManager = mModule.getFileManager();
+        boolean opened = fileManager != null && fileManager.isOpened(file);
+        if (entry != null) {
+            if (entry.fromSnapshot && opened) {
+                return entry;
+            }
+            if (!entry.fromSnapshot && entry.lastModified == file.lastModified()) {
+                return entry;
+            }
+        }
+
+        long stamp = mSnapshotCount.get();
+        if (opened) {
+            Optional<CharSequence> content = fileManager.getFileContent(file);
+            if (content.isPresent()) {
+                return update(file, content.get(), file.lastModified(), true, stamp);
+            }
+        }
+
+        if (!file.exists()) {
+            remove(file);
+            return null;
+        }
+        try {
+            long lastModified = file.lastModified();
+            String contents = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+            return update(file, contents, lastModified, false, stamp);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to index " + file, e);
+            remove(file);
+            return null;
+        }
+    }
+
+    private boolean containsAll(File file, String[] words) {
+        Entry entry = mFiles.get(file);
+        if (entry == null) {
+            return false;
+        }
+        for (String word : words) {
+            if (!entry.words.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the package from the indexed contents, which are those of the snapshot if the file
+     * is opened in the editor.
+     */
+    private boolean isInPackage(File file, String packageName) {
+        Entry entry = mFiles.get(file);
+        return entry != null && entry.packageName.equals(packageName);
+    }
+
+    private boolean isInModule(File file) {
+        File root = mModule.getRootFile();
+        // compares whole path segments, so a sibling directory sharing a prefix is not a match
+        return root == null || file.toPath().toAbsolutePath().normalize()
+                .startsWith(root.toPath().toAbsolutePath().normalize());
+    }
+
+    /**
+     * Collects the java identifiers of the given source, skipping comments, string, text block
+     * and character literals and numbers.
+     */
+    @NonNull
+    static Set<String> tokenize(@NonNull CharSequence contents) {
+        Set<String> words = new HashSet<>();
+        tokenize(contents, words);
+        return words;
+    }
+
+    /**
+     * Adds the java identifiers of the given source to the set.
+     *
+     * @return the name of the package the source declares, empty for the default package
+     */
+    @NonNull
+    private static String tokenize(@NonNull CharSequence contents, @NonNull Set<String> words) {
+        // the package is named by the identifiers after a leading package keyword up to the ;
+        StringBuilder packageName = null;
+        boolean packageDeclared = false;
+        boolean first = true;
+        int length = contents.length();
+        int i = 0;
+        while (i < length) {
+            char c = contents.charAt(i);
+            if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '/') {
+                i += 2;
+                while (i < length && contents.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '*') {
+                i += 2;
+                while (i + 1 < length &&
+                       !(contents.charAt(i) == '*' && contents.charAt(i + 1) == '/')) {
+                    i++;
+                }
+                i += 2;
+            } else if (c == '"' && startsWith(contents, i, "\"\"\"")) {
+                i += 3;
+                while (i < length && !startsWith(contents, i, "\"\"\"")) {
+                    i += contents.charAt(i) == '\\' ? 2 : 1;
+                }
+                i += 3;
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < length && contents.charAt(i) != c && contents.charAt(i) != '\n') {
+                    i += contents.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (Character.isDigit(c)) {
+                while (i < length && (Character.isJavaIdentifierPart(contents.charAt(i)) ||
+                                      contents.charAt(i) == '.')) {
+                    i++;
+                }
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(contents.charAt(i))) {
+                    i++;
+                }
+                String word = contents.subSequence(start, i).toString();
+                words.add(word);
+                if (first && word.equals("package")) {
+                    packageName = new StringBuilder();
+                } else if (packageName != null && !packageDeclared) {
+                    if (packageName.length() > 0) {
+                        packageName.append('.');
+                    }
+                    packageName.append(word);
+                }
+                first = false;
+            } else {
+                if (c == ';' && packageName != null) {
+                    packageDeclared = true;
+                }
+                i++;
+            }
+        }
+        return packageName == null ? "" : packageName.toString();
+    }
+
+    private static boolean startsWith(CharSequence contents, int offset, String prefix) {
+        if (offset + prefix.length() > contents.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (contents.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,316 @@
+package com.tyron.completion.java.parse;
+
+import android.util.Log;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.completion.java.compiler.CompilePriority;
+import com.tyron.completion.java.compiler.ReusableCompiler;
+import com.tyron.completion.java.compiler.services.CancelAbort;
+import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressIndicator;
+import com.tyron.completion.progress.ProgressManager;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Schedules the analysis of the files of a module on its javac context.
+ *
+ * Work is debounced per file, a new request for a file replaces the pending request of the same
+ * file and cancels it if it is already running. Requests for other files are left untouched.
+ * Since a javac context is not thread safe, requests of a module run one at a time in the order
+ * of their {@link CompilePriority}. Each module has its own scheduler so different modules are
+ * analyzed in parallel.
+ *
+ * A {@link CompilePriority#COMPLETION} request preempts a running
+ * {@link CompilePriority#BACKGROUND} request, which is queued again once it has been canceled.
+ */
+public class AnalysisScheduler {
+
+    private static final String TAG = "AnalysisScheduler";
+
+    private static final ScheduledExecutorService sTimer =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "AnalysisScheduler-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static class Job implements Comparable<Job> {
+        final URI file;
+        final CompilePriority priority;
+        final Runnable work;
+        final Runnable onDropped;
+        final long sequence;
+        final long scheduledTime = System.currentTimeMillis();
+
+        ScheduledFuture<?> delayed;
+        ProgressIndicator indicator;
+        /**
+         * Set when a newer request for the same file replaced this one
+         */
+        boolean superseded;
+        /**
+         * Set when a request with a higher priority canceled this one
+         */
+        boolean preempted;
+
+        Job(URI file, CompilePriority priority, Runnable work, Runnable onDropped, long sequence) {
+            this.file = file;
+            this.priority = priority;
+            this.work = work;
+            this.onDropped = onDropped;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            int cmp = priority.compareTo(o.priority);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    private final Supplier<ReusableCompiler.CancelServiceImpl> mCancelService;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final Map<URI, Job> mPending = new HashMap<>();
+    @GuardedBy("mLock")
+    private final PriorityQueue<Job> mQueue = new PriorityQueue<>();
+    @GuardedBy("mLock")
+    private Job mRunning;
+    @GuardedBy("mLock")
+    private long mSequence;
+
+    @GuardedBy("mLock")
+    private long mStartedCount;
+    @GuardedBy("mLock")
+    private long mTotalWaitTime;
+    @GuardedBy("mLock")
+    private long mCanceledCount;
+
+    /**
+     * @param cancelService supplies the cancel service of the javac context the work runs on,
+     *                      used to abort a running request. May supply null.
+     */
+    public AnalysisScheduler(@NonNull Supplier<ReusableCompiler.CancelServiceImpl> cancelService) {
+        mCancelService = cancelService;
+    }
+
+    /**
+     * Runs the work after the given delay, replacing any pending work of the same file.
+     *
+     * If the work of the file is already running, it is canceled through the javac
+     * {@link com.tyron.completion.java.compiler.services.CancelService} and the
+     * {@link ProgressManager}, the work is expected to let the resulting {@link CancelAbort} or
+     * {@link ProcessCanceledException} propagate.
+     *
+     * @param onDropped called instead of the work if it is replaced or canceled before it
+     *                  completes
+     */
+    public void schedule(@NonNull URI file,
+                         @NonNull CompilePriority priority,
+                         long delay,
+                         @NonNull Runnable work,
+                         @NonNull Runnable onDropped) {
+        List<Job> dropped = new ArrayList<>(1);
+        synchronized (mLock) {
+            Job existing = mPending.remove(file);
+            if (existing != null) {
+                if (existing.delayed != null) {
+                    existing.delayed.cancel(false);
+                }
+                mQueue.remove(existing);
+                dropped.add(existing);
+            }
+            if (mRunning != null && mRunning.file.equals(file)) {
+                mRunning.superseded = true;
+                cancelRunning();
+            }
+
+            Job job = new Job(file, priority, work, onDropped, mSequence++);
+            mPending.put(file, job);
+            if (delay <= 0) {
+                enqueue(job);
+            } else {
+                job.delayed = sTimer.schedule(() -> {
+                    synchronized (mLock) {
+                        if (mPending.get(file) == job) {
+                            enqueue(job);
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        for (Job job : dropped) {
+            job.onDropped.run();
+        }
+    }
+
+    /**
+     * Cancels the pending and running work of every file.
+     */
+    public void cancelAll() {
+        List<Job> dropped;
+        synchronized (mLock) {
+            for (Job job : mPending.values()) {
+                if (job.delayed != null) {
+                    job.delayed.cancel(false);
+                }
+            }
+            dropped = new ArrayList<>(mPending.values());
+            mPending.clear();
+            mQueue.clear();
+            if (mRunning != null) {
+                mRunning.superseded = true;
+                cancelRunning();
+            }
+        }
+        for (Job job : dropped) {
+            job.onDropped.run();
+        }
+    }
+
+    /**
+     * @return the number of requests that are waiting for their delay or for the running request
+     */
+    public int getQueueDepth() {
+        synchronized (mLock) {
+            return mPending.size();
+        }
+    }
+
+    /**
+     * @return the average time in milliseconds between a request being scheduled and it
+     * starting to run, including its debounce delay
+     */
+    public long getAverageWaitTime() {
+        synchronized (mLock) {
+            return mStartedCount == 0 ? 0 : mTotalWaitTime / mStartedCount;
+        }
+    }
+
+    /**
+     * @return the number of requests that were canceled while running
+     */
+    public long getCanceledCount() {
+        synchronized (mLock) {
+            return mCanceledCount;
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void enqueue(Job job) {
+        job.delayed = null;
+        mQueue.add(job);
+        if (mRunning != null &&
+            job.priority == CompilePriority.COMPLETION &&
+            mRunning.priority == CompilePriority.BACKGROUND) {
+            mRunning.preempted = true;
+            cancelRunning();
+        }
+        drain();
+    }
+
+    @GuardedBy("mLock")
+    private void drain() {
+        if (mRunning != null || mQueue.isEmpty()) {
+            return;
+        }
+        Job job = mQueue.poll();
+        mPending.remove(job.file, job);
+        mRunning = job;
+        mStartedCount++;
+        mTotalWaitTime += System.currentTimeMillis() - job.scheduledTime;
+
+        ReusableCompiler.CancelServiceImpl cancelService = mCancelService.get();
+        if (cancelService != null) {
+            cancelService.reset();
+        }
+        job.indicator = new ProgressIndicator();
+        ProgressManager.getInstance().runAsync(() -> run(job), indicator -> {
+        }, job.indicator);
+    }
+
+    private void run(Job job) {
+        boolean completed = false;
+        try {
+            ProgressManager.checkCanceled();
+            job.work.run();
+            completed = true;
+        } catch (CancelAbort | ProcessCanceledException e) {
+            // handled below
+        } catch (Throwable t) {
+            if (!(t.getCause() instanceof CancelAbort)) {
+                Log.e(TAG, "Analysis of " + job.file + " failed", t);
+                completed = true;
+            }
+        }
+
+        boolean dropped = false;
+        synchronized (mLock) {
+            mRunning = null;
+            if (!completed) {
+                mCanceledCount++;
+                if (job.preempted && !job.superseded && !mPending.containsKey(job.file)) {
+                    // run it again once the request that preempted it is done
+                    Job retry = new Job(job.file, job.priority, job.work, job.onDropped,
+                                        mSequence++);
+                    mPending.put(job.file, retry);
+                    mQueue.add(retry);
+                } else {
+                    dropped = true;
+                }
+            }
+            drain();
+        }
+        if (dropped) {
+            job.onDropped.run();
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void cancelRunning() {
+        ReusableCompiler.CancelServiceImpl cancelService = mCancelService.get();
+        if (cancelService != null) {
+            cancelService.cancel();
+        }
+        ProgressIndicator indicator = mRunning.indicator;
+        if (indicator != null) {
+            indicator.cancel();
+        }
+    }
+
+    @Nullable
+    private static String describe(@Nullable Job job) {
+        return job == null ? null : job.file + " (" + job.priority + ")";
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        synchronized (mLock) {
+            return "AnalysisScheduler{" +
+                   "running=" + describe(mRunning) +
+                   ", queueDepth=" + mPending.size() +
+                   ", averageWaitMs=" + getAverageWaitTime() +
+                   ", canceled=" + mCanceledCount +
+                   '}';
+        }
+    }
+}
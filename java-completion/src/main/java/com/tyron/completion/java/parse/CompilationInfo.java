@@ -1,25 +1,36 @@
 package com.tyron.completion.java.parse;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.Scope;
+import com.sun.source.tree.Tree;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.api.JavacTaskImpl;
 import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.comp.MemberEnter;
 import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.util.Pair;
 import com.tyron.builder.model.CodeAssistAndroidLibrary;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.AndroidModuleImpl;
-import com.tyron.common.util.DebouncerStore;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.completion.java.compiler.CompilePriority;
+import com.tyron.completion.java.compiler.ReusableCompiler;
+import com.tyron.completion.java.compiler.services.CancelAbort;
+import com.tyron.completion.java.compiler.services.CancelService;
 import com.tyron.completion.java.compiler.services.NBEnter;
 import com.tyron.completion.java.compiler.services.NBLog;
+import com.tyron.completion.progress.ProcessCanceledException;
 
 import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
 
@@ -35,7 +46,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import javax.lang.model.element.Element;
@@ -45,6 +61,8 @@ import javax.tools.JavaFileObject;
 
 public class CompilationInfo {
 
+    private static final Logger LOG = IdeLog.getCurrentLogger(CompilationInfo.class);
+
     public static final Key<CompilationInfo> COMPILATION_INFO_KEY = Key.create("compilationInfo");
 
     public static CompilationInfo get(Module module) {
@@ -54,14 +72,7 @@ public class CompilationInfo {
         JavaModule javaModule = (JavaModule) module;
         CompilationInfo info = module.getUserData(COMPILATION_INFO_KEY);
         if (info == null) {
-            List<File> libraries = new ArrayList<>(javaModule.getLibraries());
-            if (module instanceof AndroidModuleImpl) {
-                libraries.addAll(((AndroidModuleImpl) module).getCodeAssistLibraries().stream()
-                        .filter(it -> it instanceof CodeAssistAndroidLibrary)
-                        .map(it -> (CodeAssistAndroidLibrary) it)
-                        .flatMap(it -> it.getCompileJarFiles().stream())
-                        .collect(Collectors.toList()));
-            }
+            List<File> libraries = getLibraryJars(javaModule);
             info = new CompilationInfo(new CompilationInfoImpl(
                     new JavacParser(),
                     null,
@@ -75,6 +86,24 @@ public class CompilationInfo {
         }
         return info;
     }
+
+    /**
+     * @return the library jars on the classpath of the module, android libraries contribute
+     * their compile jars
+     */
+    @NonNull
+    public static List<File> getLibraryJars(@NonNull JavaModule module) {
+        List<File> libraries = new ArrayList<>(module.getLibraries());
+        if (module instanceof AndroidModuleImpl) {
+            libraries.addAll(((AndroidModuleImpl) module).getCodeAssistLibraries().stream()
+                    .filter(it -> it instanceof CodeAssistAndroidLibrary)
+                    .map(it -> (CodeAssistAndroidLibrary) it)
+                    .flatMap(it -> it.getCompileJarFiles().stream())
+                    .collect(Collectors.toList()));
+        }
+        return libraries;
+    }
+
     public static CompilationInfo get(Project currentProject, File file) {
         final Module module = currentProject.getModule(file);
         return get(module);
@@ -82,10 +111,19 @@ public class CompilationInfo {
 
     public final CompilationInfoImpl impl;
     private final Map<URI, JCCompilationUnit> compiledMap = new HashMap<>();
+    private final Map<URI, String> contentsMap = new HashMap<>();
+    private final PartialReparser partialReparser = new DefaultPartialReparser();
+    private final ReparseStatistics statistics = new ReparseStatistics();
+
+    private final AnalysisScheduler scheduler = new AnalysisScheduler(this::getCancelService);
 
-    private final DebouncerStore<String> debouncerStore = DebouncerStore.DEFAULT;
+    private final AtomicLong batchSequence = new AtomicLong();
 
-    private final Object parseLock = new Object();
+    /**
+     * Held for writing while the trees are parsed or analyzed, and for reading by
+     * {@link #runWithoutUpdates(Runnable)}
+     */
+    private final ReadWriteLock parseLock = new ReentrantReadWriteLock();
     private Trees trees;
 
     public CompilationInfo(final CompilationInfoImpl impl) {
@@ -93,9 +131,24 @@ public class CompilationInfo {
         this.impl = impl;
     }
 
+    /**
+     * Updates the file with {@link CompilePriority#INTERACTIVE}, completions pass
+     * {@link CompilePriority#COMPLETION} so they may cancel background analysis.
+     */
     public JCCompilationUnit updateImmediately(JavaFileObject fileObject) {
+        return updateImmediately(fileObject, CompilePriority.INTERACTIVE);
+    }
+
+    /**
+     * Updates the file without delay and waits for its compilation unit.
+     *
+     * @return the compilation unit, or null if the update failed or was canceled by a newer
+     * update of the same file
+     */
+    public JCCompilationUnit updateImmediately(JavaFileObject fileObject,
+                                               CompilePriority priority) {
         CompletableFuture<JCCompilationUnit> future = new CompletableFuture<>();
-        update(fileObject, 0, future::complete);
+        update(fileObject, 0, priority, future::complete);
         try {
             return future.get();
         } catch (ExecutionException | InterruptedException e) {
@@ -113,62 +166,317 @@ public class CompilationInfo {
         });
     }
 
-    public synchronized void update(JavaFileObject fileObject,
-                                    long delay,
-                                    Consumer<JCCompilationUnit> treeConsumer) {
-        debouncerStore.registerOrGetDebouncer("update").debounce(delay, () -> {
-            synchronized (parseLock) {
-                try {
-                    JavacTaskImpl javacTask = impl.getJavacTask();
-
-                    NBLog log = NBLog.instance(javacTask.getContext());
-                    log.useSource(fileObject);
-
-                    Set<Pair<JavaFileObject, Integer>> toRemove = new HashSet<>();
-                    for (Pair<JavaFileObject, Integer> pair : log.getRecorded()) {
-                        if (pair.fst.toUri().equals(fileObject.toUri())) {
-                            toRemove.add(pair);
-                        }
+    public void update(JavaFileObject fileObject,
+                       long delay,
+                       Consumer<JCCompilationUnit> treeConsumer) {
+        update(fileObject, delay, CompilePriority.INTERACTIVE, treeConsumer);
+    }
+
+    /**
+     * Schedules the analysis of the file after the given delay. A pending or running update of
+     * the same file is canceled, updates of other files are not affected.
+     *
+     * @param priority the priority of this update compared to the updates of other files of the
+     *                 module, e.g. {@link CompilePriority#INTERACTIVE} for the visible editor
+     *                 and {@link CompilePriority#BACKGROUND} for indexing
+     * @param treeConsumer receives the compilation unit, or null if the update failed or was
+     *                     canceled
+     */
+    public void update(JavaFileObject fileObject,
+                       long delay,
+                       CompilePriority priority,
+                       Consumer<JCCompilationUnit> treeConsumer) {
+        URI fileUri = fileObject.toUri();
+        scheduler.schedule(fileUri, priority, delay, () -> {
+            parseLock.writeLock().lock();
+            try {
+                JavacTaskImpl javacTask = impl.getJavacTask();
+                URI uri = fileObject.toUri();
+                String contents = fileObject.getCharContent(true).toString();
+
+                JCCompilationUnit previous = compiledMap.get(uri);
+                String previousContents = contentsMap.get(uri);
+                if (previous != null && previousContents != null) {
+                    long start = System.currentTimeMillis();
+                    PartialReparseResult result =
+                            reparseMethod(fileObject, previous, previousContents, contents);
+                    if (result == PartialReparseResult.SUCCESS) {
+                        contentsMap.put(uri, contents);
+                        statistics.recordPartial(System.currentTimeMillis() - start);
+                        treeConsumer.accept(previous);
+                        return;
                     }
-                    log.getRecorded().removeAll(toRemove);
-                    log.removeDiagnostics(fileObject.toUri());
-                    log.removeFileObject(fileObject);
+                    if (result == PartialReparseResult.FAILED) {
+                        statistics.recordFallback();
+                    }
+                }
 
+                long start = System.currentTimeMillis();
+                JCCompilationUnit unit = reparseFile(javacTask, fileObject, previous);
+                compiledMap.put(uri, unit);
+                contentsMap.put(uri, contents);
+                statistics.recordFull(System.currentTimeMillis() - start);
+
+                treeConsumer.accept(unit);
+            } catch (Throwable t) {
+                if (t instanceof CancelAbort || t.getCause() instanceof CancelAbort ||
+                    t instanceof ProcessCanceledException) {
+                    // the tree may be half attributed, only a full reparse can recover it
+                    contentsMap.remove(fileUri);
+                    throw new ProcessCanceledException();
+                }
+                LOG.log(Level.SEVERE, "Failed to analyze " + fileUri, t);
+                treeConsumer.accept(null);
+            } finally {
+                parseLock.writeLock().unlock();
+            }
+        }, () -> treeConsumer.accept(null));
+    }
 
-                    JCCompilationUnit previous = compiledMap.get(fileObject.toUri());
-                    if (previous != null) {
-                        NBEnter enter = (NBEnter) NBEnter.instance(javacTask.getContext());
-                        enter.unenter(previous, previous);
-                        enter.removeCompilationUnit(fileObject);
+    /**
+     * Parses, enters and analyzes the files together and waits for them. Entering the files of
+     * a module in batches is much faster than one at a time, this is used to index a module.
+     *
+     * The batch is scheduled as a whole, it is not debounced against the updates of its files.
+     *
+     * @return the compilation units in the order of the files, or null if the batch failed or
+     * was canceled
+     */
+    @Nullable
+    public List<JCCompilationUnit> updateAllImmediately(List<? extends JavaFileObject> fileObjects,
+                                                        CompilePriority priority) {
+        CompletableFuture<List<JCCompilationUnit>> future = new CompletableFuture<>();
+        URI batchUri = URI.create("batch:/" + batchSequence.incrementAndGet());
+        scheduler.schedule(batchUri, priority, 0, () -> {
+            parseLock.writeLock().lock();
+            try {
+                future.complete(reparseFiles(impl.getJavacTask(), fileObjects));
+            } catch (Throwable t) {
+                if (t instanceof CancelAbort || t.getCause() instanceof CancelAbort ||
+                    t instanceof ProcessCanceledException) {
+                    for (JavaFileObject fileObject : fileObjects) {
+                        contentsMap.remove(fileObject.toUri());
                     }
+                    throw new ProcessCanceledException();
+                }
+                LOG.log(Level.SEVERE, "Failed to analyze " + fileObjects.size() + " files", t);
+                future.complete(null);
+            } finally {
+                parseLock.writeLock().unlock();
+            }
+        }, () -> future.complete(null));
+        try {
+            return future.get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
 
-                    // reparse the whole file
-                    JCCompilationUnit unit;
-                    try {
-                        JavaCompiler compiler = JavaCompiler.instance(javacTask.getContext());
-                        unit = compiler.parse(fileObject);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
+    private List<JCCompilationUnit> reparseFiles(JavacTaskImpl javacTask,
+                                                 List<? extends JavaFileObject> fileObjects)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        JavaCompiler compiler = JavaCompiler.instance(javacTask.getContext());
+        List<JCCompilationUnit> units = new ArrayList<>(fileObjects.size());
+        List<JCCompilationUnit> previousUnits = new ArrayList<>(fileObjects.size());
+        List<String> contents = new ArrayList<>(fileObjects.size());
+        for (JavaFileObject fileObject : fileObjects) {
+            JCCompilationUnit previous = compiledMap.get(fileObject.toUri());
+            contents.add(fileObject.getCharContent(true).toString());
+            discardPrevious(javacTask, fileObject, previous);
+            previousUnits.add(previous);
+            units.add(compiler.parse(fileObject));
+        }
 
-                    Iterable<? extends Element> enter = javacTask.enter(List.of(unit));
+        Iterable<? extends Element> enter = javacTask.enter(units);
+        for (int i = 0; i < units.size(); i++) {
+            JCCompilationUnit unit = units.get(i);
+            JCCompilationUnit previous = previousUnits.get(i);
+            if (previous != null) {
+                unit.packge = previous.packge;
+            }
+            // recorded before the analysis so a canceled batch is unentered when it runs again
+            URI uri = fileObjects.get(i).toUri();
+            compiledMap.put(uri, unit);
+            contentsMap.put(uri, contents.get(i));
+        }
 
-                    if (previous != null) {
-                        unit.packge = previous.packge;
-                    }
+        javacTask.analyze(enter);
+        if (!units.isEmpty()) {
+            long average = (System.currentTimeMillis() - start) / units.size();
+            for (int i = 0; i < units.size(); i++) {
+                statistics.recordFull(average);
+            }
+        }
+        return units;
+    }
 
-                    Iterable<? extends Element> analyze = javacTask.analyze(enter);
+    /**
+     * Reparses, enters and attributes the whole file.
+     */
+    private JCCompilationUnit reparseFile(JavacTaskImpl javacTask,
+                                          JavaFileObject fileObject,
+                                          JCCompilationUnit previous) {
+        discardPrevious(javacTask, fileObject, previous);
 
-                    JCCompilationUnit newUnit = unit;
-                    compiledMap.put(fileObject.toUri(), newUnit);
+        // reparse the whole file
+        JCCompilationUnit unit;
+        try {
+            JavaCompiler compiler = JavaCompiler.instance(javacTask.getContext());
+            unit = compiler.parse(fileObject);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
 
-                    treeConsumer.accept(unit);
-                } catch (Throwable t) {
-                    System.out.println(t);
-                    treeConsumer.accept(null);
+        Iterable<? extends Element> enter = javacTask.enter(List.of(unit));
+
+        if (previous != null) {
+            unit.packge = previous.packge;
+        }
+
+        javacTask.analyze(enter);
+        return unit;
+    }
+
+    /**
+     * Removes the diagnostics of the file and unenters its previous compilation unit, so the
+     * file can be entered again.
+     */
+    private void discardPrevious(JavacTaskImpl javacTask,
+                                 JavaFileObject fileObject,
+                                 @Nullable JCCompilationUnit previous) {
+        NBLog log = NBLog.instance(javacTask.getContext());
+        log.useSource(fileObject);
+
+        Set<Pair<JavaFileObject, Integer>> toRemove = new HashSet<>();
+        for (Pair<JavaFileObject, Integer> pair : log.getRecorded()) {
+            if (pair.fst.toUri().equals(fileObject.toUri())) {
+                toRemove.add(pair);
+            }
+        }
+        log.getRecorded().removeAll(toRemove);
+        log.removeDiagnostics(fileObject.toUri());
+        log.removeFileObject(fileObject);
+
+        if (previous != null) {
+            NBEnter enter = (NBEnter) NBEnter.instance(javacTask.getContext());
+            enter.unenter(previous, previous);
+            enter.removeCompilationUnit(fileObject);
+        }
+    }
+
+    private enum PartialReparseResult {
+        /** The edit has been applied to the previous tree */
+        SUCCESS,
+        /** The edit is not contained in a single method body */
+        NOT_APPLICABLE,
+        /** The edit is inside a method body but the reparser rejected it */
+        FAILED
+    }
+
+    /**
+     * Tries to apply the edit between the previous and the new contents by reparsing and
+     * re-attributing only the method body that contains it. The previous compilation unit
+     * is updated in place when this succeeds.
+     */
+    private PartialReparseResult reparseMethod(JavaFileObject fileObject,
+                                               JCCompilationUnit previous,
+                                               String previousContents,
+                                               String contents) throws IOException {
+        int prefix = 0;
+        int maxPrefix = Math.min(previousContents.length(), contents.length());
+        while (prefix < maxPrefix && previousContents.charAt(prefix) == contents.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == previousContents.length() && prefix == contents.length()) {
+            // nothing has changed, the previous tree is still valid
+            return PartialReparseResult.SUCCESS;
+        }
+
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix &&
+               previousContents.charAt(previousContents.length() - 1 - suffix) ==
+               contents.charAt(contents.length() - 1 - suffix)) {
+            suffix++;
+        }
+        int changeEnd = previousContents.length() - suffix;
+        int delta = contents.length() - previousContents.length();
+
+        JCMethodDecl method =
+                findEnclosingMethod(previous.getTypeDecls(), prefix, changeEnd, previous.endPositions);
+        if (method == null) {
+            return PartialReparseResult.NOT_APPLICABLE;
+        }
+
+        int bodyStart = method.body.pos;
+        int bodyEnd = TreeInfo.getEndPos(method.body, previous.endPositions);
+        String newBody = contents.substring(bodyStart, bodyEnd + delta);
+
+        NBLog log = NBLog.instance(impl.getJavacTask().getContext());
+        log.removeDiagnostics(fileObject.toUri(), bodyStart, bodyEnd);
+        // the cached source of the old file object still has the old contents
+        log.removeFileObject(previous.sourcefile);
+        previous.sourcefile = fileObject;
+        if (partialReparser.reparseMethod(impl, contents, previous, method, newBody)) {
+            return PartialReparseResult.SUCCESS;
+        }
+        return PartialReparseResult.FAILED;
+    }
+
+    /**
+     * Finds the method declared in a class body whose block fully contains the given range,
+     * excluding its braces. Methods of local and anonymous classes are not considered since
+     * the reparser cannot handle them.
+     */
+    @Nullable
+    private static JCMethodDecl findEnclosingMethod(List<? extends Tree> trees,
+                                                    int start,
+                                                    int end,
+                                                    EndPosTable endPositions) {
+        for (Tree tree : trees) {
+            if (tree instanceof JCClassDecl) {
+                JCMethodDecl found =
+                        findEnclosingMethod(((JCClassDecl) tree).defs, start, end, endPositions);
+                if (found != null) {
+                    return found;
+                }
+            } else if (tree instanceof JCMethodDecl) {
+                JCMethodDecl method = (JCMethodDecl) tree;
+                if (method.body == null || method.body.pos < 0) {
+                    continue;
+                }
+                int bodyEnd = TreeInfo.getEndPos(method.body, endPositions);
+                if (method.body.pos < start && end < bodyEnd) {
+                    return method;
                 }
             }
-        });
+        }
+        return null;
+    }
+
+    /**
+     * @return the scheduler running the updates of this module, exposes its queue depth and
+     * wait time
+     */
+    public AnalysisScheduler getScheduler() {
+        return scheduler;
+    }
+
+    @Nullable
+    private ReusableCompiler.CancelServiceImpl getCancelService() {
+        CancelService cancelService = CancelService.instance(impl.getJavacTask().getContext());
+        if (cancelService instanceof ReusableCompiler.CancelServiceImpl) {
+            return (ReusableCompiler.CancelServiceImpl) cancelService;
+        }
+        return null;
+    }
+
+    /**
+     * @return the counters of which reparse path each edit took
+     */
+    public ReparseStatistics getStatistics() {
+        return statistics;
     }
 
     public JCCompilationUnit getCompilationUnit(JavaFileObject fileObject) {
@@ -179,6 +487,20 @@ public class CompilationInfo {
         return compiledMap.get(uri);
     }
 
+    /**
+     * Runs the action while no update of this module is parsing or analyzing, the compilation
+     * units returned by {@link #getCompilationUnit(URI)} are not replaced or modified until it
+     * returns. Updates scheduled meanwhile wait for it, other actions may run at the same time.
+     */
+    public void runWithoutUpdates(@NonNull Runnable action) {
+        parseLock.readLock().lock();
+        try {
+            action.run();
+        } finally {
+            parseLock.readLock().unlock();
+        }
+    }
+
 
     public List<? extends TypeElement> getTopLevelElements() throws IllegalStateException {
         return null;
@@ -29,8 +29,10 @@ import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.tree.TreeMaker;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.ListBuffer;
 import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Names;
+import com.tyron.common.logging.IdeLog;
 import com.tyron.completion.java.compiler.services.CancelService;
 import com.tyron.completion.java.compiler.services.NBLog;
 import com.tyron.completion.java.compiler.services.NBParserFactory;
@@ -48,7 +50,7 @@ import javax.tools.JavaFileObject;
 public class DefaultPartialReparser implements PartialReparser {
 
 
-    private static final Logger LOGGER = Logger.getLogger("PartialReparser");
+    private static final Logger LOGGER = IdeLog.getCurrentLogger(DefaultPartialReparser.class);
 
     public DefaultPartialReparser() {
 
@@ -71,6 +73,10 @@ public class DefaultPartialReparser implements PartialReparser {
         if (methodPath.getLeaf().getKind() != Tree.Kind.METHOD) {
             return false;
         }
+        Tree ownerClass = methodPath.getParentPath().getLeaf();
+        if (!(ownerClass instanceof JCTree.JCClassDecl)) {
+            return false;
+        }
 
         Scope methodScope = trees.getScope(methodPath);
 
@@ -98,10 +104,10 @@ public class DefaultPartialReparser implements PartialReparser {
         }
         final int noInner = fav.noInner;
         final Context ctx = task.getContext();
+        final NBLog l = NBLog.instance(ctx);
+        l.startPartialReparse(cu.getSourceFile());
+        final JavaFileObject prevLogged = l.useSource(cu.getSourceFile());
         try {
-            final NBLog l = NBLog.instance(ctx);
-            l.startPartialReparse(cu.getSourceFile());
-            final JavaFileObject prevLogged = l.useSource(cu.getSourceFile());
 
             long start = System.currentTimeMillis();
             Map<JCTree, LazyDocCommentTable.Entry> docComments = new HashMap<>();
@@ -134,6 +140,8 @@ public class DefaultPartialReparser implements PartialReparser {
 
             long end = System.currentTimeMillis();
             final int delta = newEndPos - origEndPos;
+            // before the trees are translated, the diagnostics may still read their positions
+            l.shiftDiagnostics(cu.getSourceFile(), origEndPos, delta);
             final TranslatePositionsVisitor tpv = new TranslatePositionsVisitor(orig, endPos, delta);
             tpv.scan(cu, null);
             Enter.instance(ctx).unenter(((JCTree.JCCompilationUnit) cu), ((JCTree.JCMethodDecl) orig).body);
@@ -144,13 +152,24 @@ public class DefaultPartialReparser implements PartialReparser {
                 LOGGER.log(Level.FINER, "Resolved method in: {0}", ci);     //NOI18N
             }
 
+            // flow analysis also runs over the field initializers of the class, only the
+            // diagnostics of the new body are kept since the others are still reported
+            l.setPartialReparseRange(origStartPos, newEndPos);
+            reflowMethodBody(ctx, cu, (ClassTree) ownerClass, orig);
+            if (LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.log(Level.FINER, "Analyzed flow of method in: {0}", ci);     //NOI18N
+            }
+
 
         } catch (Throwable t) {
             if (t instanceof ThreadDeath) {
                 throw (ThreadDeath) t;
             }
-            t.printStackTrace();
+            LOGGER.log(Level.WARNING, "Failed to reparse method in " + cu.getSourceFile().toUri(), t);
             return false;
+        } finally {
+            l.endPartialReparse(cu.getSourceFile());
+            l.useSource(prevLogged);
         }
         return true;
     }
@@ -225,7 +244,22 @@ public class DefaultPartialReparser implements PartialReparser {
         Flow flow = Flow.instance(context);
         TreeMaker make = TreeMaker.instance(context);
         Enter enter = Enter.instance(context);
-        flow.analyzeTree(enter.getEnv(((JCTree.JCClassDecl) ownerClass).sym), make);
+        JCTree.JCClassDecl owner = (JCTree.JCClassDecl) ownerClass;
+        // only analyze the reparsed method, the fields and initializers are kept since the
+        // definite assignment of final fields is checked against them in constructors
+        ListBuffer<JCTree> defs = new ListBuffer<>();
+        for (JCTree def : owner.defs) {
+            if (def == methodToReparse ||
+                !(def instanceof JCTree.JCMethodDecl || def instanceof JCTree.JCClassDecl)) {
+                defs.append(def);
+            }
+        }
+        JCTree.JCClassDecl scoped = make.at(owner.pos).ClassDef(owner.mods, owner.name,
+                owner.typarams, owner.extending, owner.implementing, defs.toList());
+        scoped.sym = owner.sym;
+        scoped.type = owner.type;
+        Env<AttrContext> env = enter.getEnv(owner.sym);
+        flow.analyzeTree(env.dup(scoped), make);
         return methodToReparse.getBody();
     }
 
@@ -7,6 +7,8 @@ import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.util.Context;
 import com.tyron.builder.BuildModule;
 import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.java.compiler.ReusableCompiler;
+import com.tyron.completion.java.compiler.services.CancelService;
 import com.tyron.completion.java.compiler.services.NBAttr;
 import com.tyron.completion.java.compiler.services.NBCheck;
 import com.tyron.completion.java.compiler.services.NBClassFinder;
@@ -54,9 +56,14 @@ public class JavacParser {
             final boolean detached) {
         Context context = new Context();
         NBLog.preRegister(context, new PrintWriter(new NullWriter()));
+        // lets the AnalysisScheduler abort a running analysis
+        context.put(CancelService.cancelServiceKey, new ReusableCompiler.CancelServiceImpl());
 
         List<String> options = new ArrayList<>();
-        Collections.addAll(options, "-bootclasspath", joinPath(Arrays.asList(BuildModule.getAndroidJar(), BuildModule.getLambdaStubs())));
+        // the android jar is not available in unit tests, the classes of the running jdk are used
+        if (BuildModule.getAndroidJar() != null) {
+            Collections.addAll(options, "-bootclasspath", joinPath(Arrays.asList(BuildModule.getAndroidJar(), BuildModule.getLambdaStubs())));
+        }
         Collections.addAll(options, "-target", "1.8", "-source", "1.8");
         Collections.addAll(options, "-cp", joinPath(cpInfo));
 
@@ -0,0 +1,78 @@
+package com.tyron.completion.java.parse;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts which path {@link CompilationInfo#update} took for each edit and how long it took,
+ * so the cost of a method-sized reparse can be compared to a full file attribution.
+ */
+public class ReparseStatistics {
+
+    private final AtomicLong mPartialCount = new AtomicLong();
+    private final AtomicLong mPartialTime = new AtomicLong();
+    private final AtomicLong mFullCount = new AtomicLong();
+    private final AtomicLong mFullTime = new AtomicLong();
+    private final AtomicLong mFallbackCount = new AtomicLong();
+
+    void recordPartial(long millis) {
+        mPartialCount.incrementAndGet();
+        mPartialTime.addAndGet(millis);
+    }
+
+    void recordFull(long millis) {
+        mFullCount.incrementAndGet();
+        mFullTime.addAndGet(millis);
+    }
+
+    /**
+     * Called when a partial reparse was attempted but rejected by the reparser, the edit is
+     * then also counted as a full reparse.
+     */
+    void recordFallback() {
+        mFallbackCount.incrementAndGet();
+    }
+
+    public long getPartialCount() {
+        return mPartialCount.get();
+    }
+
+    public long getFullCount() {
+        return mFullCount.get();
+    }
+
+    public long getFallbackCount() {
+        return mFallbackCount.get();
+    }
+
+    public long getAveragePartialTime() {
+        long count = mPartialCount.get();
+        return count == 0 ? 0 : mPartialTime.get() / count;
+    }
+
+    public long getAverageFullTime() {
+        long count = mFullCount.get();
+        return count == 0 ? 0 : mFullTime.get() / count;
+    }
+
+    public void reset() {
+        mPartialCount.set(0);
+        mPartialTime.set(0);
+        mFullCount.set(0);
+        mFullTime.set(0);
+        mFallbackCount.set(0);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ReparseStatistics{" +
+               "partial=" + getPartialCount() +
+               ", partialAvgMs=" + getAveragePartialTime() +
+               ", full=" + getFullCount() +
+               ", fullAvgMs=" + getAverageFullTime() +
+               ", fallbacks=" + getFallbackCount() +
+               '}';
+    }
+}
@@ -14,6 +14,7 @@ import com.sun.tools.javac.api.JavacTaskImpl;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.action.FindCurrentPath;
+import com.tyron.completion.java.compiler.CompilePriority;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.JavaCompilerService;
@@ -35,6 +36,7 @@ import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
 
 import java.io.File;
 import java.nio.file.Path;
@@ -79,9 +81,11 @@ public class Completions {
             StringBuilder pruned = new PruneMethodBodies(task.task).scan(task.root, index);
             int end = StringSearch.endOfLine(pruned, (int) index);
             pruned.insert(end, ';');
-            if (compiler.compiler.getCurrentContext() != null) {
-                contents = new FileContentFixer(compiler.compiler.getCurrentContext()).fixFileContent(
-                        pruned);
+            // the parse task has a context of its own, unlike the pooled compilers which may be
+            // in use by another thread
+            Context context = ((JavacTaskImpl) task.task).getContext();
+            if (context != null) {
+                contents = new FileContentFixer(context).fixFileContent(pruned);
             } else {
                 contents = pruned.toString();
             }
@@ -101,11 +105,9 @@ public class Completions {
         boolean endsWithParen = endsWithParen(contents, (int) cursor);
 
         checkCanceled();
-        if (compiler.getCachedContainer().isWriting()) {
-            return null;
-        }
 
-        CompilerContainer container = compiler.compile(Collections.singletonList(source));
+        CompilerContainer container =
+                compiler.compile(CompilePriority.COMPLETION, Collections.singletonList(source));
 
         try {
             return container.get(task -> {
@@ -131,10 +133,8 @@ public class Completions {
             boolean cancelled = e instanceof CancelAbort || e.getCause() instanceof CancelAbort;
 
             if (cancelled || e instanceof ProcessCanceledException) {
-                compiler.close();
-                if (compiler.getCompileBatch() != null) {
-                    compiler.getCompileBatch().borrow.close();
-                }
+                // the compile task of the container has been closed and its compiler returned
+                // to the pool by get()
                 throw e;
             }
 
@@ -0,0 +1,281 @@
+package com.tyron.completion.java.benchmark;
+
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
+import com.tyron.builder.project.Project;
+import com.tyron.common.util.StringSearch;
+import com.tyron.completion.java.action.FindCurrentPath;
+import com.tyron.completion.java.compiler.CompilePriority;
+import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.java.parse.CompilationInfo;
+import com.tyron.completion.java.provider.BaseCompletionProvider;
+import com.tyron.completion.java.provider.DefaultJavacUtilitiesProvider;
+import com.tyron.completion.java.provider.IdentifierCompletionProvider;
+import com.tyron.completion.java.provider.ImportCompletionProvider;
+import com.tyron.completion.java.provider.MemberSelectCompletionProvider;
+import com.tyron.completion.java.provider.SmartClassNameCompletionProvider;
+import com.tyron.completion.java.util.FileContentFixer;
+import com.tyron.completion.model.CompletionList;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Measures the latency and allocations of the java completion providers on a
+ * {@link SyntheticProject}, following the same steps as
+ * {@link com.tyron.completion.java.JavaCompletionProvider#completeV2}: the file is updated on
+ * its {@link CompilationInfo}, the path at the cursor is found and the provider of the
+ * completion kind is run.
+ *
+ * Every iteration changes the method body so the file is analyzed again, like it is after a
+ * keystroke in the editor.
+ */
+public class CompletionBenchmark {
+
+    public enum Kind {
+        MEMBER_SELECT("", "first.getCo", "getCo"),
+        IDENTIFIER("", "Cla", "Cla"),
+        IMPORT("import " + SyntheticProject.PACKAGE + ".p1.", "",
+               SyntheticProject.PACKAGE + ".p1."),
+        SMART_CLASS_NAME("", SyntheticProject.BASE_INTERFACE + " value = new Cla", "Cla");
+
+        /**
+         * The text the cursor is placed after, either in the imports or in the method body
+         */
+        private final String mImport;
+        private final String mStatement;
+        private final String mPartial;
+
+        Kind(String anImport, String statement, String partial) {
+            mImport = anImport;
+            mStatement = statement;
+            mPartial = partial;
+        }
+
+        BaseCompletionProvider createProvider(JavaCompilerService service) {
+            switch (this) {
+                case MEMBER_SELECT:
+                    return new MemberSelectCompletionProvider(service);
+                case IDENTIFIER:
+                    return new IdentifierCompletionProvider(service);
+                case IMPORT:
+                    return new ImportCompletionProvider(service);
+                case SMART_CLASS_NAME:
+                    return new SmartClassNameCompletionProvider(service);
+                default:
+                    throw new IllegalArgumentException(name());
+            }
+        }
+    }
+
+    public static class Result {
+        private final Kind mKind;
+        private final long[] mLatencies;
+        private final long[] mAllocations;
+        private final int mItemCount;
+
+        Result(Kind kind, long[] latencies, long[] allocations, int itemCount) {
+            mKind = kind;
+            mLatencies = latencies.clone();
+            mAllocations = allocations.clone();
+            mItemCount = itemCount;
+            Arrays.sort(mLatencies);
+            Arrays.sort(mAllocations);
+        }
+
+        public Kind getKind() {
+            return mKind;
+        }
+
+        /**
+         * @param percentile the percentile between 0 and 100
+         * @return the latency of the given percentile in nanoseconds
+         */
+        public long getLatency(double percentile) {
+            return percentile(mLatencies, percentile);
+        }
+
+        /**
+         * @return the median number of bytes allocated by a completion, or -1 if allocations
+         * can not be measured on this JVM
+         */
+        public long getAllocatedBytes() {
+            return percentile(mAllocations, 50);
+        }
+
+        /**
+         * @return the number of items of the last completion
+         */
+        public int getItemCount() {
+            return mItemCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                                 "%-16s p50=%8.2fms p99=%8.2fms alloc=%8.2fMB items=%d",
+                                 mKind,
+                                 getLatency(50) / 1_000_000.0,
+                                 getLatency(99) / 1_000_000.0,
+                                 getAllocatedBytes() / (1024.0 * 1024.0),
+                                 mItemCount);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            // nearest rank
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+        }
+    }
+
+    /**
+     * The number of files entered at once, as when a project is opened
+     */
+    private static final int INDEX_BATCH_SIZE = 64;
+
+    private final Project mProject;
+    private final CompilationInfo mCompilationInfo;
+    private final JavaCompilerService mCompilerService;
+    private final SyntheticProject mSyntheticProject;
+
+    private int mIteration;
+
+    public CompletionBenchmark(Project project,
+                               CompilationInfo compilationInfo,
+                               JavaCompilerService compilerService,
+                               SyntheticProject syntheticProject) {
+        mProject = project;
+        mCompilationInfo = compilationInfo;
+        mCompilerService = compilerService;
+        mSyntheticProject = syntheticProject;
+    }
+
+    /**
+     * Analyzes the classes of the project so they can be resolved from the target class, the
+     * same way the project is indexed when it is opened.
+     *
+     * @return the time it took in milliseconds
+     */
+    public long index(List<File> files) {
+        long start = System.currentTimeMillis();
+        List<JavaFileObject> batch = new ArrayList<>(INDEX_BATCH_SIZE);
+        for (File file : files) {
+            batch.add(new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    try {
+                        return new String(Files.readAllBytes(file.toPath()),
+                                          StandardCharsets.UTF_8);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            if (batch.size() == INDEX_BATCH_SIZE) {
+                mCompilationInfo.updateAllImmediately(batch, CompilePriority.BACKGROUND);
+                batch = new ArrayList<>(INDEX_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            mCompilationInfo.updateAllImmediately(batch, CompilePriority.BACKGROUND);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    public Result run(Kind kind, int warmupIterations, int iterations) {
+        BaseCompletionProvider provider = kind.createProvider(mCompilerService);
+        for (int i = 0; i < warmupIterations; i++) {
+            complete(kind, provider);
+        }
+
+        long[] latencies = new long[iterations];
+        long[] allocations = new long[iterations];
+        int itemCount = 0;
+        for (int i = 0; i < iterations; i++) {
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            CompletionList.Builder builder = complete(kind, provider);
+            latencies[i] = System.nanoTime() - start;
+            allocations[i] = allocatedBefore == -1
+                    ? -1
+                    : Math.max(0, getAllocatedBytes() - allocatedBefore);
+            itemCount = builder == null ? 0 : builder.getItemCount();
+        }
+        return new Result(kind, latencies, allocations, itemCount);
+    }
+
+    private CompletionList.Builder complete(Kind kind, BaseCompletionProvider provider) {
+        // a new local variable on every iteration so the method body has to be analyzed again
+        int iteration = mIteration++;
+        String body = "int iteration" + iteration + " = " + iteration + ";\n        " +
+                      kind.mStatement;
+        String imports = kind.mImport.isEmpty() ? "" : kind.mImport + "\n";
+        String contents = mSyntheticProject.getTargetContents(imports, body);
+        String cursorText = kind.mStatement.isEmpty() ? kind.mImport : body;
+        int cursor = contents.indexOf(cursorText) + cursorText.length();
+
+        File file = mSyntheticProject.getTargetFile();
+        JavacTaskImpl javacTask = mCompilationInfo.impl.getJavacTask();
+        Context context = javacTask.getContext();
+        JCTree.JCCompilationUnit unit = mCompilationInfo.updateImmediately(
+                new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        StringBuilder pruned = new StringBuilder(
+                                new FileContentFixer(context).fixFileContent(contents));
+                        int toInsert = StringSearch.endOfLine(pruned, cursor);
+                        return pruned.insert(toInsert, ';');
+                    }
+                }, CompilePriority.COMPLETION);
+        if (unit == null) {
+            return null;
+        }
+
+        TreePath path = new FindCurrentPath(javacTask).scan(unit, cursor);
+        if (path == null || path.getLeaf() == null) {
+            return null;
+        }
+        CompletionList.Builder builder = CompletionList.builder(kind.mPartial);
+        provider.complete(builder, new DefaultJavacUtilitiesProvider(javacTask, unit, mProject),
+                          path, kind.mPartial, false);
+        return builder;
+    }
+
+    /**
+     * @return the bytes allocated so far by every live thread, since the analysis runs on a
+     * different thread than the caller. Threads that end in between are not accounted for.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() ||
+            !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+}
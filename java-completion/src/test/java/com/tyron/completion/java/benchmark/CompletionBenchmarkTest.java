@@ -0,0 +1,113 @@
+package com.tyron.completion.java.benchmark;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.tyron.completion.TestUtil.resolveBasePath;
+import static org.junit.Assume.assumeTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.index.CompilerService;
+import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.java.JavaCompilerProvider;
+import com.tyron.completion.java.parse.CompilationInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs {@link CompletionBenchmark} for every completion kind and writes the results to a
+ * report file.
+ *
+ * The benchmark is skipped unless it is enabled, it is configured with system properties which
+ * are forwarded to the tests by the build script, e.g.
+ * <pre>
+ *     ./gradlew :java-completion:testDebugUnitTest --tests '*CompletionBenchmarkTest' \
+ *         -Dcompletion.benchmark.enabled=true \
+ *         -Dcompletion.benchmark.classes=500 -Dcompletion.benchmark.iterations=100
+ * </pre>
+ * The report is written to {@code build/reports/benchmarks/completion.txt} of the module, or
+ * to the file given by {@code completion.benchmark.report}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, resourceDir = Config.NONE)
+public class CompletionBenchmarkTest {
+
+    private static final int CLASSES = Integer.getInteger("completion.benchmark.classes", 20);
+    private static final int MEMBERS = Integer.getInteger("completion.benchmark.members", 5);
+    private static final int WARMUP = Integer.getInteger("completion.benchmark.warmup", 3);
+    private static final int ITERATIONS =
+            Integer.getInteger("completion.benchmark.iterations", 10);
+    private static final File REPORT = new File(System.getProperty(
+            "completion.benchmark.report", "build/reports/benchmarks/completion.txt"));
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private CompletionBenchmark mBenchmark;
+    private List<File> mFiles;
+
+    @Before
+    public void setup() throws IOException {
+        assumeTrue("Enable with -Dcompletion.benchmark.enabled=true",
+                   Boolean.getBoolean("completion.benchmark.enabled"));
+
+        CompletionModule.initialize(ApplicationProvider.getApplicationContext());
+        CompletionModule.setAndroidJar(new File(resolveBasePath(), "classpath/rt.jar"));
+        CompletionModule.setLambdaStubs(new File(resolveBasePath(),
+                "classpath/core-lambda-stubs.jar"));
+
+        JavaCompilerProvider provider = new JavaCompilerProvider();
+        CompilerService.getInstance().registerIndexProvider(JavaCompilerProvider.KEY, provider);
+
+        File root = mFolder.newFolder("SyntheticProject");
+        SyntheticProject syntheticProject = new SyntheticProject(root, CLASSES, MEMBERS);
+        mFiles = syntheticProject.generate();
+
+        MockAndroidModule module = new MockAndroidModule(root, new MockFileManager(root));
+        module.open();
+        for (File file : mFiles) {
+            module.addJavaFile(file);
+        }
+        module.addJavaFile(syntheticProject.getTargetFile());
+
+        Project project = new Project(root);
+        project.addModule(module);
+
+        mBenchmark = new CompletionBenchmark(project,
+                                             CompilationInfo.get(module),
+                                             provider.get(project, module),
+                                             syntheticProject);
+    }
+
+    @Test
+    public void testCompletionLatency() throws IOException {
+        List<String> report = new ArrayList<>();
+        long indexTime = mBenchmark.index(mFiles);
+        report.add("Indexed " + mFiles.size() + " files in " + indexTime + "ms");
+
+        for (CompletionBenchmark.Kind kind : CompletionBenchmark.Kind.values()) {
+            CompletionBenchmark.Result result = mBenchmark.run(kind, WARMUP, ITERATIONS);
+            report.add(result.toString());
+            assertThat(result.getItemCount()).isGreaterThan(0);
+        }
+
+        File parent = REPORT.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        Files.write(REPORT.toPath(), report, StandardCharsets.UTF_8);
+    }
+}
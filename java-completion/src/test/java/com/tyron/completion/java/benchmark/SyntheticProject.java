@@ -0,0 +1,158 @@
+package com.tyron.completion.java.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the sources of a project of a given size for {@link CompletionBenchmark}.
+ *
+ * The classes are spread over a few packages, reference each other and the platform classes,
+ * and half of them implement a common interface so every completion kind has project members
+ * and project class names to resolve.
+ */
+public class SyntheticProject {
+
+    public static final String PACKAGE = "bench";
+    public static final String BASE_INTERFACE = "Base";
+    public static final String TARGET_CLASS = "Target";
+
+    private static final int PACKAGE_COUNT = 10;
+
+    private final File mRoot;
+    private final int mClassCount;
+    private final int mMembersPerClass;
+
+    /**
+     * @param root            the module root, sources are written to src/main/java
+     * @param classCount      the number of generated classes, at least 1
+     * @param membersPerClass the number of fields and methods of each generated class
+     */
+    public SyntheticProject(File root, int classCount, int membersPerClass) {
+        mRoot = root;
+        mClassCount = Math.max(1, classCount);
+        mMembersPerClass = membersPerClass;
+    }
+
+    public File getJavaDirectory() {
+        return new File(mRoot, "src/main/java");
+    }
+
+    public File getTargetFile() {
+        return new File(getJavaDirectory(), PACKAGE + "/" + TARGET_CLASS + ".java");
+    }
+
+    /**
+     * Writes every class of the project, the target class is written with an empty method
+     * body.
+     *
+     * @return the generated files, excluding the target class
+     */
+    public List<File> generate() throws IOException {
+        List<File> files = new ArrayList<>(mClassCount + 1);
+        files.add(write(new File(getJavaDirectory(), PACKAGE + "/" + BASE_INTERFACE + ".java"),
+                        "package " + PACKAGE + ";\n\n" +
+                        "public interface " + BASE_INTERFACE + " {\n" +
+                        "    String describe();\n" +
+                        "}\n"));
+        for (int i = 0; i < mClassCount; i++) {
+            files.add(write(new File(getJavaDirectory(), getPackage(i).replace('.', '/') + "/" +
+                                                         getClassName(i) + ".java"),
+                            generateClass(i)));
+        }
+        write(getTargetFile(), getTargetContents("", ""));
+        return files;
+    }
+
+    /**
+     * @param imports the import statements to add after the default imports
+     * @param body    the statements of the method the completion is requested in
+     */
+    public String getTargetContents(String imports, String body) {
+        return "package " + PACKAGE + ";\n\n" +
+               "import " + getQualifiedName(0) + ";\n" +
+               "import java.util.ArrayList;\n" +
+               "import java.util.List;\n" +
+               imports + "\n" +
+               "public class " + TARGET_CLASS + " {\n\n" +
+               "    private final " + getClassName(0) + " first = new " + getClassName(0) +
+               "();\n" +
+               "    private final List<String> names = new ArrayList<>();\n\n" +
+               "    public void run() {\n" +
+               "        " + body + "\n" +
+               "    }\n" +
+               "}\n";
+    }
+
+    public static String getClassName(int index) {
+        return "Class" + index;
+    }
+
+    public static String getPackage(int index) {
+        return PACKAGE + ".p" + (index % PACKAGE_COUNT);
+    }
+
+    public static String getQualifiedName(int index) {
+        return getPackage(index) + "." + getClassName(index);
+    }
+
+    private String generateClass(int index) {
+        String name = getClassName(index);
+        StringBuilder builder = new StringBuilder();
+        builder.append("package ").append(getPackage(index)).append(";\n\n");
+        builder.append("import ").append(PACKAGE).append('.').append(BASE_INTERFACE)
+                .append(";\n");
+        builder.append("import java.util.ArrayList;\n");
+        builder.append("import java.util.List;\n");
+        if (index > 0) {
+            builder.append("import ").append(getQualifiedName(index - 1)).append(";\n");
+        }
+        builder.append('\n');
+
+        builder.append("public class ").append(name);
+        if (index % 2 == 0) {
+            builder.append(" implements ").append(BASE_INTERFACE);
+        }
+        builder.append(" {\n\n");
+        if (index > 0) {
+            builder.append("    public ").append(getClassName(index - 1))
+                    .append(" previous;\n");
+        }
+        for (int i = 0; i < mMembersPerClass; i++) {
+            builder.append("    public int count").append(i).append(";\n");
+            builder.append("    public final List<String> items").append(i)
+                    .append(" = new ArrayList<>();\n");
+        }
+        builder.append('\n');
+        for (int i = 0; i < mMembersPerClass; i++) {
+            builder.append("    public int getCount").append(i).append("() {\n");
+            builder.append("        return count").append(i).append(" + items").append(i)
+                    .append(".size();\n");
+            builder.append("    }\n\n");
+            builder.append("    public String join").append(i).append("(String separator) {\n");
+            builder.append("        StringBuilder builder = new StringBuilder();\n");
+            builder.append("        for (String item : items").append(i).append(") {\n");
+            builder.append("            builder.append(item).append(separator);\n");
+            builder.append("        }\n");
+            builder.append("        return builder.toString();\n");
+            builder.append("    }\n\n");
+        }
+        builder.append("    public String describe() {\n");
+        builder.append("        return \"").append(name).append("\";\n");
+        builder.append("    }\n");
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private static File write(File file, String contents) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,59 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CompilerPoolTest {
+
+    @Test
+    public void testWaitersAreServedByPriority() throws Exception {
+        CompilerPool pool = new CompilerPool(1);
+        CompilerPool.Slot busy = pool.acquire(CompilePriority.INTERACTIVE, it -> false);
+
+        List<CompilePriority> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        Thread background = startWaiter(pool, CompilePriority.BACKGROUND, order, done);
+        awaitQueueDepth(pool, 1);
+        Thread completion = startWaiter(pool, CompilePriority.COMPLETION, order, done);
+        awaitQueueDepth(pool, 2);
+
+        pool.release(busy);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        background.join();
+        completion.join();
+
+        assertThat(order).containsExactly(CompilePriority.COMPLETION, CompilePriority.BACKGROUND)
+                .inOrder();
+    }
+
+    private static Thread startWaiter(CompilerPool pool,
+                                      CompilePriority priority,
+                                      List<CompilePriority> order,
+                                      CountDownLatch done) {
+        Thread thread = new Thread(() -> {
+            try {
+                CompilerPool.Slot slot = pool.acquire(priority, it -> false);
+                order.add(priority);
+                pool.release(slot);
+                done.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueueDepth(CompilerPool pool, int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getQueueDepth() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getQueueDepth()).isEqualTo(depth);
+    }
+}
@@ -0,0 +1,124 @@
+package com.tyron.completion.java.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class ClassFileStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testLookup() throws IOException {
+        File jar = createJar("java/lang/String.class",
+                             "java/lang/Object.class",
+                             "java/util/Map.class",
+                             "java/util/Map$Entry.class",
+                             "META-INF/MANIFEST.MF");
+        File storeFile = new File(mFolder.getRoot(), "store.cfs");
+        ClassFileStore.write(jar, storeFile);
+        ClassFileStore store = ClassFileStore.load(storeFile);
+
+        assertThat(store.size()).isEqualTo(4);
+        assertThat(store.getClassFile("java/lang/Object.class"))
+                .isEqualTo(contents("java/lang/Object.class"));
+        assertThat(store.getClassFile("java/util/Map$Entry.class"))
+                .isEqualTo(contents("java/util/Map$Entry.class"));
+        assertThat(store.getClassFile("java/lang/Integer.class")).isNull();
+        assertThat(store.getClassFile("META-INF/MANIFEST.MF")).isNull();
+    }
+
+    @Test
+    public void testCacheReusesStore() throws IOException {
+        File jar = createJar("java/lang/Object.class");
+        File directory = mFolder.newFolder("cache");
+        ClassFileStoreCache cache = new ClassFileStoreCache(directory, Runnable::run);
+
+        ClassFileStore first = cache.get(jar);
+        assertThat(first).isNotNull();
+        assertThat(cache.get(jar)).isSameInstanceAs(first);
+
+        ClassFileStoreCache reopened = new ClassFileStoreCache(directory, Runnable::run);
+        ClassFileStore loaded = reopened.get(jar);
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.getClassFile("java/lang/Object.class"))
+                .isEqualTo(contents("java/lang/Object.class"));
+    }
+
+    @Test
+    public void testValidatesJarOncePerSession() throws IOException {
+        File jar = createJar("java/lang/Object.class");
+        ClassFileStoreCache cache =
+                new ClassFileStoreCache(mFolder.newFolder("cache"), Runnable::run);
+        ClassFileStore first = cache.get(jar);
+        assertThat(first).isNotNull();
+
+        // the jar is not checked again until the cache is revalidated
+        replaceJar(jar, "java/lang/String.class");
+        assertThat(cache.get(jar)).isSameInstanceAs(first);
+
+        cache.revalidate();
+        ClassFileStore changed = cache.get(jar);
+        assertThat(changed).isNotSameInstanceAs(first);
+        assertThat(changed.getClassFile("java/lang/String.class"))
+                .isEqualTo(contents("java/lang/String.class"));
+    }
+
+    @Test
+    public void testLargeJarIsReadDirectly() throws IOException {
+        // compresses well, so only the uncompressed size is over the limit
+        File jar = mFolder.newFile("large.jar");
+        try (JarOutputStream os = new JarOutputStream(new FileOutputStream(jar))) {
+            os.putNextEntry(new ZipEntry("com/example/Large.class"));
+            os.write(new byte[4096]);
+            os.closeEntry();
+        }
+        File directory = mFolder.newFolder("cache");
+
+        // stores may take a quarter of the cache
+        ClassFileStoreCache cache = new ClassFileStoreCache(directory, Runnable::run, 4096);
+        assertThat(cache.get(jar)).isNull();
+        assertThat(directory.list()).isEmpty();
+
+        ClassFileStoreCache larger = new ClassFileStoreCache(directory, Runnable::run, 65536);
+        ClassFileStore store = larger.get(jar);
+        assertThat(store).isNotNull();
+        assertThat(store.getClassFile("com/example/Large.class")).isEqualTo(new byte[4096]);
+    }
+
+    private static byte[] contents(String entry) {
+        return entry.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private File createJar(String... entries) throws IOException {
+        File jar = mFolder.newFile("classes" + System.nanoTime() + ".jar");
+        writeJar(jar, entries);
+        return jar;
+    }
+
+    private void replaceJar(File jar, String... entries) throws IOException {
+        long lastModified = jar.lastModified();
+        writeJar(jar, entries);
+        assertThat(jar.setLastModified(lastModified + 1000)).isTrue();
+    }
+
+    private static void writeJar(File jar, String... entries) throws IOException {
+        try (JarOutputStream os = new JarOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                os.putNextEntry(new ZipEntry(entry));
+                os.write(contents(entry));
+                os.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.tyron.completion.java.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class ClassNameIndexTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testPrefixLookup() throws IOException {
+        File jar = createJar("java/lang/String.class",
+                             "java/lang/StringBuilder.class",
+                             "java/lang/Object.class",
+                             "java/util/Map.class",
+                             "java/util/Map$Entry.class",
+                             "com/example/stringUtils.class");
+        File indexFile = new File(mFolder.getRoot(), "index.idx");
+        ClassNameIndex.write(jar, indexFile);
+        ClassNameIndex index = ClassNameIndex.load(indexFile);
+
+        assertThat(index.size()).isEqualTo(5);
+
+        List<String> sensitive = new ArrayList<>();
+        index.processPrefix("String", true, sensitive::add);
+        assertThat(sensitive).containsExactly("java.lang.String", "java.lang.StringBuilder");
+
+        List<String> insensitive = new ArrayList<>();
+        index.processPrefix("string", false, insensitive::add);
+        assertThat(insensitive).containsExactly("java.lang.String",
+                                                "java.lang.StringBuilder",
+                                                "com.example.stringUtils");
+
+        List<String> all = new ArrayList<>();
+        index.processPrefix("", true, all::add);
+        assertThat(all).hasSize(5);
+
+        List<String> none = new ArrayList<>();
+        index.processPrefix("Zzz", false, none::add);
+        assertThat(none).isEmpty();
+    }
+
+    @Test
+    public void testNonAsciiPrefixLookup() throws IOException {
+        File jar = createJar("com/example/\u00c4pfel.class",
+                             "com/example/\u00e4rger.class",
+                             "com/example/Apple.class");
+        File indexFile = new File(mFolder.getRoot(), "index.idx");
+        ClassNameIndex.write(jar, indexFile);
+        ClassNameIndex index = ClassNameIndex.load(indexFile);
+
+        List<String> insensitive = new ArrayList<>();
+        index.processPrefix("\u00e4", false, insensitive::add);
+        assertThat(insensitive).containsExactly("com.example.\u00c4pfel", "com.example.\u00e4rger");
+
+        List<String> sensitive = new ArrayList<>();
+        index.processPrefix("\u00c4", true, sensitive::add);
+        assertThat(sensitive).containsExactly("com.example.\u00c4pfel");
+    }
+
+    @Test
+    public void testCacheReusesIndex() throws IOException {
+        File jar = createJar("java/lang/Object.class");
+        ClassNameIndexCache cache = new ClassNameIndexCache(mFolder.newFolder("cache"));
+
+        ClassNameIndex first = cache.get(jar);
+        assertThat(first).isNotNull();
+        assertThat(cache.get(jar)).isSameInstanceAs(first);
+
+        ClassNameIndexCache reopened = new ClassNameIndexCache(new File(mFolder.getRoot(), "cache"));
+        ClassNameIndex loaded = reopened.get(jar);
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.getQualifiedName(0)).isEqualTo("java.lang.Object");
+        assertThat(loaded.getSimpleName(0)).isEqualTo("Object");
+    }
+
+    @Test
+    public void testIndexesNewJarsInBackground() throws IOException {
+        File jar = createJar("java/lang/Object.class");
+        File directory = mFolder.newFolder("cache");
+        List<Runnable> tasks = new ArrayList<>();
+        ClassNameIndexCache cache = new ClassNameIndexCache(directory, tasks::add);
+
+        assertThat(cache.getIfIndexed(jar)).isNull();
+        // only one build is scheduled while the jar is being indexed
+        assertThat(cache.getIfIndexed(jar)).isNull();
+        assertThat(tasks).hasSize(1);
+
+        tasks.get(0).run();
+        ClassNameIndex index = cache.getIfIndexed(jar);
+        assertThat(index).isNotNull();
+        assertThat(index.getQualifiedName(0)).isEqualTo("java.lang.Object");
+
+        // an up to date index file is only mapped, nothing is scheduled
+        ClassNameIndexCache reopened = new ClassNameIndexCache(directory, tasks::add);
+        assertThat(reopened.getIfIndexed(jar)).isNotNull();
+        assertThat(tasks).hasSize(1);
+    }
+
+    private File createJar(String... entries) throws IOException {
+        File jar = mFolder.newFile("classes" + System.nanoTime() + ".jar");
+        try (JarOutputStream os = new JarOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                os.putNextEntry(new ZipEntry(entry));
+                os.write(new byte[]{(byte) 0xCA, (byte) 0xFE});
+                os.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
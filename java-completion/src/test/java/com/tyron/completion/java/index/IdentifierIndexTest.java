@@ -0,0 +1,164 @@
+package com.tyron.completion.java.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.builder.project.mock.MockJavaModule;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class IdentifierIndexTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testTokenizeSkipsCommentsAndLiterals() {
+        String contents = "package com.example;\n" +
+                          "// LineComment\n" +
+                          "/* BlockComment */\n" +
+                          "public class Main extends Base {\n" +
+                          "    String s = \"InString \\\" Escaped\";\n" +
+                          "    char c = 'x';\n" +
+                          "    long l = 10L;\n" +
+                          "    String block = \"\"\"\n" +
+                          "        InTextBlock\n" +
+                          "        \"\"\";\n" +
+                          "}";
+        Set<String> words = IdentifierIndex.tokenize(contents);
+
+        assertThat(words).containsAtLeast("package", "com", "example", "Main", "Base",
+                                          "String", "s", "c", "l", "block");
+        assertThat(words).containsNoneOf("LineComment", "BlockComment", "InString", "Escaped",
+                                         "x", "L", "InTextBlock");
+    }
+
+    @Test
+    public void testSnapshotsAreIndexedOffTheCallingThread() throws IOException {
+        MockFileManager fileManager = new MockFileManager(mFolder.getRoot());
+        MockJavaModule module = new MockJavaModule(mFolder.getRoot(), fileManager);
+        File file = createJavaFile(module, "Main", "class Main { OnDisk field; }");
+        List<Runnable> scheduled = new ArrayList<>();
+        IdentifierIndex index = new IdentifierIndex(module, scheduled::add);
+        assertThat(index.getFilesContaining("OnDisk")).containsExactly(file);
+
+        fileManager.openFileForSnapshot(file, "class Main { First field; }");
+        index.onSnapshotChanged(file, "class Main { First field; }");
+        fileManager.setSnapshotContent(file, "class Main { Second field; }");
+        index.onSnapshotChanged(file, "class Main { Second field; }");
+
+        // both changes are indexed by a single task
+        assertThat(scheduled).hasSize(1);
+        scheduled.get(0).run();
+        assertThat(index.getFilesContaining("OnDisk")).isEmpty();
+        assertThat(index.getFilesContaining("First")).isEmpty();
+        assertThat(index.getFilesContaining("Second")).containsExactly(file);
+    }
+
+    @Test
+    public void testQueryIndexesPendingSnapshots() throws IOException {
+        MockFileManager fileManager = new MockFileManager(mFolder.getRoot());
+        MockJavaModule module = new MockJavaModule(mFolder.getRoot(), fileManager);
+        File file = createJavaFile(module, "Main", "class Main { OnDisk field; }");
+        IdentifierIndex index = new IdentifierIndex(module, runnable -> {
+            // never runs
+        });
+        assertThat(index.containsWord(file, "OnDisk")).isTrue();
+
+        fileManager.openFileForSnapshot(file, "class Main { Edited field; }");
+        index.onSnapshotChanged(file, "class Main { Edited field; }");
+
+        assertThat(index.containsWord(file, "Edited")).isTrue();
+        assertThat(index.search("edit")).containsExactly(file);
+    }
+
+    @Test
+    public void testTypeReferencesUseThePackageOfTheSnapshot() throws IOException {
+        MockFileManager fileManager = new MockFileManager(mFolder.getRoot());
+        MockJavaModule module = new MockJavaModule(mFolder.getRoot(), fileManager);
+        File file = createJavaFile(module, "User", "package b; class User { Target t; }");
+        IdentifierIndex index = new IdentifierIndex(module, Runnable::run);
+        assertThat(index.findTypeReferences("b.Target")).containsExactly(file);
+
+        fileManager.openFileForSnapshot(file, "package a; class User { Target t; }");
+        index.onSnapshotChanged(file, "package a; class User { Target t; }");
+
+        assertThat(index.findTypeReferences("b.Target")).isEmpty();
+    }
+
+    @Test
+    public void testSnapshotsOfSiblingDirectoriesAreIgnored() throws IOException {
+        File root = mFolder.newFolder("app");
+        MockFileManager fileManager = new MockFileManager(root);
+        MockJavaModule module = new MockJavaModule(root, fileManager);
+        List<Runnable> scheduled = new ArrayList<>();
+        IdentifierIndex index = new IdentifierIndex(module, scheduled::add);
+
+        File sibling = new File(mFolder.newFolder("app2"), "Main.java");
+        index.onSnapshotChanged(sibling, "class Main { Sibling field; }");
+
+        assertThat(scheduled).isEmpty();
+        assertThat(index.getFilesContaining("Sibling")).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentQueriesAndUpdates() throws Exception {
+        MockFileManager fileManager = new MockFileManager(mFolder.getRoot());
+        MockJavaModule module = new MockJavaModule(mFolder.getRoot(), fileManager);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(createJavaFile(module, "Main" + i, "class Main" + i + " { Shared field; }"));
+        }
+        File edited = files.get(0);
+        fileManager.openFileForSnapshot(edited, "class Main0 { Shared field; }");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        IdentifierIndex index = new IdentifierIndex(module, executor);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 3; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        assertThat(index.getFilesContaining("Shared")).containsAtLeastElementsIn(
+                                files.subList(1, files.size()));
+                        assertThat(index.filterContaining(files, "Shared")).isNotEmpty();
+                    }
+                }));
+            }
+            for (int i = 0; i < 200; i++) {
+                String contents = "class Main0 { Shared field" + i + "; }";
+                fileManager.setSnapshotContent(edited, contents);
+                index.onSnapshotChanged(edited, contents);
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(index.containsWord(edited, "field199")).isTrue();
+    }
+
+    private static File createJavaFile(MockJavaModule module, String name, String contents)
+            throws IOException {
+        File file = new File(module.getRootFile(), name + ".java");
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        module.addJavaFile(file);
+        return file;
+    }
+}
@@ -0,0 +1,76 @@
+package com.tyron.completion.java.parse;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.completion.java.compiler.CompilePriority;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AnalysisSchedulerTest {
+
+    private static final URI FIRST = URI.create("file:///First.java");
+    private static final URI SECOND = URI.create("file:///Second.java");
+
+    @Test
+    public void testDebouncedPerFile() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(() -> null);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        scheduler.schedule(FIRST, CompilePriority.INTERACTIVE, 200,
+                           () -> ran.add("first-1"), () -> dropped.add("first-1"));
+        scheduler.schedule(SECOND, CompilePriority.INTERACTIVE, 200, () -> {
+            ran.add("second");
+            done.countDown();
+        }, () -> dropped.add("second"));
+        scheduler.schedule(FIRST, CompilePriority.INTERACTIVE, 200, () -> {
+            ran.add("first-2");
+            done.countDown();
+        }, () -> dropped.add("first-2"));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ran).containsExactly("second", "first-2");
+        assertThat(dropped).containsExactly("first-1");
+    }
+
+    @Test
+    public void testHigherPriorityRunsFirst() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(() -> null);
+        List<CompilePriority> order = new CopyOnWriteArrayList<>();
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+
+        URI blocking = URI.create("file:///Blocking.java");
+        scheduler.schedule(blocking, CompilePriority.INTERACTIVE, 0, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ignored) {
+            }
+        }, () -> {
+        });
+        scheduler.schedule(FIRST, CompilePriority.BACKGROUND, 0, () -> {
+            order.add(CompilePriority.BACKGROUND);
+            done.countDown();
+        }, () -> {
+        });
+        scheduler.schedule(SECOND, CompilePriority.INTERACTIVE, 0, () -> {
+            order.add(CompilePriority.INTERACTIVE);
+            done.countDown();
+        }, () -> {
+        });
+        assertThat(scheduler.getQueueDepth()).isEqualTo(2);
+
+        blocker.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order)
+                .containsExactly(CompilePriority.INTERACTIVE, CompilePriority.BACKGROUND)
+                .inOrder();
+    }
+}
@@ -0,0 +1,150 @@
+package com.tyron.completion.java.parse;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.tyron.completion.java.compiler.services.NBLog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+public class PartialReparseTest {
+
+    private static final String MISSING_RETURN = "compiler.err.missing.ret.stmt";
+
+    private CompilationInfo mInfo;
+    private Source mSource;
+
+    @Before
+    public void setup() {
+        mInfo = new CompilationInfo(new CompilationInfoImpl(new JavacParser(), null, null,
+                                                            Collections.emptyList(),
+                                                            Collections.emptyList(), null, null));
+        mSource = new Source("file:///Test.java");
+    }
+
+    @Test
+    public void testEditedBodyReportsMissingReturn() {
+        mSource.contents = "class Test {\n" +
+                           "    int value() {\n" +
+                           "        return 1;\n" +
+                           "    }\n" +
+                           "}\n";
+        assertThat(mInfo.updateImmediately(mSource)).isNotNull();
+        assertThat(getErrorCodes()).isEmpty();
+
+        mSource.contents = "class Test {\n" +
+                           "    int value() {\n" +
+                           "        int unused = 1;\n" +
+                           "    }\n" +
+                           "}\n";
+        JCCompilationUnit unit = mInfo.updateImmediately(mSource);
+        assertThat(unit).isNotNull();
+        assertThat(mInfo.getStatistics().getPartialCount()).isEqualTo(1);
+        assertThat(getErrorCodes()).containsExactly(MISSING_RETURN);
+
+        // the error goes away once the body returns again
+        mSource.contents = "class Test {\n" +
+                           "    int value() {\n" +
+                           "        int unused = 1;\n" +
+                           "        return unused;\n" +
+                           "    }\n" +
+                           "}\n";
+        assertThat(mInfo.updateImmediately(mSource)).isNotNull();
+        assertThat(mInfo.getStatistics().getPartialCount()).isEqualTo(2);
+        assertThat(getErrorCodes()).isEmpty();
+    }
+
+    @Test
+    public void testOtherMethodsAreNotReportedTwice() {
+        mSource.contents = "class Test {\n" +
+                           "    int first() {\n" +
+                           "    }\n" +
+                           "    int second() {\n" +
+                           "        return 2;\n" +
+                           "    }\n" +
+                           "}\n";
+        assertThat(mInfo.updateImmediately(mSource)).isNotNull();
+        assertThat(getErrorCodes()).containsExactly(MISSING_RETURN);
+
+        mSource.contents = "class Test {\n" +
+                           "    int first() {\n" +
+                           "    }\n" +
+                           "    int second() {\n" +
+                           "        return 2 + 2;\n" +
+                           "    }\n" +
+                           "}\n";
+        assertThat(mInfo.updateImmediately(mSource)).isNotNull();
+        assertThat(mInfo.getStatistics().getPartialCount()).isEqualTo(1);
+        assertThat(getErrorCodes()).containsExactly(MISSING_RETURN);
+    }
+
+    @Test
+    public void testLaterDiagnosticsAreShifted() {
+        mSource.contents = "class Test {\n" +
+                           "    int first() {\n" +
+                           "        return 1;\n" +
+                           "    }\n" +
+                           "    int second() {\n" +
+                           "    }\n" +
+                           "}\n";
+        assertThat(mInfo.updateImmediately(mSource)).isNotNull();
+
+        mSource.contents = "class Test {\n" +
+                           "    int first() {\n" +
+                           "        int value = 1;\n" +
+                           "        return value;\n" +
+                           "    }\n" +
+                           "    int second() {\n" +
+                           "    }\n" +
+                           "}\n";
+        assertThat(mInfo.updateImmediately(mSource)).isNotNull();
+        assertThat(mInfo.getStatistics().getPartialCount()).isEqualTo(1);
+
+        List<JCDiagnostic> diagnostics = getLog().getDiagnostics(mSource.toUri());
+        assertThat(diagnostics).hasSize(1);
+        JCDiagnostic diagnostic = diagnostics.get(0);
+        assertThat(diagnostic.getCode()).isEqualTo(MISSING_RETURN);
+        // reported at the closing brace of second()
+        assertThat(diagnostic.getPosition())
+                .isEqualTo((long) mSource.contents.lastIndexOf("    }") + 4);
+        assertThat(diagnostic.getLineNumber()).isEqualTo(7L);
+    }
+
+    private NBLog getLog() {
+        return NBLog.instance(mInfo.impl.getJavacTask().getContext());
+    }
+
+    private List<String> getErrorCodes() {
+        List<String> codes = new ArrayList<>();
+        for (JCDiagnostic diagnostic : getLog().getDiagnostics(mSource.toUri())) {
+            if (diagnostic.getKind() == javax.tools.Diagnostic.Kind.ERROR) {
+                codes.add(diagnostic.getCode());
+            }
+        }
+        return codes;
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+
+        String contents;
+
+        Source(String uri) {
+            super(URI.create(uri), JavaFileObject.Kind.SOURCE);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return contents;
+        }
+    }
+}
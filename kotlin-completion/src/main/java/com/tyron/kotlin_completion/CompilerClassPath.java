@@ -89,6 +89,10 @@ public class CompilerClassPath implements Closeable {
         dest.addAll(added);
     }
 
+    public AndroidModule getModule() {
+        return mProject;
+    }
+
     public Compiler getCompiler() {
         return compiler;
     }
@@ -5,8 +5,11 @@ import android.util.Log;
 import com.tyron.kotlin_completion.compiler.CompletionKind;
 import com.tyron.kotlin_completion.index.SymbolIndex;
 import com.tyron.kotlin_completion.util.AsyncExecutor;
+import com.tyron.kotlin_completion.util.FileSignature;
 import com.tyron.kotlin_completion.util.UtilKt;
 
+import com.google.common.hash.HashCode;
+
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.kotlin.com.intellij.lang.Language;
 import org.jetbrains.kotlin.com.intellij.psi.PsiElement;
@@ -45,6 +48,11 @@ public class SourcePath {
     private final CompilerClassPath cp;
     private final Map<URI, SourceFile> files = new HashMap<>();
     private final FakeLock parsedDataWriteLock = new FakeLock();
+    /**
+     * Incremented whenever the content of a source file or the set of source files changes,
+     * dependency fingerprints computed in the same generation are reused
+     */
+    private int generation;
 
     public static class FakeLock {
         public void lock() {}
@@ -52,13 +60,18 @@ public class SourcePath {
     }
 
     private final AsyncExecutor indexAsync = new AsyncExecutor();
-    private final SymbolIndex index = new SymbolIndex();
-    private boolean indexEnabled = false;
+    private final SymbolIndex index;
+    private boolean indexEnabled = true;
     private boolean indexInitialized;
 
 
     public SourcePath(CompilerClassPath classPath) {
         cp = classPath;
+        index = new SymbolIndex(
+                new File(classPath.getModule().getBuildDirectory(), "kotlin/symbols.idx"),
+                classPath.mClassPath.stream()
+                        .map(it -> it.getCompiledJar().toFile())
+                        .collect(Collectors.toList()));
     }
 
     public CompilerClassPath getCompilerClassPath() {
@@ -81,6 +94,24 @@ public class SourcePath {
         private final Language language;
         private final boolean isTemporary;
 
+        /**
+         * Signature of {@link #parsed}, computed lazily
+         */
+        private FileSignature signature;
+        private KtFile signatureFile;
+        /**
+         * Hash of the content of {@link #compiledFile} and the fingerprint of the API of the
+         * files it depended on when it was analyzed
+         */
+        private HashCode compiledContentHash;
+        private HashCode compiledDependencies;
+        /**
+         * The last fingerprint computed by {@link #dependencyFingerprint(SourceFile)} and the
+         * generation it was computed in
+         */
+        private HashCode dependencies;
+        private int dependenciesGeneration = -1;
+
         private final String extension;
         private final CompletionKind kind = CompletionKind.DEFAULT;
 
@@ -106,6 +137,9 @@ public class SourcePath {
         }
 
         public void put(String newContent) {
+            if (!content.equals(newContent)) {
+                generation++;
+            }
             content = newContent;
         }
 
@@ -114,6 +148,12 @@ public class SourcePath {
             compiledFile = null;
             compiledContext = null;
             compiledcontainer = null;
+            signature = null;
+            signatureFile = null;
+            compiledContentHash = null;
+            compiledDependencies = null;
+            dependencies = null;
+            dependenciesGeneration = -1;
         }
 
         public void parse() {
@@ -128,6 +168,35 @@ public class SourcePath {
             }
         }
 
+        private FileSignature getSignature() {
+            parseIfChanged();
+            if (signatureFile != parsed) {
+                signature = FileSignature.of(parsed);
+                signatureFile = parsed;
+            }
+            return signature;
+        }
+
+        /**
+         * @return whether the last analysis of this file is still valid, which is the case
+         * when neither its content nor the API of the files it may depend on have changed since
+         */
+        private boolean isUpToDate() {
+            if (compiledFile == null || compiledContentHash == null) {
+                return false;
+            }
+            if (!compiledContentHash.equals(FileSignature.hashContent(content))) {
+                return false;
+            }
+            return compiledDependencies.equals(dependencyFingerprint(this));
+        }
+
+        private void setCompiled(KtFile file, HashCode dependencies) {
+            compiledFile = file;
+            compiledContentHash = FileSignature.hashContent(file.getText());
+            compiledDependencies = dependencies;
+        }
+
         public void compileIfNull() {
             if (compiledFile == null) {
                 parseIfChanged();
@@ -146,24 +215,26 @@ public class SourcePath {
         }
 
         private void doCompileIfChanged() {
-            if (parsed == null || compiledFile == null || !parsed.getText().equals(compiledFile.getText())) {
-                doCompile();;
+            if (parsed == null || !isUpToDate()) {
+                doCompile();
             }
         }
 
         private void doCompile() {
             if (this.path.toFile().getName().endsWith(".kt")) {
+                HashCode dependencies = dependencyFingerprint(this);
                 Pair<BindingContext, ComponentProvider> pair = cp.getCompiler().compileKtFile(parsed, allIncludingThis());
                 parsedDataWriteLock.lock();
                 try {
                     compiledContext = pair.getFirst();
                     compiledcontainer = pair.getSecond();
-                    compiledFile = parsed;
+                    setCompiled(parsed, dependencies);
                 } finally {
                     parsedDataWriteLock.unlock();
                 }
             }
             initializeIndexAsyncIfNeeded(compiledcontainer);
+            updateIndexAsync(this);
         }
         public CompiledFile prepareCompiledFile() {
             parseIfChanged();
@@ -200,6 +271,7 @@ public class SourcePath {
             sourceFile(file).put(content);
         } else {
             files.put(file.toURI(), new SourceFile(file.toURI(), content, KotlinLanguage.INSTANCE, temp));
+            generation++;
         }
     }
 
@@ -213,32 +285,69 @@ public class SourcePath {
     }
 
     public void delete(File file) {
-        files.remove(file.toURI());
+        if (files.remove(file.toURI()) != null) {
+            generation++;
+        }
+        String path = Paths.get(file.toURI()).toString();
+        indexAsync.execute(() -> index.removeFile(path));
     }
 
     public BindingContext compileFiles(Collection<File> all) {
         Set<SourceFile> sources = all.stream().map(o -> files.get(o.toURI())).collect(Collectors.toSet());
-        Set<SourceFile> allChanged = sources.stream().filter(it -> {
-            if (it.compiledFile == null) {
-                return true;
-            }
-            return !it.content.equals(it.compiledFile.getText());
-        })
+        Set<SourceFile> allChanged = sources.stream()
+                .filter(it -> !it.isUpToDate())
                 .collect(Collectors.toSet());
         BindingContext sourcesContext = compileAndUpdate(allChanged);
         return UtilKt.util(sourcesContext, sources, allChanged);
     }
 
+    /**
+     * Computes a hash of the API of the source files the given file may depend on, directly or
+     * indirectly. Analyzing a file again is only needed when its content or this fingerprint
+     * changes, so editing the body of a function does not invalidate the files using it. The
+     * fingerprint is only computed again once a source file has changed.
+     */
+    private HashCode dependencyFingerprint(SourceFile source) {
+        if (source.dependenciesGeneration == generation) {
+            return source.dependencies;
+        }
+        Map<URI, FileSignature> signatures = new HashMap<>();
+        files.values().stream()
+                .filter(it -> it == source || !it.isTemporary)
+                .forEach(it -> signatures.put(it.uri, it.getSignature()));
+        source.dependencies = FileSignature.dependencyFingerprint(source.uri, signatures);
+        source.dependenciesGeneration = generation;
+        return source.dependencies;
+    }
+
     private void initializeIndexAsyncIfNeeded(ComponentProvider container) {
         indexAsync.execute(() -> {
             if (indexEnabled && !indexInitialized) {
                 ModuleDescriptor module = (ModuleDescriptor) container.resolve(ModuleDescriptor.class).getValue();
-                index.refresh(module, true);
+                // an index restored from the previous session only needs its changed files
+                // indexed again, which happens as they are compiled
+                index.refresh(module, false);
                 indexInitialized = true;
             }
         });
     }
 
+    private void updateIndexAsync(SourceFile sourceFile) {
+        if (!indexEnabled || sourceFile.isTemporary) {
+            return;
+        }
+        KtFile file = sourceFile.compiledFile;
+        BindingContext context = sourceFile.compiledContext;
+        if (file == null || context == null) {
+            return;
+        }
+        indexAsync.execute(() -> {
+            if (indexInitialized) {
+                index.updateFile(file, context);
+            }
+        });
+    }
+
 
     private BindingContext compileAndUpdate(Set<SourceFile> changed) {
         if (changed.isEmpty()) return null;
@@ -246,6 +355,8 @@ public class SourcePath {
             sourceFile.parseIfChanged();
             return sourceFile.parsed;
         });
+        Map<SourceFile, HashCode> dependencies = CollectionsKt.associateWith(changed,
+                this::dependencyFingerprint);
         Set<KtFile> all = all(false);
         Pair<BindingContext, ComponentProvider> pair = cp.getCompiler()
                 .compileKtFiles(parse.values(), all, CompletionKind.DEFAULT);
@@ -254,13 +365,14 @@ public class SourcePath {
             parsedDataWriteLock.lock();
             try {
                 if (f.parsed.equals(parsed)) {
-                    f.compiledFile = parsed;
+                    f.setCompiled(parsed, dependencies.get(f));
                     f.compiledContext = pair.getFirst();
                     f.compiledcontainer = pair.getSecond();
                 }
             } finally {
                 parsedDataWriteLock.unlock();
             }
+            updateIndexAsync(f);
         });
 
         initializeIndexAsyncIfNeeded(pair.getSecond());
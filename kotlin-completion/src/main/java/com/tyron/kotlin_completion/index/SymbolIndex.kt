@@ -2,115 +2,301 @@ package com.tyron.kotlin_completion.index
 
 import android.util.Log
 import com.tyron.kotlin_completion.util.PsiUtils
-import org.jetbrains.exposed.sql.*
-import org.jetbrains.exposed.sql.transactions.transaction
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
 import java.lang.IllegalStateException
 import java.time.Duration
 import java.time.Instant
 import kotlin.sequences.Sequence
 
-private const val MAX_FQNAME_LENGTH = 255
-private const val MAX_SHORT_NAME_LENGTH = 80
+private const val TAG = "SymbolIndex"
 
-private object Symbols : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH) references FqNames.fqName
-    val kind = integer("kind")
-    val visibility = integer("visibility")
-    val extensionReceiverType = varchar("extensionreceivertype", length = MAX_FQNAME_LENGTH).nullable()
+private const val MAGIC = 0x4B53594D
+private const val VERSION = 1
 
-    override val primaryKey = PrimaryKey(fqName)
-}
+/**
+ * Key of the segment holding the symbols that are not declared in a source file of the module
+ */
+private const val LIBRARIES = ""
 
-private object FqNames : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH)
-    val shortName = varchar("shortname", length = MAX_SHORT_NAME_LENGTH)
+/**
+ * Index of the top level symbols of a module, queried by the prefix of their short name.
+ *
+ * Symbols are split in segments, one for the libraries of the module and one per source file,
+ * each stored in an immutable [SymbolTable]. A source file is indexed again on its own when it
+ * changes, the libraries only when the index is refreshed.
+ *
+ * The library symbols are saved to the storage file and the source file symbols next to it, so
+ * saving the small source segments after every change does not rewrite the libraries.
+ *
+ * @param storageFile the file the index is saved to and restored from, null to keep it in
+ * memory only
+ * @param classPath the class path of the module, the saved library symbols are discarded if it
+ * has changed since they were saved
+ */
+class SymbolIndex @JvmOverloads constructor(
+    private val storageFile: File? = null,
+    classPath: Collection<File> = emptyList()
+) {
 
-    override val primaryKey = PrimaryKey(fqName)
-}
-class SymbolIndex {
-    private val db = Database.connect("jdbc:h2:mem:symbolindex;DB_CLOSE_DELAY=-1", "org.h2.Driver")
+    private class Segment(val table: SymbolTable, val lastModified: Long)
+
+    private val sourcesFile = storageFile?.let { File(it.parentFile, it.name + ".sources") }
+
+    private val classPathKey = classPath
+        .map { "${it.absolutePath}:${it.length()}:${it.lastModified()}" }
+        .sorted()
+        .joinToString(File.pathSeparator)
 
+    /**
+     * Replaced as a whole on every change so queries never see a partially updated index
+     */
+    @Volatile
+    private var segments: Map<String, Segment> = emptyMap()
+
+    @Volatile
     var indexing: Boolean = false
 
     init {
-       transaction (db) {
-           SchemaUtils.create(Symbols, FqNames)
-       }
+        load()
     }
 
+    /**
+     * Indexes every symbol of the module.
+     *
+     * @param forced if false and the library symbols were already indexed, or restored from
+     * disk, nothing is done
+     */
     fun refresh(module: ModuleDescriptor, forced: Boolean = true) {
+        if (!forced && segments.containsKey(LIBRARIES)) {
+            return
+        }
+
         val started = System.currentTimeMillis()
-        Log.d("SymbolIndex", "Updating symbol index...");
+        Log.d(TAG, "Updating symbol index...")
 
         indexing = true
         try {
-            transaction(db) {
-                if (forced) {
-                    Symbols.deleteAll()
-                }
-                for (descriptor in allDescriptors(module)) {
-                    val descriptorFqn = PsiUtils.getFqNameSafe(descriptor)
-                    val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
-
-                    if (canStoreFqName(descriptorFqn) && (extensionReceiverFqn?.let { canStoreFqName(it) } != false)) {
-
-                        for (fqn in listOfNotNull(descriptorFqn, extensionReceiverFqn)) {
-                            FqNames.replace {
-                                it[fqName] = fqn.toString()
-                                it[shortName] = fqn.shortName().toString()
-                            }
-                        }
-
-
-                        Symbols.replace {
-                            it[fqName] = descriptorFqn.toString()
-                            it[kind] = descriptor.accept(ExtractSymbolKind, Unit).rawValue
-                            it[visibility] = descriptor.accept(ExtractSymbolVisibility, Unit).rawValue
-                            it[extensionReceiverType] = extensionReceiverFqn?.toString()
-                        }
-                    } else {
-                        Log.w("SymbolIndex",
-                            "Excluding symbol $descriptorFqn from index since its name is too long"
-                        );
-                    }
-                }
+            val symbols = HashMap<String, MutableList<Symbol>>()
+            for (descriptor in allDescriptors(module)) {
+                val symbol = toSymbol(descriptor) ?: continue
+                val source = DescriptorToSourceUtils.getContainingFile(descriptor)
+                    ?.let(::getKey)
+                    ?: LIBRARIES
+                symbols.getOrPut(source, ::ArrayList).add(symbol)
+            }
 
-                indexing = false
+            val updated = HashMap<String, Segment>()
+            for ((key, list) in symbols) {
+                updated[key] = Segment(SymbolTable.build(list), getLastModified(key))
             }
+            updated.putIfAbsent(LIBRARIES, Segment(SymbolTable.EMPTY, 0))
+            synchronized(this) {
+                segments = updated
+            }
+            save()
+
+            Log.d(TAG, "Indexed ${updated.values.sumOf { it.table.size }} symbols in " +
+                    "${System.currentTimeMillis() - started} ms")
         } catch (e: Exception) {
-            Log.e("SymbolIndex", "Error while updating symbol index", e);
+            Log.e(TAG, "Error while updating symbol index", e)
+        } finally {
+            indexing = false
         }
     }
 
+    /**
+     * Indexes the top level declarations of a source file again, replacing its previous symbols.
+     */
+    fun updateFile(file: KtFile, context: BindingContext) {
+        val symbols = file.declarations
+            .mapNotNull { context[BindingContext.DECLARATION_TO_DESCRIPTOR, it] }
+            .mapNotNull(::toSymbol)
+        updateFile(getKey(file), symbols)
+    }
+
+    internal fun updateFile(path: String, symbols: List<Symbol>) {
+        val segment = Segment(SymbolTable.build(symbols), getLastModified(path))
+        synchronized(this) {
+            segments = HashMap(segments).apply { put(path, segment) }
+        }
+        saveSources()
+    }
+
+    /**
+     * Removes the symbols of a source file from the index.
+     *
+     * @param path the path of the file, as passed when its [KtFile] was created
+     */
+    fun removeFile(path: String) {
+        synchronized(this) {
+            if (!segments.containsKey(path)) {
+                return
+            }
+            segments = HashMap(segments).apply { remove(path) }
+        }
+        saveSources()
+    }
+
     fun query(prefix: String, receiverType: FqName? = null, limit: Int = 20): List<Symbol> {
         val start = Instant.now()
         try {
-            return transaction(db) {
-                (Symbols innerJoin FqNames)
-                    .select { FqNames.shortName.like("$prefix%") and (Symbols.extensionReceiverType eq receiverType?.toString()) }
-                    .limit(limit)
-                    .map {
-                        Symbol(
-                            fqName = FqName(it[Symbols.fqName]),
-                            kind = Symbol.Kind.fromRaw(it[Symbols.kind]),
-                            visibility = Symbol.Visibility.fromRaw(it[Symbols.visibility]),
-                            extensionReceiverType = it[Symbols.extensionReceiverType]?.let(::FqName)
-                        )
+            val receiver = receiverType?.asString()
+            val result = ArrayList<Symbol>()
+            val seen = HashSet<FqName>()
+            for (segment in segments.values) {
+                val completed = segment.table.query(prefix, receiver) {
+                    if (seen.add(it.fqName)) {
+                        result.add(it)
                     }
+                    result.size < limit
+                }
+                if (!completed) {
+                    break
+                }
             }
+            return result
         } finally {
-            Log.d("SymbolIndex", "Query took " + Duration.between(start, Instant.now()).toMillis() + " ms")
+            Log.d(TAG, "Query took " + Duration.between(start, Instant.now()).toMillis() + " ms")
+        }
+    }
+
+    /**
+     * Saves the index to the storage file so the next session does not need to index the
+     * libraries again.
+     */
+    fun save() {
+        val file = storageFile ?: return
+        write(file, segments.filterKeys { it == LIBRARIES })
+        saveSources()
+    }
+
+    private fun saveSources() {
+        val file = sourcesFile ?: return
+        write(file, segments.filterKeys { it != LIBRARIES })
+    }
+
+    private fun write(file: File, snapshot: Map<String, Segment>) {
+        try {
+            file.parentFile?.mkdirs()
+            // written to a temporary file first so a crash never leaves a partial index behind
+            val temp = File(file.parentFile, file.name + ".tmp")
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { out ->
+                out.writeInt(MAGIC)
+                out.writeInt(VERSION)
+                out.writeUTF(classPathKey)
+                out.writeInt(snapshot.size)
+                for ((key, segment) in snapshot) {
+                    out.writeUTF(key)
+                    out.writeLong(segment.lastModified)
+                    segment.table.write(out)
+                }
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete()
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Unable to save the symbol index", e)
         }
     }
 
-    private fun canStoreFqName(fqName: FqName) =
-        fqName.toString().length <= MAX_FQNAME_LENGTH
-                && fqName.shortName().toString().length <= MAX_SHORT_NAME_LENGTH
+    private fun load() {
+        val loaded = HashMap<String, Segment>()
+        storageFile?.let { read(it, loaded) }
+        sourcesFile?.let { read(it, loaded) }
+        segments = loaded
+    }
+
+    private fun read(file: File, loaded: MutableMap<String, Segment>) {
+        if (!file.exists()) {
+            return
+        }
+        val segments = HashMap<String, Segment>()
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw IOException("Unknown symbol index format")
+                }
+                val sameClassPath = input.readUTF() == classPathKey
+                repeat(input.readInt()) {
+                    val key = input.readUTF()
+                    val lastModified = input.readLong()
+                    val segment = Segment(SymbolTable.read(input), lastModified)
+                    // a source file that changed while the index was not running is indexed
+                    // again when it is compiled
+                    val upToDate = if (key == LIBRARIES) {
+                        sameClassPath
+                    } else {
+                        lastModified != 0L && lastModified == getLastModified(key)
+                    }
+                    if (upToDate) {
+                        segments[key] = segment
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            // a corrupt index may fail with any exception, it is discarded and built again
+            Log.w(TAG, "Unable to restore the symbol index", e)
+            file.delete()
+            return
+        }
+        loaded.putAll(segments)
+    }
+
+    private fun toSymbol(descriptor: DeclarationDescriptor): Symbol? {
+        val descriptorFqn = PsiUtils.getFqNameSafe(descriptor)
+        val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
+        return Symbol(
+            fqName = descriptorFqn,
+            kind = descriptor.accept(ExtractSymbolKind, Unit),
+            visibility = descriptor.accept(ExtractSymbolVisibility, Unit),
+            extensionReceiverType = extensionReceiverFqn
+        ).takeIf { canStore(it) }
+    }
+
+    /**
+     * Names are written with [DataOutputStream.writeUTF], which is limited to 65535 bytes
+     */
+    private fun canStore(symbol: Symbol): Boolean {
+        val fits = symbol.fqName.asString().length <= MAX_NAME_LENGTH &&
+                (symbol.extensionReceiverType?.asString()?.length ?: 0) <= MAX_NAME_LENGTH
+        if (!fits) {
+            Log.w(TAG, "Excluding symbol ${symbol.fqName} from index since its name is too long")
+        }
+        return fits
+    }
+
+    /**
+     * [com.tyron.kotlin_completion.compiler.Compiler.createKtFile] names the files it creates
+     * after their full path, the same path [removeFile] is called with.
+     */
+    private fun getKey(file: KtFile): String = file.name
+
+    /**
+     * @return the last modified time of the source file, 0 if the key is not the path of an
+     * existing file, its symbols are then never restored
+     */
+    private fun getLastModified(key: String): Long {
+        if (key == LIBRARIES) {
+            return 0
+        }
+        val file = File(key)
+        return if (file.isAbsolute) file.lastModified() else 0
+    }
 
     private fun allDescriptors(module: ModuleDescriptor) : Sequence<DeclarationDescriptor> = allPackages(module)
         .map(module::getPackage)
@@ -118,7 +304,7 @@ class SymbolIndex {
             try {
                 it.memberScope.getContributedDescriptors(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
             } catch (e: IllegalStateException) {
-                Log.w("SymbolIndex", "Couldn't query descriptors in package $it")
+                Log.w(TAG, "Couldn't query descriptors in package $it")
                 emptyList()
             }
         }
@@ -127,4 +313,9 @@ class SymbolIndex {
         .getSubPackagesOf(pkgName) { it.toString()  != "META-INF"}
         .asSequence()
         .flatMap { sequenceOf(it) + allPackages(module, it) }
-}
\ No newline at end of file
+
+    private companion object {
+        /** Every char takes at most 3 bytes in modified UTF-8 */
+        const val MAX_NAME_LENGTH = 65535 / 3
+    }
+}
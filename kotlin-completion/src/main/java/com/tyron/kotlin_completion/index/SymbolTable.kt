@@ -0,0 +1,163 @@
+package com.tyron.kotlin_completion.index
+
+import org.jetbrains.kotlin.name.FqName
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+/**
+ * An immutable set of symbols stored in parallel arrays sorted by short name, a prefix query is
+ * a binary search for the first matching name followed by a scan of the matching range.
+ *
+ * Extension receiver types are stored once in a sorted pool and referenced by their position,
+ * so filtering by receiver type compares integers instead of strings.
+ */
+class SymbolTable private constructor(
+    private val shortNames: Array<String>,
+    private val fqNames: Array<String>,
+    private val kinds: ByteArray,
+    private val visibilities: ByteArray,
+    /** Position of the receiver type in [receiverTypes], -1 if the symbol is not an extension */
+    private val receivers: IntArray,
+    private val receiverTypes: Array<String>
+) {
+
+    val size: Int
+        get() = fqNames.size
+
+    /**
+     * Passes the symbols whose short name starts with the prefix and whose extension receiver
+     * type is the given type, or that are not extensions if it is null, to the consumer until
+     * it returns false.
+     *
+     * @return false if the consumer stopped the query
+     */
+    fun query(prefix: String, receiverType: String?, consumer: (Symbol) -> Boolean): Boolean {
+        val receiver = if (receiverType == null) -1 else receiverTypes.binarySearch(receiverType)
+        if (receiver < -1) {
+            // no symbol of this table extends the receiver type
+            return true
+        }
+
+        var i = lowerBound(prefix)
+        while (i < shortNames.size && shortNames[i].startsWith(prefix)) {
+            if (receivers[i] == receiver && !consumer(symbolAt(i))) {
+                return false
+            }
+            i++
+        }
+        return true
+    }
+
+    fun write(out: DataOutput) {
+        out.writeInt(receiverTypes.size)
+        receiverTypes.forEach(out::writeUTF)
+        out.writeInt(fqNames.size)
+        for (i in fqNames.indices) {
+            out.writeUTF(fqNames[i])
+            out.writeByte(kinds[i].toInt())
+            out.writeByte(visibilities[i].toInt())
+            out.writeInt(receivers[i])
+        }
+    }
+
+    private fun symbolAt(index: Int) = Symbol(
+        fqName = FqName(fqNames[index]),
+        kind = Symbol.Kind.fromRaw(kinds[index].toInt()),
+        visibility = Symbol.Visibility.fromRaw(visibilities[index].toInt()),
+        extensionReceiverType = receivers[index].takeIf { it != -1 }?.let { FqName(receiverTypes[it]) }
+    )
+
+    private fun lowerBound(prefix: String): Int {
+        var low = 0
+        var high = shortNames.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (shortNames[mid] < prefix) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        return low
+    }
+
+    companion object {
+
+        /** More symbols than any class path has, larger counts can only come from a corrupt file */
+        private const val MAX_COUNT = 1 shl 24
+
+        @JvmField
+        val EMPTY = build(emptyList())
+
+        /**
+         * Builds a table of the symbols, if several symbols have the same fully qualified name
+         * the last one is kept.
+         */
+        @JvmStatic
+        fun build(symbols: Collection<Symbol>): SymbolTable {
+            val unique = LinkedHashMap<String, Symbol>()
+            for (symbol in symbols) {
+                unique[symbol.fqName.asString()] = symbol
+            }
+            val sorted = unique.entries.sortedWith(
+                compareBy({ it.value.fqName.shortName().asString() }, { it.key })
+            )
+
+            val receiverTypes = sorted
+                .mapNotNullTo(sortedSetOf()) { it.value.extensionReceiverType?.asString() }
+                .toTypedArray()
+            return SymbolTable(
+                Array(sorted.size) { sorted[it].value.fqName.shortName().asString() },
+                Array(sorted.size) { sorted[it].key },
+                ByteArray(sorted.size) { sorted[it].value.kind.rawValue.toByte() },
+                ByteArray(sorted.size) { sorted[it].value.visibility.rawValue.toByte() },
+                IntArray(sorted.size) { index ->
+                    sorted[index].value.extensionReceiverType
+                        ?.let { receiverTypes.binarySearch(it.asString()) }
+                        ?: -1
+                },
+                receiverTypes
+            )
+        }
+
+        @JvmStatic
+        fun read(input: DataInput): SymbolTable {
+            val receiverTypes = Array(readCount(input)) { input.readUTF() }
+            val size = readCount(input)
+            val fqNames = Array(size) { "" }
+            val kinds = ByteArray(size)
+            val visibilities = ByteArray(size)
+            val receivers = IntArray(size)
+            for (i in 0 until size) {
+                fqNames[i] = input.readUTF()
+                kinds[i] = input.readByte()
+                visibilities[i] = input.readByte()
+                receivers[i] = input.readInt()
+                if (receivers[i] < -1 || receivers[i] >= receiverTypes.size) {
+                    throw IOException("Invalid receiver type ${receivers[i]}")
+                }
+            }
+            return SymbolTable(
+                Array(size) { FqName(fqNames[it]).shortName().asString() },
+                fqNames,
+                kinds,
+                visibilities,
+                receivers,
+                receiverTypes
+            )
+        }
+
+        /**
+         * Reads the size of an array, a corrupt file must fail with an [IOException] instead of
+         * allocating a huge array.
+         */
+        private fun readCount(input: DataInput): Int {
+            val count = input.readInt()
+            if (count < 0 || count > MAX_COUNT) {
+                throw IOException("Invalid count $count")
+            }
+            return count
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.tyron.kotlin_completion.util
+
+import com.google.common.hash.HashCode
+import com.google.common.hash.Hashing
+import org.jetbrains.kotlin.com.intellij.psi.PsiElement
+import org.jetbrains.kotlin.lexer.KtToken
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.psi.KtArrayAccessExpression
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtDestructuringDeclaration
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtForExpression
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtOperationReferenceExpression
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtPropertyDelegate
+import org.jetbrains.kotlin.psi.KtSimpleNameExpression
+import org.jetbrains.kotlin.psi.KtTreeVisitorVoid
+import org.jetbrains.kotlin.types.expressions.OperatorConventions
+import java.nio.charset.StandardCharsets
+
+/**
+ * What the analysis of other source files can observe of a Kotlin file, computed from its PSI
+ * without analyzing it.
+ *
+ * [apiHash] only covers the non private declarations with their bodies stripped, unless the
+ * type of a declaration is inferred from its body. Editing a function body therefore leaves the
+ * hash unchanged and the files depending on it don't need to be analyzed again.
+ */
+class FileSignature private constructor(
+    val contentHash: HashCode,
+    val apiHash: HashCode,
+    val packageName: String,
+    /** Simple names of the top level declarations */
+    val declaredNames: Set<String>,
+    /**
+     * Every simple name referenced in the file, including the names of the operator and
+     * convention functions its expressions may resolve to, such as `plus` for `a + b`
+     */
+    val referencedNames: Set<String>
+) {
+
+    /**
+     * Whether analyzing this file may directly depend on the declarations of the other file.
+     * This is an approximation based on names, it may report dependencies that do not exist but
+     * never misses one.
+     */
+    fun mayDependOn(other: FileSignature): Boolean {
+        if (packageName == other.packageName) {
+            return true
+        }
+        return other.declaredNames.any { it in referencedNames }
+    }
+
+    companion object {
+
+        /**
+         * Fingerprint of a file that does not depend on any other source file
+         */
+        @JvmField
+        val NO_DEPENDENCIES: HashCode = HashCode.fromLong(0)
+
+        @JvmStatic
+        fun hashContent(content: String): HashCode =
+            Hashing.murmur3_128().hashString(content, StandardCharsets.UTF_8)
+
+        @JvmStatic
+        fun of(file: KtFile): FileSignature {
+            val api = StringBuilder()
+            api.append(file.packageFqName.asString()).append('\n')
+            file.importList?.let { api.append(it.text).append('\n') }
+            for (declaration in file.declarations) {
+                appendApi(declaration, api)
+            }
+
+            val referencedNames = HashSet<String>()
+            file.accept(object : KtTreeVisitorVoid() {
+                override fun visitSimpleNameExpression(expression: KtSimpleNameExpression) {
+                    super.visitSimpleNameExpression(expression)
+                    referencedNames.add(expression.getReferencedName())
+                    if (expression is KtOperationReferenceExpression) {
+                        // the referenced name of an operator is its token, such as "+"
+                        expression.operationSignTokenType
+                            ?.let { addOperatorNames(it, referencedNames) }
+                    }
+                }
+
+                override fun visitCallExpression(expression: KtCallExpression) {
+                    super.visitCallExpression(expression)
+                    // the callee may be a value with an invoke operator
+                    referencedNames.add("invoke")
+                }
+
+                override fun visitArrayAccessExpression(expression: KtArrayAccessExpression) {
+                    super.visitArrayAccessExpression(expression)
+                    referencedNames.add("get")
+                    referencedNames.add("set")
+                }
+
+                override fun visitPropertyDelegate(delegate: KtPropertyDelegate) {
+                    super.visitPropertyDelegate(delegate)
+                    referencedNames.add("getValue")
+                    referencedNames.add("setValue")
+                    referencedNames.add("provideDelegate")
+                }
+
+                override fun visitForExpression(expression: KtForExpression) {
+                    super.visitForExpression(expression)
+                    referencedNames.add("iterator")
+                    referencedNames.add("hasNext")
+                    referencedNames.add("next")
+                }
+
+                override fun visitDestructuringDeclaration(
+                    multiDeclaration: KtDestructuringDeclaration
+                ) {
+                    super.visitDestructuringDeclaration(multiDeclaration)
+                    for (i in 1..multiDeclaration.entries.size) {
+                        referencedNames.add("component$i")
+                    }
+                }
+            })
+
+            return FileSignature(
+                hashContent(file.text),
+                hashContent(api.toString()),
+                file.packageFqName.asString(),
+                file.declarations.mapNotNullTo(HashSet()) { it.name },
+                referencedNames
+            )
+        }
+
+        /**
+         * Adds the names of the functions an operator may resolve to. A token can be both
+         * unary and binary, and `a += b` may call either `plusAssign` or `plus`, so every
+         * candidate is added.
+         */
+        private fun addOperatorNames(token: KtToken, names: MutableSet<String>) {
+            OperatorConventions.UNARY_OPERATION_NAMES[token]?.let { names.add(it.asString()) }
+            OperatorConventions.BINARY_OPERATION_NAMES[token]?.let { names.add(it.asString()) }
+            OperatorConventions.ASSIGNMENT_OPERATIONS[token]?.let { names.add(it.asString()) }
+            OperatorConventions.ASSIGNMENT_OPERATION_COUNTERPARTS[token]?.let { counterpart ->
+                OperatorConventions.BINARY_OPERATION_NAMES[counterpart]
+                    ?.let { names.add(it.asString()) }
+            }
+            if (token in OperatorConventions.COMPARISON_OPERATIONS) {
+                names.add("compareTo")
+            }
+            if (token in OperatorConventions.EQUALS_OPERATIONS) {
+                names.add("equals")
+            }
+            if (token in OperatorConventions.IN_OPERATIONS) {
+                names.add("contains")
+            }
+        }
+
+        /**
+         * Computes a hash of the API of the files [file] depends on, directly or through the
+         * files it depends on, since a change in the API of an indirect dependency can change
+         * the inferred types the file sees. Analyzing a file again is only needed when its
+         * content or this fingerprint changes.
+         *
+         * @param signatures the signatures of every file [file] may depend on, by their key
+         */
+        @JvmStatic
+        fun <K : Comparable<K>> dependencyFingerprint(
+            file: K,
+            signatures: Map<K, FileSignature>
+        ): HashCode {
+            val dependencies = sortedSetOf<K>()
+            val queue = ArrayDeque<K>()
+            queue.add(file)
+            while (queue.isNotEmpty()) {
+                val signature = signatures[queue.removeFirst()] ?: continue
+                for ((key, other) in signatures) {
+                    if (key != file && key !in dependencies && signature.mayDependOn(other)) {
+                        dependencies.add(key)
+                        queue.add(key)
+                    }
+                }
+            }
+            if (dependencies.isEmpty()) {
+                return NO_DEPENDENCIES
+            }
+            return Hashing.combineOrdered(dependencies.flatMap { key ->
+                listOf(hashContent(key.toString()), signatures.getValue(key).apiHash)
+            })
+        }
+
+        private fun appendApi(declaration: KtDeclaration, api: StringBuilder) {
+            if (declaration.hasModifier(KtTokens.PRIVATE_KEYWORD)) {
+                return
+            }
+            when (declaration) {
+                is KtClassOrObject -> {
+                    api.append(textBefore(declaration, declaration.body)).append('{')
+                    declaration.declarations.forEach { appendApi(it, api) }
+                    api.append('}')
+                }
+                is KtNamedFunction -> {
+                    val typed = declaration.hasBlockBody() || declaration.typeReference != null
+                    api.append(textBefore(declaration,
+                        if (typed) declaration.bodyExpression else null))
+                }
+                is KtProperty -> {
+                    val implementation = if (declaration.typeReference == null) {
+                        null
+                    } else {
+                        listOfNotNull(declaration.initializer, declaration.delegate,
+                            declaration.getter, declaration.setter)
+                            .minByOrNull { it.textRange.startOffset }
+                    }
+                    api.append(textBefore(declaration, implementation))
+                }
+                else -> api.append(declaration.text)
+            }
+            api.append('\n')
+        }
+
+        /**
+         * @return the text of the declaration up to the given child, without whitespace so
+         * formatting changes do not change the hash
+         */
+        private fun textBefore(declaration: KtDeclaration, child: PsiElement?): String {
+            val text = declaration.text
+            val end = if (child == null) {
+                text.length
+            } else {
+                child.textRange.startOffset - declaration.textRange.startOffset
+            }
+            return text.substring(0, end.coerceIn(0, text.length)).filterNot { it.isWhitespace() }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tyron.kotlin_completion.index
+
+import org.jetbrains.kotlin.name.FqName
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class SymbolIndexTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun testSaveAndLoad() {
+        val storage = File(folder.root, "symbols.idx")
+        val source = folder.newFile("Main.kt")
+        SymbolIndex(storage).updateFile(source.absolutePath, listOf(
+            function("com.example.main"),
+            function("com.example.lines", "kotlin.CharSequence")
+        ))
+
+        val restored = SymbolIndex(storage)
+        assertEquals(listOf("com.example.main"), query(restored, "ma"))
+        assertEquals(listOf("com.example.lines"),
+            restored.query("li", FqName("kotlin.CharSequence")).map { it.fqName.asString() })
+    }
+
+    @Test
+    fun testRemovedFileIsNotRestored() {
+        val storage = File(folder.root, "symbols.idx")
+        val source = folder.newFile("Main.kt")
+        val index = SymbolIndex(storage)
+        index.updateFile(source.absolutePath, listOf(function("com.example.main")))
+        index.removeFile(source.absolutePath)
+
+        assertEquals(emptyList<String>(), query(SymbolIndex(storage), ""))
+    }
+
+    @Test
+    fun testChangedFileIsNotRestored() {
+        val storage = File(folder.root, "symbols.idx")
+        val source = folder.newFile("Main.kt")
+        SymbolIndex(storage).updateFile(source.absolutePath, listOf(function("com.example.main")))
+        source.setLastModified(source.lastModified() - 10_000)
+
+        assertEquals(emptyList<String>(), query(SymbolIndex(storage), ""))
+    }
+
+    @Test
+    fun testCorruptIndexIsDiscarded() {
+        val storage = File(folder.root, "symbols.idx")
+        val source = folder.newFile("Main.kt")
+        SymbolIndex(storage).updateFile(source.absolutePath, listOf(function("com.example.main")))
+        val sources = File(folder.root, "symbols.idx.sources")
+        val bytes = sources.readBytes()
+        // keep the header, overwrite the symbol counts with garbage
+        for (i in 12 until bytes.size) {
+            bytes[i] = 0x7F
+        }
+        sources.writeBytes(bytes)
+
+        assertEquals(emptyList<String>(), query(SymbolIndex(storage), ""))
+        assertFalse(sources.exists())
+    }
+
+    private fun function(fqName: String, receiverType: String? = null) = Symbol(
+        FqName(fqName), Symbol.Kind.FUNCTION, Symbol.Visibility.PUBLIC,
+        receiverType?.let(::FqName)
+    )
+
+    private fun query(index: SymbolIndex, prefix: String): List<String> =
+        index.query(prefix).map { it.fqName.asString() }
+}
@@ -0,0 +1,64 @@
+package com.tyron.kotlin_completion.index
+
+import org.jetbrains.kotlin.name.FqName
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class SymbolTableTest {
+
+    private val table = SymbolTable.build(
+        listOf(
+            function("kotlin.collections.listOf"),
+            function("kotlin.collections.listOfNotNull"),
+            function("kotlin.text.lines", "kotlin.CharSequence"),
+            function("kotlin.text.lineSequence", "kotlin.CharSequence"),
+            Symbol(FqName("kotlin.collections.List"), Symbol.Kind.INTERFACE,
+                Symbol.Visibility.PUBLIC, null)
+        )
+    )
+
+    @Test
+    fun testPrefixQuery() {
+        assertEquals(listOf("kotlin.collections.listOf", "kotlin.collections.listOfNotNull"),
+            query(table, "list", null))
+        assertEquals(listOf("kotlin.collections.List"), query(table, "L", null))
+        assertEquals(emptyList<String>(), query(table, "line", null))
+    }
+
+    @Test
+    fun testReceiverTypeQuery() {
+        assertEquals(listOf("kotlin.text.lineSequence", "kotlin.text.lines"),
+            query(table, "line", "kotlin.CharSequence"))
+        assertEquals(emptyList<String>(), query(table, "", "kotlin.String"))
+    }
+
+    @Test
+    fun testReadWrite() {
+        val bytes = ByteArrayOutputStream()
+        table.write(DataOutputStream(bytes))
+        val read = SymbolTable.read(DataInputStream(ByteArrayInputStream(bytes.toByteArray())))
+
+        assertEquals(table.size, read.size)
+        assertEquals(query(table, "", null), query(read, "", null))
+        assertEquals(query(table, "line", "kotlin.CharSequence"),
+            query(read, "line", "kotlin.CharSequence"))
+    }
+
+    private fun function(fqName: String, receiverType: String? = null) = Symbol(
+        FqName(fqName), Symbol.Kind.FUNCTION, Symbol.Visibility.PUBLIC,
+        receiverType?.let(::FqName)
+    )
+
+    private fun query(table: SymbolTable, prefix: String, receiverType: String?): List<String> {
+        val result = ArrayList<String>()
+        table.query(prefix, receiverType) {
+            result.add(it.fqName.asString())
+            true
+        }
+        return result
+    }
+}
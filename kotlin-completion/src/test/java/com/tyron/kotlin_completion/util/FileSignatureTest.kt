@@ -0,0 +1,106 @@
+package com.tyron.kotlin_completion.util
+
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.com.intellij.openapi.Disposable
+import org.jetbrains.kotlin.com.intellij.openapi.util.Disposer
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class FileSignatureTest {
+
+    private lateinit var disposable: Disposable
+    private lateinit var factory: KtPsiFactory
+
+    @Before
+    fun setup() {
+        disposable = Disposer.newDisposable()
+        val configuration = CompilerConfiguration()
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
+        val environment = KotlinCoreEnvironment.createForProduction(
+            disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+        factory = KtPsiFactory(environment.project)
+    }
+
+    @After
+    fun tearDown() {
+        Disposer.dispose(disposable)
+    }
+
+    private fun signature(text: String) = FileSignature.of(factory.createFile("Test.kt", text))
+
+    @Test
+    fun testBodyChangeKeepsApiHash() {
+        val first = signature("package a\nfun foo(): Int { return 1 }")
+        val second = signature("package a\nfun foo(): Int {\n    return 2\n}")
+
+        assertNotEquals(first.contentHash, second.contentHash)
+        assertEquals(first.apiHash, second.apiHash)
+    }
+
+    @Test
+    fun testInferredTypeChangesApiHash() {
+        assertNotEquals(signature("package a\nfun foo() = 1").apiHash,
+            signature("package a\nfun foo() = \"\"").apiHash)
+    }
+
+    @Test
+    fun testOperatorCallsDependOnDeclarations() {
+        fun usage(body: String) = signature("package use\nfun use(a: Foo, b: Foo) { $body }")
+
+        assertTrue(usage("a + b").mayDependOn(operator("plus")))
+        assertTrue(usage("a += b").mayDependOn(operator("plusAssign")))
+        assertTrue(usage("a += b").mayDependOn(operator("plus")))
+        assertTrue(usage("a[0]").mayDependOn(operator("get")))
+        assertTrue(usage("a[0] = b").mayDependOn(operator("set")))
+        assertTrue(usage("a in b").mayDependOn(operator("contains")))
+        assertTrue(usage("a < b").mayDependOn(operator("compareTo")))
+        assertTrue(usage("-a").mayDependOn(operator("unaryMinus")))
+        assertTrue(usage("a()").mayDependOn(operator("invoke")))
+        assertTrue(usage("for (x in a) {}").mayDependOn(operator("iterator")))
+        assertTrue(usage("val (x, y) = a").mayDependOn(operator("component2")))
+        assertTrue(usage("val x by a").mayDependOn(operator("getValue")))
+
+        assertFalse(usage("a + b").mayDependOn(operator("minus")))
+    }
+
+    @Test
+    fun testFingerprintIsTransitive() {
+        val signatures = mutableMapOf(
+            "A.kt" to signature("package a\nfun a() = b.b()"),
+            "B.kt" to signature("package b\nfun b() = c.c()"),
+            "C.kt" to signature("package c\nfun c() = 1"),
+            "D.kt" to signature("package d\nfun d() = 1")
+        )
+        val before = FileSignature.dependencyFingerprint("A.kt", signatures)
+
+        signatures["D.kt"] = signature("package d\nfun d() = \"\"")
+        assertEquals(before, FileSignature.dependencyFingerprint("A.kt", signatures))
+
+        signatures["C.kt"] = signature("package c\nfun c() = \"\"")
+        assertNotEquals(before, FileSignature.dependencyFingerprint("A.kt", signatures))
+    }
+
+    @Test
+    fun testNoDependencies() {
+        val signatures = mapOf(
+            "A.kt" to signature("package a\nfun a() = 1"),
+            "B.kt" to signature("package b\nfun b() = 1")
+        )
+
+        assertEquals(FileSignature.NO_DEPENDENCIES,
+            FileSignature.dependencyFingerprint("A.kt", signatures))
+    }
+
+    private fun operator(name: String) =
+        signature("package ops\noperator fun Foo.$name(vararg args: Any?) = this")
+}
@@ -289,10 +289,12 @@ public class ViewManager implements ProteusView.Manager {
     }
 
 
+    /**
+     * Applies the new value to the current view. Unlike {@link #removeAttribute(String)} the view
+     * is not inflated again, setting an attribute overrides the value it had before.
+     */
     @Override
     public void updateAttribute(String name, Value value) {
-        removeAttribute(name);
-
         if (value.isPrimitive()) {
             Value result = AttributeProcessor.staticPreCompile(value.getAsPrimitive(), context, context.getFunctionManager());
             if (result != null) {
@@ -303,6 +305,9 @@ public class ViewManager implements ProteusView.Manager {
         boolean isExtra = !ProteusHelper.isAttributeFromView((ProteusView) view, name, attributeId);
         ViewTypeParser<View> parser = ProteusHelper.getViewTypeParser((ProteusView) view, name, isExtra);
         if (this.parser.equals(parser)) {
+            if (layout.extras != null) {
+                layout.extras.remove(name);
+            }
             if (layout.attributes == null) {
                 layout.attributes = new ArrayList<>();
             }
@@ -310,6 +315,9 @@ public class ViewManager implements ProteusView.Manager {
             layout.attributes.add(new Layout.Attribute(attributeId, value));
             parser.handleAttribute((View) view.getParent(), view, attributeId, value);
         } else {
+            if (layout.attributes != null) {
+                layout.attributes.remove(new Layout.Attribute(attributeId, null));
+            }
             if (layout.extras == null) {
                 layout.extras = new ObjectValue();
             }
@@ -224,6 +224,10 @@ public class Style extends Value {
 
     @Override
     public Value copy() {
-        return new Style(this.name, this.parent);
+        Style copy = new Style(this.name, this.parent);
+        for (Map.Entry<String, Value> entry : values.entrySet()) {
+            copy.values.add(entry.getKey(), entry.getValue().copy());
+        }
+        return copy;
     }
 }
@@ -0,0 +1,187 @@
+package com.tyron.layoutpreview.resource;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.flipkart.android.proteus.value.Value;
+import com.tyron.code.event.EventManager;
+import com.tyron.completion.xml.v2.events.XmlResourceChangeEvent;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the values parsed from each resource file by {@link ResourceValueParser}, shared by
+ * every preview so that opening another layout or recreating the preview does not parse the
+ * resources of the project and of the framework again.
+ *
+ * Files are keyed by their path, the configuration of a value is therefore part of the key
+ * through the name of its resource folder. An entry is dropped when an
+ * {@link XmlResourceChangeEvent} is received for its file, and parsed again when the size or
+ * modification time of the file changed.
+ */
+public class ResourceValueCache {
+
+    private static final String TAG = "ResourceValueCache";
+
+    /**
+     * A value parsed from a resource file, the name does not include the namespace prefix
+     * since the same file may be parsed with different prefixes.
+     */
+    public static class Entry {
+
+        public enum Kind {
+            STRING,
+            ITEM,
+            STYLE,
+            COLOR,
+            COLOR_STATE_LIST,
+            DIMENSION
+        }
+
+        private final Kind mKind;
+        private final String mName;
+        private final Value mValue;
+
+        public Entry(@NonNull Kind kind, @NonNull String name, @NonNull Value value) {
+            mKind = kind;
+            mName = name;
+            mValue = value;
+        }
+
+        @NonNull
+        public Kind getKind() {
+            return mKind;
+        }
+
+        @NonNull
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Styles are mutable, e.g. the attributes of an {@code android:theme} are added to
+         * them, so every caller gets its own copy and the cached style is left untouched.
+         */
+        @NonNull
+        public Value getValue() {
+            if (mKind == Kind.STYLE) {
+                return mValue.copy();
+            }
+            return mValue;
+        }
+    }
+
+    public interface FileParser {
+
+        @NonNull
+        List<Entry> parse(@NonNull File file) throws IOException, XmlPullParserException;
+    }
+
+    private static final class CachedFile {
+
+        private final long mLastModified;
+        private final long mLength;
+        private final SoftReference<List<Entry>> mEntries;
+
+        private CachedFile(File file, List<Entry> entries) {
+            mLastModified = file.lastModified();
+            mLength = file.length();
+            mEntries = new SoftReference<>(entries);
+        }
+
+        @Nullable
+        private List<Entry> get(File file) {
+            if (mLastModified != file.lastModified() || mLength != file.length()) {
+                return null;
+            }
+            return mEntries.get();
+        }
+    }
+
+    private static volatile ResourceValueCache sInstance;
+
+    public static ResourceValueCache getInstance() {
+        if (sInstance == null) {
+            synchronized (ResourceValueCache.class) {
+                if (sInstance == null) {
+                    sInstance = new ResourceValueCache();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public static void setInstance(@Nullable ResourceValueCache cache) {
+        sInstance = cache;
+    }
+
+    private final Map<String, CachedFile> mFiles = new ConcurrentHashMap<>();
+    private final Set<EventManager> mSubscribed =
+            Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * Drops the entries of resource files as they change. Subscribing to the same event
+     * manager more than once has no effect.
+     */
+    public void subscribe(@NonNull EventManager eventManager) {
+        synchronized (mSubscribed) {
+            if (!mSubscribed.add(eventManager)) {
+                return;
+            }
+        }
+        eventManager.subscribeEvent(XmlResourceChangeEvent.class,
+                (event, unsubscribe) -> invalidate(event.getFile()));
+    }
+
+    /**
+     * Returns the values of the file, parsing it with the given parser if it has not been
+     * parsed yet or if it changed since.
+     */
+    @NonNull
+    public List<Entry> get(@NonNull File file, @NonNull FileParser parser)
+            throws IOException, XmlPullParserException {
+        String key = file.getAbsolutePath();
+        CachedFile cached = mFiles.get(key);
+        List<Entry> entries = cached == null ? null : cached.get(file);
+        if (entries != null) {
+            return entries;
+        }
+
+        entries = Collections.unmodifiableList(parser.parse(file));
+        mFiles.put(key, new CachedFile(file, entries));
+        return entries;
+    }
+
+    /**
+     * Drops the values of the file, or of every file inside it if it is a directory.
+     */
+    public void invalidate(@Nullable File file) {
+        if (file == null) {
+            return;
+        }
+        String path = file.getAbsolutePath();
+        if (mFiles.remove(path) == null) {
+            String directory = path + File.separator;
+            mFiles.keySet().removeIf(key -> key.startsWith(directory));
+        }
+        Log.d(TAG, "Invalidated " + path);
+    }
+
+    public void clear() {
+        mFiles.clear();
+    }
+}
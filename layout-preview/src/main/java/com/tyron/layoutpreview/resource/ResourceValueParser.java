@@ -26,6 +26,7 @@ import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.layoutpreview.convert.ConvertException;
 import com.tyron.layoutpreview.convert.XmlToJsonConverter;
 import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+import com.tyron.layoutpreview.resource.ResourceValueCache.Entry;
 import com.tyron.layoutpreview.util.XmlUtils;
 
 import org.xmlpull.v1.XmlPullParser;
@@ -40,6 +41,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -91,6 +93,8 @@ public class ResourceValueParser {
         }
     };
 
+    private final ResourceValueCache mCache = ResourceValueCache.getInstance();
+
     private ProteusContext mContext;
 
     public void setProteusContext(ProteusContext context) {
@@ -167,11 +171,11 @@ public class ResourceValueParser {
     }
 
     public void parse(File file, String namePrefix) throws IOException, XmlPullParserException {
-        parse(new InputStreamReader(new FileInputStream(file)), namePrefix);
+        apply(mCache.get(file, this::parseEntries), normalizePrefix(namePrefix));
     }
 
     public void parse(File file) throws IOException, XmlPullParserException {
-        parse(new InputStreamReader(new FileInputStream(file)), "");
+        parse(file, "");
     }
 
     public void parse(String contents) throws IOException, XmlPullParserException {
@@ -179,9 +183,63 @@ public class ResourceValueParser {
     }
 
     public void parse(Reader reader, String namePrefix) throws IOException, XmlPullParserException {
+        apply(parseEntries(reader), normalizePrefix(namePrefix));
+    }
+
+    private static String normalizePrefix(String namePrefix) {
         if (!namePrefix.isEmpty() && !namePrefix.endsWith(":")) {
-            namePrefix = namePrefix + ":";
+            return namePrefix + ":";
+        }
+        return namePrefix;
+    }
+
+    /**
+     * Adds the parsed values to the maps of the managers, the prefix is only added here since
+     * the parsed values of a file are cached regardless of the prefix it was parsed with.
+     */
+    private void apply(List<Entry> entries, String namePrefix) {
+        for (Entry entry : entries) {
+            String name = entry.getName();
+            Value value = entry.getValue();
+            switch (entry.getKind()) {
+                case STRING:
+                    if (!mStrings.containsKey(name)) {
+                        mStrings.put(namePrefix + name, value);
+                    }
+                    break;
+                case ITEM:
+                    mStrings.put(namePrefix + name, value);
+                    break;
+                case STYLE:
+                    if (!mStyles.containsKey(name)) {
+                        mStyles.put(namePrefix + name, (Style) value);
+                    }
+                    break;
+                case COLOR:
+                    if (!mColors.containsKey(name)) {
+                        mColors.put(namePrefix + name, value);
+                    }
+                    break;
+                case COLOR_STATE_LIST:
+                    mColors.put(name, value);
+                    break;
+                case DIMENSION:
+                    mDimensions.put(namePrefix + name, value);
+                    break;
+            }
         }
+    }
+
+    @NonNull
+    private List<Entry> parseEntries(@NonNull File file) throws IOException,
+            XmlPullParserException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file))) {
+            return parseEntries(reader);
+        }
+    }
+
+    @NonNull
+    private List<Entry> parseEntries(Reader reader) throws IOException, XmlPullParserException {
         XmlPullParser parser;
 
         parser = XmlPullParserFactory.newInstance().newPullParser();
@@ -189,6 +247,7 @@ public class ResourceValueParser {
 
         XmlUtils.advanceToRootNode(parser);
 
+        List<Entry> entries = new ArrayList<>();
         while (parser.next() != XmlPullParser.END_DOCUMENT) {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
                 continue;
@@ -198,19 +257,24 @@ public class ResourceValueParser {
                 String tag = parser.getName();
                 switch (tag) {
                     case "string":
-                        parseStringTag(parser, namePrefix);
+                        addEntry(entries, Entry.Kind.STRING,
+                                ResourceStringParser.parseStringXmlInternal(parser));
                         break;
                     case "item":
-                        parseItemTag(parser, namePrefix);
+                        addEntry(entries, Entry.Kind.ITEM,
+                                ResourceStringParser.parseItemString(parser));
                         break;
                     case "style":
-                        parseStyleTag(parser, namePrefix);
+                        addEntry(entries, Entry.Kind.STYLE,
+                                ResourceStyleParser.parseStyleTag(parser));
                         break;
                     case "color":
-                        parseColorTag(parser, namePrefix);
+                        addEntry(entries, Entry.Kind.COLOR,
+                                ResourceColorParser.parseColor(parser));
                         break;
                     case "dimen":
-                        parseDimension(parser, namePrefix);
+                        addEntry(entries, Entry.Kind.DIMENSION,
+                                ResourceDimensionParser.parseDimension(parser));
                         break;
                     default:
                         XmlUtils.skip(parser);
@@ -220,23 +284,46 @@ public class ResourceValueParser {
                 System.out.println(e);
             }
         }
+        return entries;
+    }
+
+    private static void addEntry(List<Entry> entries,
+                                 Entry.Kind kind,
+                                 @Nullable Pair<String, ? extends Value> pair) {
+        if (pair != null) {
+            entries.add(new Entry(kind, pair.first, pair.second));
+        }
     }
 
     private void parseColor(File[] children, String namePrefix) {
         for (File child : children) {
             try {
-                XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
-                parser.setInput(new InputStreamReader(new FileInputStream(child)));
-                XmlUtils.advanceToRootNode(parser);
-
-                parseColor(parser, child.getName(), namePrefix);
+                apply(mCache.get(child, this::parseColorEntries), namePrefix);
             } catch (XmlPullParserException | IOException e) {
                 // ignored
             }
         }
     }
-    private void parseColor(XmlPullParser parser, String fileName, String namePrefix) throws IOException,
+
+    @NonNull
+    private List<Entry> parseColorEntries(@NonNull File file) throws IOException,
             XmlPullParserException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file))) {
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setInput(reader);
+            XmlUtils.advanceToRootNode(parser);
+
+            Value value = parseColor(parser);
+            if (value == null) {
+                return Collections.emptyList();
+            }
+            String name = file.getName().replace(".xml", "");
+            return Collections.singletonList(new Entry(Entry.Kind.COLOR_STATE_LIST, name, value));
+        }
+    }
+
+    @Nullable
+    private Value parseColor(XmlPullParser parser) throws IOException, XmlPullParserException {
         XmlToJsonConverter converter = new XmlToJsonConverter();
         try {
             JsonObject jsonObjects = converter.convert(parser);
@@ -277,49 +364,11 @@ public class ResourceValueParser {
                     states[i] = temp;
                 }
 
-                Color.LazyStateList lazyStateList = Color.LazyStateList.valueOf(states, colors, alphas);
-                mColors.put(fileName.replace(".xml", ""), lazyStateList);
+                return Color.LazyStateList.valueOf(states, colors, alphas);
             }
         } catch (ConvertException e) {
             Log.e("ParseSelectorTag", "Unable to convert to json", e);
         }
-    }
-
-    private void parseDimension(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceDimensionParser.parseDimension(parser);
-        mDimensions.put(namePrefix + pair.first, pair.second);
-    }
-
-    private void parseStyleTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Style> pair = ResourceStyleParser.parseStyleTag(parser);
-        if (!mStyles.containsKey(pair.first)) {
-            mStyles.put(namePrefix + pair.first, pair.second);
-        }
-    }
-
-    private void parseStringTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceStringParser.parseStringXmlInternal(parser);
-        if (!mStrings.containsKey(pair.first)) {
-            mStrings.put(namePrefix + pair.first, pair.second);
-        }
-    }
-
-    private void parseColorTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceColorParser.parseColor(parser);
-        if (!mColors.containsKey(pair.first)) {
-            mColors.put(namePrefix + pair.first, pair.second);
-        }
-    }
-
-    private void parseItemTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceStringParser.parseItemString(parser);
-        if (pair != null) {
-            mStrings.put(namePrefix + pair.first, pair.second);
-        }
+        return null;
     }
 }
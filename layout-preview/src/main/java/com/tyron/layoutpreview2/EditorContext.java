@@ -27,6 +27,11 @@ public class EditorContext extends ContextWrapper {
 
     private final Map<String, String> mEditorViewMap = new HashMap<>();
     private final Set<AttributeApplier> mAttributeAppliers = new HashSet<>();
+    /**
+     * Shared by the view managers of every inflated view, created again when an applier is
+     * registered
+     */
+    private ImmutableSet<AttributeApplier> mAttributeAppliersCopy;
 
     public EditorContext(Context base) {
         super(base);
@@ -59,10 +64,14 @@ public class EditorContext extends ContextWrapper {
             throw new IllegalArgumentException("Attribute applier already registered.");
         }
         mAttributeAppliers.add(applier);
+        mAttributeAppliersCopy = null;
     }
 
     public ImmutableSet<AttributeApplier> getAttributeAppliers() {
-        return ImmutableSet.copyOf(mAttributeAppliers);
+        if (mAttributeAppliersCopy == null) {
+            mAttributeAppliersCopy = ImmutableSet.copyOf(mAttributeAppliers);
+        }
+        return mAttributeAppliersCopy;
     }
 
     @Nullable
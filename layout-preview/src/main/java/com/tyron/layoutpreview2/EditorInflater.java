@@ -40,10 +40,37 @@ public class EditorInflater {
 
     private final EditorContext mContext;
 
+    private EditorLayoutUpdater mLayoutUpdater;
+
     public EditorInflater(EditorContext context) {
         mContext = context;
     }
 
+    /**
+     * Used by the preview while the layout is being edited. The first call inflates the layout,
+     * the next calls update the views returned by the previous call to match the document and
+     * only touch the views whose element changed.
+     *
+     * @return the root view of the layout, a new view if the root had to be created again
+     * @see EditorLayoutUpdater
+     */
+    @NonNull
+    public View update(@NonNull DOMDocument document, @Nullable ViewGroup rootView) {
+        if (mLayoutUpdater == null) {
+            mLayoutUpdater = new EditorLayoutUpdater(this);
+        }
+        return mLayoutUpdater.update(document, rootView);
+    }
+
+    /**
+     * @return the statistics of the last call to {@link #update(DOMDocument, ViewGroup)}, or
+     * null if the layout has not been updated yet
+     */
+    @Nullable
+    public EditorLayoutUpdater.UpdateStats getLastUpdateStats() {
+        return mLayoutUpdater == null ? null : mLayoutUpdater.getLastStats();
+    }
+
     public View inflate(@NonNull DOMDocument document,
                         @Nullable ViewGroup rootView,
                         boolean attachToRoot) {
@@ -123,17 +150,28 @@ public class EditorInflater {
             } else if (SdkConstants.VIEW_MERGE.equals(tag)) {
                 throw new UnsupportedOperationException("TODO");
             } else {
-                final EditorView view = createViewFromTag(parent, element, context);
-                final ViewGroup viewGroup = (ViewGroup) parent;
-                final ViewGroup.LayoutParams params = ViewGroupUtils.generateDefaultLayoutParams(viewGroup);
-                rInflateChildren(element, view.getAsView(), true);
-                viewGroup.addView(view.getAsView(), params);
-
-                view.getViewManager().updateAttributes(element.getAttributeNodes());
+                inflateChild(element, (ViewGroup) parent, -1);
             }
         }
     }
 
+    /**
+     * Inflates the view of an element with its children and adds it to the parent.
+     *
+     * @param index the position at which to add the view, or -1 to add it last
+     * @return the inflated view
+     */
+    EditorView inflateChild(@NonNull DOMElement element, @NonNull ViewGroup parent, int index) {
+        // created with the editor's context like the root, whatever context the parent has
+        final EditorView view = createViewFromTag(parent, element, mContext);
+        final ViewGroup.LayoutParams params = ViewGroupUtils.generateDefaultLayoutParams(parent);
+        rInflateChildren(element, view.getAsView(), true);
+        parent.addView(view.getAsView(), index, params);
+
+        view.getViewManager().updateAttributes(element.getAttributeNodes());
+        return view;
+    }
+
 
     public EditorView createViewFromTag(@Nullable View parent,
                                   @NonNull DOMElement element,
@@ -230,7 +268,8 @@ public class EditorInflater {
             final View view = constructor.newInstance((Context) args[0]);
 
             if (view instanceof EditorView) {
-                final ViewManagerImpl viewManager = new ViewManagerImpl(view);
+                final ViewManagerImpl viewManager =
+                        new ViewManagerImpl(view, mContext.getAttributeAppliers());
                 ((EditorView) view).setViewManager(viewManager);
             } else {
                 throw new UnsupportedOperationException("TODO: Wrap unknown views");
@@ -0,0 +1,298 @@
+package com.tyron.layoutpreview2;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.builder.compiler.manifest.SdkConstants;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.layoutpreview2.view.EditorView;
+import com.tyron.xml.completion.util.DOMUtils;
+
+import org.eclipse.lemminx.dom.DOMAttr;
+import org.eclipse.lemminx.dom.DOMDocument;
+import org.eclipse.lemminx.dom.DOMElement;
+import org.eclipse.lemminx.dom.DOMNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the views inflated from a layout in sync with its document while it is being edited.
+ *
+ * Instead of inflating the whole layout again, the new document is compared with the previous
+ * one and only the views whose element changed are touched. Views whose attributes changed are
+ * updated in place, while views whose tag changed or that lost an attribute are created again
+ * along with their children.
+ */
+public class EditorLayoutUpdater {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(EditorLayoutUpdater.class);
+
+    /**
+     * How many views an update created, updated and left untouched, and how long it took.
+     */
+    public static class UpdateStats {
+
+        private int mRecreated;
+        private int mUpdated;
+        private int mUnchanged;
+        private long mDurationNanos;
+
+        public int getRecreatedCount() {
+            return mRecreated;
+        }
+
+        public int getUpdatedCount() {
+            return mUpdated;
+        }
+
+        public int getUnchangedCount() {
+            return mUnchanged;
+        }
+
+        public long getDurationNanos() {
+            return mDurationNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "UpdateStats{" + "recreated=" + mRecreated + ", updated=" + mUpdated +
+                   ", unchanged=" + mUnchanged + ", duration=" + mDurationNanos / 1_000_000.0 +
+                   "ms}";
+        }
+    }
+
+    private final EditorInflater mInflater;
+
+    private DOMElement mRootElement;
+    private View mRootView;
+    private UpdateStats mLastStats;
+
+    public EditorLayoutUpdater(@NonNull EditorInflater inflater) {
+        mInflater = inflater;
+    }
+
+    /**
+     * Updates the views to match the document, inflating them if this is the first update.
+     *
+     * @param document the current version of the layout
+     * @param parent   the view the layout params of the root are generated from, may be null
+     * @return the root view of the layout, a new view if the root has been created again
+     */
+    @NonNull
+    public View update(@NonNull DOMDocument document, @Nullable ViewGroup parent) {
+        long start = System.nanoTime();
+        UpdateStats stats = new UpdateStats();
+
+        DOMElement rootElement = getRootElement(document);
+        if (mRootView == null || mRootElement == null ||
+            !update(mRootView, mRootElement, rootElement, stats)) {
+            mRootView = mInflater.inflate(document, parent, false);
+            stats.mRecreated += countViews(mRootView);
+        }
+        mRootElement = rootElement;
+
+        stats.mDurationNanos = System.nanoTime() - start;
+        mLastStats = stats;
+        sLogger.fine("Layout updated: " + stats);
+        return mRootView;
+    }
+
+    /**
+     * @return the statistics of the last update, or null if no update has been done
+     */
+    @Nullable
+    public UpdateStats getLastStats() {
+        return mLastStats;
+    }
+
+    /**
+     * Forgets the previous document so that the next update inflates the whole layout.
+     */
+    public void reset() {
+        mRootElement = null;
+        mRootView = null;
+    }
+
+    /**
+     * Updates a view and its children from the previous version of its element to the new one.
+     *
+     * @return false if the view could not be updated and needs to be created again
+     */
+    private boolean update(@NonNull View view,
+                           @NonNull DOMElement oldElement,
+                           @NonNull DOMElement newElement,
+                           @NonNull UpdateStats stats) {
+        if (!(view instanceof EditorView) || !isSameView(oldElement, newElement)) {
+            return false;
+        }
+
+        List<DOMElement> oldChildren = getChildElements(oldElement);
+        List<DOMElement> newChildren = getChildElements(newElement);
+        ViewGroup viewGroup = null;
+        if (!oldChildren.isEmpty() || !newChildren.isEmpty()) {
+            if (!(view instanceof ViewGroup)) {
+                return false;
+            }
+            viewGroup = (ViewGroup) view;
+            if (viewGroup.getChildCount() != oldChildren.size()) {
+                // the view has children that were not inflated from the document
+                return false;
+            }
+        }
+
+        // the attributes are updated before the children since it is the last step that may
+        // fail, the children of a view that is created again must not be counted twice
+        boolean unchanged = attributesEqual(oldElement, newElement);
+        if (!unchanged && !((EditorView) view).getViewManager()
+                .updateChangedAttributes(newElement.getAttributeNodes())) {
+            return false;
+        }
+        if (viewGroup != null) {
+            updateChildren(viewGroup, oldChildren, newChildren, stats);
+        }
+
+        if (unchanged) {
+            stats.mUnchanged++;
+        } else {
+            stats.mUpdated++;
+        }
+        return true;
+    }
+
+    /**
+     * Matches the children that did not move, those at the start and at the end of the list,
+     * and creates the views of the elements in between again. Inserting or removing an element
+     * therefore only creates the views of that element.
+     */
+    private void updateChildren(@NonNull ViewGroup parent,
+                                @NonNull List<DOMElement> oldChildren,
+                                @NonNull List<DOMElement> newChildren,
+                                @NonNull UpdateStats stats) {
+        int oldSize = oldChildren.size();
+        int newSize = newChildren.size();
+        int min = Math.min(oldSize, newSize);
+
+        int prefix = 0;
+        while (prefix < min && isSameView(oldChildren.get(prefix), newChildren.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < min - prefix &&
+               isSameView(oldChildren.get(oldSize - 1 - suffix),
+                       newChildren.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+
+        // the views matched at the end of the list, collected before their index changes
+        List<View> suffixViews = new ArrayList<>(suffix);
+        for (int i = oldSize - suffix; i < oldSize; i++) {
+            suffixViews.add(parent.getChildAt(i));
+        }
+
+        for (int i = oldSize - suffix - 1; i >= prefix; i--) {
+            parent.removeViewAt(i);
+        }
+        for (int i = prefix; i < newSize - suffix; i++) {
+            EditorView view = mInflater.inflateChild(newChildren.get(i), parent, i);
+            stats.mRecreated += countViews(view.getAsView());
+        }
+
+        for (int i = 0; i < prefix; i++) {
+            updateChild(parent, i, oldChildren.get(i), newChildren.get(i), stats);
+        }
+        for (int i = 0; i < suffix; i++) {
+            int index = parent.indexOfChild(suffixViews.get(i));
+            updateChild(parent, index, oldChildren.get(oldSize - suffix + i),
+                    newChildren.get(newSize - suffix + i), stats);
+        }
+    }
+
+    private void updateChild(@NonNull ViewGroup parent,
+                             int index,
+                             @NonNull DOMElement oldElement,
+                             @NonNull DOMElement newElement,
+                             @NonNull UpdateStats stats) {
+        if (!update(parent.getChildAt(index), oldElement, newElement, stats)) {
+            parent.removeViewAt(index);
+            EditorView view = mInflater.inflateChild(newElement, parent, index);
+            stats.mRecreated += countViews(view.getAsView());
+        }
+    }
+
+    @NonNull
+    private static DOMElement getRootElement(@NonNull DOMDocument document) {
+        List<DOMNode> roots = DOMUtils.getRootElements(document);
+        if (roots.size() != 1 || !(roots.get(0) instanceof DOMElement)) {
+            throw new InflateException("Document must have exactly one root element.");
+        }
+        return (DOMElement) roots.get(0);
+    }
+
+    @NonNull
+    private static List<DOMElement> getChildElements(@NonNull DOMElement element) {
+        List<DOMNode> children = element.getChildren();
+        if (children == null || children.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<DOMElement> elements = new ArrayList<>(children.size());
+        for (DOMNode child : children) {
+            if (child instanceof DOMElement) {
+                elements.add((DOMElement) child);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * @return whether both elements are inflated to the same class of view
+     */
+    private static boolean isSameView(@NonNull DOMElement oldElement,
+                                      @NonNull DOMElement newElement) {
+        String tag = oldElement.getTagName();
+        if (!Objects.equals(tag, newElement.getTagName())) {
+            return false;
+        }
+        return !SdkConstants.VIEW_TAG.equals(tag) ||
+               Objects.equals(oldElement.getAttributeNS(null, "class"),
+                       newElement.getAttributeNS(null, "class"));
+    }
+
+    private static boolean attributesEqual(@NonNull DOMElement oldElement,
+                                           @NonNull DOMElement newElement) {
+        List<DOMAttr> oldAttrs = oldElement.getAttributeNodes();
+        List<DOMAttr> newAttrs = newElement.getAttributeNodes();
+        int oldSize = oldAttrs == null ? 0 : oldAttrs.size();
+        int newSize = newAttrs == null ? 0 : newAttrs.size();
+        if (oldSize != newSize) {
+            return false;
+        }
+        for (int i = 0; i < oldSize; i++) {
+            DOMAttr oldAttr = oldAttrs.get(i);
+            DOMAttr newAttr = newAttrs.get(i);
+            if (!Objects.equals(oldAttr.getName(), newAttr.getName()) ||
+                !Objects.equals(oldAttr.getValue(), newAttr.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countViews(@NonNull View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup viewGroup = (ViewGroup) view;
+            for (int i = 0; i < viewGroup.getChildCount(); i++) {
+                count += countViews(viewGroup.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
@@ -26,4 +26,13 @@ public interface ViewManager {
      * @param attrs the attributes
      */
     void updateAttributes(@NonNull List<DOMAttr> attrs);
+
+    /**
+     * Applies only the attributes whose value differs from the last update. Attributes cannot be
+     * reset to their default value, so nothing is applied if an attribute has been removed.
+     *
+     * @param attrs all the attributes of the view
+     * @return false if an attribute has been removed and the view should be created again
+     */
+    boolean updateChangedAttributes(@NonNull List<DOMAttr> attrs);
 }
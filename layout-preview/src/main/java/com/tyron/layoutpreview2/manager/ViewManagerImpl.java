@@ -3,7 +3,6 @@ package com.tyron.layoutpreview2.manager;
 import android.view.View;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.VisibleForTesting;
 
 import com.google.common.collect.ImmutableSet;
 import com.tyron.layoutpreview2.EditorContext;
@@ -12,18 +11,36 @@ import com.tyron.layoutpreview2.attr.AttributeApplier;
 
 import org.eclipse.lemminx.dom.DOMAttr;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * The manager of an inflated view. One is created for every view, so it only keeps what is
+ * needed to find the changed attributes, the appliers are shared by every manager of the editor.
+ */
 public class ViewManagerImpl implements ViewManager {
 
     private final View mView;
 
-    private final Set<DOMAttr> mAppliedAttrs = new HashSet<>();
+    private final ImmutableSet<AttributeApplier> mAttributeAppliers;
 
-    public ViewManagerImpl(@NonNull View view) {
+    /**
+     * The values of the applied attributes by qualified name, used to find the attributes that
+     * changed between updates
+     */
+    private final Map<String, String> mAppliedValues = new HashMap<>();
+
+    /**
+     * @param attributeAppliers the appliers of the editor, see
+     *                          {@link EditorContext#getAttributeAppliers()}
+     */
+    public ViewManagerImpl(@NonNull View view,
+                           @NonNull ImmutableSet<AttributeApplier> attributeAppliers) {
         mView = view;
+        mAttributeAppliers = attributeAppliers;
     }
 
     @NonNull
@@ -34,21 +51,39 @@ public class ViewManagerImpl implements ViewManager {
 
     @Override
     public void updateAttributes(@NonNull List<DOMAttr> attrs) {
-        mAppliedAttrs.clear();
+        mAppliedValues.clear();
+        attrs.forEach(attr -> mAppliedValues.put(attr.getName(), attr.getValue()));
+
+        apply(attrs);
+    }
+
+    @Override
+    public boolean updateChangedAttributes(@NonNull List<DOMAttr> attrs) {
+        Map<String, String> values = new HashMap<>();
+        attrs.forEach(attr -> values.put(attr.getName(), attr.getValue()));
+        if (!values.keySet().containsAll(mAppliedValues.keySet())) {
+            return false;
+        }
 
-        final EditorContext editorContext = EditorContext.getEditorContext(mView.getContext());
-        final ImmutableSet<AttributeApplier> attributeAppliers =
-                editorContext.getAttributeAppliers();
-        attributeAppliers.forEach(applier -> {
-            mAppliedAttrs.addAll(attrs);
+        List<DOMAttr> changed = new ArrayList<>();
+        for (DOMAttr attr : attrs) {
+            if (!mAppliedValues.containsKey(attr.getName()) ||
+                !Objects.equals(mAppliedValues.get(attr.getName()), attr.getValue())) {
+                changed.add(attr);
+            }
+        }
+        mAppliedValues.clear();
+        mAppliedValues.putAll(values);
+        // the unchanged attributes were applied by a previous update
+        apply(changed);
+        return true;
+    }
+
+    private void apply(@NonNull List<DOMAttr> attrs) {
+        mAttributeAppliers.forEach(applier -> {
             if (applier.accept(getView())) {
                 attrs.forEach(attr -> applier.apply(getView(), attr));
             }
         });
     }
-
-    @VisibleForTesting
-    public Set<DOMAttr> getAppliedAttrs() {
-        return mAppliedAttrs;
-    }
 }
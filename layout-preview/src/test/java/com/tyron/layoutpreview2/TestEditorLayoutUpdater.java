@@ -0,0 +1,175 @@
+package com.tyron.layoutpreview2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.common.ApplicationProvider;
+import com.tyron.common.TestUtil;
+import com.tyron.completion.xml.XmlRepository;
+import com.tyron.layoutpreview2.attr.impl.TextViewAttributeApplier;
+import com.tyron.layoutpreview2.attr.impl.ViewAttributeApplier;
+import com.tyron.layoutpreview2.view.impl.AndroidViewImpl;
+import com.tyron.layoutpreview2.view.impl.EditorLinearLayout;
+import com.tyron.layoutpreview2.view.impl.EditorTextView;
+import com.tyron.xml.completion.repository.ResourceRepository;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.util.DOMUtils;
+
+import org.eclipse.lemminx.dom.DOMDocument;
+import org.eclipse.lemminx.dom.DOMParser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "src/main/AndroidManifest.xml", sdk = 26, resourceDir = "src/main/res")
+public class TestEditorLayoutUpdater {
+
+    private static final String VIEW = "    <View\n" +
+                                       "        android:layout_width=\"match_parent\"\n" +
+                                       "        android:layout_height=\"wrap_content\"/>\n";
+
+    private EditorInflater mInflater;
+
+    @Before
+    public void setup() throws IOException {
+        ApplicationProvider
+                .initialize(androidx.test.core.app.ApplicationProvider.getApplicationContext());
+
+        File resourcesDirectory = TestUtil.getResourcesDirectory();
+        MockAndroidModule module =
+                new MockAndroidModule(resourcesDirectory, new MockFileManager(resourcesDirectory));
+        module.setPackageName("com.tyron.test");
+        module.setAndroidResourcesDirectory(new File(resourcesDirectory, "test_res"));
+        module.open();
+
+        ResourceRepository.setInitializeAndroidRepo(false);
+
+        XmlRepository repository = new XmlRepository();
+        repository.initialize(module);
+
+        EditorContext context = new EditorContext(ApplicationProvider.getApplicationContext());
+        context.setRepository(repository.getRepository());
+        context.registerMapping(View.class, AndroidViewImpl.class);
+        context.registerMapping(LinearLayout.class, EditorLinearLayout.class);
+        context.registerMapping(TextView.class, EditorTextView.class);
+        context.registerAttributeApplier(new ViewAttributeApplier());
+        context.registerAttributeApplier(new TextViewAttributeApplier());
+
+        mInflater = new PhoneLayoutInflater(context);
+    }
+
+    private static DOMDocument parse(String children) {
+        String layout = "<LinearLayout\n" +
+                        "    xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                        "    android:layout_width=\"match_parent\"\n" +
+                        "    android:layout_height=\"100dp\">\n" +
+                        children +
+                        "</LinearLayout>";
+        DOMDocument document = DOMParser.getInstance().parse(layout, "", null);
+        DOMUtils.setNamespace(document, ResourceNamespace.fromPackageName("com.tyron.test"));
+        return document;
+    }
+
+    private static String textView(String text) {
+        return "    <TextView\n" +
+               "        android:layout_width=\"match_parent\"\n" +
+               "        android:layout_height=\"wrap_content\"\n" +
+               "        android:text=\"" + text + "\"/>\n";
+    }
+
+    private static void assertStats(int recreated, int updated, int unchanged,
+                                    EditorLayoutUpdater.UpdateStats stats) {
+        assertNotNull(stats);
+        assertEquals(stats.toString(), recreated, stats.getRecreatedCount());
+        assertEquals(stats.toString(), updated, stats.getUpdatedCount());
+        assertEquals(stats.toString(), unchanged, stats.getUnchangedCount());
+    }
+
+    @Test
+    public void testFirstUpdateInflates() {
+        View root = mInflater.update(parse(textView("@string/app_name")), null);
+
+        assertTrue(root instanceof LinearLayout);
+        assertEquals(1, ((LinearLayout) root).getChildCount());
+        assertEquals("TEST", ((TextView) ((LinearLayout) root).getChildAt(0)).getText().toString());
+        assertStats(2, 0, 0, mInflater.getLastUpdateStats());
+    }
+
+    @Test
+    public void testChangedAttributeUpdatesInPlace() {
+        LinearLayout root = (LinearLayout) mInflater.update(parse(textView("First")), null);
+        View child = root.getChildAt(0);
+
+        assertSame(root, mInflater.update(parse(textView("Second")), null));
+        assertSame(child, root.getChildAt(0));
+        assertEquals("Second", ((TextView) child).getText().toString());
+        assertStats(0, 1, 1, mInflater.getLastUpdateStats());
+    }
+
+    @Test
+    public void testInsertedChildOnlyCreatesItsView() {
+        LinearLayout root = (LinearLayout) mInflater.update(
+                parse(textView("First") + VIEW), null);
+        View first = root.getChildAt(0);
+        View last = root.getChildAt(1);
+
+        mInflater.update(parse(textView("First") + textView("Middle") + VIEW), null);
+
+        assertEquals(3, root.getChildCount());
+        assertSame(first, root.getChildAt(0));
+        assertSame(last, root.getChildAt(2));
+        assertEquals("Middle", ((TextView) root.getChildAt(1)).getText().toString());
+        assertStats(1, 0, 3, mInflater.getLastUpdateStats());
+    }
+
+    @Test
+    public void testRemovedAttributeRecreatesViewOnce() {
+        String nested = "    <LinearLayout\n" +
+                        "        android:layout_width=\"match_parent\"\n" +
+                        "        android:layout_height=\"wrap_content\">\n" +
+                        "    " + textView("First") +
+                        "    </LinearLayout>\n";
+        LinearLayout root = (LinearLayout) mInflater.update(parse(nested), null);
+        View oldNested = root.getChildAt(0);
+
+        // the nested layout loses an attribute and its child changes, the child must only be
+        // counted as recreated along with its parent
+        String changed = "    <LinearLayout\n" +
+                         "        android:layout_width=\"match_parent\">\n" +
+                         "    " + textView("Second") +
+                         "    </LinearLayout>\n";
+        mInflater.update(parse(changed), null);
+
+        assertNotSame(oldNested, root.getChildAt(0));
+        TextView text = (TextView) ((LinearLayout) root.getChildAt(0)).getChildAt(0);
+        assertEquals("Second", text.getText().toString());
+        assertStats(2, 0, 1, mInflater.getLastUpdateStats());
+    }
+
+    @Test
+    public void testChangedTagRecreatesView() {
+        LinearLayout root = (LinearLayout) mInflater.update(parse(textView("First")), null);
+        View child = root.getChildAt(0);
+
+        mInflater.update(parse(VIEW), null);
+
+        assertEquals(1, root.getChildCount());
+        assertNotSame(child, root.getChildAt(0));
+        assertStats(1, 0, 1, mInflater.getLastUpdateStats());
+    }
+}
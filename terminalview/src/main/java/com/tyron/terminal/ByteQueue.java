@@ -14,7 +14,7 @@ public final class ByteQueue {
 
     public synchronized void close() {
         mOpen = false;
-        notify();
+        notifyAll();
     }
 
     public synchronized int read(byte[] buffer, boolean block) {
@@ -52,7 +52,8 @@ public final class ByteQueue {
             totalRead += bytesToCopy;
         }
         if (wasFull) {
-            notify();
+            // Several writers may be waiting in awaitSpace()
+            notifyAll();
         }
         return totalRead;
     }
@@ -115,4 +116,44 @@ public final class ByteQueue {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes as much of the specified portion of the buffer as fits without blocking. Unlike
+     * {@link #write(byte[], int, int)} the writer can notify the reader between writing and
+     * waiting for space, for readers that do not block in {@link #read(byte[], boolean)}.
+     *
+     * @return the number of bytes written, or -1 if the queue was closed
+     */
+    public synchronized int offer(byte[] buffer, int offset, int length) {
+        if (!mOpen) {
+            return -1;
+        }
+        final int bufferLength = mBuffer.length;
+        final boolean wasEmpty = mStoredBytes == 0;
+        final int bytesToWrite = Math.min(length, bufferLength - mStoredBytes);
+        int written = 0;
+        while (written < bytesToWrite) {
+            int tail = (mHead + mStoredBytes) % bufferLength;
+            int oneRun = (tail >= mHead) ? bufferLength - tail : mHead - tail;
+            int bytesToCopy = Math.min(oneRun, bytesToWrite - written);
+            System.arraycopy(buffer, offset + written, mBuffer, tail, bytesToCopy);
+            written += bytesToCopy;
+            mStoredBytes += bytesToCopy;
+        }
+        if (wasEmpty && written > 0) {
+            notifyAll();
+        }
+        return written;
+    }
+
+    /** Blocks until there is space to write to the queue or it is closed. */
+    public synchronized void awaitSpace() {
+        while (mStoredBytes == mBuffer.length && mOpen) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Ignore.
+            }
+        }
+    }
+}
@@ -37,6 +37,17 @@ public final class TerminalBuffer {
         blockSet(0, 0, columns, screenRows, ' ', TextStyle.NORMAL);
     }
 
+    /**
+     * Estimates how many rows of the given width fit in the given number of bytes, used to
+     * bound the transcript by memory rather than by a row count. Rows holding wide or
+     * surrogate chars use more, the estimate assumes they are rare.
+     */
+    public static int getRowsForMemory(int columns, long maxBytes) {
+        // the char[] of a row has spare capacity for half a row, each column has a long style
+        long bytesPerRow = (long) (1.5 * columns) * Character.BYTES + (long) columns * Long.BYTES + 64;
+        return (int) Math.min(Integer.MAX_VALUE, maxBytes / bytesPerRow);
+    }
+
     public String getTranscriptText() {
         return getSelectedText(0, -getActiveTranscriptRows(), mColumns, mScreenRows).trim();
     }
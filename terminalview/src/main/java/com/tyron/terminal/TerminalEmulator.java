@@ -153,6 +153,10 @@ public final class TerminalEmulator {
 
     /** The normal screen buffer. Stores the characters that appear on the screen of the emulated terminal. */
     private final TerminalBuffer mMainBuffer;
+    /** The rows the transcript of the main buffer may keep. */
+    private final int mTranscriptRows;
+    /** The most bytes the transcript of the main buffer may use, 0 if only bounded by {@link #mTranscriptRows}. */
+    private final long mTranscriptMemoryLimit;
     /**
      * The alternate screen buffer, exactly as large as the display and contains no additional saved lines (so that when
      * the alternate screen buffer is active, you cannot scroll back to view saved lines).
@@ -309,8 +313,18 @@ public final class TerminalEmulator {
     }
 
     public TerminalEmulator(TerminalOutput session, int columns, int rows, Integer transcriptRows, TerminalSessionClient client) {
+        this(session, columns, rows, transcriptRows, 0, client);
+    }
+
+    /**
+     * @param transcriptMemoryLimit the most bytes the transcript may use, it then keeps fewer
+     *                              rows than transcriptRows when the rows are wide. 0 for no limit
+     */
+    public TerminalEmulator(TerminalOutput session, int columns, int rows, Integer transcriptRows, long transcriptMemoryLimit, TerminalSessionClient client) {
         mSession = session;
-        mScreen = mMainBuffer = new TerminalBuffer(columns, getTerminalTranscriptRows(transcriptRows), rows);
+        mTranscriptRows = getTerminalTranscriptRows(transcriptRows);
+        mTranscriptMemoryLimit = transcriptMemoryLimit;
+        mScreen = mMainBuffer = new TerminalBuffer(columns, getMainBufferRows(columns, rows), rows);
         mAltBuffer = new TerminalBuffer(columns, rows, rows);
         mClient = client;
         mRows = rows;
@@ -333,6 +347,19 @@ public final class TerminalEmulator {
         return mScreen == mAltBuffer;
     }
 
+    /**
+     * @return the total rows of the main buffer, the transcript bounded by its memory limit if
+     * there is one
+     */
+    private int getMainBufferRows(int columns, int rows) {
+        if (mTranscriptMemoryLimit <= 0) {
+            return mTranscriptRows;
+        }
+        int rowsForMemory = TerminalBuffer.getRowsForMemory(columns, mTranscriptMemoryLimit);
+        int totalRows = Math.min(mTranscriptRows, Math.max(TERMINAL_TRANSCRIPT_ROWS_MIN, rowsForMemory));
+        return Math.max(totalRows, rows);
+    }
+
     private int getTerminalTranscriptRows(Integer transcriptRows) {
         if (transcriptRows == null ||
             transcriptRows < TERMINAL_TRANSCRIPT_ROWS_MIN ||
@@ -404,7 +431,15 @@ public final class TerminalEmulator {
 
     private void resizeScreen() {
         final int[] cursor = {mCursorCol, mCursorRow};
-        int newTotalRows = (mScreen == mAltBuffer) ? mRows : mMainBuffer.mTotalRows;
+        int newTotalRows;
+        if (mScreen == mAltBuffer) {
+            newTotalRows = mRows;
+        } else if (mTranscriptMemoryLimit > 0) {
+            // Wider rows use more memory each, so fewer of them fit in the limit
+            newTotalRows = getMainBufferRows(mColumns, mRows);
+        } else {
+            newTotalRows = mMainBuffer.mTotalRows;
+        }
         mScreen.resize(mColumns, mRows, newTotalRows, cursor, getStyle(), isAlternateBufferActive());
         mCursorCol = cursor[0];
         mCursorRow = cursor[1];
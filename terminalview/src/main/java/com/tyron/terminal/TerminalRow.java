@@ -197,7 +197,7 @@ public final class TerminalRow {
             int oldCharactersAfterColumn = mSpaceUsed - oldNextColumnIndex;
             if (mSpaceUsed + javaCharDifference > text.length) {
                 // We need to grow the array
-                char[] newText = new char[text.length + mColumns];
+                char[] newText = new char[grownCapacity(mSpaceUsed + javaCharDifference)];
                 System.arraycopy(text, 0, newText, 0, oldStartOfColumnIndex + oldCharactersUsedForColumn);
                 System.arraycopy(text, oldNextColumnIndex, newText, newNextColumnIndex, oldCharactersAfterColumn);
                 mText = text = newText;
@@ -217,7 +217,7 @@ public final class TerminalRow {
         if (oldCodePointDisplayWidth == 2 && newCodePointDisplayWidth == 1) {
             // Replace second half of wide char with a space. Which mean that we actually add a ' ' java character.
             if (mSpaceUsed + 1 > text.length) {
-                char[] newText = new char[text.length + mColumns];
+                char[] newText = new char[grownCapacity(mSpaceUsed + 1)];
                 System.arraycopy(text, 0, newText, 0, newNextColumnIndex);
                 System.arraycopy(text, newNextColumnIndex, newText, newNextColumnIndex + 1, mSpaceUsed - newNextColumnIndex);
                 mText = text = newText;
@@ -246,6 +246,14 @@ public final class TerminalRow {
         }
     }
 
+    /**
+     * Grows {@link #mText} geometrically rather than by one row width, a row filled with wide or
+     * surrogate chars would otherwise be copied again for every few chars written to it.
+     */
+    int grownCapacity(int minCapacity) {
+        return Math.max(minCapacity, Math.max(mText.length + mColumns, (int) (SPARE_CAPACITY_FACTOR * mText.length)));
+    }
+
     boolean isBlank() {
         for (int charIndex = 0, charLen = getSpaceUsed(); charIndex < charLen; charIndex++)
             if (mText[charIndex] != ' ') {
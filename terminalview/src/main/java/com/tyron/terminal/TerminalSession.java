@@ -2,11 +2,13 @@ package com.tyron.terminal;
 
 import android.annotation.SuppressLint;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.system.ErrnoException;
 import android.system.Os;
 import android.system.OsConstants;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
@@ -15,7 +17,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A terminal session, consisting of a process coupled to a terminal interface.
@@ -33,6 +37,12 @@ public class TerminalSession extends TerminalOutput {
     private static final int MSG_NEW_INPUT = 1;
     private static final int MSG_PROCESS_EXITED = 4;
 
+    /**
+     * How long the main thread parses output before letting the view draw, so a lot of output
+     * arriving at once is shown progressively instead of blocking the UI until it is all parsed.
+     */
+    private static final long INPUT_BATCH_NANOS = 8_000_000;
+
     public final String mHandle = UUID.randomUUID().toString();
 
     TerminalEmulator mEmulator;
@@ -41,12 +51,23 @@ public class TerminalSession extends TerminalOutput {
      * A queue written to from a separate thread when the process outputs, and read by main thread to process by
      * terminal emulator.
      */
-    public final ByteQueue mProcessToTerminalIOQueue = new ByteQueue(4096);
+    public final ByteQueue mProcessToTerminalIOQueue = new ByteQueue(64 * 1024);
     /**
      * A queue written to from the main thread due to user interaction, and read by another thread which forwards by
      * writing to the {@link #mTerminalFileDescriptor}.
      */
     final ByteQueue mTerminalToProcessIOQueue = new ByteQueue(4096);
+    /** Buffer the main thread reads {@link #mProcessToTerminalIOQueue} into. */
+    private final byte[] mReceiveBuffer = new byte[4 * 1024];
+    /** Guards {@link #mPendingOutput} and the initialization of {@link #mEmulator}. */
+    private final Object mPendingOutputLock = new Object();
+    /**
+     * The output written before the emulator is initialized, which nothing reads until then.
+     * Null once the emulator has parsed it.
+     */
+    private ByteArrayOutputStream mPendingOutput = new ByteArrayOutputStream();
+    /** Whether a {@link #MSG_NEW_INPUT} is pending, so writes in between are handled by one message. */
+    private final AtomicBoolean mInputPending = new AtomicBoolean();
     /** Buffer to write translate code points into utf8 before writing to mTerminalToProcessIOQueue */
     private final byte[] mUtf8InputBuffer = new byte[5];
 
@@ -75,16 +96,26 @@ public class TerminalSession extends TerminalOutput {
     private final String[] mArgs;
     private final String[] mEnv;
     private final Integer mTranscriptRows;
+    private final long mTranscriptMemoryLimit;
 
 
     private static final String LOG_TAG = "TerminalSession";
 
     public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows, TerminalSessionClient client) {
+        this(shellPath, cwd, args, env, transcriptRows, 0, client);
+    }
+
+    /**
+     * @param transcriptMemoryLimit the most bytes the transcript may use, 0 for no limit. See
+     *                              {@link TerminalEmulator#TerminalEmulator(TerminalOutput, int, int, Integer, long, TerminalSessionClient)}
+     */
+    public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows, long transcriptMemoryLimit, TerminalSessionClient client) {
         this.mShellPath = shellPath;
         this.mCwd = cwd;
         this.mArgs = args;
         this.mEnv = env;
         this.mTranscriptRows = transcriptRows;
+        this.mTranscriptMemoryLimit = transcriptMemoryLimit;
         this.mClient = client;
     }
 
@@ -122,7 +153,19 @@ public class TerminalSession extends TerminalOutput {
      * @param rows    The number of rows in the terminal window.
      */
     public void initializeEmulator(int columns, int rows) {
-        mEmulator = new TerminalEmulator(this, columns, rows, mTranscriptRows, mClient);
+        ByteArrayOutputStream pendingOutput;
+        synchronized (mPendingOutputLock) {
+            mEmulator = new TerminalEmulator(this, columns, rows, mTranscriptRows, mTranscriptMemoryLimit, mClient);
+            pendingOutput = mPendingOutput;
+            mPendingOutput = null;
+        }
+        // Parse the output written before the size of the view was known, output written since
+        // is queued and parsed after it
+        if (pendingOutput != null && pendingOutput.size() > 0) {
+            mEmulator.append(pendingOutput.toByteArray(), pendingOutput.size());
+            notifyScreenUpdate();
+        }
+        notifyNewInput();
 
         int[] processId = new int[1];
         mTerminalFileDescriptor = JNI.createSubprocess(mShellPath, mCwd, mArgs, mEnv, processId, rows, columns);
@@ -180,7 +223,78 @@ public class TerminalSession extends TerminalOutput {
     }
 
     public void notifyNewInput() {
-        mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
+        if (mInputPending.compareAndSet(false, true)) {
+            mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
+        }
+    }
+
+    /**
+     * Writes output to the terminal as if the process printed it. May be called from any thread,
+     * the output is queued and parsed on the main thread in batches, blocking while the queue
+     * is full. Output written from the main thread is parsed immediately. Until the emulator is
+     * initialized nothing parses the output, so all of it is kept and parsed once the emulator
+     * exists, without blocking the writer.
+     */
+    public void appendOutput(byte[] data, int offset, int count) {
+        if (count <= 0) {
+            return;
+        }
+        synchronized (mPendingOutputLock) {
+            if (mPendingOutput != null) {
+                mPendingOutput.write(data, offset, count);
+                return;
+            }
+        }
+        if (Looper.myLooper() != mMainThreadHandler.getLooper()) {
+            while (count > 0) {
+                int written = mProcessToTerminalIOQueue.offer(data, offset, count);
+                if (written < 0) {
+                    return;
+                }
+                // Notify before waiting for space, the main thread only reads when notified
+                notifyNewInput();
+                offset += written;
+                count -= written;
+                if (count > 0) {
+                    mProcessToTerminalIOQueue.awaitSpace();
+                }
+            }
+            return;
+        }
+
+        // Keep the order of the output queued by other threads
+        processInput(false);
+        byte[] bytes = offset == 0 ? data : Arrays.copyOfRange(data, offset, offset + count);
+        mEmulator.append(bytes, count);
+        notifyScreenUpdate();
+    }
+
+    /**
+     * Parses the queued output into the emulator and updates the screen once.
+     *
+     * @param batch whether to stop after {@link #INPUT_BATCH_NANOS} and process the rest in
+     *              another message
+     */
+    private void processInput(boolean batch) {
+        mInputPending.set(false);
+        if (mEmulator == null) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + INPUT_BATCH_NANOS;
+        boolean updated = false;
+        int bytesRead;
+        while ((bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false)) > 0) {
+            mEmulator.append(mReceiveBuffer, bytesRead);
+            updated = true;
+            if (batch && System.nanoTime() > deadline) {
+                notifyNewInput();
+                break;
+            }
+        }
+        if (updated) {
+            notifyScreenUpdate();
+        }
     }
 
     /** Write data to the shell process. */
@@ -354,15 +468,9 @@ public class TerminalSession extends TerminalOutput {
     @SuppressLint("HandlerLeak")
     class MainThreadHandler extends Handler {
 
-        final byte[] mReceiveBuffer = new byte[4 * 1024];
-
         @Override
         public void handleMessage(Message msg) {
-            int bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false);
-            if (bytesRead > 0) {
-                mEmulator.append(mReceiveBuffer, bytesRead);
-                notifyScreenUpdate();
-            }
+            processInput(true);
 
             if (msg.what == MSG_PROCESS_EXITED) {
                 int exitCode = (Integer) msg.obj;
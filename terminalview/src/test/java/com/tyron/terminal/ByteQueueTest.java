@@ -0,0 +1,104 @@
+package com.tyron.terminal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ByteQueueTest {
+
+    private static byte[] bytes(int from, int count) {
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) (from + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testOfferWritesWhatFits() {
+        ByteQueue queue = new ByteQueue(8);
+
+        assertEquals(5, queue.offer(bytes(0, 5), 0, 5));
+        assertEquals(3, queue.offer(bytes(5, 5), 0, 5));
+        assertEquals(0, queue.offer(bytes(8, 1), 0, 1));
+
+        byte[] read = new byte[16];
+        assertEquals(8, queue.read(read, false));
+        assertArrayEquals(bytes(0, 8), Arrays.copyOf(read, 8));
+    }
+
+    @Test
+    public void testOfferWrapsAround() {
+        ByteQueue queue = new ByteQueue(8);
+        byte[] read = new byte[6];
+        queue.offer(bytes(0, 6), 0, 6);
+        assertEquals(6, queue.read(read, false));
+
+        // the head is at 6, the next 7 bytes wrap to the start of the buffer
+        assertEquals(7, queue.offer(bytes(10, 9), 2, 7));
+
+        byte[] wrapped = new byte[8];
+        assertEquals(7, queue.read(wrapped, false));
+        assertArrayEquals(bytes(12, 7), Arrays.copyOf(wrapped, 7));
+    }
+
+    @Test
+    public void testOfferToClosedQueue() {
+        ByteQueue queue = new ByteQueue(8);
+        queue.close();
+
+        assertEquals(-1, queue.offer(bytes(0, 1), 0, 1));
+    }
+
+    @Test
+    public void testAwaitSpaceReturnsWhenNotFull() {
+        ByteQueue queue = new ByteQueue(8);
+        queue.offer(bytes(0, 4), 0, 4);
+
+        // must not block
+        queue.awaitSpace();
+    }
+
+    @Test
+    public void testAwaitSpaceBlocksUntilRead() throws InterruptedException {
+        ByteQueue queue = new ByteQueue(8);
+        queue.offer(bytes(0, 8), 0, 8);
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            queue.awaitSpace();
+            done.countDown();
+        });
+        writer.start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+
+        queue.read(new byte[1], false);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        writer.join();
+    }
+
+    @Test
+    public void testAwaitSpaceReturnsWhenClosed() throws InterruptedException {
+        ByteQueue queue = new ByteQueue(8);
+        queue.offer(bytes(0, 8), 0, 8);
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            queue.awaitSpace();
+            done.countDown();
+        });
+        writer.start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+
+        queue.close();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        writer.join();
+    }
+}
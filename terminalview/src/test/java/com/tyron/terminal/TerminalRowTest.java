@@ -0,0 +1,52 @@
+package com.tyron.terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TerminalRowTest {
+
+    @Test
+    public void testGrownCapacityIsGeometric() {
+        TerminalRow row = new TerminalRow(10, 0);
+        // a row that already grew to many times its width
+        row.mText = new char[1000];
+
+        assertEquals(1500, row.grownCapacity(1001));
+    }
+
+    @Test
+    public void testGrownCapacityGrowsByAtLeastOneRow() {
+        TerminalRow row = new TerminalRow(100, 0);
+        int capacity = row.mText.length;
+
+        assertEquals(capacity + 100, row.grownCapacity(capacity + 1));
+    }
+
+    @Test
+    public void testGrownCapacityFitsMinimum() {
+        TerminalRow row = new TerminalRow(10, 0);
+
+        assertEquals(1000, row.grownCapacity(1000));
+    }
+
+    @Test
+    public void testSurrogateCharsGrowText() {
+        int columns = 80;
+        TerminalRow row = new TerminalRow(columns, 0);
+        int resizes = 0;
+        char[] text = row.mText;
+        // U+1F600 takes two java chars and two columns
+        for (int column = 0; column + 1 < columns; column += 2) {
+            row.setChar(column, 0x1F600, 0);
+            if (row.mText != text) {
+                text = row.mText;
+                resizes++;
+            }
+        }
+
+        assertTrue(row.mText.length >= row.getSpaceUsed());
+        assertTrue("resized " + resizes + " times", resizes <= 2);
+    }
+}
@@ -1,25 +1,24 @@
 package com.tyron.completion.xml;
 
-import android.content.Context;
-import android.util.AttributeSet;
 import android.view.View;
-import android.view.ViewGroup;
+
+import androidx.annotation.Nullable;
 
 import com.google.common.collect.ImmutableSet;
-import com.tyron.builder.BuildModule;
+import com.tyron.completion.xml.model.ViewClassInfo;
 import com.tyron.completion.xml.util.PartialClassParser;
 
-import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.ClassFormatException;
 import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.Type;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -27,8 +26,9 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
- * Scans jar files and saves all the class files that extends {@link View} and has the
- * appropriate constructors to be inflated in XML.
+ * Scans jar files for the class hierarchy used to find the classes that extend {@link View}.
+ *
+ * @see ClassHierarchyCache
  */
 public class BytecodeScanner {
 
@@ -56,133 +56,66 @@ public class BytecodeScanner {
         sIgnoredPaths = builder.build();
     }
 
-    public static void loadJar(File jar) throws IOException {
+    /**
+     * Reads the super class of every class in the jar, only the header of the class files is
+     * parsed. Classes directly extending {@link Object} are left out.
+     *
+     * @return the name of the super class of each class, by class name
+     */
+    public static Map<String, String> scanSuperClasses(File jar) throws IOException {
+        Map<String, String> superClasses = new HashMap<>();
         try (JarFile jarFile = new JarFile(jar)) {
             iterateClasses(jarFile, element -> {
-                PartialClassParser classParser =
-                        new PartialClassParser(jar.getAbsolutePath(), element.getName());
-                try {
-                    Repository.addClass(classParser.parse());
-                } catch (IOException e) {
-                    // ignored, keep parsing other classes
+                String name = element.getName();
+                int index = name.lastIndexOf('/');
+                String packagePath = index == -1 ? "" : name.substring(0, index);
+                if (sIgnoredPaths.contains(packagePath) || packagePath.startsWith("java/")) {
+                    return;
                 }
-            });
-        }
-    }
-
-    public static List<JavaClass> scan(File file) throws IOException {
-        List<JavaClass> viewClasses = new ArrayList<>();
-        try (JarFile jarFile = new JarFile(file)) {
-            iterateClasses(jarFile, element -> {
-                String fqn = element.getName().replace('/', '.')
-                        .substring(0, element.getName().length() - ".class".length());
-                try {
-                    JavaClass javaClass = Repository.lookupClass(fqn);
-                    if (isViewClass(javaClass)) {
-                        viewClasses.add(javaClass);
+                try (InputStream inputStream = jarFile.getInputStream(element)) {
+                    JavaClass javaClass = new PartialClassParser(inputStream, name).parse();
+                    String superClass = javaClass.getSuperclassName();
+                    if (superClass != null && !Object.class.getName().equals(superClass)) {
+                        superClasses.put(javaClass.getClassName(), superClass);
                     }
-                } catch (ClassNotFoundException e) {
-                    // should not happen, the class should already be loaded here.
+                } catch (IOException | ClassFormatException e) {
+                    // ignored, keep parsing other classes
                 }
             });
         }
-        return viewClasses;
-    }
-
-    public static boolean isViewGroup(JavaClass javaClass) {
-        JavaClass[] superClasses = getSuperClasses(javaClass);
-        return Arrays.stream(superClasses)
-                .anyMatch(it -> ViewGroup.class.getName().equals(it.getClassName()));
-    }
-
-    public static void scanBootstrapIfNeeded() {
-        if (!needScanBootstrap()) {
-            return;
-        }
-
-        File androidJar = BuildModule.getAndroidJar();
-        if (androidJar != null && androidJar.exists()) {
-            try (JarFile jarFile = new JarFile(androidJar)) {
-                iterateClasses(jarFile, element -> {
-                    String name = element.getName();
-                    String packagePath = name.substring(0, name.lastIndexOf('/'));
-                    if (sIgnoredPaths.contains(packagePath)) {
-                        return;
-                    }
-                    if (packagePath.startsWith("java/")) {
-                        return;
-                    }
-                    PartialClassParser classParser =
-                            new PartialClassParser(androidJar.getAbsolutePath(), name);
-                    try {
-                        Repository.addClass(classParser.parse());
-                    } catch (IOException e) {
-                        // ignored, keep parsing other classes
-                    }
-
-                });
-            } catch (IOException e) {
-                // ignored
-            }
-        }
-    }
-
-    private static boolean needScanBootstrap() {
-        try {
-            Repository.getRepository().loadClass(View.class);
-            return false;
-        } catch (ClassNotFoundException e) {
-            return true;
-        }
-    }
-
-    private static boolean isViewClass(JavaClass javaClass) {
-        JavaClass[] superClasses = getSuperClasses(javaClass);
-        return Arrays.stream(superClasses)
-                .anyMatch(it -> View.class.getName().equals(it.getClassName()));
+        return superClasses;
     }
 
     /**
-     * Get the array of java classes even if the root class does not exist
+     * Get the names of the super classes of a class, up to the first class whose super class
+     * is unknown.
      *
-     * @param javaClass The java class
-     * @return array of super classes
+     * @param className    the class name
+     * @param superClasses the super class of each known class
+     * @return the names of the super classes, the direct super class first
      */
-    public static JavaClass[] getSuperClasses(JavaClass javaClass) {
-        List<JavaClass> superClasses = new ArrayList<>();
-        JavaClass current = javaClass;
-        while (current != null && current.getSuperclassName() != null) {
-            JavaClass lookupClass;
-            try {
-                lookupClass = Repository.lookupClass(current.getSuperclassName());
-            } catch (ClassNotFoundException e) {
-                lookupClass = null;
-            }
-
-            if (lookupClass != null) {
-                superClasses.add(lookupClass);
-            }
-            current = lookupClass;
+    public static List<String> getSuperClasses(String className,
+                                               Map<String, String> superClasses) {
+        List<String> names = new ArrayList<>();
+        String current = superClasses.get(className);
+        // a malformed class path may contain cycles
+        while (current != null && !current.equals(className) && !names.contains(current)) {
+            names.add(current);
+            current = superClasses.get(current);
         }
-        return superClasses.toArray(new JavaClass[0]);
+        return names;
     }
 
-    private static boolean containsViewConstructors(Method[] methods) {
-        for (Method method : methods) {
-            if (!"<init>".equals(method.getName())) {
-                continue;
-            }
-
-            Type[] argumentTypes = method.getArgumentTypes();
-            if (argumentTypes.length == 2) {
-                if (Context.class.getName().equals(argumentTypes[0].toString())) {
-                    if (AttributeSet.class.getName().equals(argumentTypes[1].toString())) {
-                        return true;
-                    }
-                }
-            }
+    /**
+     * @return the view class with the given name, or null if it does not extend {@link View}
+     */
+    @Nullable
+    public static ViewClassInfo getViewClass(String className, Map<String, String> superClasses) {
+        List<String> names = getSuperClasses(className, superClasses);
+        if (!names.contains(View.class.getName())) {
+            return null;
         }
-        return false;
+        return new ViewClassInfo(className, names);
     }
 
     public static void iterateClasses(JarFile jarFile, Consumer<JarEntry> consumer) {
@@ -0,0 +1,230 @@
+package com.tyron.completion.xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.tyron.common.ApplicationPaths;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.common.util.JarCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Holds the super class of every class of a jar, as read by
+ * {@link BytecodeScanner#scanSuperClasses(File)}.
+ *
+ * The super classes of a jar are written to disk by a {@link JarCache} so its class files do
+ * not need to be parsed again when a project is reopened, a changed jar is scanned again.
+ */
+public class ClassHierarchyCache {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(ClassHierarchyCache.class);
+    private static final String CACHE_DIRECTORY = "class-hierarchies";
+    private static final String CACHE_EXTENSION = ".hierarchy";
+
+    private static final int MAGIC = 0x43484945;
+    private static final int VERSION = 1;
+
+    private static volatile ClassHierarchyCache sInstance;
+
+    public static ClassHierarchyCache getInstance() {
+        if (sInstance == null) {
+            synchronized (ClassHierarchyCache.class) {
+                if (sInstance == null) {
+                    sInstance = new ClassHierarchyCache(
+                            new File(ApplicationPaths.getCacheDir(), CACHE_DIRECTORY),
+                            ForkJoinPool.commonPool());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public static void setInstance(@Nullable ClassHierarchyCache cache) {
+        sInstance = cache;
+    }
+
+    /**
+     * The super classes of the largest jars take a few megabytes
+     */
+    private static final long MAX_CACHE_SIZE = 64 * 1024 * 1024;
+
+    private final JarCache<Map<String, String>> mCache;
+    private final ForkJoinPool mPool;
+
+    /**
+     * @param cacheDirectory the directory of the cache files, null to only cache in memory
+     * @param pool           the pool jars are scanned on
+     */
+    public ClassHierarchyCache(@Nullable File cacheDirectory, @NonNull ForkJoinPool pool) {
+        mCache = new JarCache<>(cacheDirectory, CACHE_EXTENSION, VERSION,
+                new JarCache.Format<Map<String, String>>() {
+                    @NonNull
+                    @Override
+                    public Map<String, String> read(@NonNull File cacheFile) throws IOException {
+                        return Collections.unmodifiableMap(ClassHierarchyCache.read(cacheFile));
+                    }
+
+                    @NonNull
+                    @Override
+                    public Map<String, String> create(@NonNull File jar,
+                                                      @Nullable File cacheFile) throws IOException {
+                        return Collections.unmodifiableMap(scan(jar, cacheFile));
+                    }
+                }, true, MAX_CACHE_SIZE);
+        mPool = pool;
+    }
+
+    /**
+     * Returns the super class of each class of the jar, classes directly extending
+     * {@link Object} are left out.
+     *
+     * @throws IOException if the jar is not a valid jar file
+     */
+    @NonNull
+    public Map<String, String> get(@NonNull File jar) throws IOException {
+        return mCache.get(jar);
+    }
+
+    /**
+     * Loads the class hierarchies of the jars in parallel. Jars that cannot be read are left
+     * out of the result.
+     *
+     * @return the super classes of each valid jar, in the iteration order of the given jars
+     */
+    @NonNull
+    public Map<File, Map<String, String>> getAll(@NonNull Collection<File> jars) {
+        List<File> unique = new ArrayList<>(new LinkedHashSet<>(jars));
+        List<Callable<Map<String, String>>> tasks = new ArrayList<>(unique.size());
+        for (File jar : unique) {
+            tasks.add(() -> get(jar));
+        }
+
+        long start = System.currentTimeMillis();
+        List<Future<Map<String, String>>> futures = mPool.invokeAll(tasks);
+        Map<File, Map<String, String>> result = new LinkedHashMap<>();
+        for (int i = 0; i < unique.size(); i++) {
+            File jar = unique.get(i);
+            try {
+                result.put(jar, futures.get(i).get());
+            } catch (ExecutionException e) {
+                sLogger.warning("Unable to scan " + jar + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        sLogger.info("Loaded the class hierarchies of " + result.size() + " jars in " +
+                     (System.currentTimeMillis() - start) + "ms");
+        return result;
+    }
+
+    private static Map<String, String> scan(File jar, @Nullable File cacheFile)
+            throws IOException {
+        Map<String, String> superClasses = BytecodeScanner.scanSuperClasses(jar);
+        if (cacheFile != null) {
+            try {
+                write(superClasses, cacheFile);
+            } catch (IOException e) {
+                sLogger.warning("Unable to cache the class hierarchy of " + jar + ": " + e);
+            }
+        }
+        return superClasses;
+    }
+
+    /**
+     * The names are written once in a table and the classes refer to them by index, since
+     * most classes of a jar share a few super classes.
+     */
+    @VisibleForTesting
+    static void write(Map<String, String> superClasses, File cacheFile) throws IOException {
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        Map<String, Integer> indexes = new LinkedHashMap<>();
+        int[] pairs = new int[superClasses.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, String> entry : superClasses.entrySet()) {
+            pairs[i++] = indexes.computeIfAbsent(entry.getKey(), k -> indexes.size());
+            pairs[i++] = indexes.computeIfAbsent(entry.getValue(), k -> indexes.size());
+        }
+
+        // written to a temporary file first so a concurrent reader never sees a partial file
+        File temp = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(indexes.size());
+            for (String name : indexes.keySet()) {
+                out.writeUTF(name);
+            }
+            out.writeInt(superClasses.size());
+            for (int pair : pairs) {
+                out.writeInt(pair);
+            }
+        }
+        if (!temp.renameTo(cacheFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    @VisibleForTesting
+    static Map<String, String> read(File cacheFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown class hierarchy format");
+            }
+            int nameCount = in.readInt();
+            if (nameCount < 0) {
+                throw new IOException("Invalid name count " + nameCount);
+            }
+            String[] names = new String[nameCount];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid class count " + count);
+            }
+            Map<String, String> superClasses = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                int name = in.readInt();
+                int superName = in.readInt();
+                if (name < 0 || name >= names.length || superName < 0 ||
+                    superName >= names.length) {
+                    throw new IOException("Invalid class name index");
+                }
+                superClasses.put(names[name], names[superName]);
+            }
+            return superClasses;
+        }
+    }
+
+}
@@ -22,17 +22,17 @@ import android.widget.TextView;
 import android.widget.ViewFlipper;
 import android.widget.ViewSwitcher;
 
+import com.tyron.builder.BuildModule;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.xml.model.AttributeInfo;
 import com.tyron.completion.xml.model.DeclareStyleable;
 import com.tyron.completion.xml.model.Format;
+import com.tyron.completion.xml.model.ViewClassInfo;
 import com.tyron.completion.xml.util.StyleUtils;
 import com.tyron.xml.completion.repository.ResourceRepository;
 
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.JavaClass;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
@@ -42,6 +42,8 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,7 +54,7 @@ public class XmlRepository {
     private final Map<String, DeclareStyleable> mDeclareStyleables = new TreeMap<>();
     private final Map<String, DeclareStyleable> mManifestAttrs = new TreeMap<>();
     private final Map<String, AttributeInfo> mExtraAttributes = new TreeMap<>();
-    private final Map<String, JavaClass> mJavaViewClasses = new TreeMap<>();
+    private final Map<String, ViewClassInfo> mJavaViewClasses = new TreeMap<>();
 
     private boolean mInitialized = false;
     private ResourceRepository mRepository;
@@ -71,7 +73,7 @@ public class XmlRepository {
         return mDeclareStyleables;
     }
 
-    public Map<String, JavaClass> getJavaViewClasses() {
+    public Map<String, ViewClassInfo> getJavaViewClasses() {
         return mJavaViewClasses;
     }
 
@@ -84,11 +86,14 @@ public class XmlRepository {
         if (mInitialized) {
             return;
         }
-        BytecodeScanner.scanBootstrapIfNeeded();
-
         mRepository = new ResourceRepository(module);
         mRepository.initialize();
 
+        Set<File> jars = new LinkedHashSet<>();
+        File androidJar = BuildModule.getAndroidJar();
+        if (androidJar != null && androidJar.exists()) {
+            jars.add(androidJar);
+        }
         for (File library : module.getLibraries()) {
             File parent = library.getParentFile();
             if (parent == null) {
@@ -96,67 +101,67 @@ public class XmlRepository {
             }
             File classesFile = new File(parent, "classes.jar");
             if (classesFile.exists()) {
-                try {
-                    BytecodeScanner.loadJar(classesFile);
-                } catch (IOException ignored) {
-
-                }
+                jars.add(classesFile);
             }
+            jars.add(library);
+        }
+
+        // a view may extend a class of another jar, so the hierarchy of the whole class path
+        // is needed before looking for the views of each library
+        Map<File, Map<String, String>> hierarchies =
+                ClassHierarchyCache.getInstance().getAll(jars);
+        Map<String, String> superClasses = new HashMap<>();
+        for (Map<String, String> hierarchy : hierarchies.values()) {
+            superClasses.putAll(hierarchy);
         }
 
         for (File library : module.getLibraries()) {
-            try {
-                List<JavaClass> scan =
-                        BytecodeScanner.scan(library);
-                for (JavaClass javaClass : scan) {
-                    StyleUtils.putStyles(javaClass);
-                    mJavaViewClasses.put(javaClass.getClassName(), javaClass);
+            Map<String, String> hierarchy = hierarchies.get(library);
+            if (hierarchy == null) {
+                continue;
+            }
+            for (String className : hierarchy.keySet()) {
+                ViewClassInfo viewClass = BytecodeScanner.getViewClass(className, superClasses);
+                if (viewClass != null) {
+                    StyleUtils.putStyles(viewClass);
+                    mJavaViewClasses.put(viewClass.getClassName(), viewClass);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
         }
 
-        addFrameworkViews();
-
-        Repository.clearCache();
+        addFrameworkViews(superClasses);
 
         mInitialized = true;
     }
 
-    private void addFrameworkViews() {
-        addFrameworkView(View.class);
-        addFrameworkView(ViewGroup.class);
-        addFrameworkView(FrameLayout.class);
-        addFrameworkView(RelativeLayout.class);
-        addFrameworkView(LinearLayout.class);
-        addFrameworkView(AbsoluteLayout.class);
-        addFrameworkView(ListView.class);
-        addFrameworkView(EditText.class);
-        addFrameworkView(Button.class);
-        addFrameworkView(TextView.class);
-        addFrameworkView(ImageView.class);
-        addFrameworkView(ImageButton.class);
-        addFrameworkView(ImageSwitcher.class);
-        addFrameworkView(ViewFlipper.class);
-        addFrameworkView(ViewSwitcher.class);
-        addFrameworkView(ScrollView.class);
-        addFrameworkView(HorizontalScrollView.class);
-        addFrameworkView(CompoundButton.class);
-        addFrameworkView(ProgressBar.class);
-        addFrameworkView(CheckBox.class);
+    private void addFrameworkViews(Map<String, String> superClasses) {
+        addFrameworkView(View.class, superClasses);
+        addFrameworkView(ViewGroup.class, superClasses);
+        addFrameworkView(FrameLayout.class, superClasses);
+        addFrameworkView(RelativeLayout.class, superClasses);
+        addFrameworkView(LinearLayout.class, superClasses);
+        addFrameworkView(AbsoluteLayout.class, superClasses);
+        addFrameworkView(ListView.class, superClasses);
+        addFrameworkView(EditText.class, superClasses);
+        addFrameworkView(Button.class, superClasses);
+        addFrameworkView(TextView.class, superClasses);
+        addFrameworkView(ImageView.class, superClasses);
+        addFrameworkView(ImageButton.class, superClasses);
+        addFrameworkView(ImageSwitcher.class, superClasses);
+        addFrameworkView(ViewFlipper.class, superClasses);
+        addFrameworkView(ViewSwitcher.class, superClasses);
+        addFrameworkView(ScrollView.class, superClasses);
+        addFrameworkView(HorizontalScrollView.class, superClasses);
+        addFrameworkView(CompoundButton.class, superClasses);
+        addFrameworkView(ProgressBar.class, superClasses);
+        addFrameworkView(CheckBox.class, superClasses);
     }
 
-    private void addFrameworkView(Class<? extends View> viewClass) {
-        org.apache.bcel.util.Repository repository = Repository.getRepository();
-        try {
-            JavaClass javaClass = repository.loadClass(viewClass);
-            if (javaClass != null) {
-                mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-            }
-        } catch (ClassNotFoundException e) {
-            // ignored
-        }
+    private void addFrameworkView(Class<? extends View> viewClass,
+                                  Map<String, String> superClasses) {
+        String className = viewClass.getName();
+        mJavaViewClasses.put(className, new ViewClassInfo(className,
+                BytecodeScanner.getSuperClasses(className, superClasses)));
     }
 
     private Map<String, DeclareStyleable> parse(Reader reader, String namespace) throws XmlPullParserException, IOException {
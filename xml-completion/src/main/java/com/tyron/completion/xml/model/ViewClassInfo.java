@@ -0,0 +1,44 @@
+package com.tyron.completion.xml.model;
+
+import android.view.ViewGroup;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A view class found in the class path, only its name and the names of its super classes are
+ * kept so it can be restored from the cached class hierarchy without parsing its class file.
+ */
+public class ViewClassInfo {
+
+    private final String className;
+
+    private final List<String> superClassNames;
+
+    /**
+     * @param className       the fully qualified name of the view class
+     * @param superClassNames the names of its super classes, the direct super class first
+     */
+    public ViewClassInfo(String className, List<String> superClassNames) {
+        this.className = className;
+        this.superClassNames = Collections.unmodifiableList(superClassNames);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getPackageName() {
+        int index = className.lastIndexOf('.');
+        return index == -1 ? "" : className.substring(0, index);
+    }
+
+    public List<String> getSuperClassNames() {
+        return superClassNames;
+    }
+
+    public boolean isViewGroup() {
+        return ViewGroup.class.getName().equals(className) ||
+               superClassNames.contains(ViewGroup.class.getName());
+    }
+}
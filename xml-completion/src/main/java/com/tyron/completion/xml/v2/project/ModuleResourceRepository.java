@@ -6,21 +6,29 @@ import com.android.ide.common.resources.ResourceVisitor;
 import com.android.ide.common.resources.SingleNamespaceResourceRepository;
 import com.android.ide.common.resources.SourceSet;
 import com.android.resources.ResourceType;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ListMultimap;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.project.api.AndroidContentRoot;
 import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.common.ApplicationPaths;
+import com.tyron.completion.xml.v2.aar.CachingDataKt;
 import com.tyron.completion.xml.v2.aar.FrameworkResourceRepository;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class ModuleResourceRepository extends MultiResourceRepository implements SingleNamespaceResourceRepository {
@@ -32,6 +40,12 @@ public class ModuleResourceRepository extends MultiResourceRepository implements
 
     private enum SourceSet { MAIN, TEST }
 
+    /**
+     * Used to write the resource folder caches in the background, a single thread since the
+     * caches are only written after their folder has been loaded.
+     */
+    private static final Executor CACHE_CREATION_EXECUTOR = Executors.newSingleThreadExecutor();
+
     /**
      * Creates a new resource repository for the given module, <b>not</b> including its dependent
      * modules.
@@ -91,11 +105,38 @@ public class ModuleResourceRepository extends MultiResourceRepository implements
                     facet,
                     resourceDirectory,
                     ResourceRepositoryManager.getInstance(facet).getNamespace(),
-                    null);
+                    createCachingData(facet, resourceDirectory));
             childRepositories.add(resourceFolderRepository);
         }
     }
 
+    @NotNull
+    private static ResourceFolderRepositoryCachingData createCachingData(@NotNull AndroidModule facet,
+                                                                         @NotNull File resourceDirectory) {
+        Path cacheDirectory = Paths.get(ApplicationPaths.getCacheDir().getAbsolutePath(),
+                CachingDataKt.RESOURCE_CACHE_DIRECTORY, "project");
+        return createCachingData(facet, resourceDirectory, cacheDirectory,
+                CACHE_CREATION_EXECUTOR);
+    }
+
+    /**
+     * The cache file of a resource folder is named after the hash of its path, so that the
+     * folders of every module and project have their own cache.
+     */
+    @VisibleForTesting
+    @NotNull
+    static ResourceFolderRepositoryCachingData createCachingData(@NotNull AndroidModule facet,
+                                                                 @NotNull File resourceDirectory,
+                                                                 @NotNull Path cacheDirectory,
+                                                                 @NotNull Executor cacheCreationExecutor) {
+        String pathHash = Hashing.farmHashFingerprint64()
+                .hashUnencodedChars(resourceDirectory.getAbsolutePath())
+                .toString();
+        String filename = String.format("%s_%s.dat", facet.getName(), pathHash);
+        return new ResourceFolderRepositoryCachingData(cacheDirectory.resolve(filename), false, "7.4",
+                cacheCreationExecutor);
+    }
+
     private ModuleResourceRepository(@NotNull AndroidModule facet,
                                      @NotNull ResourceNamespace namespace,
                                      @NotNull List<? extends LocalResourceRepository> delegates,
@@ -14,6 +14,7 @@ import static com.tyron.completion.xml.v2.project.ResourceUpdateTracer.pathForLo
 import static org.jetbrains.kotlin.com.intellij.openapi.util.io.FileUtil.isAncestor;
 
 import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.ide.common.rendering.api.DensityBasedResourceValue;
 import com.android.ide.common.rendering.api.ResourceNamespace;
@@ -28,18 +29,22 @@ import com.android.resources.FolderTypeRelationship;
 import com.android.resources.ResourceFolderType;
 import com.android.resources.ResourceType;
 import com.android.resources.ResourceVisibility;
+import com.android.utils.Base128InputStream;
 import com.android.utils.SdkUtils;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.completion.progress.ProcessCanceledException;
 import com.tyron.completion.progress.ProgressManager;
+import com.tyron.completion.xml.v2.base.BasicDensityBasedFileResourceItem;
 import com.tyron.completion.xml.v2.base.BasicFileResourceItem;
 import com.tyron.completion.xml.v2.base.BasicResourceItem;
 import com.tyron.completion.xml.v2.base.BasicValueResourceItemBase;
 import com.tyron.completion.xml.v2.base.LoadableResourceRepository;
 import com.tyron.completion.xml.v2.base.RepositoryConfiguration;
 import com.tyron.completion.xml.v2.base.RepositoryLoader;
+import com.tyron.completion.xml.v2.base.ResourceSerializationUtil;
 import com.tyron.completion.xml.v2.base.ResourceSourceFile;
 import com.tyron.completion.xml.v2.events.XmlReparsedEvent;
 import com.tyron.completion.xml.v2.events.XmlResourceChangeEvent;
@@ -60,6 +65,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -75,6 +81,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 import javax.lang.model.SourceVersion;
 
@@ -83,6 +90,14 @@ import kotlin.io.FilesKt;
 
 public final class ResourceFolderRepository extends LocalResourceRepository implements LoadableResourceRepository {
 
+    /**
+     * Increment when making changes that may affect content of repository cache files.
+     * Used together with {@link ResourceFolderRepositoryCachingData#getCodeVersion()}.
+     */
+    static final String CACHE_FILE_FORMAT_VERSION = "1";
+    private static final byte[] CACHE_FILE_HEADER =
+            "Resource cache".getBytes(StandardCharsets.UTF_8);
+
     @NotNull
     private final ConcurrentMap<File, ResourceItemSource<?>> mySources = new ConcurrentHashMap<>();
     @SuppressWarnings("InstanceGuardedByStatic")
@@ -212,6 +227,63 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         return myResourcePathBase.resolve(relativeResourcePath);
     }
 
+    /**
+     * Creates a {@link VfsResourceFile} from the cache, the file is null if it has been modified
+     * since the cache was written so that the resources it contained are discarded.
+     */
+    @Override
+    @NotNull
+    public ResourceSourceFile deserializeResourceSourceFile(@NotNull Base128InputStream stream,
+                                                            @NotNull List<RepositoryConfiguration> configurations) throws IOException {
+        String relativePath = stream.readString();
+        if (relativePath == null) {
+            throw Base128InputStream.StreamFormatException.invalidFormat();
+        }
+        RepositoryConfiguration configuration = configurations.get(stream.readInt());
+        File file = new File(myResourceDir, relativePath);
+        if (!stream.validateContents(FileTimeStampLengthHasher.hash(file))) {
+            file = null;
+        }
+        return new VfsResourceFile(file, configuration);
+    }
+
+    /**
+     * Creates a file resource item from the cache. Only the items of id generating folders are
+     * written with the hash of their file, see {@link Loader#createFileResourceItem}.
+     */
+    @Override
+    @NotNull
+    public BasicFileResourceItem deserializeFileResourceItem(@NotNull Base128InputStream stream,
+                                                             @NotNull ResourceType resourceType,
+                                                             @NotNull String name,
+                                                             @NotNull ResourceVisibility visibility,
+                                                             @NotNull List<RepositoryConfiguration> configurations) throws IOException {
+        String relativePath = stream.readString();
+        if (relativePath == null) {
+            throw Base128InputStream.StreamFormatException.invalidFormat();
+        }
+        RepositoryConfiguration configuration = configurations.get(stream.readInt());
+        int encodedDensity = stream.readInt();
+        Density density = encodedDensity == 0 ? null : Density.values()[encodedDensity - 1];
+
+        File file = new File(myResourceDir, relativePath);
+        File folder = file.getParentFile();
+        ResourceFolderType folderType =
+                folder == null ? null : ResourceFolderType.getFolderType(folder.getName());
+        if (folderType == null || !FolderTypeRelationship.isIdGeneratingFolderType(folderType)) {
+            return density == null
+                    ? new BasicFileResourceItem(resourceType, name, configuration, visibility, relativePath)
+                    : new BasicDensityBasedFileResourceItem(resourceType, name, configuration, visibility, relativePath, density);
+        }
+
+        if (!stream.validateContents(FileTimeStampLengthHasher.hash(file))) {
+            file = null;
+        }
+        return density == null
+                ? new VfsFileResourceItem(resourceType, name, configuration, visibility, relativePath, file)
+                : new VfsDensityBasedFileResourceItem(resourceType, name, configuration, visibility, relativePath, file, density);
+    }
+
     @Override
     public boolean containsUserDefinedResources() {
         return true;
@@ -228,6 +300,23 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                null ? myNamespace.getPackageName() : myFacet.getPackageName();
     }
 
+    /**
+     * @return the number of XML files loaded by the initial scan, from the cache or not
+     */
+    @VisibleForTesting
+    int getNumXmlFilesLoadedInitially() {
+        return myNumXmlFilesLoadedInitially;
+    }
+
+    /**
+     * @return the number of XML files parsed by the initial scan because they were missing from
+     * the cache or had changed since it was written
+     */
+    @VisibleForTesting
+    int getNumXmlFilesLoadedInitiallyFromSources() {
+        return myNumXmlFilesLoadedInitiallyFromSources;
+    }
+
     @Override
     protected @Nullable ListMultimap<String, ResourceItem> getMap(@NotNull ResourceNamespace namespace,
                                                                   @NotNull ResourceType type) {
@@ -715,6 +804,13 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
         private final ResourceFolderRepository myRepository;
         private final File myResourceDir;
+        @Nullable
+        private final ResourceFolderRepositoryCachingData myCachingData;
+        /**
+         * Whether the cache file is missing or does not reflect the contents of the resource
+         * folder anymore
+         */
+        private boolean myCacheOutOfDate;
 
         @NotNull
         private final Map<ResourceType, ListMultimap<String, ResourceItem>> myResources =
@@ -739,6 +835,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             super(repository.myResourceDir.toPath(), null, repository.getNamespace());
             myRepository = repository;
             myResourceDir = repository.myResourceDir;
+            myCachingData = cachingData;
             myDefaultVisibility = ResourceVisibility.UNDEFINED;
         }
 
@@ -747,11 +844,79 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 return;
             }
 
+            if (myCachingData != null && !myCachingData.getCacheIsInvalidated()) {
+                loadFromPersistentCache(myCachingData);
+            } else {
+                myCacheOutOfDate = true;
+            }
+
+            // only the files that are not in the cache, or have changed since, are loaded
             scanResFolder();
 
             populateRepository();
 
             scanQueuedPsiResources();
+
+            if (myCachingData != null && myCacheOutOfDate) {
+                Executor executor = myCachingData.getCacheCreationExecutor();
+                if (executor != null) {
+                    executor.execute(() -> createPersistentCache(myCachingData));
+                }
+            }
+        }
+
+        /**
+         * Loads the resources of the files that have not changed since the cache file was
+         * written. The resources of the modified files are discarded while reading.
+         */
+        private void loadFromPersistentCache(@NotNull ResourceFolderRepositoryCachingData cachingData) {
+            byte[] header = getCacheFileHeader(cachingData);
+            try (Base128InputStream stream = new Base128InputStream(cachingData.getCacheFile())) {
+                if (!stream.validateContents(header)) {
+                    myCacheOutOfDate = true;
+                    return; // Cache file header doesn't match.
+                }
+                ResourceSerializationUtil.readResourcesFromStream(stream,
+                        Maps.newHashMapWithExpectedSize(1000), null, myRepository,
+                        item -> addResourceItem(item, myRepository));
+            } catch (NoSuchFileException e) {
+                myCacheOutOfDate = true; // Cache file does not exist.
+            } catch (ProcessCanceledException e) {
+                cleanupAfterFailedLoadingFromCache();
+                throw e;
+            } catch (Throwable e) {
+                cleanupAfterFailedLoadingFromCache();
+                LOG.warn("Failed to load resources from cache file " +
+                         cachingData.getCacheFile(), e);
+            }
+        }
+
+        private void cleanupAfterFailedLoadingFromCache() {
+            mySources.clear();
+            myFileResources.clear();
+            myCacheOutOfDate = true;
+        }
+
+        /**
+         * Writes the resources loaded by the initial scan to the cache file. The resources of
+         * files that failed to parse are not in {@link #myResources} and are loaded again next
+         * time.
+         */
+        private void createPersistentCache(@NotNull ResourceFolderRepositoryCachingData cachingData) {
+            byte[] header = getCacheFileHeader(cachingData);
+            ResourceSerializationUtil.createPersistentCache(cachingData.getCacheFile(), header,
+                    stream -> ResourceSerializationUtil.writeResourcesToStream(myResources, stream,
+                            config -> true));
+        }
+
+        @NotNull
+        private byte[] getCacheFileHeader(@NotNull ResourceFolderRepositoryCachingData cachingData) {
+            return ResourceSerializationUtil.getCacheFileHeader(stream -> {
+                stream.write(CACHE_FILE_HEADER);
+                stream.writeString(CACHE_FILE_FORMAT_VERSION);
+                stream.writeString(myResourceDir.getPath());
+                stream.writeString(cachingData.getCodeVersion());
+            });
         }
 
         /**
@@ -789,6 +954,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                 continue;
                             }
 
+                            myCacheOutOfDate = true;
                             PathString pathString = toPathString(file);
                             myLastVirtualFile = file;
                             myLastPathString = pathString;
@@ -961,18 +1127,24 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 if (virtualFile != null && virtualFile.exists() && !virtualFile.isDirectory()) {
                     sourceFile.addItem(item);
                     mySources.put(virtualFile, sourceFile);
+                } else {
+                    myCacheOutOfDate = true;
                 }
             } else if (item instanceof VfsFileResourceItem) {
                 VfsFileResourceItem fileResourceItem = (VfsFileResourceItem) item;
                 File virtualFile = fileResourceItem.getVirtualFile();
                 if (virtualFile != null && virtualFile.exists() && !virtualFile.isDirectory()) {
                     myFileResources.put(virtualFile, fileResourceItem);
+                } else {
+                    myCacheOutOfDate = true;
                 }
             } else if (item instanceof BasicFileResourceItem) {
                 BasicFileResourceItem fileResourceItem = (BasicFileResourceItem) item;
                 File file = fileResourceItem.getSource().toFile();
                 if (file != null && file.exists() && !file.isDirectory()) {
                     myFileResources.put(file, fileResourceItem);
+                } else {
+                    myCacheOutOfDate = true;
                 }
             } else {
                 throw new IllegalArgumentException("Unexpected type: " + item.getClass().getName());
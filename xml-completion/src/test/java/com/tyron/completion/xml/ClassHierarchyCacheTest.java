@@ -0,0 +1,57 @@
+package com.tyron.completion.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ClassHierarchyCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadsWhatWasWritten() throws IOException {
+        Map<String, String> superClasses = new HashMap<>();
+        superClasses.put("android.widget.Button", "android.widget.TextView");
+        superClasses.put("android.widget.TextView", "android.view.View");
+        superClasses.put("androidx.appcompat.widget.AppCompatButton", "android.widget.Button");
+
+        File file = new File(folder.getRoot(), "cache/test.hierarchy");
+        ClassHierarchyCache.write(superClasses, file);
+
+        assertEquals(superClasses, ClassHierarchyCache.read(file));
+    }
+
+    @Test
+    public void testReadsEmptyHierarchy() throws IOException {
+        File file = new File(folder.getRoot(), "empty.hierarchy");
+        ClassHierarchyCache.write(new HashMap<>(), file);
+
+        assertTrue(ClassHierarchyCache.read(file).isEmpty());
+    }
+
+    @Test
+    public void testRejectsUnknownFormat() throws IOException {
+        File file = folder.newFile("corrupt.hierarchy");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+
+        try {
+            ClassHierarchyCache.read(file);
+            fail("A corrupt file should not be read");
+        } catch (IOException expected) {
+            // the cache scans the jar again
+        }
+    }
+}
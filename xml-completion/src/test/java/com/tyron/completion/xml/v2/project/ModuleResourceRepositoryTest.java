@@ -0,0 +1,144 @@
+package com.tyron.completion.xml.v2.project;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.resources.ResourceItem;
+import com.android.resources.ResourceType;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.impl.AndroidModuleImpl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class ModuleResourceRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AndroidModuleImpl module;
+    private File resourceDirectory;
+    private Path cacheDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        File root = folder.newFolder("project");
+        module = new AndroidModuleImpl(new File(root, "app"));
+        module.setName("app");
+        new Project(root).addModule(module);
+
+        resourceDirectory = new File(root, "app/src/main/res");
+        cacheDirectory = folder.newFolder("cache").toPath();
+    }
+
+    @Test
+    public void testUnchangedFolderIsLoadedFromCache() throws IOException {
+        writeValues("strings.xml", "<string name=\"app_name\">First</string>");
+        writeValues("colors.xml", "<color name=\"primary\">#000000</color>");
+        ResourceFolderRepositoryCachingData cachingData = createCachingData();
+
+        ResourceFolderRepository repository = createRepository(cachingData);
+        assertEquals(2, repository.getNumXmlFilesLoadedInitiallyFromSources());
+        assertTrue(Files.isRegularFile(cachingData.getCacheFile()));
+        byte[] cache = Files.readAllBytes(cachingData.getCacheFile());
+
+        repository = createRepository(cachingData);
+        assertEquals(2, repository.getNumXmlFilesLoadedInitially());
+        assertEquals(0, repository.getNumXmlFilesLoadedInitiallyFromSources());
+        assertEquals("First", getValue(repository, ResourceType.STRING, "app_name"));
+        // nothing has changed, so the cache is not written again
+        assertArrayEquals(cache, Files.readAllBytes(cachingData.getCacheFile()));
+    }
+
+    @Test
+    public void testChangedFileInvalidatesCache() throws IOException {
+        writeValues("strings.xml", "<string name=\"app_name\">First</string>");
+        writeValues("colors.xml", "<color name=\"primary\">#000000</color>");
+        ResourceFolderRepositoryCachingData cachingData = createCachingData();
+        createRepository(cachingData);
+        byte[] cache = Files.readAllBytes(cachingData.getCacheFile());
+
+        // also changes the length, in case the modification time has a coarse resolution
+        writeValues("strings.xml", "<string name=\"app_name\">Second value</string>");
+
+        ResourceFolderRepository repository = createRepository(cachingData);
+        assertEquals(1, repository.getNumXmlFilesLoadedInitiallyFromSources());
+        assertEquals("Second value", getValue(repository, ResourceType.STRING, "app_name"));
+        assertEquals("#000000", getValue(repository, ResourceType.COLOR, "primary"));
+        assertFalse(Arrays.equals(cache, Files.readAllBytes(cachingData.getCacheFile())));
+
+        // the rewritten cache has the new value
+        repository = createRepository(cachingData);
+        assertEquals(0, repository.getNumXmlFilesLoadedInitiallyFromSources());
+        assertEquals("Second value", getValue(repository, ResourceType.STRING, "app_name"));
+    }
+
+    @Test
+    public void testDeletedFileIsNotLoadedFromCache() throws IOException {
+        writeValues("strings.xml", "<string name=\"app_name\">First</string>");
+        writeValues("colors.xml", "<color name=\"primary\">#000000</color>");
+        ResourceFolderRepositoryCachingData cachingData = createCachingData();
+        createRepository(cachingData);
+
+        assertTrue(new File(resourceDirectory, "values/colors.xml").delete());
+
+        ResourceFolderRepository repository = createRepository(cachingData);
+        assertFalse(repository.hasResources(ResourceNamespace.RES_AUTO, ResourceType.COLOR,
+                                            "primary"));
+        assertEquals("First", getValue(repository, ResourceType.STRING, "app_name"));
+    }
+
+    @Test
+    public void testFoldersHaveTheirOwnCache() {
+        Path first = createCachingData().getCacheFile();
+        Path second = ModuleResourceRepository.createCachingData(module,
+                new File(resourceDirectory.getParentFile(), "debug/res"), cacheDirectory,
+                Runnable::run).getCacheFile();
+        assertEquals(cacheDirectory, first.getParent());
+        assertNotEquals(first, second);
+    }
+
+    private ResourceFolderRepositoryCachingData createCachingData() {
+        // the cache is written before the repository is returned
+        return ModuleResourceRepository.createCachingData(module, resourceDirectory,
+                cacheDirectory, Runnable::run);
+    }
+
+    private ResourceFolderRepository createRepository(ResourceFolderRepositoryCachingData cachingData) {
+        return ResourceFolderRepository.create(module, resourceDirectory,
+                ResourceNamespace.RES_AUTO, cachingData);
+    }
+
+    private static String getValue(ResourceFolderRepository repository,
+                                   ResourceType type,
+                                   String name) {
+        List<ResourceItem> items =
+                repository.getResources(ResourceNamespace.RES_AUTO, type, name);
+        assertEquals(1, items.size());
+        return items.get(0).getResourceValue().getValue();
+    }
+
+    private void writeValues(String name, String values) throws IOException {
+        File file = new File(resourceDirectory, "values/" + name);
+        Files.createDirectories(file.getParentFile().toPath());
+        String contents = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                          "<resources>\n" +
+                          "    " + values + "\n" +
+                          "</resources>\n";
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+}